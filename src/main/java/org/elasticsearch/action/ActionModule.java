@@ -142,6 +142,8 @@ import org.elasticsearch.action.indexedscripts.get.TransportGetIndexedScriptActi
 import org.elasticsearch.action.indexedscripts.put.PutIndexedScriptAction;
 import org.elasticsearch.action.indexedscripts.put.TransportPutIndexedScriptAction;
 import org.elasticsearch.action.percolate.*;
+import org.elasticsearch.action.rollup.RollupAction;
+import org.elasticsearch.action.rollup.TransportRollupAction;
 import org.elasticsearch.action.search.*;
 import org.elasticsearch.action.search.type.*;
 import org.elasticsearch.action.suggest.SuggestAction;
@@ -307,6 +309,8 @@ public class ActionModule extends AbstractModule {
 
         registerAction(FieldStatsAction.INSTANCE, TransportFieldStatsTransportAction.class);
 
+        registerAction(RollupAction.INSTANCE, TransportRollupAction.class);
+
         // register Name -> GenericAction Map that can be injected to instances.
         MapBinder<String, GenericAction> actionsBinder
                 = MapBinder.newMapBinder(binder(), String.class, GenericAction.class);
@@ -50,7 +50,7 @@ import static org.elasticsearch.action.ValidateActions.addValidationError;
  */
 public class BulkRequest extends ActionRequest<BulkRequest> implements CompositeIndicesRequest {
 
-    private static final int REQUEST_OVERHEAD = 50;
+    static final int REQUEST_OVERHEAD = 50;
 
     final List<ActionRequest> requests = Lists.newArrayList();
     List<Object> payloads = null;
@@ -425,6 +425,17 @@ public class BulkRequest extends ActionRequest<BulkRequest> implements Composite
     }
 
     private int findNextMarker(byte marker, int from, BytesReference data, int length) {
+        if (data.hasArray()) {
+            // scan the backing array directly rather than going through BytesReference#get for every byte of the payload
+            final byte[] array = data.array();
+            final int offset = data.arrayOffset();
+            for (int i = from; i < length; i++) {
+                if (array[offset + i] == marker) {
+                    return i;
+                }
+            }
+            return -1;
+        }
         for (int i = from; i < length; i++) {
             if (data.get(i) == marker) {
                 return i;
@@ -20,8 +20,11 @@
 package org.elasticsearch.action.bulk;
 
 import org.elasticsearch.Version;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.support.replication.ShardReplicationOperationRequest;
 import org.elasticsearch.action.support.single.instance.InstanceShardOperationRequest;
+import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 
@@ -63,6 +66,35 @@ public class BulkShardRequest extends ShardReplicationOperationRequest<BulkShard
         return items;
     }
 
+    /**
+     * The estimated number of bytes the items of this request hold on to, see {@link BulkRequest#estimatedSizeInBytes()}.
+     */
+    long estimatedSizeInBytes() {
+        long sizeInBytes = 0;
+        for (BulkItemRequest item : items) {
+            if (item == null) {
+                continue;
+            }
+            sizeInBytes += BulkRequest.REQUEST_OVERHEAD;
+            ActionRequest request = item.request();
+            if (request instanceof IndexRequest) {
+                IndexRequest indexRequest = (IndexRequest) request;
+                if (indexRequest.source() != null) {
+                    sizeInBytes += indexRequest.source().length();
+                }
+            } else if (request instanceof UpdateRequest) {
+                UpdateRequest updateRequest = (UpdateRequest) request;
+                if (updateRequest.doc() != null) {
+                    sizeInBytes += updateRequest.doc().source().length();
+                }
+                if (updateRequest.upsertRequest() != null) {
+                    sizeInBytes += updateRequest.upsertRequest().source().length();
+                }
+            }
+        }
+        return sizeInBytes;
+    }
+
     @Override
     public String[] indices() {
         List<String> indices = new ArrayList<>();
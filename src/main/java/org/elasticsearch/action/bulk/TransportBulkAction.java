@@ -46,6 +46,8 @@ import org.elasticsearch.cluster.metadata.MappingMetaData;
 import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.routing.GroupShardsIterator;
 import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.concurrent.AtomicArray;
@@ -54,11 +56,13 @@ import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.indices.IndexAlreadyExistsException;
 import org.elasticsearch.indices.IndexClosedException;
 import org.elasticsearch.indices.IndexMissingException;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportService;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -71,14 +75,17 @@ public class TransportBulkAction extends HandledTransportAction<BulkRequest, Bul
     private final ClusterService clusterService;
     private final TransportShardBulkAction shardBulkAction;
     private final TransportCreateIndexAction createIndexAction;
+    private final CircuitBreakerService circuitBreakerService;
 
     @Inject
     public TransportBulkAction(Settings settings, ThreadPool threadPool, TransportService transportService, ClusterService clusterService,
-                               TransportShardBulkAction shardBulkAction, TransportCreateIndexAction createIndexAction, ActionFilters actionFilters) {
+                               TransportShardBulkAction shardBulkAction, TransportCreateIndexAction createIndexAction, ActionFilters actionFilters,
+                               CircuitBreakerService circuitBreakerService) {
         super(settings, BulkAction.NAME, threadPool, transportService, actionFilters, BulkRequest.class);
         this.clusterService = clusterService;
         this.shardBulkAction = shardBulkAction;
         this.createIndexAction = createIndexAction;
+        this.circuitBreakerService = circuitBreakerService;
 
         this.autoCreateIndex = new AutoCreateIndex(settings);
         this.allowIdGeneration = this.settings.getAsBoolean("action.bulk.action.allow_id_generation", true);
@@ -86,6 +93,44 @@ public class TransportBulkAction extends HandledTransportAction<BulkRequest, Bul
 
     @Override
     protected void doExecute(final BulkRequest bulkRequest, final ActionListener<BulkResponse> listener) {
+        // the bytes of the request are accounted for until it is answered, and the request is rejected up
+        // front if this node already coordinates, or indexes, more bytes than the indexing breaker allows
+        final CircuitBreaker breaker = circuitBreakerService.getBreaker(CircuitBreaker.INDEXING);
+        final long bytes = bulkRequest.estimatedSizeInBytes();
+        try {
+            breaker.addEstimateBytesAndMaybeBreak(bytes, "<bulk_request>");
+        } catch (CircuitBreakingException e) {
+            listener.onFailure(e);
+            return;
+        }
+        final AtomicBoolean released = new AtomicBoolean(false);
+        final ActionListener<BulkResponse> releasingListener = new ActionListener<BulkResponse>() {
+            @Override
+            public void onResponse(BulkResponse response) {
+                release();
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                release();
+                listener.onFailure(e);
+            }
+
+            private void release() {
+                if (released.compareAndSet(false, true)) {
+                    breaker.addWithoutBreaking(-bytes);
+                }
+            }
+        };
+        try {
+            innerExecute(bulkRequest, releasingListener);
+        } catch (Throwable t) {
+            releasingListener.onFailure(t);
+        }
+    }
+
+    private void innerExecute(final BulkRequest bulkRequest, final ActionListener<BulkResponse> listener) {
         final long startTime = System.currentTimeMillis();
         final AtomicArray<BulkItemResponse> responses = new AtomicArray<>(bulkRequest.requests.size());
 
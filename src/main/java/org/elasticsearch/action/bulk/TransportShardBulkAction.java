@@ -38,6 +38,7 @@ import org.elasticsearch.cluster.action.index.MappingUpdatedAction;
 import org.elasticsearch.cluster.action.shard.ShardStateAction;
 import org.elasticsearch.cluster.metadata.MappingMetaData;
 import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.inject.Inject;
@@ -55,6 +56,7 @@ import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportRequestOptions;
@@ -74,16 +76,19 @@ public class TransportShardBulkAction extends TransportShardReplicationOperation
 
     private final UpdateHelper updateHelper;
     private final boolean allowIdGeneration;
+    private final CircuitBreakerService circuitBreakerService;
 
     @Inject
     public TransportShardBulkAction(Settings settings, TransportService transportService, ClusterService clusterService,
                                     IndicesService indicesService, ThreadPool threadPool, ShardStateAction shardStateAction,
-                                    MappingUpdatedAction mappingUpdatedAction, UpdateHelper updateHelper, ActionFilters actionFilters) {
+                                    MappingUpdatedAction mappingUpdatedAction, UpdateHelper updateHelper, ActionFilters actionFilters,
+                                    CircuitBreakerService circuitBreakerService) {
         super(settings, ACTION_NAME, transportService, clusterService, indicesService, threadPool, shardStateAction, mappingUpdatedAction,
                 actionFilters,
                 BulkShardRequest.class, BulkShardRequest.class, ThreadPool.Names.BULK);
         this.updateHelper = updateHelper;
         this.allowIdGeneration = settings.getAsBoolean("action.allow_id_generation", true);
+        this.circuitBreakerService = circuitBreakerService;
     }
 
     @Override
@@ -112,6 +117,18 @@ public class TransportShardBulkAction extends TransportShardReplicationOperation
 
     @Override
     protected Tuple<BulkShardResponse, BulkShardRequest> shardOperationOnPrimary(ClusterState clusterState, PrimaryOperationRequest shardRequest) {
+        // rejects the whole shard request if the in flight indexing bytes of this node would exceed the indexing breaker limit
+        final CircuitBreaker breaker = circuitBreakerService.getBreaker(CircuitBreaker.INDEXING);
+        final long bytes = shardRequest.request.estimatedSizeInBytes();
+        breaker.addEstimateBytesAndMaybeBreak(bytes, "<bulk_shard_request_primary>");
+        try {
+            return executeOnPrimary(clusterState, shardRequest);
+        } finally {
+            breaker.addWithoutBreaking(-bytes);
+        }
+    }
+
+    private Tuple<BulkShardResponse, BulkShardRequest> executeOnPrimary(ClusterState clusterState, PrimaryOperationRequest shardRequest) {
         final BulkShardRequest request = shardRequest.request;
         final IndexService indexService = indicesService.indexServiceSafe(request.index());
         final IndexShard indexShard = indexService.shardSafe(shardRequest.shardId.id());
@@ -444,6 +461,18 @@ public class TransportShardBulkAction extends TransportShardReplicationOperation
 
     @Override
     protected void shardOperationOnReplica(ShardId shardId, BulkShardRequest request) {
+        // operations that the primary already applied must not be rejected on the replica, so they are only accounted for
+        final CircuitBreaker breaker = circuitBreakerService.getBreaker(CircuitBreaker.INDEXING);
+        final long bytes = request.estimatedSizeInBytes();
+        breaker.addWithoutBreaking(bytes);
+        try {
+            executeOnReplica(shardId, request);
+        } finally {
+            breaker.addWithoutBreaking(-bytes);
+        }
+    }
+
+    private void executeOnReplica(ShardId shardId, BulkShardRequest request) {
         IndexService indexService = indicesService.indexServiceSafe(shardId.getIndex());
         IndexShard indexShard = indexService.shardSafe(shardId.id());
         Translog.Location location = null;
@@ -0,0 +1,264 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.rollup;
+
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.IndicesRequest;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.elasticsearch.action.ValidateActions.addValidationError;
+
+/**
+ * A request to summarize the documents of some indices into a rollup index. Documents are grouped by buckets of
+ * <code>interval</code> on <code>field</code> and by the values of the <code>dimensions</code>, and each group is
+ * written to the rollup index as a single document that summarizes the values of the <code>metrics</code>. Only
+ * documents whose date is between <code>from</code> (inclusive) and <code>to</code> (exclusive) are rolled up if these
+ * bounds are set, so that the rollup index can be updated incrementally. Summaries are computed and indexed
+ * <code>page_size</code> at a time.
+ */
+public class RollupRequest extends ActionRequest<RollupRequest> implements IndicesRequest {
+
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    private String[] indices = Strings.EMPTY_ARRAY;
+    private IndicesOptions indicesOptions = IndicesOptions.strictExpandOpenAndForbidClosed();
+    private String rollupIndex;
+    private String field;
+    private String interval;
+    private String[] dimensions = Strings.EMPTY_ARRAY;
+    private String[] metrics = Strings.EMPTY_ARRAY;
+    private String from;
+    private String to;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+
+    RollupRequest() {
+    }
+
+    /**
+     * Constructs a request to roll up the given indices into <code>rollupIndex</code>.
+     */
+    public RollupRequest(String rollupIndex, String... indices) {
+        this.rollupIndex = rollupIndex;
+        this.indices = indices;
+    }
+
+    @Override
+    public String[] indices() {
+        return indices;
+    }
+
+    public RollupRequest indices(String... indices) {
+        this.indices = indices;
+        return this;
+    }
+
+    @Override
+    public IndicesOptions indicesOptions() {
+        return indicesOptions;
+    }
+
+    public RollupRequest indicesOptions(IndicesOptions indicesOptions) {
+        this.indicesOptions = indicesOptions;
+        return this;
+    }
+
+    public String rollupIndex() {
+        return rollupIndex;
+    }
+
+    public RollupRequest rollupIndex(String rollupIndex) {
+        this.rollupIndex = rollupIndex;
+        return this;
+    }
+
+    /**
+     * The date field to bucket documents on.
+     */
+    public String field() {
+        return field;
+    }
+
+    public RollupRequest field(String field) {
+        this.field = field;
+        return this;
+    }
+
+    /**
+     * The interval of the time buckets, with the syntax of the <code>date_histogram</code> aggregation.
+     */
+    public String interval() {
+        return interval;
+    }
+
+    public RollupRequest interval(String interval) {
+        this.interval = interval;
+        return this;
+    }
+
+    /**
+     * The fields whose values are kept as-is in summary documents.
+     */
+    public String[] dimensions() {
+        return dimensions;
+    }
+
+    public RollupRequest dimensions(String... dimensions) {
+        this.dimensions = dimensions;
+        return this;
+    }
+
+    /**
+     * The numeric fields whose min, max, sum and value count are stored in summary documents.
+     */
+    public String[] metrics() {
+        return metrics;
+    }
+
+    public RollupRequest metrics(String... metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    @Nullable
+    public String from() {
+        return from;
+    }
+
+    public RollupRequest from(@Nullable String from) {
+        this.from = from;
+        return this;
+    }
+
+    @Nullable
+    public String to() {
+        return to;
+    }
+
+    public RollupRequest to(@Nullable String to) {
+        this.to = to;
+        return this;
+    }
+
+    public int pageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Sets the number of summaries to compute per search request and to index per bulk request.
+     */
+    public RollupRequest pageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    @Override
+    public ActionRequestValidationException validate() {
+        ActionRequestValidationException validationException = null;
+        if (indices == null || indices.length == 0) {
+            validationException = addValidationError("no indices to roll up", validationException);
+        }
+        if (rollupIndex == null) {
+            validationException = addValidationError("rollup index is missing", validationException);
+        } else if (indices != null && Arrays.asList(indices).contains(rollupIndex)) {
+            validationException = addValidationError("rollup index [" + rollupIndex + "] can't be one of the rolled up indices",
+                    validationException);
+        }
+        if (field == null) {
+            validationException = addValidationError("field is missing", validationException);
+        }
+        if (interval == null) {
+            validationException = addValidationError("interval is missing", validationException);
+        }
+        if (metrics == null || metrics.length == 0) {
+            validationException = addValidationError("no metrics to roll up", validationException);
+        }
+        if (pageSize <= 0) {
+            validationException = addValidationError("page size must be greater than 0", validationException);
+        }
+        Set<String> fields = new HashSet<>();
+        fields.add(field);
+        for (String[] group : Arrays.asList(dimensions, metrics)) {
+            if (group == null) {
+                continue;
+            }
+            for (String groupField : group) {
+                if (fields.add(groupField) == false) {
+                    validationException = addValidationError("field [" + groupField + "] can only be rolled up once", validationException);
+                }
+            }
+        }
+        return validationException;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        indices = in.readStringArray();
+        indicesOptions = IndicesOptions.readIndicesOptions(in);
+        rollupIndex = in.readString();
+        field = in.readString();
+        interval = in.readString();
+        dimensions = in.readStringArray();
+        metrics = in.readStringArray();
+        from = in.readOptionalString();
+        to = in.readOptionalString();
+        pageSize = in.readVInt();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeStringArray(indices);
+        indicesOptions.writeIndicesOptions(out);
+        out.writeString(rollupIndex);
+        out.writeString(field);
+        out.writeString(interval);
+        out.writeStringArray(dimensions);
+        out.writeStringArray(metrics);
+        out.writeOptionalString(from);
+        out.writeOptionalString(to);
+        out.writeVInt(pageSize);
+    }
+
+    @Override
+    public String toString() {
+        return "RollupRequest{" +
+                "indices=" + Arrays.toString(indices) +
+                ", rollupIndex=" + rollupIndex +
+                ", field=" + field +
+                ", interval=" + interval +
+                ", dimensions=" + Arrays.toString(dimensions) +
+                ", metrics=" + Arrays.toString(metrics) +
+                ", from=" + from +
+                ", to=" + to +
+                ", pageSize=" + pageSize +
+                '}';
+    }
+}
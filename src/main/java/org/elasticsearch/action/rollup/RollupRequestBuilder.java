@@ -0,0 +1,78 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.rollup;
+
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.client.ElasticsearchClient;
+
+/**
+ * A builder for {@link RollupRequest}s.
+ */
+public class RollupRequestBuilder extends ActionRequestBuilder<RollupRequest, RollupResponse, RollupRequestBuilder> {
+
+    public RollupRequestBuilder(ElasticsearchClient client, RollupAction action) {
+        super(client, action, new RollupRequest());
+    }
+
+    public RollupRequestBuilder setIndices(String... indices) {
+        request.indices(indices);
+        return this;
+    }
+
+    public RollupRequestBuilder setRollupIndex(String rollupIndex) {
+        request.rollupIndex(rollupIndex);
+        return this;
+    }
+
+    public RollupRequestBuilder setField(String field) {
+        request.field(field);
+        return this;
+    }
+
+    public RollupRequestBuilder setInterval(String interval) {
+        request.interval(interval);
+        return this;
+    }
+
+    public RollupRequestBuilder setDimensions(String... dimensions) {
+        request.dimensions(dimensions);
+        return this;
+    }
+
+    public RollupRequestBuilder setMetrics(String... metrics) {
+        request.metrics(metrics);
+        return this;
+    }
+
+    public RollupRequestBuilder setFrom(String from) {
+        request.from(from);
+        return this;
+    }
+
+    public RollupRequestBuilder setTo(String to) {
+        request.to(to);
+        return this;
+    }
+
+    public RollupRequestBuilder setPageSize(int pageSize) {
+        request.pageSize(pageSize);
+        return this;
+    }
+}
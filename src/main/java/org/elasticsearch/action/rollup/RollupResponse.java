@@ -0,0 +1,97 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.rollup;
+
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentBuilderString;
+
+import java.io.IOException;
+
+/**
+ * The response of a {@link RollupRequest}.
+ */
+public class RollupResponse extends ActionResponse implements ToXContent {
+
+    private long tookInMillis;
+    private long rolledUpDocs;
+    private long summaryDocs;
+
+    RollupResponse() {
+    }
+
+    RollupResponse(long tookInMillis, long rolledUpDocs, long summaryDocs) {
+        this.tookInMillis = tookInMillis;
+        this.rolledUpDocs = rolledUpDocs;
+        this.summaryDocs = summaryDocs;
+    }
+
+    public TimeValue getTook() {
+        return new TimeValue(tookInMillis);
+    }
+
+    /**
+     * Return the number of documents that have been summarized.
+     */
+    public long getRolledUpDocs() {
+        return rolledUpDocs;
+    }
+
+    /**
+     * Return the number of summary documents that have been written to the rollup index.
+     */
+    public long getSummaryDocs() {
+        return summaryDocs;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        tookInMillis = in.readVLong();
+        rolledUpDocs = in.readVLong();
+        summaryDocs = in.readVLong();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVLong(tookInMillis);
+        out.writeVLong(rolledUpDocs);
+        out.writeVLong(summaryDocs);
+    }
+
+    static final class Fields {
+        static final XContentBuilderString TOOK = new XContentBuilderString("took");
+        static final XContentBuilderString ROLLED_UP_DOCS = new XContentBuilderString("rolled_up_docs");
+        static final XContentBuilderString SUMMARY_DOCS = new XContentBuilderString("summary_docs");
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.field(Fields.TOOK, tookInMillis);
+        builder.field(Fields.ROLLED_UP_DOCS, rolledUpDocs);
+        builder.field(Fields.SUMMARY_DOCS, summaryDocs);
+        return builder;
+    }
+}
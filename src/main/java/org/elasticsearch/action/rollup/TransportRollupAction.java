@@ -0,0 +1,392 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.rollup;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
+import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
+import org.elasticsearch.action.admin.indices.create.TransportCreateIndexAction;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.bulk.TransportBulkAction;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.TransportSearchAction;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.HandledTransportAction;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.hash.MurmurHash3;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.indices.IndexAlreadyExistsException;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.composite.Composite;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.missing.Missing;
+import org.elasticsearch.search.aggregations.metrics.stats.Stats;
+import org.elasticsearch.search.aggregations.support.RollupFields;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Rolls up indices by paging through a <code>composite</code> aggregation with a <code>date_histogram</code> source on the
+ * date field, <code>terms</code> sources on the dimensions and <code>stats</code> sub-aggregations on the metrics, and by
+ * indexing one summary document per bucket. Summary documents have ids that only depend on their time bucket and on their
+ * dimensions so that rolling up the same documents again overwrites previous summaries.
+ */
+public class TransportRollupAction extends HandledTransportAction<RollupRequest, RollupResponse> {
+
+    static final String COMPOSITE_AGGREGATION = "rollup";
+
+    private final ClusterService clusterService;
+    private final TransportCreateIndexAction createIndexAction;
+    private final TransportSearchAction searchAction;
+    private final TransportBulkAction bulkAction;
+
+    @Inject
+    public TransportRollupAction(Settings settings, ThreadPool threadPool, TransportService transportService, ClusterService clusterService,
+            TransportCreateIndexAction createIndexAction, TransportSearchAction searchAction, TransportBulkAction bulkAction,
+            ActionFilters actionFilters) {
+        super(settings, RollupAction.NAME, threadPool, transportService, actionFilters, RollupRequest.class);
+        this.clusterService = clusterService;
+        this.createIndexAction = createIndexAction;
+        this.searchAction = searchAction;
+        this.bulkAction = bulkAction;
+    }
+
+    @Override
+    protected void doExecute(final RollupRequest request, final ActionListener<RollupResponse> listener) {
+        final long startTime = System.currentTimeMillis();
+        final IndexMetaData rollupIndexMetaData = clusterService.state().metaData().index(request.rollupIndex());
+        if (rollupIndexMetaData != null) {
+            try {
+                checkRollupIndex(request, rollupIndexMetaData.settings());
+            } catch (Throwable t) {
+                listener.onFailure(t);
+                return;
+            }
+            rollup(request, startTime, listener);
+            return;
+        }
+        final CreateIndexRequest createIndexRequest;
+        try {
+            createIndexRequest = createRollupIndexRequest(request);
+        } catch (Throwable t) {
+            listener.onFailure(t);
+            return;
+        }
+        createIndexAction.execute(createIndexRequest, new ActionListener<CreateIndexResponse>() {
+            @Override
+            public void onResponse(CreateIndexResponse response) {
+                rollup(request, startTime, listener);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                if (ExceptionsHelper.unwrapCause(e) instanceof IndexAlreadyExistsException) {
+                    // created concurrently
+                    rollup(request, startTime, listener);
+                } else {
+                    listener.onFailure(e);
+                }
+            }
+        });
+    }
+
+    private void rollup(RollupRequest request, long startTime, ActionListener<RollupResponse> listener) {
+        new Paginator(request, startTime, listener).nextPage(null);
+    }
+
+    /**
+     * Pages through the buckets of the rollup with a composite aggregation, and indexes the summaries of a page before
+     * fetching the next one so that neither the search nor the bulk requests grow with the number of summaries.
+     */
+    private class Paginator {
+
+        private final RollupRequest request;
+        private final long startTime;
+        private final ActionListener<RollupResponse> listener;
+        private long rolledUpDocs;
+        private long summaryDocs;
+
+        Paginator(RollupRequest request, long startTime, ActionListener<RollupResponse> listener) {
+            this.request = request;
+            this.startTime = startTime;
+            this.listener = listener;
+        }
+
+        void nextPage(final Map<String, Object> after) {
+            SearchRequest searchRequest = new SearchRequest(request);
+            searchRequest.indices(request.indices());
+            searchRequest.indicesOptions(request.indicesOptions());
+            searchRequest.source(rollupSource(request, after));
+            searchAction.execute(searchRequest, new ActionListener<SearchResponse>() {
+                @Override
+                public void onResponse(SearchResponse searchResponse) {
+                    final BulkRequest bulkRequest = new BulkRequest();
+                    final Composite composite;
+                    try {
+                        if (after == null) {
+                            checkMissingValues(request, searchResponse.getAggregations());
+                            rolledUpDocs = searchResponse.getHits().getTotalHits();
+                        }
+                        composite = searchResponse.getAggregations().get(COMPOSITE_AGGREGATION);
+                        summarize(request, composite, bulkRequest);
+                    } catch (Throwable t) {
+                        listener.onFailure(t);
+                        return;
+                    }
+                    if (bulkRequest.numberOfActions() == 0) {
+                        done();
+                        return;
+                    }
+                    // a page that is not full is the last one
+                    final Map<String, Object> nextAfter = composite.getBuckets().size() < request.pageSize() ? null : composite.afterKey();
+                    bulkAction.execute(bulkRequest, new ActionListener<BulkResponse>() {
+                        @Override
+                        public void onResponse(BulkResponse bulkResponse) {
+                            if (bulkResponse.hasFailures()) {
+                                listener.onFailure(new ElasticsearchException("failed to index summary documents into ["
+                                        + request.rollupIndex() + "]: " + bulkResponse.buildFailureMessage()));
+                                return;
+                            }
+                            summaryDocs += bulkResponse.getItems().length;
+                            if (nextAfter == null) {
+                                done();
+                            } else {
+                                nextPage(nextAfter);
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(Throwable e) {
+                            listener.onFailure(e);
+                        }
+                    });
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    listener.onFailure(e);
+                }
+            });
+        }
+
+        private void done() {
+            listener.onResponse(new RollupResponse(System.currentTimeMillis() - startTime, rolledUpDocs, summaryDocs));
+        }
+    }
+
+    /**
+     * Return the search source of the page of summaries that comes after the given composite key, or of the first page
+     * if it is <code>null</code>. The first page also counts documents that miss the date field or a dimension.
+     */
+    static SearchSourceBuilder rollupSource(RollupRequest request, @Nullable Map<String, Object> after) {
+        SearchSourceBuilder source = new SearchSourceBuilder().size(0);
+        if (request.from() != null || request.to() != null) {
+            source.query(QueryBuilders.rangeQuery(request.field()).from(request.from()).includeLower(true).to(request.to())
+                    .includeUpper(false));
+        }
+        CompositeAggregationBuilder composite = AggregationBuilders.composite(COMPOSITE_AGGREGATION).size(request.pageSize())
+                .dateHistogramSource(request.field(), request.field(), request.interval());
+        for (String dimension : request.dimensions()) {
+            composite.source(dimension, dimension);
+        }
+        for (int i = 0; i < request.metrics().length; ++i) {
+            composite.subAggregation(AggregationBuilders.stats(metricAggregation(i)).field(request.metrics()[i]));
+        }
+        source.aggregation(composite.after(after));
+        if (after == null) {
+            source.aggregation(AggregationBuilders.missing(missingAggregation(request.field())).field(request.field()));
+            for (String dimension : request.dimensions()) {
+                source.aggregation(AggregationBuilders.missing(missingAggregation(dimension)).field(dimension));
+            }
+        }
+        return source;
+    }
+
+    static String metricAggregation(int i) {
+        return "metric_" + i;
+    }
+
+    static String missingAggregation(String field) {
+        return "missing_" + field;
+    }
+
+    /**
+     * Fail if documents miss the date field or a dimension, since they wouldn't be summarized.
+     */
+    private static void checkMissingValues(RollupRequest request, Aggregations aggregations) {
+        List<String> fields = new ArrayList<>();
+        fields.add(request.field());
+        fields.addAll(Arrays.asList(request.dimensions()));
+        for (String field : fields) {
+            final Missing missing = aggregations.get(missingAggregation(field));
+            if (missing.getDocCount() > 0) {
+                throw new IllegalArgumentException("can't roll up [" + Strings.arrayToCommaDelimitedString(request.indices())
+                        + "]: [" + missing.getDocCount() + "] documents have no value for [" + field + "]");
+            }
+        }
+    }
+
+    /**
+     * Add a summary document to the bulk request for every bucket of the composite aggregation.
+     */
+    private static void summarize(RollupRequest request, Composite composite, BulkRequest bulkRequest) {
+        for (Composite.Bucket bucket : composite.getBuckets()) {
+            bulkRequest.add(summaryRequest(request, bucket.getKey(), bucket));
+        }
+    }
+
+    private static IndexRequest summaryRequest(RollupRequest request, Map<String, Object> keys, Composite.Bucket bucket) {
+        final Map<String, Object> source = new HashMap<>();
+        final StringBuilder id = new StringBuilder();
+        id.append(keys.get(request.field()));
+        putPath(source, request.field(), keys.get(request.field()));
+        for (String dimension : request.dimensions()) {
+            id.append('\0').append(keys.get(dimension));
+            putPath(source, dimension, keys.get(dimension));
+        }
+        source.put(RollupFields.DOC_COUNT, bucket.getDocCount());
+        for (int i = 0; i < request.metrics().length; ++i) {
+            final String metric = request.metrics()[i];
+            final Stats stats = bucket.getAggregations().get(metricAggregation(i));
+            if (stats.getCount() > 0) {
+                putPath(source, RollupFields.summaryField(metric, RollupFields.MIN), stats.getMin());
+                putPath(source, RollupFields.summaryField(metric, RollupFields.MAX), stats.getMax());
+            }
+            putPath(source, RollupFields.summaryField(metric, RollupFields.SUM), stats.getSum());
+            putPath(source, RollupFields.summaryField(metric, RollupFields.VALUE_COUNT), stats.getCount());
+        }
+        return new IndexRequest(request.rollupIndex(), RollupFields.TYPE, summaryId(id.toString())).source(source);
+    }
+
+    private static String summaryId(String key) {
+        final byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        final MurmurHash3.Hash128 hash = MurmurHash3.hash128(bytes, 0, bytes.length, 0, new MurmurHash3.Hash128());
+        return String.format(Locale.ROOT, "%016x%016x", hash.h1, hash.h2);
+    }
+
+    /**
+     * Put a value in a document source, creating objects for every dot-separated part of the path.
+     */
+    @SuppressWarnings("unchecked")
+    static void putPath(Map<String, Object> source, String path, Object value) {
+        final String[] parts = path.split("\\.");
+        Map<String, Object> object = source;
+        for (int i = 0; i < parts.length - 1; ++i) {
+            Object child = object.get(parts[i]);
+            if (child instanceof Map == false) {
+                child = new HashMap<String, Object>();
+                object.put(parts[i], child);
+            }
+            object = (Map<String, Object>) child;
+        }
+        object.put(parts[parts.length - 1], value);
+    }
+
+    /**
+     * Put the mapping of a field in mapping properties, creating object mappings for every dot-separated part of the path.
+     */
+    @SuppressWarnings("unchecked")
+    static void putFieldMapping(Map<String, Object> properties, String path, Map<String, Object> fieldMapping) {
+        final String[] parts = path.split("\\.");
+        for (int i = 0; i < parts.length - 1; ++i) {
+            Object object = properties.get(parts[i]);
+            if (object instanceof Map == false) {
+                object = new HashMap<String, Object>();
+                ((Map<String, Object>) object).put("properties", new HashMap<String, Object>());
+                properties.put(parts[i], object);
+            }
+            properties = (Map<String, Object>) ((Map<String, Object>) object).get("properties");
+        }
+        properties.put(parts[parts.length - 1], fieldMapping);
+    }
+
+    private static void checkRollupIndex(RollupRequest request, Settings indexSettings) {
+        if (RollupFields.isRollupIndex(indexSettings) == false) {
+            throw new IllegalArgumentException("index [" + request.rollupIndex() + "] exists and is not a rollup index");
+        }
+        if (request.field().equals(indexSettings.get(RollupFields.SETTING_DATE_FIELD)) == false
+                || request.interval().equals(indexSettings.get(RollupFields.SETTING_INTERVAL)) == false) {
+            throw new IllegalArgumentException("rollup index [" + request.rollupIndex() + "] rolls up field ["
+                    + indexSettings.get(RollupFields.SETTING_DATE_FIELD) + "] with interval ["
+                    + indexSettings.get(RollupFields.SETTING_INTERVAL) + "], got field [" + request.field() + "] and interval ["
+                    + request.interval() + "]");
+        }
+        // summary ids depend on the order of dimensions, metrics can be listed in any order
+        final String[] dimensions = indexSettings.getAsArray(RollupFields.SETTING_DIMENSIONS, Strings.EMPTY_ARRAY);
+        if (Arrays.equals(request.dimensions(), dimensions) == false) {
+            throw new IllegalArgumentException("rollup index [" + request.rollupIndex() + "] rolls up dimensions "
+                    + Arrays.toString(dimensions) + ", got " + Arrays.toString(request.dimensions()));
+        }
+        final String[] metrics = indexSettings.getAsArray(RollupFields.SETTING_METRICS, Strings.EMPTY_ARRAY);
+        if (new HashSet<>(Arrays.asList(request.metrics())).equals(new HashSet<>(Arrays.asList(metrics))) == false) {
+            throw new IllegalArgumentException("rollup index [" + request.rollupIndex() + "] rolls up metrics "
+                    + Arrays.toString(metrics) + ", got " + Arrays.toString(request.metrics()));
+        }
+    }
+
+    static CreateIndexRequest createRollupIndexRequest(RollupRequest request) {
+        CreateIndexRequest createIndexRequest = new CreateIndexRequest(request);
+        createIndexRequest.index(request.rollupIndex());
+        createIndexRequest.settings(ImmutableSettings.settingsBuilder()
+                .put(RollupFields.SETTING_DATE_FIELD, request.field())
+                .put(RollupFields.SETTING_INTERVAL, request.interval())
+                .putArray(RollupFields.SETTING_DIMENSIONS, request.dimensions())
+                .putArray(RollupFields.SETTING_METRICS, request.metrics()));
+        Map<String, Object> mapping = new HashMap<>();
+        // dimensions are aggregated on as-is
+        Map<String, Object> stringMapping = new HashMap<>();
+        stringMapping.put("type", "string");
+        stringMapping.put("index", "not_analyzed");
+        Map<String, Object> dimensionsTemplate = new HashMap<>();
+        dimensionsTemplate.put("match_mapping_type", "string");
+        dimensionsTemplate.put("mapping", stringMapping);
+        mapping.put("dynamic_templates", Collections.singletonList(Collections.singletonMap("dimensions", dimensionsTemplate)));
+        Map<String, Object> properties = new HashMap<>();
+        // time buckets are indexed as milliseconds since the epoch
+        putFieldMapping(properties, request.field(), Collections.<String, Object>singletonMap("type", "date"));
+        putFieldMapping(properties, RollupFields.DOC_COUNT, Collections.<String, Object>singletonMap("type", "long"));
+        mapping.put("properties", properties);
+        createIndexRequest.mapping(RollupFields.TYPE, mapping);
+        return createIndexRequest;
+    }
+}
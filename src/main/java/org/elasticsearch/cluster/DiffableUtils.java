@@ -152,6 +152,9 @@ public final class DiffableUtils {
 
         @Override
         public ImmutableMap<String, T> apply(ImmutableMap<String, T> map) {
+            if (isEmpty()) {
+                return map;
+            }
             HashMap<String, T> builder = newHashMap();
             builder.putAll(map);
 
@@ -200,6 +203,9 @@ public final class DiffableUtils {
 
         @Override
         public ImmutableOpenMap<String, T> apply(ImmutableOpenMap<String, T> map) {
+            if (isEmpty()) {
+                return map;
+            }
             ImmutableOpenMap.Builder<String, T> builder = ImmutableOpenMap.builder();
             builder.putAll(map);
 
@@ -260,6 +266,13 @@ public final class DiffableUtils {
                 adds.put(key, part);
             }
         }
+        /**
+         * Returns <code>true</code> if the map didn't change, in which case the previous map can be reused as is
+         */
+        protected boolean isEmpty() {
+            return deletes.isEmpty() && diffs.isEmpty() && adds.isEmpty();
+        }
+
         @Override
         public void writeTo(StreamOutput out) throws IOException {
             out.writeVInt(deletes.size());
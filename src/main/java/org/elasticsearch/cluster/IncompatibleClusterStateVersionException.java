@@ -20,16 +20,41 @@
 package org.elasticsearch.cluster;
 
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.Nullable;
 
 /**
  * Thrown by {@link Diffable#readDiffAndApply(org.elasticsearch.common.io.stream.StreamInput)} method
  */
 public class IncompatibleClusterStateVersionException extends ElasticsearchException {
+
+    private final long expectedVersion;
+
+    private final String expectedUuid;
+
     public IncompatibleClusterStateVersionException(String msg) {
         super(msg);
+        this.expectedVersion = -1;
+        this.expectedUuid = null;
     }
 
     public IncompatibleClusterStateVersionException(long expectedVersion, String expectedUuid, long receivedVersion, String receivedUuid) {
         super("Expected diff for version " + expectedVersion + " with uuid " + expectedUuid + " got version " + receivedVersion + " and uuid " + receivedUuid);
+        this.expectedVersion = expectedVersion;
+        this.expectedUuid = expectedUuid;
+    }
+
+    /**
+     * The version of the cluster state the diff was expected to be based on, or <tt>-1</tt> if unknown
+     */
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    /**
+     * The uuid of the cluster state the diff was expected to be based on, or <tt>null</tt> if unknown
+     */
+    @Nullable
+    public String getExpectedUuid() {
+        return expectedUuid;
     }
 }
@@ -298,7 +298,7 @@ public class ClusterBlocks extends AbstractDiffable<ClusterBlocks> {
             if (indexMetaData.settings().getAsBoolean(IndexMetaData.SETTING_BLOCKS_READ, false)) {
                 addIndexBlock(indexMetaData.index(), IndexMetaData.INDEX_READ_BLOCK);
             }
-            if (indexMetaData.settings().getAsBoolean(IndexMetaData.SETTING_BLOCKS_WRITE, false)) {
+            if (indexMetaData.settings().getAsBoolean(IndexMetaData.SETTING_BLOCKS_WRITE, false) || IndexMetaData.isIndexFrozen(indexMetaData.settings())) {
                 addIndexBlock(indexMetaData.index(), IndexMetaData.INDEX_WRITE_BLOCK);
             }
             if (indexMetaData.settings().getAsBoolean(IndexMetaData.SETTING_BLOCKS_METADATA, false)) {
@@ -154,6 +154,7 @@ public class IndexMetaData implements Diffable<IndexMetaData> {
     public static final String SETTING_NUMBER_OF_REPLICAS = "index.number_of_replicas";
     public static final String SETTING_SHADOW_REPLICAS = "index.shadow_replicas";
     public static final String SETTING_SHARED_FILESYSTEM = "index.shared_filesystem";
+    public static final String SETTING_FROZEN = "index.frozen";
     public static final String SETTING_AUTO_EXPAND_REPLICAS = "index.auto_expand_replicas";
     public static final String SETTING_READ_ONLY = "index.blocks.read_only";
     public static final String SETTING_BLOCKS_READ = "index.blocks.read";
@@ -886,4 +887,13 @@ public class IndexMetaData implements Diffable<IndexMetaData> {
         return settings.getAsBoolean(SETTING_SHADOW_REPLICAS, false);
     }
 
+    /**
+     * Returns <code>true</code> iff the given settings indicate that the index associated
+     * with these settings is frozen. Frozen indices are read-only and only open Lucene readers
+     * while they are searched. The default setting for this is <code>false</code>.
+     */
+    public static boolean isIndexFrozen(Settings settings) {
+        return settings.getAsBoolean(SETTING_FROZEN, false);
+    }
+
 }
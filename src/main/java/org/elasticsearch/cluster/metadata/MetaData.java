@@ -1224,14 +1224,23 @@ public class MetaData implements Iterable<IndexMetaData>, Diffable<MetaData> {
 
         @Override
         public MetaData apply(MetaData part) {
+            ImmutableOpenMap<String, IndexMetaData> updatedIndices = indices.apply(part.indices);
+            ImmutableOpenMap<String, IndexTemplateMetaData> updatedTemplates = templates.apply(part.templates);
+            ImmutableOpenMap<String, Custom> updatedCustoms = customs.apply(part.customs);
+            if (updatedIndices == part.indices && updatedTemplates == part.templates && updatedCustoms == part.customs
+                    && version == part.version && uuid.equals(part.uuid)
+                    && transientSettings.equals(part.transientSettings) && persistentSettings.equals(part.persistentSettings)) {
+                // nothing changed, reuse the existing meta data and its lookup structures
+                return part;
+            }
             Builder builder = builder();
             builder.uuid(uuid);
             builder.version(version);
             builder.transientSettings(transientSettings);
             builder.persistentSettings(persistentSettings);
-            builder.indices(indices.apply(part.indices));
-            builder.templates(templates.apply(part.templates));
-            builder.customs(customs.apply(part.customs));
+            builder.indices(updatedIndices);
+            builder.templates(updatedTemplates);
+            builder.customs(updatedCustoms);
             return builder.build();
         }
     }
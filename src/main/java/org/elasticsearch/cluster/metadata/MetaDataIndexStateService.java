@@ -160,8 +160,13 @@ public class MetaDataIndexStateService extends AbstractComponent {
                 ClusterBlocks.Builder blocksBuilder = ClusterBlocks.builder()
                         .blocks(currentState.blocks());
                 for (String index : indicesToOpen) {
-                    mdBuilder.put(IndexMetaData.builder(currentState.metaData().index(index)).state(IndexMetaData.State.OPEN));
+                    IndexMetaData indexMetaData = currentState.metaData().index(index);
+                    mdBuilder.put(IndexMetaData.builder(indexMetaData).state(IndexMetaData.State.OPEN));
                     blocksBuilder.removeIndexBlock(index, INDEX_CLOSED_BLOCK);
+                    if (IndexMetaData.isIndexFrozen(indexMetaData.settings())) {
+                        // indices are frozen while closed, they only accept reads once opened again
+                        blocksBuilder.addIndexBlock(index, IndexMetaData.INDEX_WRITE_BLOCK);
+                    }
                 }
 
                 ClusterState updatedState = ClusterState.builder(currentState).metaData(mdBuilder).blocks(blocksBuilder).build();
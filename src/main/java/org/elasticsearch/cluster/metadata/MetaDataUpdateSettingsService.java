@@ -266,9 +266,14 @@ public class MetaDataUpdateSettingsService extends AbstractComponent implements
                 }
 
                 Boolean updateWriteBlock = openSettings.getAsBoolean(IndexMetaData.SETTING_BLOCKS_WRITE, null);
-                if (updateWriteBlock != null) {
+                Boolean updateFrozen = closeSettings.getAsBoolean(IndexMetaData.SETTING_FROZEN, null);
+                if (updateWriteBlock != null || updateFrozen != null) {
                     for (String index : actualIndices) {
-                        if (updateWriteBlock) {
+                        // frozen indices keep their write block, whatever index.blocks.write says
+                        Settings indexSettings = currentState.metaData().index(index).settings();
+                        boolean writeBlock = updateWriteBlock != null ? updateWriteBlock : indexSettings.getAsBoolean(IndexMetaData.SETTING_BLOCKS_WRITE, false);
+                        boolean frozen = updateFrozen != null ? updateFrozen : IndexMetaData.isIndexFrozen(indexSettings);
+                        if (writeBlock || frozen) {
                             blocks.addIndexBlock(index, IndexMetaData.INDEX_WRITE_BLOCK);
                         } else {
                             blocks.removeIndexBlock(index, IndexMetaData.INDEX_WRITE_BLOCK);
@@ -53,10 +53,7 @@ public class ImmutableShardRouting implements Streamable, Serializable, ShardRou
 
     protected RestoreSource restoreSource;
 
-    private final transient ImmutableList<ShardRouting> asList;
-
     ImmutableShardRouting() {
-        this.asList = ImmutableList.of((ShardRouting) this);
     }
 
     public ImmutableShardRouting(ShardRouting copy) {
@@ -96,7 +93,6 @@ public class ImmutableShardRouting implements Streamable, Serializable, ShardRou
         this.currentNodeId = currentNodeId;
         this.primary = primary;
         this.state = state;
-        this.asList = ImmutableList.of((ShardRouting) this);
         this.version = version;
     }
 
@@ -199,7 +195,7 @@ public class ImmutableShardRouting implements Streamable, Serializable, ShardRou
 
     @Override
     public ShardIterator shardsIt() {
-        return new PlainShardIterator(shardId(), asList);
+        return new PlainShardIterator(shardId(), ImmutableList.of((ShardRouting) this));
     }
 
     public static ImmutableShardRouting readShardRoutingEntry(StreamInput in) throws IOException {
@@ -214,6 +210,16 @@ public class ImmutableShardRouting implements Streamable, Serializable, ShardRou
         return entry;
     }
 
+    /**
+     * Reads a shard routing entry without index name and shard id, sharing the given {@link ShardId} instead of
+     * creating a new one per shard copy.
+     */
+    static ImmutableShardRouting readShardRoutingEntry(StreamInput in, ShardId shardId) throws IOException {
+        ImmutableShardRouting entry = readShardRoutingEntry(in, shardId.index().name(), shardId.id());
+        entry.shardIdentifier = shardId;
+        return entry;
+    }
+
     public void readFrom(StreamInput in, String index, int shardId) throws IOException {
         this.index = index;
         this.shardId = shardId;
@@ -224,11 +230,11 @@ public class ImmutableShardRouting implements Streamable, Serializable, ShardRou
     public void readFromThin(StreamInput in) throws IOException {
         version = in.readLong();
         if (in.readBoolean()) {
-            currentNodeId = in.readString();
+            currentNodeId = in.readString().intern();
         }
 
         if (in.readBoolean()) {
-            relocatingNodeId = in.readString();
+            relocatingNodeId = in.readString().intern();
         }
 
         primary = in.readBoolean();
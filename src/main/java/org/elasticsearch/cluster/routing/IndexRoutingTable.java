@@ -19,6 +19,7 @@
 
 package org.elasticsearch.cluster.routing;
 
+import com.carrotsearch.hppc.IntArrayList;
 import com.carrotsearch.hppc.IntSet;
 import com.carrotsearch.hppc.cursors.IntCursor;
 import com.carrotsearch.hppc.cursors.IntObjectCursor;
@@ -28,6 +29,7 @@ import com.google.common.collect.UnmodifiableIterator;
 
 import org.apache.lucene.util.CollectionUtil;
 import org.elasticsearch.cluster.AbstractDiffable;
+import org.elasticsearch.cluster.Diff;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.common.collect.ImmutableOpenIntMap;
@@ -346,7 +348,7 @@ public class IndexRoutingTable extends AbstractDiffable<IndexRoutingTable> imple
 
     @Override
     public IndexRoutingTable readFrom(StreamInput in) throws IOException {
-        String index = in.readString();
+        String index = in.readString().intern();
         Builder builder = new Builder(index);
 
         int size = in.readVInt();
@@ -366,6 +368,91 @@ public class IndexRoutingTable extends AbstractDiffable<IndexRoutingTable> imple
         }
     }
 
+    @Override
+    public Diff<IndexRoutingTable> diff(IndexRoutingTable previousState) {
+        return new IndexRoutingTableDiff(previousState, this);
+    }
+
+    @Override
+    public Diff<IndexRoutingTable> readDiffFrom(StreamInput in) throws IOException {
+        return new IndexRoutingTableDiff(in);
+    }
+
+    /**
+     * Represents the changes of a single index routing table on the shard level. Only the shard routing tables that
+     * changed are sent over the wire and all other shard routing tables are reused from the previous state when the
+     * diff is applied.
+     */
+    private static class IndexRoutingTableDiff implements Diff<IndexRoutingTable> {
+
+        private final String index;
+
+        private final IntArrayList deletes;
+
+        private final List<IndexShardRoutingTable> upserts;
+
+        public IndexRoutingTableDiff(IndexRoutingTable before, IndexRoutingTable after) {
+            this.index = after.index;
+            this.deletes = new IntArrayList();
+            this.upserts = new ArrayList<>();
+            for (IntCursor shardId : before.shards.keys()) {
+                if (!after.shards.containsKey(shardId.value)) {
+                    deletes.add(shardId.value);
+                }
+            }
+            for (IntObjectCursor<IndexShardRoutingTable> cursor : after.shards) {
+                IndexShardRoutingTable beforeShard = before.shards.get(cursor.key);
+                if (beforeShard == null || cursor.value.equals(beforeShard) == false) {
+                    upserts.add(cursor.value);
+                }
+            }
+        }
+
+        public IndexRoutingTableDiff(StreamInput in) throws IOException {
+            this.index = in.readString().intern();
+            int deletesCount = in.readVInt();
+            this.deletes = new IntArrayList(deletesCount);
+            for (int i = 0; i < deletesCount; i++) {
+                deletes.add(in.readVInt());
+            }
+            int upsertsCount = in.readVInt();
+            this.upserts = new ArrayList<>(upsertsCount);
+            for (int i = 0; i < upsertsCount; i++) {
+                upserts.add(IndexShardRoutingTable.Builder.readFromThin(in, index));
+            }
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeString(index);
+            out.writeVInt(deletes.size());
+            for (IntCursor shardId : deletes) {
+                out.writeVInt(shardId.value);
+            }
+            out.writeVInt(upserts.size());
+            for (IndexShardRoutingTable indexShard : upserts) {
+                IndexShardRoutingTable.Builder.writeToThin(indexShard, out);
+            }
+        }
+
+        @Override
+        public IndexRoutingTable apply(IndexRoutingTable part) {
+            if (deletes.isEmpty() && upserts.isEmpty() && index.equals(part.index)) {
+                return part;
+            }
+            Builder builder = new Builder(index);
+            for (IntObjectCursor<IndexShardRoutingTable> cursor : part.shards) {
+                if (deletes.contains(cursor.key) == false) {
+                    builder.addIndexShard(cursor.value);
+                }
+            }
+            for (IndexShardRoutingTable indexShard : upserts) {
+                builder.addIndexShard(indexShard);
+            }
+            return builder.build();
+        }
+    }
+
     public static Builder builder(String index) {
         return new Builder(index);
     }
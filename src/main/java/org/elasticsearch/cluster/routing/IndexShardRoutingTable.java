@@ -75,6 +75,8 @@ public class IndexShardRoutingTable implements Iterable<ShardRouting> {
         ImmutableList.Builder<ShardRouting> assignedShards = ImmutableList.builder();
         ImmutableList.Builder<ShardRouting> allInitializingShards = ImmutableList.builder();
         boolean allShardsStarted = true;
+        int numActiveShards = 0;
+        int numAssignedShards = 0;
         for (ShardRouting shard : shards) {
             if (shard.primary()) {
                 primary = shard;
@@ -83,6 +85,7 @@ public class IndexShardRoutingTable implements Iterable<ShardRouting> {
             }
             if (shard.active()) {
                 activeShards.add(shard);
+                numActiveShards++;
             }
             if (shard.initializing()) {
                 allInitializingShards.add(shard);
@@ -93,6 +96,7 @@ public class IndexShardRoutingTable implements Iterable<ShardRouting> {
             }
             if (shard.assignedToNode()) {
                 assignedShards.add(shard);
+                numAssignedShards++;
             }
             if (shard.state() != ShardRoutingState.STARTED) {
                 allShardsStarted = false;
@@ -107,8 +111,9 @@ public class IndexShardRoutingTable implements Iterable<ShardRouting> {
             this.primaryAsList = ImmutableList.of();
         }
         this.replicas = replicas.build();
-        this.activeShards = activeShards.build();
-        this.assignedShards = assignedShards.build();
+        // in the common case of all copies being assigned and active, share the shards list instead of copying it
+        this.activeShards = numActiveShards == shards.size() ? shards : activeShards.build();
+        this.assignedShards = numAssignedShards == shards.size() ? shards : assignedShards.build();
         this.allInitializingShards = allInitializingShards.build();
     }
 
@@ -569,11 +574,12 @@ public class IndexShardRoutingTable implements Iterable<ShardRouting> {
         public static IndexShardRoutingTable readFromThin(StreamInput in, String index) throws IOException {
             int iShardId = in.readVInt();
             boolean allocatedPostApi = in.readBoolean();
-            Builder builder = new Builder(new ShardId(index, iShardId), allocatedPostApi);
+            ShardId shardId = new ShardId(index, iShardId);
+            Builder builder = new Builder(shardId, allocatedPostApi);
 
             int size = in.readVInt();
             for (int i = 0; i < size; i++) {
-                ImmutableShardRouting shard = ImmutableShardRouting.readShardRoutingEntry(in, index, iShardId);
+                ImmutableShardRouting shard = ImmutableShardRouting.readShardRoutingEntry(in, shardId);
                 builder.addShard(shard);
             }
 
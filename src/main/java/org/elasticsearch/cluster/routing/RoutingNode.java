@@ -41,6 +41,9 @@ public class RoutingNode implements Iterable<MutableShardRouting> {
 
     private final List<MutableShardRouting> shards;
 
+    /* cached stats - invalidated by RoutingNodes on changes to the shards of this node and lazily calculated */
+    private int numberOfRecoveries = -1;
+
     public RoutingNode(String nodeId, DiscoveryNode node) {
         this(nodeId, node, new ArrayList<MutableShardRouting>());
     }
@@ -93,6 +96,28 @@ public class RoutingNode implements Iterable<MutableShardRouting> {
             }
         }
         shards.add(shard);
+        invalidateStats();
+    }
+
+    /**
+     * Invalidates the cached stats of this node. Must be called whenever a shard is added to or
+     * removed from this node or changes its state.
+     */
+    void invalidateStats() {
+        numberOfRecoveries = -1;
+    }
+
+    /**
+     * Returns the number of shards that are recovering to ({@link ShardRoutingState#INITIALIZING})
+     * or from ({@link ShardRoutingState#RELOCATING}) this node. The value is cached until
+     * the shards on this node change, since allocation deciders ask for it for every shard
+     * that is considered for allocation on this node.
+     */
+    public int numberOfRecoveries() {
+        if (numberOfRecoveries == -1) {
+            numberOfRecoveries = numberOfShardsWithState(ShardRoutingState.INITIALIZING, ShardRoutingState.RELOCATING);
+        }
+        return numberOfRecoveries;
     }
 
     /**
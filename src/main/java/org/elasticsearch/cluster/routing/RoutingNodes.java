@@ -372,6 +372,7 @@ public class RoutingNodes implements Iterable<RoutingNode> {
         ShardRoutingState oldState = shard.state();
         shard.assignToNode(nodeId);
         node(nodeId).add(shard);
+        invalidateNodeStats(shard);
         if (oldState == ShardRoutingState.UNASSIGNED) {
             inactiveShardCount++;
             if (shard.primary()) {
@@ -391,6 +392,7 @@ public class RoutingNodes implements Iterable<RoutingNode> {
     public void relocate(MutableShardRouting shard, String nodeId) {
         relocatingShards++;
         shard.relocate(nodeId);
+        invalidateNodeStats(shard);
     }
 
     /**
@@ -406,6 +408,7 @@ public class RoutingNodes implements Iterable<RoutingNode> {
             relocatingShards--;
         }
         assert !shard.started();
+        invalidateNodeStats(shard);
         shard.moveToStarted();
     }
 
@@ -414,6 +417,7 @@ public class RoutingNodes implements Iterable<RoutingNode> {
      */
     public void cancelRelocation(MutableShardRouting shard) {
         relocatingShards--;
+        invalidateNodeStats(shard);
         shard.cancelRelocation();
     }
 
@@ -451,6 +455,7 @@ public class RoutingNodes implements Iterable<RoutingNode> {
      * @param shard
      */
     private void remove(MutableShardRouting shard) {
+        invalidateNodeStats(shard);
         if (!shard.active() && shard.relocatingNodeId() == null) {
             inactiveShardCount--;
             assert inactiveShardCount >= 0;
@@ -463,6 +468,23 @@ public class RoutingNodes implements Iterable<RoutingNode> {
         assignedShardsRemove(shard);
     }
 
+    /**
+     * Invalidates the cached stats of the nodes the given shard is allocated on or relocating to.
+     */
+    private void invalidateNodeStats(MutableShardRouting shard) {
+        invalidateNodeStats(shard.currentNodeId());
+        invalidateNodeStats(shard.relocatingNodeId());
+    }
+
+    private void invalidateNodeStats(String nodeId) {
+        if (nodeId != null) {
+            final RoutingNode routingNode = nodesToShards.get(nodeId);
+            if (routingNode != null) {
+                routingNode.invalidateStats();
+            }
+        }
+    }
+
     private void assignedShardsAdd(MutableShardRouting shard) {
         if (shard.unassigned()) {
             // no unassigned
@@ -524,6 +546,7 @@ public class RoutingNodes implements Iterable<RoutingNode> {
         if (candidate.relocating()) {
             cancelRelocation(candidate);
         }
+        invalidateNodeStats(candidate);
         candidate.reinitializeShard();
         inactivePrimaryCount++;
         inactiveShardCount++;
@@ -306,7 +306,11 @@ public class RoutingTable implements Iterable<IndexRoutingTable>, Diffable<Routi
 
         @Override
         public RoutingTable apply(RoutingTable part) {
-            return new RoutingTable(version, indicesRouting.apply(part.indicesRouting));
+            ImmutableMap<String, IndexRoutingTable> updatedIndicesRouting = indicesRouting.apply(part.indicesRouting);
+            if (updatedIndicesRouting == part.indicesRouting && version == part.version) {
+                return part;
+            }
+            return new RoutingTable(version, updatedIndicesRouting);
         }
 
         @Override
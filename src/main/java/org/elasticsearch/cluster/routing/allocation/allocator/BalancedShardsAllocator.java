@@ -22,6 +22,7 @@ package org.elasticsearch.cluster.routing.allocation.allocator;
 import com.google.common.base.Predicate;
 import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.IntroSorter;
+import org.elasticsearch.cluster.ClusterInfo;
 import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.routing.MutableShardRouting;
 import org.elasticsearch.cluster.routing.RoutingNode;
@@ -38,10 +39,12 @@ import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.node.settings.NodeSettingsService;
 
 import java.util.*;
 
+import static org.elasticsearch.cluster.InternalClusterInfoService.shardIdentifierFromRouting;
 import static org.elasticsearch.cluster.routing.ShardRoutingState.INITIALIZING;
 import static org.elasticsearch.cluster.routing.ShardRoutingState.RELOCATING;
 
@@ -54,6 +57,8 @@ import static org.elasticsearch.cluster.routing.ShardRoutingState.RELOCATING;
  * for shards allocated on a {@link RoutingNode}</li>
  * <li><code>cluster.routing.allocation.balance.index</code> - The <b>index balance</b> defines a factor to the number
  * of {@link org.elasticsearch.cluster.routing.ShardRouting}s per index allocated on a specific node</li>
+ * <li><code>cluster.routing.allocation.balance.disk</code> - The <b>disk balance</b> defines a factor to the size in bytes
+ * of the shards allocated on a specific node, as reported by the {@link ClusterInfo}</li>
  * <li><code>cluster.routing.allocation.balance.threshold</code> - A <b>threshold</b> to set the minimal optimization
  * value of operations that should be performed</li>
  * </ul>
@@ -66,25 +71,31 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
     public static final String SETTING_THRESHOLD = "cluster.routing.allocation.balance.threshold";
     public static final String SETTING_INDEX_BALANCE_FACTOR = "cluster.routing.allocation.balance.index";
     public static final String SETTING_SHARD_BALANCE_FACTOR = "cluster.routing.allocation.balance.shard";
+    public static final String SETTING_DISK_BALANCE_FACTOR = "cluster.routing.allocation.balance.disk";
 
     private static final float DEFAULT_INDEX_BALANCE_FACTOR = 0.55f;
     private static final float DEFAULT_SHARD_BALANCE_FACTOR = 0.45f;
+    private static final float DEFAULT_DISK_BALANCE_FACTOR = 0.0f;
 
     class ApplySettings implements NodeSettingsService.Listener {
         @Override
         public void onRefreshSettings(Settings settings) {
             final float indexBalance = settings.getAsFloat(SETTING_INDEX_BALANCE_FACTOR, weightFunction.indexBalance);
             final float shardBalance = settings.getAsFloat(SETTING_SHARD_BALANCE_FACTOR, weightFunction.shardBalance);
+            final float diskBalance = settings.getAsFloat(SETTING_DISK_BALANCE_FACTOR, weightFunction.diskBalance);
+            if (diskBalance < 0.0f) {
+                throw new IllegalArgumentException("disk balance must be greater or equal to 0.0f but was: " + diskBalance);
+            }
             float threshold = settings.getAsFloat(SETTING_THRESHOLD, BalancedShardsAllocator.this.threshold);
             if (threshold <= 0.0f) {
                 throw new IllegalArgumentException("threshold must be greater than 0.0f but was: " + threshold);
             }
             BalancedShardsAllocator.this.threshold = threshold;
-            BalancedShardsAllocator.this.weightFunction = new WeightFunction(indexBalance, shardBalance);
+            BalancedShardsAllocator.this.weightFunction = new WeightFunction(indexBalance, shardBalance, diskBalance);
         }
     }
 
-    private volatile WeightFunction weightFunction = new WeightFunction(DEFAULT_INDEX_BALANCE_FACTOR, DEFAULT_SHARD_BALANCE_FACTOR);
+    private volatile WeightFunction weightFunction = new WeightFunction(DEFAULT_INDEX_BALANCE_FACTOR, DEFAULT_SHARD_BALANCE_FACTOR, DEFAULT_DISK_BALANCE_FACTOR);
 
     private volatile float threshold = 1.0f;
 
@@ -145,6 +156,13 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
         return weightFunction.shardBalance;
     }
 
+    /**
+     * Returns the disk usage related weight factor.
+     */
+    public float getDiskBalance() {
+        return weightFunction.diskBalance;
+    }
+
 
     /**
      * This class is the primary weight function used to create balanced over nodes and shards in the cluster.
@@ -152,6 +170,7 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
      * <ul>
      * <li><code>index balance</code> - balance property over shards per index</li>
      * <li><code>shard balance</code> - balance property over shards per cluster</li>
+     * <li><code>disk balance</code> - balance property over the size of the shards per cluster</li>
      * </ul>
      * <p>
      * Each of these properties are expressed as factor such that the properties factor defines the relative importance of the property for the
@@ -166,31 +185,52 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
      * <li>
      * <code>weight<sub>node</sub>(node, index) = shardBalance * (node.numShards() - avgShardsPerNode)</code>
      * </li>
+     * <li>
+     * <code>weight<sub>disk</sub>(node, index) = diskBalance * (node.diskUsage() - avgDiskUsagePerNode) / avgShardSize</code>
+     * </li>
      * </ul>
-     * <code>weight(node, index) = weight<sub>index</sub>(node, index) + weight<sub>node</sub>(node, index)</code>
+     * <code>weight(node, index) = weight<sub>index</sub>(node, index) + weight<sub>node</sub>(node, index) + weight<sub>disk</sub>(node, index)</code>
+     * <p>
+     * The disk weight is expressed in units of the average shard size so it is comparable to the shard count based weights.
+     * Shards with an unknown size are accounted with the average shard size.
+     * </p>
      */
     public static class WeightFunction {
 
         private final float indexBalance;
         private final float shardBalance;
+        private final float diskBalance;
         private final float[] theta;
 
 
         public WeightFunction(float indexBalance, float shardBalance) {
-            float sum = indexBalance + shardBalance;
+            this(indexBalance, shardBalance, 0.0f);
+        }
+
+        public WeightFunction(float indexBalance, float shardBalance, float diskBalance) {
+            float sum = indexBalance + shardBalance + diskBalance;
             if (sum <= 0.0f) {
                 throw new IllegalArgumentException("Balance factors must sum to a value > 0 but was: " + sum);
             }
-            theta = new float[]{shardBalance / sum, indexBalance / sum};
+            theta = new float[]{shardBalance / sum, indexBalance / sum, diskBalance / sum};
             this.indexBalance = indexBalance;
             this.shardBalance = shardBalance;
+            this.diskBalance = diskBalance;
         }
 
         public float weight(Operation operation, Balancer balancer, ModelNode node, String index) {
             final float weightShard = (node.numShards() - balancer.avgShardsPerNode());
             final float weightIndex = (node.numShards(index) - balancer.avgShardsPerNode(index));
             assert theta != null;
-            return theta[0] * weightShard + theta[1] * weightIndex;
+            float weight = theta[0] * weightShard + theta[1] * weightIndex;
+            if (theta[2] != 0.0f) {
+                final float avgShardSize = balancer.avgShardSizeInBytes();
+                if (avgShardSize > 0.0f) {
+                    final float weightDisk = (node.diskUsageInBytes() - balancer.avgDiskUsageInBytesPerNode()) / avgShardSize;
+                    weight += theta[2] * weightDisk;
+                }
+            }
+            return weight;
         }
 
     }
@@ -227,6 +267,10 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
 
         private final float threshold;
         private final MetaData metaData;
+        /* shard sizes keyed by shard id so the hot loops don't need to build the ClusterInfo identifiers */
+        private final Map<ShardId, Long> primarySizes = new HashMap<>();
+        private final Map<ShardId, Long> replicaSizes = new HashMap<>();
+        private final float avgShardSizeInBytes;
 
         private final Predicate<MutableShardRouting> assignedFilter = new Predicate<MutableShardRouting>() {
             @Override
@@ -242,8 +286,29 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
             this.weight = weight;
             this.threshold = threshold;
             this.routingNodes = allocation.routingNodes();
+            final ClusterInfo clusterInfo = allocation.clusterInfo();
+            long sumOfKnownSizes = 0;
+            int numKnownSizes = 0;
+            if (weight.diskBalance != 0.0f && clusterInfo != null) {
+                final Map<String, Long> shardSizes = clusterInfo.getShardSizes();
+                for (RoutingNode node : routingNodes) {
+                    for (MutableShardRouting shard : node) {
+                        final Map<ShardId, Long> sizes = shard.primary() ? primarySizes : replicaSizes;
+                        if (sizes.containsKey(shard.shardId())) {
+                            continue; // relocation source and target share the same size
+                        }
+                        final Long size = shardSizes.get(shardIdentifierFromRouting(shard));
+                        if (size != null) {
+                            sizes.put(shard.shardId(), size);
+                            sumOfKnownSizes += size;
+                            numKnownSizes++;
+                        }
+                    }
+                }
+            }
+            this.avgShardSizeInBytes = numKnownSizes == 0 ? 0.0f : ((float) sumOfKnownSizes) / numKnownSizes;
             for (RoutingNode node : routingNodes) {
-                nodes.put(node.nodeId(), new ModelNode(node.nodeId()));
+                nodes.put(node.nodeId(), new ModelNode(node.nodeId(), this));
             }
             metaData = routingNodes.metaData();
         }
@@ -269,6 +334,30 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
             return ((float) metaData.totalNumberOfShards()) / nodes.size();
         }
 
+        /**
+         * Returns the average size in bytes of the shards that have a size in the {@link ClusterInfo}
+         * or <code>0</code> if no size is known.
+         */
+        public float avgShardSizeInBytes() {
+            return avgShardSizeInBytes;
+        }
+
+        /**
+         * Returns the global average of disk usage in bytes per node
+         */
+        public float avgDiskUsageInBytesPerNode() {
+            return avgShardSizeInBytes * metaData.totalNumberOfShards() / nodes.size();
+        }
+
+        /**
+         * Returns the size in bytes of the given shard as reported by the {@link ClusterInfo}
+         * or the average shard size if the size of the shard is unknown.
+         */
+        public long shardSizeInBytes(MutableShardRouting shard) {
+            final Long size = (shard.primary() ? primarySizes : replicaSizes).get(shard.shardId());
+            return size == null ? (long) avgShardSizeInBytes : size;
+        }
+
         /**
          * Returns the global average of primaries per node
          */
@@ -727,6 +816,22 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
             return changed;
         }
 
+        /**
+         * Returns <code>true</code> iff the given shard should be relocated instead of the current candidate if both
+         * result in the same weight delta. If the disk balance is enabled smaller shards are preferred since they are
+         * cheaper to move, otherwise or if both shards have the same size they are ordered by their shard id.
+         */
+        private boolean isPreferredCandidate(MutableShardRouting shard, MutableShardRouting candidate) {
+            if (weight.diskBalance != 0.0f) {
+                final long shardSize = shardSizeInBytes(shard);
+                final long candidateSize = shardSizeInBytes(candidate);
+                if (shardSize != candidateSize) {
+                    return shardSize < candidateSize;
+                }
+            }
+            return candidate.id() > shard.id();
+        }
+
         /**
          * Tries to find a relocation from the max node to the minimal node for an arbitrary shard of the given index on the
          * balance model. Iff this method returns a <code>true</code> the relocation has already been executed on the
@@ -757,9 +862,9 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
                                 minNode.addShard(shard, srcDecision);
                                 final float delta = weight.weight(operation, this, minNode, idx) - weight.weight(operation, this, maxNode, idx);
                                 if (delta < minCost ||
-                                        (candidate != null && delta == minCost && candidate.id() > shard.id())) {
-                                    /* this last line is a tie-breaker to make the shard allocation alg deterministic
-                                     * otherwise we rely on the iteration order of the index.getAllShards() which is a set.*/
+                                        (candidate != null && delta == minCost && isPreferredCandidate(shard, candidate))) {
+                                    /* this last line is a tie-breaker to move the smaller shard and to make the shard allocation
+                                     * alg deterministic otherwise we rely on the iteration order of the index.getAllShards() which is a set.*/
                                     minCost = delta;
                                     candidate = shard;
                                     decision = new Decision.Multi().add(allocationDecision).add(rebalanceDecision);
@@ -808,12 +913,15 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
 
     static class ModelNode implements Iterable<ModelIndex> {
         private final String id;
+        private final Balancer balancer;
         private final Map<String, ModelIndex> indices = new HashMap<>();
         /* cached stats - invalidated on add/remove and lazily calculated */
         private int numShards = -1;
+        private long diskUsageInBytes = -1;
 
-        public ModelNode(String id) {
+        public ModelNode(String id, Balancer balancer) {
             this.id = id;
+            this.balancer = balancer;
         }
 
         public ModelIndex getIndex(String indexId) {
@@ -835,6 +943,19 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
             return numShards;
         }
 
+        public long diskUsageInBytes() {
+            if (diskUsageInBytes == -1) {
+                long sum = 0;
+                for (ModelIndex index : indices.values()) {
+                    for (MutableShardRouting shard : index.getAllShards()) {
+                        sum += balancer.shardSizeInBytes(shard);
+                    }
+                }
+                diskUsageInBytes = sum;
+            }
+            return diskUsageInBytes;
+        }
+
         public int numShards(String idx) {
             ModelIndex index = indices.get(idx);
             return index == null ? 0 : index.numShards();
@@ -858,6 +979,7 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
 
         public void addShard(MutableShardRouting shard, Decision decision) {
             numShards = -1;
+            diskUsageInBytes = -1;
             ModelIndex index = indices.get(shard.index());
             if (index == null) {
                 index = new ModelIndex(shard.index());
@@ -868,6 +990,7 @@ public class BalancedShardsAllocator extends AbstractComponent implements Shards
 
         public Decision removeShard(MutableShardRouting shard) {
             numShards = -1;
+            diskUsageInBytes = -1;
             ModelIndex index = indices.get(shard.index());
             Decision removed = null;
             if (index != null) {
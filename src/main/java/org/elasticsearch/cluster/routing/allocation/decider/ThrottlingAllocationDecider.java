@@ -105,12 +105,7 @@ public class ThrottlingAllocationDecider extends AllocationDecider {
 
     @Override
     public Decision canAllocate(RoutingNode node, RoutingAllocation allocation) {
-        int currentRecoveries = 0;
-        for (MutableShardRouting shard : node) {
-            if (shard.state() == ShardRoutingState.INITIALIZING || shard.state() == ShardRoutingState.RELOCATING) {
-                currentRecoveries++;
-            }
-        }
+        final int currentRecoveries = node.numberOfRecoveries();
         if (currentRecoveries >= concurrentRecoveries) {
             return allocation.decision(Decision.THROTTLE, NAME, "too many shards currently recovering [%d], limit: [%d]",
                     currentRecoveries, concurrentRecoveries);
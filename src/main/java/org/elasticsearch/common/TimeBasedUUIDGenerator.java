@@ -24,17 +24,20 @@ import java.io.IOException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /** These are essentially flake ids (http://boundary.com/blog/2012/01/12/flake-a-decentralized-k-ordered-unique-id-generator-in-erlang) but
- *  we use 6 (not 8) bytes for timestamp, and use 3 (not 2) bytes for sequence number. */
+ *  we use 43 (not 64) bits for timestamp, and use 29 (not 16) bits for sequence number. They are encoded with the ordered, URL safe
+ *  Base64 alphabet so that the ids sort like their timestamps, which keeps the _uid ranges of segments apart. */
 
 class TimeBasedUUIDGenerator implements UUIDGenerator {
 
-    // We only use bottom 3 bytes for the sequence number.  Paranoia: init with random int so that if JVM/OS/machine goes down, clock slips
+    // We only use bottom 29 bits for the sequence number.  Paranoia: init with random int so that if JVM/OS/machine goes down, clock slips
     // backwards, and JVM comes back up, we are less likely to be on the same sequenceNumber at the same time:
     private final AtomicInteger sequenceNumber = new AtomicInteger(SecureRandomHolder.INSTANCE.nextInt());
 
     // Used to ensure clock moves forward:
     private long lastTimestamp;
 
+    private static final int SEQUENCE_MASK = (1 << 29) - 1;
+
     private static final byte[] secureMungedAddress = MacAddressProvider.getSecureMungedAddress();
 
     static {
@@ -50,7 +53,7 @@ class TimeBasedUUIDGenerator implements UUIDGenerator {
 
     @Override
     public String getBase64UUID()  {
-        final int sequenceId = sequenceNumber.incrementAndGet() & 0xffffff;
+        final int sequenceId = sequenceNumber.incrementAndGet() & SEQUENCE_MASK;
         long timestamp = System.currentTimeMillis();
 
         synchronized (this) {
@@ -69,20 +72,23 @@ class TimeBasedUUIDGenerator implements UUIDGenerator {
 
         final byte[] uuidBytes = new byte[15];
 
-        // Only use lower 6 bytes of the timestamp (this will suffice beyond the year 10000):
-        putLong(uuidBytes, timestamp, 0, 6);
+        // Only use lower 43 bits of the timestamp (this will suffice until the year 2248), in the upper bits of the first 6 bytes.
+        // Left-aligning the timestamp makes the first characters of the id come from its bits: the upper bits of a 6 byte
+        // timestamp are zero, which would make every id start with the first character of the alphabet, '-'. The upper 5 bits
+        // of the sequence number fill the rest of these 6 bytes:
+        putLong(uuidBytes, (timestamp << 5) | (sequenceId >>> 24), 0, 6);
 
         // MAC address adds 6 bytes:
         System.arraycopy(secureMungedAddress, 0, uuidBytes, 6, secureMungedAddress.length);
 
-        // Sequence number adds 3 bytes:
+        // Lower 3 bytes of the sequence number:
         putLong(uuidBytes, sequenceId, 12, 3);
 
         assert 9 + secureMungedAddress.length == uuidBytes.length;
 
         byte[] encoded;
         try {
-            encoded = Base64.encodeBytesToBytes(uuidBytes, 0, uuidBytes.length, Base64.URL_SAFE);
+            encoded = Base64.encodeBytesToBytes(uuidBytes, 0, uuidBytes.length, Base64.ORDERED);
         } catch (IOException e) {
             throw new IllegalStateException("should not be thrown", e);
         }
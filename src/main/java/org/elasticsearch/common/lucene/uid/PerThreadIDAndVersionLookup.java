@@ -58,6 +58,9 @@ final class PerThreadIDAndVersionLookup {
     private final int numSegs;
     private final boolean hasDeletions;
     private final boolean[] hasPayloads;
+    // the smallest and largest _uid of every segment, ids outside of this range don't need a terms dictionary seek
+    private final BytesRef[] minIds;
+    private final BytesRef[] maxIds;
 
     public PerThreadIDAndVersionLookup(IndexReader r) throws IOException {
 
@@ -70,6 +73,8 @@ final class PerThreadIDAndVersionLookup {
         liveDocs = new Bits[leaves.size()];
         versions = new NumericDocValues[leaves.size()];
         hasPayloads = new boolean[leaves.size()];
+        minIds = new BytesRef[leaves.size()];
+        maxIds = new BytesRef[leaves.size()];
         int numSegs = 0;
         boolean hasDeletions = false;
         // iterate backwards to optimize for the frequently updated documents
@@ -87,6 +92,10 @@ final class PerThreadIDAndVersionLookup {
                     liveDocs[numSegs] = readerContext.reader().getLiveDocs();
                     hasDeletions |= readerContext.reader().hasDeletions();
                     versions[numSegs] = readerContext.reader().getNumericDocValues(VersionFieldMapper.NAME);
+                    final BytesRef minId = terms.getMin();
+                    final BytesRef maxId = terms.getMax();
+                    minIds[numSegs] = minId == null ? null : BytesRef.deepCopyOf(minId);
+                    maxIds[numSegs] = maxId == null ? null : BytesRef.deepCopyOf(maxId);
                     numSegs++;
                 }
             }
@@ -98,6 +107,9 @@ final class PerThreadIDAndVersionLookup {
     /** Return null if id is not found. */
     public DocIdAndVersion lookup(BytesRef id) throws IOException {
         for(int seg=0;seg<numSegs;seg++) {
+            if (outOfRange(seg, id)) {
+                continue;
+            }
             if (termsEnums[seg].seekExact(id)) {
 
                 NumericDocValues segVersions = versions[seg];
@@ -141,5 +153,11 @@ final class PerThreadIDAndVersionLookup {
         return null;
     }
 
+    /** Whether the segment cannot contain the given id, since it sorts before its smallest or after its largest _uid. */
+    private boolean outOfRange(int seg, BytesRef id) {
+        return (minIds[seg] != null && id.compareTo(minIds[seg]) < 0)
+                || (maxIds[seg] != null && id.compareTo(maxIds[seg]) > 0);
+    }
+
     // TODO: add reopen method to carry over re-used enums...?
 }
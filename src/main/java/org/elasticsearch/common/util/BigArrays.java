@@ -388,7 +388,7 @@ public class BigArrays {
      * negative, or checkBreaker is false, the breaker will be adjusted
      * without tripping
      */
-    void adjustBreaker(long delta) {
+    public void adjustBreaker(long delta) {
         if (this.breakerService != null) {
             CircuitBreaker breaker = this.breakerService.getBreaker(CircuitBreaker.REQUEST);
             if (this.checkBreaker == true) {
@@ -21,10 +21,14 @@ package org.elasticsearch.common.util;
 
 import com.carrotsearch.hppc.BitMixer;
 
+import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
 
+import java.util.Collection;
+import java.util.Collections;
+
 /**
  *  Specialized hash table implementation similar to Lucene's BytesRefHash that maps
  *  BytesRef values to ids. Collisions are resolved with open addressing and linear
@@ -32,7 +36,7 @@ import org.elasticsearch.common.lease.Releasables;
  *  re-hashing and capacity is always a multiple of 2 for faster identification of buckets.
  *  This class is not thread-safe.
  */
-public final class BytesRefHash extends AbstractHash {
+public final class BytesRefHash extends AbstractHash implements Accountable {
 
     private LongArray startOffsets;
     private ByteArray bytes;
@@ -160,6 +164,16 @@ public final class BytesRefHash extends AbstractHash {
         reset(code, id);
     }
 
+    @Override
+    public long ramBytesUsed() {
+        return ids.ramBytesUsed() + startOffsets.ramBytesUsed() + bytes.ramBytesUsed() + hashes.ramBytesUsed();
+    }
+
+    @Override
+    public Collection<Accountable> getChildResources() {
+        return Collections.emptyList();
+    }
+
     @Override
     public void close() {
         try (Releasable releasable = Releasables.wrap(bytes, hashes, startOffsets)) {
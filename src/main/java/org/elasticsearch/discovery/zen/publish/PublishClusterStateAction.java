@@ -45,6 +45,8 @@ import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.*;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -59,6 +61,13 @@ public class PublishClusterStateAction extends AbstractComponent {
 
     public static final String ACTION_NAME = "internal:discovery/zen/publish";
 
+    /**
+     * The number of recently published cluster states the master keeps around so that nodes that missed
+     * an update can catch up with a diff instead of receiving the full cluster state.
+     */
+    public static final String SETTING_PUBLISH_DIFF_HISTORY_SIZE = "discovery.zen.publish_diff.history_size";
+    public static final int DEFAULT_PUBLISH_DIFF_HISTORY_SIZE = 10;
+
     public interface NewClusterStateListener {
 
         interface NewStateProcessed {
@@ -75,6 +84,9 @@ public class PublishClusterStateAction extends AbstractComponent {
     private final DiscoveryNodesProvider nodesProvider;
     private final NewClusterStateListener listener;
     private final DiscoverySettings discoverySettings;
+    private final int diffHistorySize;
+    // the most recently published cluster states, newest last
+    private final Deque<ClusterState> publishedStates = new ArrayDeque<>();
 
     public PublishClusterStateAction(Settings settings, TransportService transportService, DiscoveryNodesProvider nodesProvider,
                                      NewClusterStateListener listener, DiscoverySettings discoverySettings) {
@@ -83,11 +95,15 @@ public class PublishClusterStateAction extends AbstractComponent {
         this.nodesProvider = nodesProvider;
         this.listener = listener;
         this.discoverySettings = discoverySettings;
+        this.diffHistorySize = settings.getAsInt(SETTING_PUBLISH_DIFF_HISTORY_SIZE, DEFAULT_PUBLISH_DIFF_HISTORY_SIZE);
         transportService.registerRequestHandler(ACTION_NAME, BytesTransportRequest.class, ThreadPool.Names.SAME, new PublishClusterStateRequestHandler());
     }
 
     public void close() {
         transportService.removeHandler(ACTION_NAME);
+        synchronized (publishedStates) {
+            publishedStates.clear();
+        }
     }
 
     public void publish(ClusterChangedEvent clusterChangedEvent, final Discovery.AckListener ackListener) {
@@ -115,6 +131,8 @@ public class PublishClusterStateAction extends AbstractComponent {
         final boolean sendFullVersion = !discoverySettings.getPublishDiff() || previousState == null;
         Diff<ClusterState> diff = null;
 
+        rememberPublishedState(clusterState);
+
         for (final DiscoveryNode node : nodesToPublishTo) {
 
             // try and serialize the cluster state once (or per version), so we don't serialize it
@@ -167,7 +185,7 @@ public class PublishClusterStateAction extends AbstractComponent {
                 return;
             }
         }
-        publishClusterStateToNode(clusterState, bytes, node, timedOutWaitingForNodes, publishTimeout, publishResponseHandler, false);
+        publishClusterStateToNode(clusterState, bytes, node, timedOutWaitingForNodes, publishTimeout, publishResponseHandler, false, false);
     }
 
     private void sendClusterStateDiff(ClusterState clusterState, Diff diff, Map<Version, BytesReference> serializedDiffs, DiscoveryNode node,
@@ -184,14 +202,65 @@ public class PublishClusterStateAction extends AbstractComponent {
                 return;
             }
         }
-        publishClusterStateToNode(clusterState, bytes, node, timedOutWaitingForNodes, publishTimeout, publishResponseHandler, true);
+        publishClusterStateToNode(clusterState, bytes, node, timedOutWaitingForNodes, publishTimeout, publishResponseHandler, true, false);
+    }
+
+    /**
+     * Tries to bring a node that missed one or more cluster state updates up to date by sending it the diff between
+     * the last cluster state it has seen and the current one. Returns <tt>false</tt> if the node's cluster state is
+     * no longer known, in which case the full cluster state needs to be sent.
+     */
+    private boolean sendCatchUpClusterStateDiff(ClusterState clusterState, IncompatibleClusterStateVersionException cause, DiscoveryNode node,
+                                               AtomicBoolean timedOutWaitingForNodes, TimeValue publishTimeout,
+                                               BlockingClusterStatePublishResponseHandler publishResponseHandler) {
+        if (cause.getExpectedUuid() == null) {
+            return false;
+        }
+        ClusterState nodeState = findPublishedState(cause.getExpectedUuid());
+        if (nodeState == null || nodeState == clusterState) {
+            return false;
+        }
+        final BytesReference bytes;
+        try {
+            bytes = serializeDiffClusterState(clusterState.diff(nodeState), node.version());
+        } catch (Throwable e) {
+            logger.debug("failed to serialize catch up diff of cluster_state from version [{}] for node {}", e, nodeState.version(), node);
+            return false;
+        }
+        logger.debug("sending catch up diff from cluster state version [{}] to [{}] to node {}", nodeState.version(), clusterState.version(), node);
+        publishClusterStateToNode(clusterState, bytes, node, timedOutWaitingForNodes, publishTimeout, publishResponseHandler, true, true);
+        return true;
+    }
+
+    private void rememberPublishedState(ClusterState clusterState) {
+        if (diffHistorySize <= 0) {
+            return;
+        }
+        synchronized (publishedStates) {
+            publishedStates.addLast(clusterState);
+            while (publishedStates.size() > diffHistorySize) {
+                publishedStates.removeFirst();
+            }
+        }
+    }
+
+    @Nullable
+    private ClusterState findPublishedState(String uuid) {
+        synchronized (publishedStates) {
+            for (ClusterState publishedState : publishedStates) {
+                if (uuid.equals(publishedState.uuid())) {
+                    return publishedState;
+                }
+            }
+        }
+        return null;
     }
 
     private void publishClusterStateToNode(final ClusterState clusterState, BytesReference bytes,
                                            final DiscoveryNode node, final AtomicBoolean timedOutWaitingForNodes,
                                            final TimeValue publishTimeout,
                                            final BlockingClusterStatePublishResponseHandler publishResponseHandler,
-                                           final boolean sendDiffs) {
+                                           final boolean sendDiffs, final boolean catchUpDiff) {
         try {
             TransportRequestOptions options = TransportRequestOptions.options().withType(TransportRequestOptions.Type.STATE).withCompress(false);
             // no need to put a timeout on the options here, because we want the response to eventually be received
@@ -213,6 +282,10 @@ public class PublishClusterStateAction extends AbstractComponent {
                         @Override
                         public void handleException(TransportException exp) {
                             if (sendDiffs && exp.unwrapCause() instanceof IncompatibleClusterStateVersionException) {
+                                if (catchUpDiff == false && sendCatchUpClusterStateDiff(clusterState, (IncompatibleClusterStateVersionException) exp.unwrapCause(),
+                                        node, timedOutWaitingForNodes, publishTimeout, publishResponseHandler)) {
+                                    return;
+                                }
                                 logger.debug("resending full cluster state to node {} reason {}", node, exp.getDetailedMessage());
                                 sendFullClusterState(clusterState, null, node, timedOutWaitingForNodes, publishTimeout, publishResponseHandler);
                             } else {
@@ -23,6 +23,7 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
 
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
@@ -31,14 +32,19 @@ import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.join.BitDocIdSetFilter;
 import org.apache.lucene.util.BitDocIdSet;
+import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.SparseFixedBitSet;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.lucene.search.Queries;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.index.AbstractIndexComponent;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.IndexService;
@@ -51,41 +57,56 @@ import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.shard.ShardUtils;
 import org.elasticsearch.indices.IndicesWarmer;
 import org.elasticsearch.indices.IndicesWarmer.TerminationHandle;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 
 /**
- * This is a cache for {@link BitDocIdSet} based filters and is unbounded by size or time.
+ * This is a cache for {@link BitDocIdSet} based filters. By default it is unbounded by size or time, a maximum size can
+ * be configured with the <tt>index.cache.bitset.max_size</tt> setting in which case the least recently used bitsets are
+ * evicted and rebuilt on the next access. The memory of all cached bitsets is accounted for by the fielddata circuit breaker.
  * <p/>
  * Use this cache with care, only components that require that a filter is to be materialized as a {@link BitDocIdSet}
  * and require that it should always be around should use this cache, otherwise the
  * {@link org.elasticsearch.index.cache.filter.FilterCache} should be used instead.
  */
-public class BitsetFilterCache extends AbstractIndexComponent implements LeafReader.CoreClosedListener, RemovalListener<Object, Cache<Filter, BitsetFilterCache.Value>>, Closeable {
+public class BitsetFilterCache extends AbstractIndexComponent implements LeafReader.CoreClosedListener, RemovalListener<BitsetFilterCache.Key, BitsetFilterCache.Value>, Closeable {
 
     public static final String LOAD_RANDOM_ACCESS_FILTERS_EAGERLY = "index.load_fixed_bitset_filters_eagerly";
+    public static final String INDEX_BITSET_CACHE_MAX_SIZE = "index.cache.bitset.max_size";
 
     private final boolean loadRandomAccessFiltersEagerly;
-    private final Cache<Object, Cache<Filter, Value>> loadedFilters;
+    private final Cache<Key, Value> loadedFilters;
+    // the keys loaded per segment core, the segments in this map have a core closed listener registered. Keys are
+    // not removed on eviction since a concurrent reload could add them again, so these sets may hold stale keys
+    // until the segment is closed, which is cheap since there are only few distinct filters.
+    private final ConcurrentMap<Object, Set<Key>> keysByCore = ConcurrentCollections.newConcurrentMap();
     private final BitDocIdSetFilterWarmer warmer;
 
     private IndexService indexService;
     private IndicesWarmer indicesWarmer;
+    private CircuitBreakerService circuitBreakerService;
 
     @Inject
     public BitsetFilterCache(Index index, @IndexSettings Settings indexSettings) {
         super(index, indexSettings);
         this.loadRandomAccessFiltersEagerly = indexSettings.getAsBoolean(LOAD_RANDOM_ACCESS_FILTERS_EAGERLY, true);
-        this.loadedFilters = CacheBuilder.newBuilder().removalListener(this).build();
+        final long maxSizeInBytes = indexSettings.getAsBytesSize(INDEX_BITSET_CACHE_MAX_SIZE, new ByteSizeValue(-1)).bytes();
+        CacheBuilder<Key, Value> cacheBuilder = CacheBuilder.newBuilder().removalListener(this);
+        if (maxSizeInBytes > 0) {
+            cacheBuilder.maximumWeight(maxSizeInBytes).weigher(new BitsetWeigher());
+        }
+        logger.debug("using max_size [{}]", new ByteSizeValue(maxSizeInBytes));
+        this.loadedFilters = cacheBuilder.build();
         this.warmer = new BitDocIdSetFilterWarmer();
     }
 
@@ -94,6 +115,11 @@ public class BitsetFilterCache extends AbstractIndexComponent implements LeafRea
         this.indicesWarmer = indicesWarmer;
     }
 
+    @Inject(optional = true)
+    public void setCircuitBreakerService(CircuitBreakerService circuitBreakerService) {
+        this.circuitBreakerService = circuitBreakerService;
+    }
+
     public void setIndexService(IndexService indexService) {
         this.indexService = indexService;
         // First the indicesWarmer is set and then the indexService is set, because of this there is a small window of
@@ -109,7 +135,10 @@ public class BitsetFilterCache extends AbstractIndexComponent implements LeafRea
 
     @Override
     public void onClose(Object ownerCoreCacheKey) {
-        loadedFilters.invalidate(ownerCoreCacheKey);
+        final Set<Key> keys = keysByCore.remove(ownerCoreCacheKey);
+        if (keys != null) {
+            loadedFilters.invalidateAll(keys);
+        }
     }
 
     @Override
@@ -126,14 +155,18 @@ public class BitsetFilterCache extends AbstractIndexComponent implements LeafRea
     private BitDocIdSet getAndLoadIfNotPresent(final Filter filter, final LeafReaderContext context) throws IOException, ExecutionException {
         final Object coreCacheReader = context.reader().getCoreCacheKey();
         final ShardId shardId = ShardUtils.extractShardId(context.reader());
-        Cache<Filter, Value> filterToFbs = loadedFilters.get(coreCacheReader, new Callable<Cache<Filter, Value>>() {
-            @Override
-            public Cache<Filter, Value> call() throws Exception {
+        Set<Key> keys = keysByCore.get(coreCacheReader);
+        if (keys == null) {
+            final Set<Key> newKeys = ConcurrentCollections.newConcurrentSet();
+            keys = keysByCore.putIfAbsent(coreCacheReader, newKeys);
+            if (keys == null) {
+                keys = newKeys;
                 context.reader().addCoreClosedListener(BitsetFilterCache.this);
-                return CacheBuilder.newBuilder().build();
             }
-        });
-        return filterToFbs.get(filter, new Callable<Value>() {
+        }
+        final Key key = new Key(coreCacheReader, filter);
+        keys.add(key);
+        return loadedFilters.get(key, new Callable<Value>() {
             @Override
             public Value call() throws Exception {
                 DocIdSet docIdSet = filter.getDocIdSet(context, null);
@@ -157,7 +190,10 @@ public class BitsetFilterCache extends AbstractIndexComponent implements LeafRea
                     bitSet = bits;
                 }
 
-                Value value = new Value(bitSet, shardId);
+                Value value = new Value(compactIfSparse(bitSet, context.reader().maxDoc()), shardId);
+                if (circuitBreakerService != null) {
+                    circuitBreakerService.getBreaker(CircuitBreaker.FIELDDATA).addEstimateBytesAndMaybeBreak(value.bitset.ramBytesUsed(), "bitset [" + filter + "]");
+                }
                 if (shardId != null) {
                     IndexShard shard = indexService.shard(shardId.id());
                     if (shard != null) {
@@ -169,31 +205,77 @@ public class BitsetFilterCache extends AbstractIndexComponent implements LeafRea
         }).bitset;
     }
 
-    @Override
-    public void onRemoval(RemovalNotification<Object, Cache<Filter, Value>> notification) {
-        Object key = notification.getKey();
-        if (key == null) {
-            return;
+    /**
+     * Filters that match only a small fraction of the documents of a segment, like the parent filter of rarely used nested
+     * types, take far less memory as a {@link SparseFixedBitSet} than as a {@link FixedBitSet}. Uses the same threshold
+     * as {@link BitDocIdSet.Builder} uses to switch between the two.
+     */
+    static BitDocIdSet compactIfSparse(BitDocIdSet bitSet, int maxDoc) throws IOException {
+        if (bitSet.bits() instanceof FixedBitSet) {
+            FixedBitSet fixedBitSet = (FixedBitSet) bitSet.bits();
+            int cardinality = fixedBitSet.cardinality();
+            if (cardinality < (maxDoc >>> 10)) {
+                SparseFixedBitSet sparseBitSet = new SparseFixedBitSet(maxDoc);
+                sparseBitSet.or(new BitSetIterator(fixedBitSet, cardinality));
+                return new BitDocIdSet(sparseBitSet, cardinality);
+            }
         }
+        return bitSet;
+    }
 
-        Cache<Filter, Value> value = notification.getValue();
+    @Override
+    public void onRemoval(RemovalNotification<Key, Value> notification) {
+        Value value = notification.getValue();
         if (value == null) {
             return;
         }
 
-        for (Map.Entry<Filter, Value> entry : value.asMap().entrySet()) {
-            if (entry.getValue().shardId == null) {
-                continue;
-            }
-            IndexShard shard = indexService.shard(entry.getValue().shardId.id());
+        final long sizeInBytes = value.bitset.ramBytesUsed();
+        if (circuitBreakerService != null) {
+            circuitBreakerService.getBreaker(CircuitBreaker.FIELDDATA).addWithoutBreaking(-sizeInBytes);
+        }
+        if (value.shardId != null && indexService != null) {
+            IndexShard shard = indexService.shard(value.shardId.id());
             if (shard != null) {
-                ShardBitsetFilterCache shardBitsetFilterCache = shard.shardBitsetFilterCache();
-                shardBitsetFilterCache.onRemoval(entry.getValue().bitset.ramBytesUsed());
+                shard.shardBitsetFilterCache().onRemoval(sizeInBytes);
             }
             // if null then this means the shard has already been removed and the stats are 0 anyway for the shard this key belongs to
         }
     }
 
+    static final class Key {
+
+        final Object coreCacheKey;
+        final Filter filter;
+
+        Key(Object coreCacheKey, Filter filter) {
+            this.coreCacheKey = coreCacheKey;
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return coreCacheKey == key.coreCacheKey && filter.equals(key.filter);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(coreCacheKey) + filter.hashCode();
+        }
+    }
+
+    static final class BitsetWeigher implements Weigher<Key, Value> {
+
+        @Override
+        public int weigh(Key key, Value value) {
+            int weight = (int) Math.min(value.bitset.ramBytesUsed(), Integer.MAX_VALUE);
+            return weight == 0 ? 1 : weight;
+        }
+    }
+
     public static final class Value {
 
         final BitDocIdSet bitset;
@@ -307,7 +389,7 @@ public class BitsetFilterCache extends AbstractIndexComponent implements LeafRea
 
     }
 
-    Cache<Object, Cache<Filter, Value>> getLoadedFilters() {
+    Cache<Key, Value> getLoadedFilters() {
         return loadedFilters;
     }
 }
@@ -285,16 +285,22 @@ public abstract class Engine implements Closeable {
         store.incRef();
         try {
             final SearcherManager manager = getSearcherManager(); // can never be null
-            /* This might throw NPE but that's fine we will run ensureOpen()
-            *  in the catch block and throw the right exception */
-            final IndexSearcher searcher = manager.acquire();
             try {
-                final Searcher retVal = newSearcher(source, searcher, manager);
-                success = true;
-                return retVal;
+                /* This might throw NPE but that's fine we will run ensureOpen()
+                *  in the catch block and throw the right exception */
+                final IndexSearcher searcher = manager.acquire();
+                try {
+                    final Searcher retVal = newSearcher(source, searcher, manager);
+                    success = true;
+                    return retVal;
+                } finally {
+                    if (!success) {
+                        manager.release(searcher);
+                    }
+                }
             } finally {
                 if (!success) {
-                    manager.release(searcher);
+                    onSearcherAcquisitionFailure(manager);
                 }
             }
         } catch (EngineClosedException ex) {
@@ -329,7 +335,7 @@ public abstract class Engine implements Closeable {
     /**
      * Global stats on segments.
      */
-    public final SegmentsStats segmentsStats() {
+    public SegmentsStats segmentsStats() {
         ensureOpen();
         try (final Searcher searcher = acquireSearcher("segments_stats")) {
             SegmentsStats stats = new SegmentsStats();
@@ -437,7 +443,7 @@ public abstract class Engine implements Closeable {
               the store is closed so we need to make sure we increment it here
              */
             try {
-                return !getSearcherManager().isSearcherCurrent();
+                return !isSearcherCurrent();
             } catch (IOException e) {
                 logger.error("failed to access searcher manager", e);
                 failEngine("failed to access searcher manager", e);
@@ -449,12 +455,35 @@ public abstract class Engine implements Closeable {
         return false;
     }
 
+    /**
+     * Returns whether the searchers handed out by this engine reflect all changes
+     * that were made to the index.
+     */
+    protected boolean isSearcherCurrent() throws IOException {
+        return getSearcherManager().isSearcherCurrent();
+    }
+
     /**
      * Refreshes the engine for new search operations to reflect the latest
      * changes.
      */
     public abstract void refresh(String source) throws EngineException;
 
+    /**
+     * Writes the documents buffered by the index writer into new segments, without making them visible to
+     * searches, to free the heap held by the indexing buffer. Engines without an index writer do nothing.
+     */
+    public void writeIndexingBuffer() throws EngineException {
+    }
+
+    /**
+     * Returns the heap the index writer uses to buffer documents that are not written into segments yet, or
+     * <code>0</code> if this engine has no index writer.
+     */
+    public long indexBufferRAMBytesUsed() {
+        return 0;
+    }
+
     /**
      * Flushes the state of the engine including the transaction log, clearing memory.
      * @param force if <code>true</code> a lucene commit is executed even if no changes need to be committed.
@@ -1078,6 +1107,12 @@ public abstract class Engine implements Closeable {
 
     protected abstract SearcherManager getSearcherManager();
 
+    /**
+     * Called when no searcher could be acquired from a manager returned by {@link #getSearcherManager()}.
+     */
+    protected void onSearcherAcquisitionFailure(SearcherManager manager) {
+    }
+
     /**
      * Method to close the engine while the write lock is held.
      */
@@ -0,0 +1,371 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.util.IOUtils;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
+import org.elasticsearch.common.util.concurrent.ReleasableLock;
+import org.elasticsearch.index.deletionpolicy.SnapshotIndexCommit;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.index.translog.TranslogConfig;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * FrozenEngine is a read-only engine for indices that are rarely searched. Unlike
+ * {@link InternalEngine} it doesn't keep an {@code IndexWriter} or a point-in-time
+ * reader open. A {@code DirectoryReader} on the last commit is opened when the first
+ * searcher is acquired and closed as soon as the last acquired searcher is released,
+ * which also releases the terms index, fielddata and bitset cache entries of the
+ * shard since those are evicted when the segment readers are closed.
+ *
+ * All methods that would usually perform write operations are not supported, this means:
+ *
+ * - Create, Index, and Delete fail with an {@link UnsupportedOperationException}
+ * - Flush, refresh and force merge are no-ops
+ *
+ * The translog is opened in order to support peer recoveries from a frozen primary, but
+ * since operations can't be replayed the engine fails to start if the translog holds
+ * uncommitted operations. Indices must therefore be flushed before they are frozen, which
+ * is what closing an index does.
+ */
+public class FrozenEngine extends Engine {
+
+    private final SearcherFactory searcherFactory;
+    private final Translog translog;
+    private final SegmentInfos lastCommittedSegmentInfos;
+
+    private final Object searcherMutex = new Object();
+    // guarded by searcherMutex, null if no reader is currently open
+    private SearcherManager searcherManager;
+    // guarded by searcherMutex, the number of searchers that were handed out but not yet released
+    private int activeSearchers;
+
+    public FrozenEngine(EngineConfig engineConfig, boolean skipTranslogRecovery) {
+        super(engineConfig);
+        this.searcherFactory = new EngineSearcherFactory(engineConfig);
+        store.incRef();
+        Translog translog = null;
+        boolean success = false;
+        try {
+            try {
+                translog = openTranslog(engineConfig.getTranslogConfig(), skipTranslogRecovery);
+                this.lastCommittedSegmentInfos = store.readLastCommittedSegmentsInfo();
+            } catch (IOException e) {
+                throw new EngineCreationFailureException(shardId, "failed to open frozen engine", e);
+            }
+            this.translog = translog;
+            success = true;
+        } finally {
+            if (success == false) {
+                IOUtils.closeWhileHandlingException(translog);
+                store.decRef();
+            }
+        }
+        logger.trace("created new FrozenEngine");
+    }
+
+    /**
+     * Opens the translog that belongs to the last commit. If the translog recovery is skipped (ie. the files
+     * were copied from another node) a fresh translog is created and its generation is committed to the index.
+     * In both cases the commit is passed to the deletion policy to allow snapshots of this engine.
+     */
+    private Translog openTranslog(TranslogConfig translogConfig, boolean skipTranslogRecovery) throws IOException {
+        final Map<String, String> commitUserData = store.readLastCommittedSegmentsInfo().getUserData();
+        if (skipTranslogRecovery) {
+            translogConfig.setTranslogGeneration(null);
+        } else {
+            if (commitUserData.containsKey(Translog.TRANSLOG_GENERATION_KEY) == false) {
+                throw new IllegalStateException("no translog generation present in commit data, frozen indices must be flushed on 2.0 or later");
+            }
+            translogConfig.setTranslogGeneration(new Translog.TranslogGeneration(commitUserData.get(Translog.TRANSLOG_UUID_KEY),
+                    Long.parseLong(commitUserData.get(Translog.TRANSLOG_GENERATION_KEY))));
+        }
+        final Translog translog = new Translog(translogConfig);
+        boolean success = false;
+        try {
+            if (skipTranslogRecovery == false) {
+                try (Translog.Snapshot snapshot = translog.newSnapshot()) {
+                    if (snapshot.next() != null) {
+                        throw new IllegalStateException("translog contains uncommitted operations, indices must be flushed before they are frozen");
+                    }
+                }
+            }
+            final IndexWriterConfig iwc = new IndexWriterConfig(Lucene.STANDARD_ANALYZER)
+                    .setOpenMode(IndexWriterConfig.OpenMode.APPEND)
+                    .setIndexDeletionPolicy(deletionPolicy)
+                    .setMergePolicy(NoMergePolicy.INSTANCE)
+                    .setCommitOnClose(false);
+            // the writer is only opened to initialize the deletion policy and to point the commit at a new translog
+            try (IndexWriter writer = new IndexWriter(store.directory(), iwc)) {
+                if (skipTranslogRecovery) {
+                    final Translog.TranslogGeneration translogGeneration = translog.getGeneration();
+                    final Map<String, String> commitData = new HashMap<>(commitUserData);
+                    commitData.put(Translog.TRANSLOG_GENERATION_KEY, Long.toString(translogGeneration.translogFileGeneration));
+                    commitData.put(Translog.TRANSLOG_UUID_KEY, translogGeneration.translogUUID);
+                    writer.setCommitData(commitData);
+                    writer.commit();
+                }
+            }
+            success = true;
+            return translog;
+        } finally {
+            if (success == false) {
+                IOUtils.closeWhileHandlingException(translog);
+            }
+        }
+    }
+
+    @Override
+    public void create(Create create) throws EngineException {
+        throw new UnsupportedOperationException(shardId + " create operation not allowed on frozen engine");
+    }
+
+    @Override
+    public boolean index(Index index) throws EngineException {
+        throw new UnsupportedOperationException(shardId + " index operation not allowed on frozen engine");
+    }
+
+    @Override
+    public void delete(Delete delete) throws EngineException {
+        throw new UnsupportedOperationException(shardId + " delete operation not allowed on frozen engine");
+    }
+
+    /** @deprecated This was removed, but we keep this API so translog can replay any DBQs on upgrade. */
+    @Deprecated
+    @Override
+    public void delete(DeleteByQuery delete) throws EngineException {
+        throw new UnsupportedOperationException(shardId + " delete-by-query operation not allowed on frozen engine");
+    }
+
+    @Override
+    public SyncedFlushResult syncFlush(String syncId, CommitId expectedCommitId) {
+        throw new UnsupportedOperationException(shardId + " sync commit operation not allowed on frozen engine");
+    }
+
+    @Override
+    public CommitId flush() throws EngineException {
+        return flush(false, false);
+    }
+
+    @Override
+    public CommitId flush(boolean force, boolean waitIfOngoing) throws EngineException {
+        // nothing is ever written, the last commit is always up to date
+        ensureOpen();
+        logger.trace("skipping FLUSH on frozen engine");
+        return new CommitId(lastCommittedSegmentInfos.getId());
+    }
+
+    @Override
+    public void forceMerge(boolean flush, int maxNumSegments, boolean onlyExpungeDeletes, boolean upgrade, boolean upgradeOnlyAncientSegments) throws EngineException {
+        // no-op
+        logger.trace("skipping FORCE-MERGE on frozen engine");
+    }
+
+    @Override
+    public GetResult get(Get get) throws EngineException {
+        // all operations are committed, so we can get it directly from the searcher
+        return getFromSearcher(get);
+    }
+
+    @Override
+    public Translog getTranslog() {
+        ensureOpen();
+        return translog;
+    }
+
+    @Override
+    public List<Segment> segments(boolean verbose) {
+        // only report the committed segments, opening a reader just to get the memory usage defeats the purpose of this engine
+        try (ReleasableLock lock = readLock.acquire()) {
+            ensureOpen();
+            List<Segment> segments = new ArrayList<>(lastCommittedSegmentInfos.size());
+            for (SegmentCommitInfo info : lastCommittedSegmentInfos) {
+                Segment segment = new Segment(info.info.name);
+                segment.search = false;
+                segment.committed = true;
+                segment.docCount = info.info.maxDoc();
+                segment.delDocCount = info.getDelCount();
+                segment.version = info.info.getVersion();
+                segment.compound = info.info.getUseCompoundFile();
+                try {
+                    segment.sizeInBytes = info.sizeInBytes();
+                } catch (IOException e) {
+                    logger.trace("failed to get size for [{}]", e, info.info.name);
+                }
+                segments.add(segment);
+            }
+            return segments;
+        }
+    }
+
+    @Override
+    public SegmentsStats segmentsStats() {
+        // like segments(boolean), only count the committed segments: they don't use memory unless the shard is searched
+        try (ReleasableLock lock = readLock.acquire()) {
+            ensureOpen();
+            SegmentsStats stats = new SegmentsStats();
+            stats.add(lastCommittedSegmentInfos.size(), 0);
+            writerSegmentStats(stats);
+            return stats;
+        }
+    }
+
+    @Override
+    public void refresh(String source) throws EngineException {
+        // the index never changes, readers are opened on the last commit
+        ensureOpen();
+    }
+
+    @Override
+    protected boolean isSearcherCurrent() {
+        // readers are always opened on the last commit, which never changes
+        return true;
+    }
+
+    @Override
+    public SnapshotIndexCommit snapshotIndex(boolean flushFirst) throws EngineException {
+        // we don't need to flush first, the last commit is all there is
+        try (ReleasableLock lock = readLock.acquire()) {
+            ensureOpen();
+            return deletionPolicy.snapshot();
+        } catch (IOException e) {
+            throw new SnapshotFailedEngineException(shardId, e);
+        }
+    }
+
+    /**
+     * Returns the searcher manager of the currently open reader and opens a new one if needed. Every call
+     * must be paired with a call to {@link #releaseSearcherManager(SearcherManager)}, which is done by the
+     * searchers returned from {@link #newSearcher(String, IndexSearcher, SearcherManager)}, or by
+     * {@link #onSearcherAcquisitionFailure(SearcherManager)} if no searcher could be created.
+     */
+    @Override
+    protected SearcherManager getSearcherManager() {
+        synchronized (searcherMutex) {
+            ensureOpen();
+            if (searcherManager == null) {
+                DirectoryReader reader = null;
+                boolean success = false;
+                try {
+                    reader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(store.directory()), shardId);
+                    searcherManager = new SearcherManager(reader, searcherFactory);
+                    success = true;
+                    logger.trace("opened reader on frozen engine");
+                } catch (IOException e) {
+                    throw new EngineException(shardId, "failed to open reader on frozen engine", e);
+                } finally {
+                    if (success == false) {
+                        IOUtils.closeWhileHandlingException(reader);
+                    }
+                }
+            }
+            activeSearchers++;
+            return searcherManager;
+        }
+    }
+
+    @Override
+    protected void onSearcherAcquisitionFailure(SearcherManager manager) {
+        releaseSearcherManager(manager);
+    }
+
+    private void releaseSearcherManager(SearcherManager manager) {
+        synchronized (searcherMutex) {
+            assert activeSearchers > 0 : "released more searchers than were acquired";
+            activeSearchers--;
+            if (activeSearchers == 0 && manager == searcherManager) {
+                searcherManager = null;
+                try {
+                    IOUtils.close(manager);
+                    logger.trace("closed reader on frozen engine");
+                } catch (IOException e) {
+                    logger.warn("failed to close reader on frozen engine", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected Searcher newSearcher(String source, IndexSearcher searcher, final SearcherManager manager) {
+        return new EngineSearcher(source, searcher, manager, store, logger) {
+            private final AtomicBoolean released = new AtomicBoolean(false);
+
+            @Override
+            public void close() {
+                if (released.compareAndSet(false, true)) {
+                    // drop the reader first, the store must not be closed before the reader
+                    releaseSearcherManager(manager);
+                }
+                super.close();
+            }
+        };
+    }
+
+    @Override
+    protected void closeNoLock(String reason) {
+        if (isClosed.compareAndSet(false, true)) {
+            try {
+                logger.debug("frozen engine close translog and searcher manager, refCount: {}", store.refCount());
+                synchronized (searcherMutex) {
+                    // searchers that are still in use keep a reference on the reader until they are released
+                    IOUtils.close(translog, searcherManager);
+                    searcherManager = null;
+                }
+            } catch (Throwable t) {
+                logger.warn("frozen engine failed to close translog and searcher manager", t);
+            } finally {
+                store.decRef();
+            }
+        }
+    }
+
+    // pkg-private for testing
+    boolean isReaderOpen() {
+        synchronized (searcherMutex) {
+            return searcherManager != null;
+        }
+    }
+
+    @Override
+    public boolean hasUncommittedChanges() {
+        return false;
+    }
+
+    @Override
+    protected SegmentInfos getLastCommittedSegmentInfos() {
+        return lastCommittedSegmentInfos;
+    }
+}
@@ -66,6 +66,7 @@ import org.elasticsearch.threadpool.ThreadPool;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -105,6 +106,16 @@ public class InternalEngine extends Engine {
 
     private final AtomicBoolean versionMapRefreshPending = new AtomicBoolean();
 
+    // append-only creates of auto generated ids don't go through the version map. Every such create bumps this
+    // generation once the document is in the index writer, and lookups that miss the version map refresh first if
+    // documents were appended since the generation the last refresh started with
+    private final AtomicLong appendOnlyGeneration = new AtomicLong();
+    private volatile long refreshedAppendOnlyGeneration = 0;
+    // once a lookup had to refresh, creates of auto generated ids are put in the version map again so that further
+    // lookups don't refresh each time. It is reset on flush, so that shards whose ids were only looked up for a while,
+    // like retried bulk requests after a node disconnected, go back to appending without the version map
+    private volatile boolean versionMapSafeAccessRequired = false;
+
     private volatile SegmentInfos lastCommittedSegmentInfos;
 
     private final IndexThrottle throttle;
@@ -328,6 +339,9 @@ public class InternalEngine extends Engine {
                 }
             }
 
+            if (get.realtime()) {
+                refreshIfAppendedWithoutVersion("realtime_get");
+            }
             // no version, get the version from the index, we know that we refresh on flush
             return getFromSearcher(get);
         }
@@ -354,8 +368,9 @@ public class InternalEngine extends Engine {
 
     private void innerCreate(Create create) throws IOException {
         if (engineConfig.isOptimizeAutoGenerateId() && create.autoGeneratedId() && !create.canHaveDuplicates()) {
-            // We don't need to lock because this ID cannot be concurrently updated:
-            innerCreateNoLock(create, Versions.NOT_FOUND, null);
+            // We don't need to lock because this ID cannot be concurrently updated, and unless someone
+            // looked it up before we don't need to track its version either:
+            innerCreateNoLock(create, Versions.NOT_FOUND, null, versionMapSafeAccessRequired == false);
         } else {
             synchronized (dirtyLock(create.uid())) {
                 final long currentVersion;
@@ -370,12 +385,12 @@ public class InternalEngine extends Engine {
                         currentVersion = versionValue.version();
                     }
                 }
-                innerCreateNoLock(create, currentVersion, versionValue);
+                innerCreateNoLock(create, currentVersion, versionValue, false);
             }
         }
     }
 
-    private void innerCreateNoLock(Create create, long currentVersion, VersionValue versionValue) throws IOException {
+    private void innerCreateNoLock(Create create, long currentVersion, VersionValue versionValue, boolean appendOnly) throws IOException {
 
         // same logic as index
         long updatedVersion;
@@ -431,9 +446,16 @@ public class InternalEngine extends Engine {
                 indexWriter.addDocument(create.docs().get(0));
             }
         }
+        if (appendOnly) {
+            // only bump the generation once the document is in the writer, a refresh that reads the generation
+            // before the document was added must not count it as visible
+            appendOnlyGeneration.incrementAndGet();
+        }
         Translog.Location translogLocation = translog.add(new Translog.Create(create));
 
-        versionMap.putUnderLock(create.uid().bytes(), new VersionValue(updatedVersion, translogLocation));
+        if (appendOnly == false) {
+            versionMap.putUnderLock(create.uid().bytes(), new VersionValue(updatedVersion, translogLocation));
+        }
         create.setTranslogLocation(translogLocation);
         indexingService.postCreateUnderLock(create);
     }
@@ -659,7 +681,13 @@ public class InternalEngine extends Engine {
         try (ReleasableLock lock = readLock.acquire()) {
             ensureOpen();
             updateIndexWriterSettings();
+            // documents appended up to this generation are in the writer and become visible with this refresh
+            final long appendedGeneration = appendOnlyGeneration.get();
             searcherManager.maybeRefreshBlocking();
+            if (appendedGeneration > refreshedAppendOnlyGeneration) {
+                // a concurrent refresh may set an older generation, which only costs another refresh on lookup
+                refreshedAppendOnlyGeneration = appendedGeneration;
+            }
         } catch (AlreadyClosedException e) {
             ensureOpen();
             maybeFailEngine("refresh", e);
@@ -677,6 +705,30 @@ public class InternalEngine extends Engine {
         versionMapRefreshPending.set(false);
     }
 
+    @Override
+    public void writeIndexingBuffer() throws EngineException {
+        // we obtain a read lock here, since we don't want a flush to happen while we are writing the buffer
+        try (ReleasableLock lock = readLock.acquire()) {
+            ensureOpen();
+            // opening a near real-time reader writes the buffered documents into new segments. The reader is
+            // not handed to the searcher manager, so searches only see these documents after the next refresh.
+            DirectoryReader.open(indexWriter, false).close();
+        } catch (AlreadyClosedException e) {
+            ensureOpen();
+            maybeFailEngine("write indexing buffer", e);
+        } catch (EngineClosedException e) {
+            throw e;
+        } catch (Throwable t) {
+            failEngine("writing indexing buffer failed", t);
+            throw new RefreshFailedEngineException(shardId, t);
+        }
+    }
+
+    @Override
+    public long indexBufferRAMBytesUsed() {
+        return indexWriter.ramBytesUsed();
+    }
+
     @Override
     public SyncedFlushResult syncFlush(String syncId, CommitId expectedCommitId) throws EngineException {
         // best effort attempt before we acquire locks
@@ -750,6 +802,7 @@ public class InternalEngine extends Engine {
                         translog.commit();
                         // we need to refresh in order to clear older version values
                         refresh("version_table_flush");
+                        versionMapSafeAccessRequired = false;
                     } catch (Throwable e) {
                         throw new FlushFailedEngineException(shardId, e);
                     }
@@ -1006,11 +1059,24 @@ public class InternalEngine extends Engine {
     }
 
     private long loadCurrentVersionFromIndex(Term uid) throws IOException {
+        refreshIfAppendedWithoutVersion("load_version");
         try (final Searcher searcher = acquireSearcher("load_version")) {
             return Versions.loadVersion(searcher.reader(), uid);
         }
     }
 
+    /**
+     * Documents appended without a version map entry are only visible to lookups after a refresh. Refreshes if such
+     * documents were added since the last refresh, and makes further appends use the version map, since the ids of
+     * this index are evidently looked up.
+     */
+    private void refreshIfAppendedWithoutVersion(String source) {
+        if (appendOnlyGeneration.get() > refreshedAppendOnlyGeneration) {
+            versionMapSafeAccessRequired = true;
+            refresh(source);
+        }
+    }
+
     private IndexWriter createWriter(boolean create) throws IOException {
         try {
             final IndexWriterConfig iwc = new IndexWriterConfig(engineConfig.getAnalyzer());
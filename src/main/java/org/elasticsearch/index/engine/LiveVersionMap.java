@@ -37,19 +37,18 @@ class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
     private static class Maps {
 
         // All writes (adds and deletes) go into here:
-        final Map<BytesRef,VersionValue> current;
+        final UidVersionTable current;
 
         // Used while refresh is running, and to hold adds/deletes until refresh finishes.  We read from both current and old on lookup:
-        final Map<BytesRef,VersionValue> old;
-      
-        public Maps(Map<BytesRef,VersionValue> current, Map<BytesRef,VersionValue> old) {
+        final UidVersionTable old;
+
+        public Maps(UidVersionTable current, UidVersionTable old) {
            this.current = current;
            this.old = old;
         }
 
         public Maps() {
-            this(ConcurrentCollections.<BytesRef,VersionValue>newConcurrentMapWithAggressiveConcurrency(),
-                 ConcurrentCollections.<BytesRef,VersionValue>newConcurrentMapWithAggressiveConcurrency());
+            this(new UidVersionTable(), new UidVersionTable());
         }
     }
 
@@ -79,11 +78,8 @@ class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
         RamUsageEstimator.NUM_BYTES_INT +
         5*RamUsageEstimator.NUM_BYTES_OBJECT_REF;
 
-    /** Tracks bytes used by current map, i.e. what is freed on refresh. For deletes, which are also added to tombstones, we only account
-     *  for the CHM entry here, and account for BytesRef/VersionValue against the tombstones, since refresh would not clear this RAM. */
-    final AtomicLong ramBytesUsedCurrent = new AtomicLong();
-
-    /** Tracks bytes used by tombstones (deletes) */
+    /** Tracks bytes used by tombstones (deletes). Bytes used by current are exactly those of its table, which are all freed on refresh,
+     *  including those of deletes, so deletes are accounted for both in current and in tombstones. */
     final AtomicLong ramBytesUsedTombstones = new AtomicLong();
 
     /** Sync'd because we replace old mgr. */
@@ -107,11 +103,7 @@ class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
         // map.  While reopen is running, any lookup will first
         // try this new map, then fallback to old, then to the
         // current searcher:
-        maps = new Maps(ConcurrentCollections.<BytesRef,VersionValue>newConcurrentMapWithAggressiveConcurrency(), maps.current);
-
-        // This is not 100% correct, since concurrent indexing ops can change these counters in between our execution of the previous
-        // line and this one, but that should be minor, and the error won't accumulate over time:
-        ramBytesUsedCurrent.set(0);
+        maps = new Maps(new UidVersionTable(), maps.current);
     }
 
     @Override
@@ -122,7 +114,7 @@ class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
         // case.  This is because we assign new maps (in beforeRefresh) slightly before Lucene actually flushes any segments for the
         // reopen, and so any concurrent indexing requests can still sneak in a few additions to that current map that are in fact reflected
         // in the previous reader.   We don't touch tombstones here: they expire on their own index.gc_deletes timeframe:
-        maps = new Maps(maps.current, ConcurrentCollections.<BytesRef,VersionValue>newConcurrentMapWithAggressiveConcurrency());
+        maps = new Maps(maps.current, new UidVersionTable());
     }
 
     /** Returns the live version (add or delete) for this uid. */
@@ -146,40 +138,13 @@ class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
     /** Adds this uid/version to the pending adds map. */
     void putUnderLock(BytesRef uid, VersionValue version) {
 
-        long uidRAMBytesUsed = BASE_BYTES_PER_BYTESREF + uid.bytes.length;
-
-        final VersionValue prev = maps.current.put(uid, version);
-        if (prev != null) {
-            // Deduct RAM for the version we just replaced:
-            long prevBytes = BASE_BYTES_PER_CHM_ENTRY;
-            if (prev.delete() == false) {
-                prevBytes += prev.ramBytesUsed() + uidRAMBytesUsed;
-            }
-            ramBytesUsedCurrent.addAndGet(-prevBytes);
-        }
-
-        // Add RAM for the new version:
-        long newBytes = BASE_BYTES_PER_CHM_ENTRY;
-        if (version.delete() == false) {
-            newBytes += version.ramBytesUsed() + uidRAMBytesUsed;
-        }
-        ramBytesUsedCurrent.addAndGet(newBytes);
+        maps.current.put(uid, version);
 
         final VersionValue prevTombstone;
         if (version.delete()) {
-            // Also enroll the delete into tombstones, and account for its RAM too:
+            // Also enroll the delete into tombstones, and account for its RAM too, because this RAM will not be freed up on refresh:
             prevTombstone = tombstones.put(uid, version);
-
-            // We initially account for BytesRef/VersionValue RAM for a delete against the tombstones, because this RAM will not be freed up
-            // on refresh. Later, in removeTombstoneUnderLock, if we clear the tombstone entry but the delete remains in current, we shift
-            // the accounting to current:
-            ramBytesUsedTombstones.addAndGet(BASE_BYTES_PER_CHM_ENTRY + version.ramBytesUsed() + uidRAMBytesUsed);
-
-            if (prevTombstone == null && prev != null && prev.delete()) {
-                // If prev was a delete that had already been removed from tombstones, then current was already accounting for the
-                // BytesRef/VersionValue RAM, so we now deduct that as well:
-                ramBytesUsedCurrent.addAndGet(-(prev.ramBytesUsed() + uidRAMBytesUsed));
-            }
+            ramBytesUsedTombstones.addAndGet(BASE_BYTES_PER_CHM_ENTRY + version.ramBytesUsed() + BASE_BYTES_PER_BYTESREF + uid.bytes.length);
         } else {
             // UID came back to life so we remove the tombstone:
             prevTombstone = tombstones.remove(uid);
@@ -187,29 +152,19 @@ class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
 
         // Deduct tombstones bytes used for the version we just removed or replaced:
         if (prevTombstone != null) {
-            long v = ramBytesUsedTombstones.addAndGet(-(BASE_BYTES_PER_CHM_ENTRY + prevTombstone.ramBytesUsed() + uidRAMBytesUsed));
+            long v = ramBytesUsedTombstones.addAndGet(-(BASE_BYTES_PER_CHM_ENTRY + prevTombstone.ramBytesUsed() + BASE_BYTES_PER_BYTESREF + uid.bytes.length));
             assert v >= 0: "bytes=" + v;
         }
     }
 
     /** Removes this uid from the pending deletes map. */
     void removeTombstoneUnderLock(BytesRef uid) {
-
-        long uidRAMBytesUsed = BASE_BYTES_PER_BYTESREF + uid.bytes.length;
-
         final VersionValue prev = tombstones.remove(uid);
         if (prev != null) {
             assert prev.delete();
-            long v = ramBytesUsedTombstones.addAndGet(-(BASE_BYTES_PER_CHM_ENTRY + prev.ramBytesUsed() + uidRAMBytesUsed));
+            long v = ramBytesUsedTombstones.addAndGet(-(BASE_BYTES_PER_CHM_ENTRY + prev.ramBytesUsed() + BASE_BYTES_PER_BYTESREF + uid.bytes.length));
             assert v >= 0: "bytes=" + v;
         }
-        final VersionValue curVersion = maps.current.get(uid);
-        if (curVersion != null && curVersion.delete()) {
-            // We now shift accounting of the BytesRef from tombstones to current, because a refresh would clear this RAM.  This should be
-            // uncommon, because with the default refresh=1s and gc_deletes=60s, deletes should be cleared from current long before we drop
-            // them from tombstones:
-            ramBytesUsedCurrent.addAndGet(curVersion.ramBytesUsed() + uidRAMBytesUsed);
-        }
     }
 
     /** Caller has a lock, so that this uid will not be concurrently added/deleted by another thread. */
@@ -226,7 +181,6 @@ class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
     synchronized void clear() {
         maps = new Maps();
         tombstones.clear();
-        ramBytesUsedCurrent.set(0);
 
         // NOTE: we can't zero this here, because a refresh thread could be calling InternalEngine.pruneDeletedTombstones at the same time,
         // and this will lead to an assert trip.  Presumably it's fine if our ramBytesUsedTombstones is non-zero after clear since the index
@@ -241,13 +195,13 @@ class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
 
     @Override
     public long ramBytesUsed() {
-        return ramBytesUsedCurrent.get() + ramBytesUsedTombstones.get();
+        return maps.current.ramBytesUsed() + ramBytesUsedTombstones.get();
     }
 
     /** Returns how much RAM would be freed up by refreshing. This is {@link ramBytesUsed} except does not include tombstones because they
      *  don't clear on refresh. */
     long ramBytesUsedForRefresh() {
-        return ramBytesUsedCurrent.get();
+        return maps.current.ramBytesUsed();
     }
 
     @Override
@@ -0,0 +1,192 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine;
+
+import com.carrotsearch.hppc.BitMixer;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.BytesRefHash;
+import org.elasticsearch.common.util.IntArray;
+import org.elasticsearch.common.util.LongArray;
+import org.elasticsearch.index.translog.Translog;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Compact map from _uid to {@link VersionValue}, used by {@link LiveVersionMap} for the adds and deletes that are not yet visible to
+ * the searcher. Uids are stored in a {@link BytesRefHash} and the version, translog location and delete time of each uid in parallel
+ * paged arrays indexed by the id the hash assigned to the uid, so that a table holds a handful of arrays rather than three objects
+ * per entry, and {@link #ramBytesUsed()} is the exact size of these arrays.
+ * <p/>
+ * Entries can be added or replaced but never removed: a table is dropped as a whole once a refresh made its content visible. In order
+ * not to serialize all indexing threads, the table is split into stripes by uid hash that are individually synchronized. Stripes are
+ * allocated on first use so that an empty table does not use memory, and the size and memory usage of the table are running totals
+ * so that reading them doesn't need to visit the stripes.
+ */
+final class UidVersionTable implements Accountable {
+
+    private static final int STRIPE_BITS = 4;
+    private static final int INITIAL_STRIPE_CAPACITY = 16;
+
+    /** Stored as translog generation if the value has no translog location. */
+    private static final long NO_TRANSLOG_LOCATION = -1;
+    /** Stored as delete time for values that are not deletes. */
+    private static final long NOT_DELETED = -1;
+
+    // Arrays are not recycled: lookups of a concurrent indexing thread may still read from a table after it was dropped on refresh
+    private final BigArrays bigArrays = BigArrays.NON_RECYCLING_INSTANCE;
+    private final AtomicReferenceArray<Stripe> stripes = new AtomicReferenceArray<>(1 << STRIPE_BITS);
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong ramBytesUsed = new AtomicLong();
+
+    /** Returns the value stored for this uid or <code>null</code> if the uid is not in the table. */
+    VersionValue get(BytesRef uid) {
+        final int code = uid.hashCode();
+        final Stripe stripe = stripe(code, false);
+        return stripe == null ? null : stripe.get(uid, code);
+    }
+
+    /** Adds or replaces the value stored for this uid. */
+    void put(BytesRef uid, VersionValue value) {
+        final int code = uid.hashCode();
+        stripe(code, true).put(uid, code, value);
+    }
+
+    /** Returns the number of uids in this table. */
+    long size() {
+        return size.get();
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return ramBytesUsed.get();
+    }
+
+    @Override
+    public Collection<Accountable> getChildResources() {
+        return Collections.emptyList();
+    }
+
+    private Stripe stripe(int code, boolean create) {
+        // BytesRefHash picks slots from the low bits of the mixed hash, so we use the high bits to pick the stripe
+        final int index = BitMixer.mix32(code) >>> (32 - STRIPE_BITS);
+        Stripe stripe = stripes.get(index);
+        if (stripe == null && create) {
+            final Stripe newStripe = new Stripe();
+            // read before publishing, once published other threads may grow the stripe and account for it themselves
+            final long initialBytes = newStripe.ramBytesUsed;
+            if (stripes.compareAndSet(index, null, newStripe)) {
+                ramBytesUsed.addAndGet(initialBytes);
+                stripe = newStripe;
+            } else {
+                // another thread created the stripe concurrently, ours is garbage collected
+                stripe = stripes.get(index);
+            }
+        }
+        return stripe;
+    }
+
+    private final class Stripe {
+
+        private final BytesRefHash uids;
+        private LongArray versions;
+        private LongArray generations;
+        private LongArray positions;
+        private IntArray sizes;
+        private LongArray deleteTimes;
+
+        // only modified under the stripe's lock, changes are added to the table's total
+        private long ramBytesUsed;
+
+        Stripe() {
+            uids = new BytesRefHash(INITIAL_STRIPE_CAPACITY, bigArrays);
+            versions = bigArrays.newLongArray(INITIAL_STRIPE_CAPACITY, false);
+            generations = bigArrays.newLongArray(INITIAL_STRIPE_CAPACITY, false);
+            positions = bigArrays.newLongArray(INITIAL_STRIPE_CAPACITY, false);
+            sizes = bigArrays.newIntArray(INITIAL_STRIPE_CAPACITY, false);
+            deleteTimes = bigArrays.newLongArray(INITIAL_STRIPE_CAPACITY, false);
+            ramBytesUsed = computeRamBytesUsed();
+        }
+
+        synchronized VersionValue get(BytesRef uid, int code) {
+            final long id = uids.find(uid, code);
+            if (id < 0) {
+                return null;
+            }
+            final long generation = generations.get(id);
+            final Translog.Location location;
+            if (generation == NO_TRANSLOG_LOCATION) {
+                location = null;
+            } else {
+                location = new Translog.Location(generation, positions.get(id), sizes.get(id));
+            }
+            final long deleteTime = deleteTimes.get(id);
+            if (deleteTime == NOT_DELETED) {
+                return new VersionValue(versions.get(id), location);
+            } else {
+                return new DeleteVersionValue(versions.get(id), deleteTime, location);
+            }
+        }
+
+        synchronized void put(BytesRef uid, int code, VersionValue value) {
+            long id = uids.add(uid, code);
+            if (id < 0) {
+                id = -1 - id;
+            } else {
+                size.incrementAndGet();
+                versions = bigArrays.grow(versions, id + 1);
+                generations = bigArrays.grow(generations, id + 1);
+                positions = bigArrays.grow(positions, id + 1);
+                sizes = bigArrays.grow(sizes, id + 1);
+                deleteTimes = bigArrays.grow(deleteTimes, id + 1);
+            }
+            versions.set(id, value.version());
+            final Translog.Location location = value.translogLocation();
+            if (location == null) {
+                generations.set(id, NO_TRANSLOG_LOCATION);
+            } else {
+                assert location.generation != NO_TRANSLOG_LOCATION;
+                generations.set(id, location.generation);
+                positions.set(id, location.translogLocation);
+                sizes.set(id, location.size);
+            }
+            if (value.delete()) {
+                assert value.time() != NOT_DELETED;
+                deleteTimes.set(id, value.time());
+            } else {
+                deleteTimes.set(id, NOT_DELETED);
+            }
+            final long newRamBytesUsed = computeRamBytesUsed();
+            if (newRamBytesUsed != ramBytesUsed) {
+                UidVersionTable.this.ramBytesUsed.addAndGet(newRamBytesUsed - ramBytesUsed);
+                ramBytesUsed = newRamBytesUsed;
+            }
+        }
+
+        private long computeRamBytesUsed() {
+            return uids.ramBytesUsed() + versions.ramBytesUsed() + generations.ramBytesUsed() + positions.ramBytesUsed()
+                    + sizes.ramBytesUsed() + deleteTimes.ramBytesUsed();
+        }
+    }
+}
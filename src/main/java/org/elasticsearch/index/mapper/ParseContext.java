@@ -369,6 +369,13 @@ public abstract class ParseContext {
 
     public static class InternalParseContext extends ParseContext {
 
+        /**
+         * The maximum number of nested objects a single document may contain. Every nested object becomes its own
+         * Lucene document that is held in memory until the whole document is indexed.
+         */
+        public static final String NESTED_OBJECTS_LIMIT = "index.mapping.nested_objects.limit";
+        public static final int DEFAULT_NESTED_OBJECTS_LIMIT = 10000;
+
         private final DocumentMapper docMapper;
 
         private final DocumentMapperParser docMapperParser;
@@ -405,9 +412,12 @@ public abstract class ParseContext {
 
         private Mapper dynamicMappingsUpdate = null;
 
+        private final int nestedObjectsLimit;
+
         public InternalParseContext(String index, @Nullable Settings indexSettings, DocumentMapperParser docMapperParser, DocumentMapper docMapper, ContentPath path) {
             this.index = index;
             this.indexSettings = indexSettings;
+            this.nestedObjectsLimit = indexSettings == null ? DEFAULT_NESTED_OBJECTS_LIMIT : indexSettings.getAsInt(NESTED_OBJECTS_LIMIT, DEFAULT_NESTED_OBJECTS_LIMIT);
             this.docMapper = docMapper;
             this.docMapperParser = docMapperParser;
             this.path = path;
@@ -509,6 +519,11 @@ public abstract class ParseContext {
 
         @Override
         public void addDoc(Document doc) {
+            // the first document is the root document, all others are nested documents
+            if (documents.size() > nestedObjectsLimit) {
+                throw new MapperParsingException("The number of nested documents has exceeded the allowed limit of [" + nestedObjectsLimit
+                        + "]. This limit can be set by changing the [" + NESTED_OBJECTS_LIMIT + "] index level setting.");
+            }
             this.documents.add(doc);
         }
 
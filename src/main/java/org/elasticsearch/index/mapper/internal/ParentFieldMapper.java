@@ -167,7 +167,7 @@ public class ParentFieldMapper extends AbstractFieldMapper<Uid> implements RootM
 
     @Override
     public FieldDataType defaultFieldDataType() {
-        return new FieldDataType("_parent", settingsBuilder().put(Loading.KEY, Loading.EAGER_VALUE));
+        return new FieldDataType("_parent", settingsBuilder().put(Loading.KEY, Loading.EAGER_GLOBAL_ORDINALS_VALUE));
     }
 
     @Override
@@ -302,6 +302,13 @@ public class IndexQueryParserService extends AbstractIndexComponent {
         return Version.indexCreated(indexSettings);
     }
 
+    /**
+     * @return The settings of the index
+     */
+    Settings indexSettings() {
+        return indexSettings;
+    }
+
     /**
      * Selectively parses a query from a top level query or query_binary json field from the specified source.
      */
@@ -48,6 +48,7 @@ import org.elasticsearch.index.mapper.core.StringFieldMapper;
 import org.elasticsearch.index.query.support.NestedScope;
 import org.elasticsearch.index.similarity.SimilarityService;
 import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.search.aggregations.support.RollupFields;
 import org.elasticsearch.search.fetch.innerhits.InnerHitsContext;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.lookup.SearchLookup;
@@ -283,6 +284,7 @@ public class QueryParseContext {
     }
 
     public FieldMapper fieldMapper(String name) {
+        checkFilterable(name);
         FieldMappers fieldMappers = indexQueryParser.mapperService.smartNameFieldMappers(name, getTypes());
         if (fieldMappers == null) {
             return null;
@@ -303,6 +305,7 @@ public class QueryParseContext {
     }
 
     public MapperService.SmartNameFieldMappers smartFieldMappers(String name) {
+        checkFilterable(name);
         return failIfFieldMappingNotFound(name, indexQueryParser.mapperService.smartName(name, getTypes()));
     }
 
@@ -318,6 +321,13 @@ public class QueryParseContext {
         this.mapUnmappedFieldAsString = mapUnmappedFieldAsString;
     }
 
+    private void checkFilterable(String name) {
+        if (RollupFields.isFilterable(indexQueryParser.indexSettings(), name) == false) {
+            throw new QueryParsingException(this, "Field [" + name + "] of rollup index [" + index.name()
+                    + "] is not a dimension, filtering on it would not match the rolled up documents");
+        }
+    }
+
     private MapperService.SmartNameFieldMappers failIfFieldMappingNotFound(String name, MapperService.SmartNameFieldMappers fieldMapping) {
         if (allowUnmappedFields) {
             return fieldMapping;
@@ -45,13 +45,13 @@ import org.elasticsearch.common.lucene.search.NoopCollector;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.FloatArray;
 import org.elasticsearch.common.util.IntArray;
-import org.elasticsearch.common.util.LongHash;
 import org.elasticsearch.index.fielddata.IndexParentChildFieldData;
 import org.elasticsearch.index.fielddata.plain.ParentChildIndexFieldData;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.internal.SearchContext.Lifetime;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -148,10 +148,15 @@ public final class ChildrenQuery extends IndexCacheableQuery {
         SearchContext sc = SearchContext.current();
 
         IndexParentChildFieldData globalIfd = ifd.loadGlobal(searcher.getIndexReader());
-        if (globalIfd == null) {
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        if (globalIfd == null || leaves.isEmpty()) {
             // No docs of the specified type exist on this shard
             return new BooleanQuery().createWeight(searcher, needsScores);
         }
+        final long valueCount = globalIfd.load(leaves.get(0)).getOrdinalsValues(parentType).getValueCount();
+        if (valueCount == 0) {
+            return new BooleanQuery().createWeight(searcher, needsScores);
+        }
         IndexSearcher indexSearcher = new IndexSearcher(searcher.getIndexReader());
         indexSearcher.setSimilarity(searcher.getSimilarity());
         indexSearcher.setQueryCache(null);
@@ -163,30 +168,30 @@ public final class ChildrenQuery extends IndexCacheableQuery {
             if (minChildren == 0 && maxChildren == 0 && scoreType != ScoreType.NONE) {
                 switch (scoreType) {
                 case MIN:
-                    collector = new MinCollector(globalIfd, sc, parentType);
+                    collector = new MinCollector(globalIfd, valueCount, sc, parentType);
                     break;
                 case MAX:
-                    collector = new MaxCollector(globalIfd, sc, parentType);
+                    collector = new MaxCollector(globalIfd, valueCount, sc, parentType);
                     break;
                 case SUM:
-                    collector = new SumCollector(globalIfd, sc, parentType);
+                    collector = new SumCollector(globalIfd, valueCount, sc, parentType);
                     break;
                 }
             }
             if (collector == null) {
                 switch (scoreType) {
                 case MIN:
-                    collector = new MinCountCollector(globalIfd, sc, parentType);
+                    collector = new MinCountCollector(globalIfd, valueCount, sc, parentType);
                     break;
                 case MAX:
-                    collector = new MaxCountCollector(globalIfd, sc, parentType);
+                    collector = new MaxCountCollector(globalIfd, valueCount, sc, parentType);
                     break;
                 case SUM:
                 case AVG:
-                    collector = new SumCountAndAvgCollector(globalIfd, sc, parentType);
+                    collector = new SumCountAndAvgCollector(globalIfd, valueCount, sc, parentType);
                     break;
                 case NONE:
-                    collector = new CountCollector(globalIfd, sc, parentType);
+                    collector = new CountCollector(globalIfd, valueCount, sc, parentType);
                     break;
                 default:
                     throw new RuntimeException("Are we missing a score type here? -- " + scoreType);
@@ -307,7 +312,7 @@ public final class ChildrenQuery extends IndexCacheableQuery {
     protected abstract static class ParentCollector extends NoopCollector implements Releasable {
 
         protected final IndexParentChildFieldData globalIfd;
-        protected final LongHash parentIdxs;
+        protected final ParentOrdinals parentIdxs;
         protected final BigArrays bigArrays;
         protected final SearchContext searchContext;
         protected final String parentType;
@@ -315,11 +320,11 @@ public final class ChildrenQuery extends IndexCacheableQuery {
         protected SortedDocValues values;
         protected Scorer scorer;
 
-        protected ParentCollector(IndexParentChildFieldData globalIfd, SearchContext searchContext, String parentType) {
+        protected ParentCollector(IndexParentChildFieldData globalIfd, long valueCount, SearchContext searchContext, String parentType) {
             this.globalIfd = globalIfd;
             this.searchContext = searchContext;
             this.bigArrays = searchContext.bigArrays();
-            this.parentIdxs = new LongHash(512, bigArrays);
+            this.parentIdxs = ParentOrdinals.create(valueCount, bigArrays);
             this.parentType = parentType;
         }
 
@@ -369,8 +374,8 @@ public final class ChildrenQuery extends IndexCacheableQuery {
 
         protected FloatArray scores;
 
-        protected ParentScoreCollector(IndexParentChildFieldData globalIfd, SearchContext searchContext, String parentType) {
-            super(globalIfd, searchContext, parentType);
+        protected ParentScoreCollector(IndexParentChildFieldData globalIfd, long valueCount, SearchContext searchContext, String parentType) {
+            super(globalIfd, valueCount, searchContext, parentType);
             this.scores = this.bigArrays.newFloatArray(512, false);
         }
 
@@ -395,8 +400,8 @@ public final class ChildrenQuery extends IndexCacheableQuery {
 
         protected IntArray occurrences;
 
-        protected ParentScoreCountCollector(IndexParentChildFieldData globalIfd, SearchContext searchContext, String parentType) {
-            super(globalIfd, searchContext, parentType);
+        protected ParentScoreCountCollector(IndexParentChildFieldData globalIfd, long valueCount, SearchContext searchContext, String parentType) {
+            super(globalIfd, valueCount, searchContext, parentType);
             this.occurrences = bigArrays.newIntArray(512, false);
         }
 
@@ -418,8 +423,8 @@ public final class ChildrenQuery extends IndexCacheableQuery {
 
         protected IntArray occurrences;
 
-        protected CountCollector(IndexParentChildFieldData globalIfd, SearchContext searchContext, String parentType) {
-            super(globalIfd, searchContext, parentType);
+        protected CountCollector(IndexParentChildFieldData globalIfd, long valueCount, SearchContext searchContext, String parentType) {
+            super(globalIfd, valueCount, searchContext, parentType);
             this.occurrences = bigArrays.newIntArray(512, false);
         }
 
@@ -442,8 +447,8 @@ public final class ChildrenQuery extends IndexCacheableQuery {
 
     private final static class SumCollector extends ParentScoreCollector {
 
-        private SumCollector(IndexParentChildFieldData globalIfd, SearchContext searchContext, String parentType) {
-            super(globalIfd, searchContext, parentType);
+        private SumCollector(IndexParentChildFieldData globalIfd, long valueCount, SearchContext searchContext, String parentType) {
+            super(globalIfd, valueCount, searchContext, parentType);
         }
 
         @Override
@@ -454,8 +459,8 @@ public final class ChildrenQuery extends IndexCacheableQuery {
 
     private final static class MaxCollector extends ParentScoreCollector {
 
-        private MaxCollector(IndexParentChildFieldData globalIfd, SearchContext searchContext, String parentType) {
-            super(globalIfd, searchContext, parentType);
+        private MaxCollector(IndexParentChildFieldData globalIfd, long valueCount, SearchContext searchContext, String parentType) {
+            super(globalIfd, valueCount, searchContext, parentType);
         }
 
         @Override
@@ -469,8 +474,8 @@ public final class ChildrenQuery extends IndexCacheableQuery {
 
     private final static class MinCollector extends ParentScoreCollector {
 
-        private MinCollector(IndexParentChildFieldData globalIfd, SearchContext searchContext, String parentType) {
-            super(globalIfd, searchContext, parentType);
+        private MinCollector(IndexParentChildFieldData globalIfd, long valueCount, SearchContext searchContext, String parentType) {
+            super(globalIfd, valueCount, searchContext, parentType);
         }
 
         @Override
@@ -484,8 +489,8 @@ public final class ChildrenQuery extends IndexCacheableQuery {
 
     private final static class MaxCountCollector extends ParentScoreCountCollector {
 
-        private MaxCountCollector(IndexParentChildFieldData globalIfd, SearchContext searchContext, String parentType) {
-            super(globalIfd, searchContext, parentType);
+        private MaxCountCollector(IndexParentChildFieldData globalIfd, long valueCount, SearchContext searchContext, String parentType) {
+            super(globalIfd, valueCount, searchContext, parentType);
         }
 
         @Override
@@ -500,8 +505,8 @@ public final class ChildrenQuery extends IndexCacheableQuery {
 
     private final static class MinCountCollector extends ParentScoreCountCollector {
 
-        private MinCountCollector(IndexParentChildFieldData globalIfd, SearchContext searchContext, String parentType) {
-            super(globalIfd, searchContext, parentType);
+        private MinCountCollector(IndexParentChildFieldData globalIfd, long valueCount, SearchContext searchContext, String parentType) {
+            super(globalIfd, valueCount, searchContext, parentType);
         }
 
         @Override
@@ -516,8 +521,8 @@ public final class ChildrenQuery extends IndexCacheableQuery {
 
     private final static class SumCountAndAvgCollector extends ParentScoreCountCollector {
 
-        SumCountAndAvgCollector(IndexParentChildFieldData globalIfd, SearchContext searchContext, String parentType) {
-            super(globalIfd, searchContext, parentType);
+        SumCountAndAvgCollector(IndexParentChildFieldData globalIfd, long valueCount, SearchContext searchContext, String parentType) {
+            super(globalIfd, valueCount, searchContext, parentType);
         }
 
         @Override
@@ -530,7 +535,7 @@ public final class ChildrenQuery extends IndexCacheableQuery {
     private static class ParentScorer extends Scorer {
 
         final ParentWeight parentWeight;
-        final LongHash parentIds;
+        final ParentOrdinals parentIds;
         final FloatArray scores;
 
         final SortedDocValues globalOrdinals;
@@ -687,7 +692,7 @@ public final class ChildrenQuery extends IndexCacheableQuery {
 
     private final static class CountParentOrdIterator extends XFilteredDocIdSetIterator {
 
-        private final LongHash parentIds;
+        private final ParentOrdinals parentIds;
         protected final IntArray occurrences;
         private final int minChildren;
         private final int maxChildren;
@@ -42,7 +42,6 @@ import org.apache.lucene.util.LongBitSet;
 import org.apache.lucene.util.SparseFixedBitSet;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.BytesRefHash;
-import org.elasticsearch.common.util.LongHash;
 import org.elasticsearch.index.mapper.Uid;
 import org.elasticsearch.index.mapper.internal.UidFieldMapper;
 import org.elasticsearch.search.internal.SearchContext;
@@ -91,9 +90,15 @@ final class ParentIdsFilter extends Filter {
 
     static Filter createShortCircuitFilter(BitDocIdSetFilter nonNestedDocsFilter, SearchContext searchContext,
                                            String parentType, SortedDocValues globalValues,
-                                           LongHash parentIdxs, long numFoundParents) {
+                                           ParentOrdinals parentIdxs, long numFoundParents) {
         if (numFoundParents == 1) {
-            BytesRef id = globalValues.lookupOrd((int) parentIdxs.get(0));
+            BytesRef id = null;
+            for (long parentIdx = 0; id == null && parentIdx < parentIdxs.maxIndex(); parentIdx++) {
+                long globalOrdinal = parentIdxs.globalOrdinal(parentIdx);
+                if (globalOrdinal >= 0) {
+                    id = globalValues.lookupOrd((int) globalOrdinal);
+                }
+            }
             if (nonNestedDocsFilter != null) {
                 BooleanQuery bq = new BooleanQuery();
                 bq.add(new TermQuery(new Term(UidFieldMapper.NAME, Uid.createUidAsBytes(parentType, id))), Occur.MUST);
@@ -107,8 +112,11 @@ final class ParentIdsFilter extends Filter {
             boolean constructed = false;
             try {
                 parentIds = new BytesRefHash(numFoundParents, searchContext.bigArrays());
-                for (int id = 0; id < parentIdxs.size(); id++) {
-                    parentIds.add(globalValues.lookupOrd((int) parentIdxs.get(id)));
+                for (long parentIdx = 0; parentIdx < parentIdxs.maxIndex(); parentIdx++) {
+                    long globalOrdinal = parentIdxs.globalOrdinal(parentIdx);
+                    if (globalOrdinal >= 0) {
+                        parentIds.add(globalValues.lookupOrd((int) globalOrdinal));
+                    }
                 }
                 constructed = true;
             } finally {
@@ -0,0 +1,171 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.search.child;
+
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.LongArray;
+import org.elasticsearch.common.util.LongHash;
+
+/**
+ * Maps the global ordinals of the parents found while collecting child documents to the index the per parent scores
+ * and counts are stored under.
+ * <p/>
+ * If the number of parent global ordinals is small enough the global ordinal itself is used as index, so that collecting
+ * the children and scoring the parents is a plain lookup by ordinal. Otherwise the found ordinals are hashed into a dense
+ * id space, so that the memory used by a request is bound by the number of parents it matches.
+ */
+abstract class ParentOrdinals implements Releasable {
+
+    /**
+     * Up to this number of global ordinals, ordinals are used as index directly. This costs a bit per ordinal plus the
+     * score and count arrays of the collector, all of which come from recycled {@link BigArrays} pages.
+     */
+    static final long MAX_DIRECT_VALUE_COUNT = 1 << 20;
+
+    static ParentOrdinals create(long valueCount, BigArrays bigArrays) {
+        if (valueCount > 0 && valueCount <= MAX_DIRECT_VALUE_COUNT) {
+            return new Direct(valueCount, bigArrays);
+        } else {
+            return new Hashed(bigArrays);
+        }
+    }
+
+    /**
+     * Adds the given global ordinal. Returns the index for the ordinal if it was not seen before, or <code>-1-index</code>
+     * if it already exists, just like {@link LongHash#add(long)}.
+     */
+    abstract long add(long globalOrdinal);
+
+    /**
+     * Returns the index of the given global ordinal or <code>-1</code> if it wasn't added.
+     */
+    abstract long find(long globalOrdinal);
+
+    /**
+     * Returns the number of distinct ordinals added.
+     */
+    abstract long size();
+
+    /**
+     * Returns an upper bound (exclusive) of the indices handed out by {@link #add(long)}.
+     */
+    abstract long maxIndex();
+
+    /**
+     * Returns the global ordinal stored under the given index or <code>-1</code> if no ordinal maps to this index.
+     */
+    abstract long globalOrdinal(long index);
+
+    private static final class Hashed extends ParentOrdinals {
+
+        private final LongHash parentIdxs;
+
+        Hashed(BigArrays bigArrays) {
+            this.parentIdxs = new LongHash(512, bigArrays);
+        }
+
+        @Override
+        long add(long globalOrdinal) {
+            return parentIdxs.add(globalOrdinal);
+        }
+
+        @Override
+        long find(long globalOrdinal) {
+            return parentIdxs.find(globalOrdinal);
+        }
+
+        @Override
+        long size() {
+            return parentIdxs.size();
+        }
+
+        @Override
+        long maxIndex() {
+            return parentIdxs.size();
+        }
+
+        @Override
+        long globalOrdinal(long index) {
+            return parentIdxs.get(index);
+        }
+
+        @Override
+        public void close() {
+            Releasables.close(parentIdxs);
+        }
+    }
+
+    private static final class Direct extends ParentOrdinals {
+
+        private final long valueCount;
+        private final LongArray bits;
+        private long size;
+
+        Direct(long valueCount, BigArrays bigArrays) {
+            this.valueCount = valueCount;
+            this.bits = bigArrays.newLongArray((valueCount + 63) >>> 6, true);
+        }
+
+        private boolean exists(long globalOrdinal) {
+            return (bits.get(globalOrdinal >>> 6) & (1L << globalOrdinal)) != 0;
+        }
+
+        @Override
+        long add(long globalOrdinal) {
+            assert globalOrdinal < valueCount;
+            final long word = globalOrdinal >>> 6;
+            final long mask = 1L << globalOrdinal;
+            final long bitsInWord = bits.get(word);
+            if ((bitsInWord & mask) != 0) {
+                return -1 - globalOrdinal;
+            }
+            bits.set(word, bitsInWord | mask);
+            size++;
+            return globalOrdinal;
+        }
+
+        @Override
+        long find(long globalOrdinal) {
+            return exists(globalOrdinal) ? globalOrdinal : -1;
+        }
+
+        @Override
+        long size() {
+            return size;
+        }
+
+        @Override
+        long maxIndex() {
+            return valueCount;
+        }
+
+        @Override
+        long globalOrdinal(long index) {
+            return exists(index) ? index : -1;
+        }
+
+        @Override
+        public void close() {
+            Releasables.close(bits);
+        }
+    }
+}
@@ -588,6 +588,25 @@ public class IndexShard extends AbstractIndexShardComponent {
         refreshMetric.inc(System.nanoTime() - time);
     }
 
+    /**
+     * Writes the documents buffered by the index writer of this shard into new segments, without making them
+     * visible to searches.
+     */
+    public void writeIndexingBuffer() {
+        verifyNotClosed();
+        if (logger.isTraceEnabled()) {
+            logger.trace("writing indexing buffer");
+        }
+        engine().writeIndexingBuffer();
+    }
+
+    /**
+     * Returns the heap used by the indexing buffer of this shard.
+     */
+    public long indexBufferRAMBytesUsed() {
+        return engine().indexBufferRAMBytesUsed();
+    }
+
     public RefreshStats refreshStats() {
         return new RefreshStats(refreshMetric.count(), TimeUnit.NANOSECONDS.toMillis(refreshMetric.sum()));
     }
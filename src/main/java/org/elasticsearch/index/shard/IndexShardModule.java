@@ -58,11 +58,18 @@ public class IndexShardModule extends AbstractModule {
         return primary == false && IndexMetaData.isIndexUsingShadowReplicas(settings);
     }
 
+    /** Return true if a frozen engine should be used */
+    protected boolean useFrozenEngine() {
+        return IndexMetaData.isIndexFrozen(settings);
+    }
+
     @Override
     protected void configure() {
         bind(ShardId.class).toInstance(shardId);
         if (useShadowEngine()) {
             bind(IndexShard.class).to(ShadowIndexShard.class).asEagerSingleton();
+        } else if (useFrozenEngine()) {
+            bind(IndexShard.class).to(FrozenIndexShard.class).asEagerSingleton();
         } else {
             bind(IndexShard.class).asEagerSingleton();
             bind(TranslogService.class).asEagerSingleton();
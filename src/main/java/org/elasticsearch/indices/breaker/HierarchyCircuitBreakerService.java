@@ -61,11 +61,17 @@ public class HierarchyCircuitBreakerService extends CircuitBreakerService {
     public static final String REQUEST_CIRCUIT_BREAKER_TYPE_SETTING = "indices.breaker.request.type";
     public static final String DEFAULT_REQUEST_BREAKER_LIMIT = "40%";
 
+    public static final String INDEXING_CIRCUIT_BREAKER_LIMIT_SETTING = "indices.breaker.indexing.limit";
+    public static final String INDEXING_CIRCUIT_BREAKER_OVERHEAD_SETTING = "indices.breaker.indexing.overhead";
+    public static final String INDEXING_CIRCUIT_BREAKER_TYPE_SETTING = "indices.breaker.indexing.type";
+    public static final String DEFAULT_INDEXING_BREAKER_LIMIT = "10%";
+
     public static final String DEFAULT_BREAKER_TYPE = "memory";
 
     private volatile BreakerSettings parentSettings;
     private volatile BreakerSettings fielddataSettings;
     private volatile BreakerSettings requestSettings;
+    private volatile BreakerSettings indexingSettings;
 
     // Tripped count for when redistribution was attempted but wasn't successful
     private final AtomicLong parentTripCount = new AtomicLong(0);
@@ -104,6 +110,12 @@ public class HierarchyCircuitBreakerService extends CircuitBreakerService {
                 CircuitBreaker.Type.parseValue(settings.get(REQUEST_CIRCUIT_BREAKER_TYPE_SETTING, DEFAULT_BREAKER_TYPE))
         );
 
+        this.indexingSettings = new BreakerSettings(CircuitBreaker.INDEXING,
+                settings.getAsMemory(INDEXING_CIRCUIT_BREAKER_LIMIT_SETTING, DEFAULT_INDEXING_BREAKER_LIMIT).bytes(),
+                settings.getAsDouble(INDEXING_CIRCUIT_BREAKER_OVERHEAD_SETTING, 1.0),
+                CircuitBreaker.Type.parseValue(settings.get(INDEXING_CIRCUIT_BREAKER_TYPE_SETTING, DEFAULT_BREAKER_TYPE))
+        );
+
         this.parentSettings = new BreakerSettings(CircuitBreaker.PARENT,
                 settings.getAsMemory(TOTAL_CIRCUIT_BREAKER_LIMIT_SETTING, DEFAULT_TOTAL_CIRCUIT_BREAKER_LIMIT).bytes(), 1.0, CircuitBreaker.Type.PARENT);
         if (logger.isTraceEnabled()) {
@@ -112,6 +124,7 @@ public class HierarchyCircuitBreakerService extends CircuitBreakerService {
 
         registerBreaker(this.requestSettings);
         registerBreaker(this.fielddataSettings);
+        registerBreaker(this.indexingSettings);
 
         nodeSettingsService.addListener(new ApplySettings());
     }
@@ -149,6 +162,20 @@ public class HierarchyCircuitBreakerService extends CircuitBreakerService {
                 logger.info("Updated breaker settings request: {}", newRequestSettings);
             }
 
+            // Indexing settings
+            ByteSizeValue newIndexingMax = settings.getAsMemory(INDEXING_CIRCUIT_BREAKER_LIMIT_SETTING, null);
+            Double newIndexingOverhead = settings.getAsDouble(INDEXING_CIRCUIT_BREAKER_OVERHEAD_SETTING, null);
+            if (newIndexingMax != null || newIndexingOverhead != null) {
+                long newIndexingLimitBytes = newIndexingMax == null ? HierarchyCircuitBreakerService.this.indexingSettings.getLimit() : newIndexingMax.bytes();
+                newIndexingOverhead = newIndexingOverhead == null ? HierarchyCircuitBreakerService.this.indexingSettings.getOverhead() : newIndexingOverhead;
+
+                BreakerSettings newIndexingSettings = new BreakerSettings(CircuitBreaker.INDEXING, newIndexingLimitBytes, newIndexingOverhead,
+                        HierarchyCircuitBreakerService.this.indexingSettings.getType());
+                registerBreaker(newIndexingSettings);
+                HierarchyCircuitBreakerService.this.indexingSettings = newIndexingSettings;
+                logger.info("Updated breaker settings indexing: {}", newIndexingSettings);
+            }
+
             // Parent settings
             long oldParentMax = HierarchyCircuitBreakerService.this.parentSettings.getLimit();
             ByteSizeValue newParentMax = settings.getAsMemory(TOTAL_CIRCUIT_BREAKER_LIMIT_SETTING, null);
@@ -20,6 +20,8 @@
 package org.elasticsearch.indices.memory;
 
 import com.google.common.collect.Lists;
+import org.apache.lucene.util.CollectionUtil;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
@@ -31,6 +33,7 @@ import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.engine.EngineClosedException;
 import org.elasticsearch.index.engine.EngineConfig;
 import org.elasticsearch.index.engine.FlushNotAllowedEngineException;
+import org.elasticsearch.index.indexing.IndexingStats;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.IndexShardState;
 import org.elasticsearch.index.shard.ShardId;
@@ -58,6 +61,8 @@ public class IndexingMemoryController extends AbstractLifecycleComponent<Indexin
     private final ByteSizeValue minShardTranslogBufferSize;
     private final ByteSizeValue maxShardTranslogBufferSize;
 
+    private final double rateShare;
+
     private final TimeValue inactiveTime;
     private final TimeValue interval;
 
@@ -115,11 +120,16 @@ public class IndexingMemoryController extends AbstractLifecycleComponent<Indexin
         this.minShardTranslogBufferSize = this.settings.getAsBytesSize("indices.memory.min_shard_translog_buffer_size", new ByteSizeValue(2, ByteSizeUnit.KB));
         this.maxShardTranslogBufferSize = this.settings.getAsBytesSize("indices.memory.max_shard_translog_buffer_size", new ByteSizeValue(64, ByteSizeUnit.KB));
 
+        this.rateShare = this.settings.getAsDouble("indices.memory.index_buffer_rate_share", 0.5d);
+        if (rateShare < 0 || rateShare > 1) {
+            throw new IllegalArgumentException("indices.memory.index_buffer_rate_share must be between 0 and 1, got [" + rateShare + "]");
+        }
+
         this.inactiveTime = this.settings.getAsTime("indices.memory.shard_inactive_time", TimeValue.timeValueMinutes(30));
         // we need to have this relatively small to move a shard from inactive to active fast (enough)
         this.interval = this.settings.getAsTime("indices.memory.interval", TimeValue.timeValueSeconds(30));
 
-        logger.debug("using index_buffer_size [{}], with min_shard_index_buffer_size [{}], max_shard_index_buffer_size [{}], shard_inactive_time [{}]", this.indexingBuffer, this.minShardIndexBufferSize, this.maxShardIndexBufferSize, this.inactiveTime);
+        logger.debug("using index_buffer_size [{}], with min_shard_index_buffer_size [{}], max_shard_index_buffer_size [{}], index_buffer_rate_share [{}], shard_inactive_time [{}]", this.indexingBuffer, this.minShardIndexBufferSize, this.maxShardIndexBufferSize, this.rateShare, this.inactiveTime);
 
     }
 
@@ -147,6 +157,22 @@ public class IndexingMemoryController extends AbstractLifecycleComponent<Indexin
         return indexingBuffer;
     }
 
+    /**
+     * Computes the indexing buffer of a single active shard. The <code>rateShare</code> fraction of the total buffer is
+     * distributed among active shards in proportion to the operations they indexed since the last check, the rest is
+     * split evenly. If no shard indexed anything, the whole buffer is split evenly.
+     */
+    static long shardIndexingBufferBytes(long totalBytes, double rateShare, int activeShards, long shardRecentOps, long totalRecentOps,
+                                         long minShardBytes, long maxShardBytes) {
+        long bytes;
+        if (totalRecentOps > 0) {
+            bytes = (long) (totalBytes * (1 - rateShare) / activeShards + totalBytes * rateShare * shardRecentOps / totalRecentOps);
+        } else {
+            bytes = totalBytes / activeShards;
+        }
+        return Math.min(Math.max(bytes, minShardBytes), maxShardBytes);
+    }
+
     class ShardsIndicesStatusChecker implements Runnable {
 
         private final Map<ShardId, ShardIndexingStatus> shardsIndicesStatus = new HashMap<>();
@@ -172,6 +198,9 @@ public class IndexingMemoryController extends AbstractLifecycleComponent<Indexin
             }
             if (!changes.isEmpty()) {
                 calcAndSetShardBuffers(activeShards, "[" + changes + "]");
+            } else if (rateShare > 0 && activeShards > 1) {
+                // write rates change all the time, follow them even if no shard came or went
+                calcAndSetShardBuffers(activeShards, "[write rates]");
             }
         }
 
@@ -237,6 +266,11 @@ public class IndexingMemoryController extends AbstractLifecycleComponent<Indexin
                     status.translogId = translog.currentFileGeneration();
                     status.translogNumberOfOperations = translog.totalOperations();
 
+                    final IndexingStats.Stats indexingStats = indexShard.indexingStats().getTotal();
+                    final long indexingOperations = indexingStats.getIndexCount() + indexingStats.getDeleteCount();
+                    status.recentIndexingOperations = status.indexingOperations == -1 ? 0 : Math.max(0, indexingOperations - status.indexingOperations);
+                    status.indexingOperations = indexingOperations;
+
                     if (status.activeIndexing) {
                         activeShards++;
                     }
@@ -284,12 +318,11 @@ public class IndexingMemoryController extends AbstractLifecycleComponent<Indexin
             if (activeShards == 0) {
                 return;
             }
-            ByteSizeValue shardIndexingBufferSize = new ByteSizeValue(indexingBuffer.bytes() / activeShards);
-            if (shardIndexingBufferSize.bytes() < minShardIndexBufferSize.bytes()) {
-                shardIndexingBufferSize = minShardIndexBufferSize;
-            }
-            if (shardIndexingBufferSize.bytes() > maxShardIndexBufferSize.bytes()) {
-                shardIndexingBufferSize = maxShardIndexBufferSize;
+            long totalRecentOperations = 0;
+            for (ShardIndexingStatus status : shardsIndicesStatus.values()) {
+                if (status.activeIndexing) {
+                    totalRecentOperations += status.recentIndexingOperations;
+                }
             }
 
             ByteSizeValue shardTranslogBufferSize = new ByteSizeValue(translogBuffer.bytes() / activeShards);
@@ -300,7 +333,8 @@ public class IndexingMemoryController extends AbstractLifecycleComponent<Indexin
                 shardTranslogBufferSize = maxShardTranslogBufferSize;
             }
 
-            logger.debug("recalculating shard indexing buffer (reason={}), total is [{}] with [{}] active shards, each shard set to indexing=[{}], translog=[{}]", reason, indexingBuffer, activeShards, shardIndexingBufferSize, shardTranslogBufferSize);
+            logger.debug("recalculating shard indexing buffer (reason={}), total is [{}] with [{}] active shards and [{}] recent operations, translog=[{}]", reason, indexingBuffer, activeShards, totalRecentOperations, shardTranslogBufferSize);
+            final List<Tuple<IndexShard, ByteSizeValue>> shrunkShards = Lists.newArrayList();
             for (IndexService indexService : indicesService) {
                 for (IndexShard indexShard : indexService) {
                     IndexShardState state = indexShard.state();
@@ -308,10 +342,22 @@ public class IndexingMemoryController extends AbstractLifecycleComponent<Indexin
                         logger.trace("shard [{}] is not yet ready for index buffer update. index shard state: [{}]", indexShard.shardId(), state);
                         continue;
                     }
+                    if (indexShard.canIndex() == false) {
+                        // shadow and frozen shards don't buffer any documents
+                        continue;
+                    }
                     ShardIndexingStatus status = shardsIndicesStatus.get(indexShard.shardId());
                     if (status == null || status.activeIndexing) {
+                        final long recentOperations = status == null ? 0 : status.recentIndexingOperations;
+                        final ByteSizeValue shardIndexingBufferSize = new ByteSizeValue(shardIndexingBufferBytes(indexingBuffer.bytes(), rateShare,
+                                activeShards, recentOperations, totalRecentOperations, minShardIndexBufferSize.bytes(), maxShardIndexBufferSize.bytes()));
                         try {
+                            final long previousBytes = indexShard.engine().config().getIndexingBufferSize().bytes();
                             indexShard.updateBufferSize(shardIndexingBufferSize, shardTranslogBufferSize);
+                            // shards we haven't seen before have no write rate that could have dropped
+                            if (status != null && shardIndexingBufferSize.bytes() < previousBytes) {
+                                shrunkShards.add(new Tuple<>(indexShard, shardIndexingBufferSize));
+                            }
                         } catch (EngineClosedException e) {
                             // ignore
                             continue;
@@ -324,6 +370,42 @@ public class IndexingMemoryController extends AbstractLifecycleComponent<Indexin
                     }
                 }
             }
+            writeShrunkIndexingBuffers(shrunkShards);
+        }
+
+        /**
+         * Shards whose write rate dropped may hold on to more buffered documents than their new buffer allows, and would only
+         * flush them on their next indexing operation. Writes those buffers into segments, largest first, so that the memory
+         * goes to the shards that are busy now. The new segments only become visible to searches with the next refresh.
+         */
+        private void writeShrunkIndexingBuffers(List<Tuple<IndexShard, ByteSizeValue>> shrunkShards) {
+            final List<Tuple<IndexShard, Long>> oversizedShards = Lists.newArrayList();
+            for (Tuple<IndexShard, ByteSizeValue> shrunkShard : shrunkShards) {
+                try {
+                    final long bufferedBytes = shrunkShard.v1().indexBufferRAMBytesUsed();
+                    if (bufferedBytes > shrunkShard.v2().bytes()) {
+                        oversizedShards.add(new Tuple<>(shrunkShard.v1(), bufferedBytes));
+                    }
+                } catch (EngineClosedException e) {
+                    // ignore
+                }
+            }
+            CollectionUtil.timSort(oversizedShards, new Comparator<Tuple<IndexShard, Long>>() {
+                @Override
+                public int compare(Tuple<IndexShard, Long> o1, Tuple<IndexShard, Long> o2) {
+                    return Long.compare(o2.v2(), o1.v2());
+                }
+            });
+            for (Tuple<IndexShard, Long> oversizedShard : oversizedShards) {
+                logger.debug("shard [{}] buffers [{}] which is more than its new indexing buffer, writing it", oversizedShard.v1().shardId(), new ByteSizeValue(oversizedShard.v2()));
+                try {
+                    oversizedShard.v1().writeIndexingBuffer();
+                } catch (EngineClosedException e) {
+                    // ignore
+                } catch (Throwable e) {
+                    logger.warn("failed to write the indexing buffer of shard {} after shrinking it", e, oversizedShard.v1().shardId());
+                }
+            }
         }
     }
 
@@ -337,5 +419,7 @@ public class IndexingMemoryController extends AbstractLifecycleComponent<Indexin
         int translogNumberOfOperations = -1;
         boolean activeIndexing = true;
         long time = -1; // contains the first time we saw this shard with no operations done on it
+        long indexingOperations = -1; // index and delete operations done on the shard so far
+        long recentIndexingOperations = 0; // index and delete operations done on the shard since the previous check
     }
 }
@@ -92,6 +92,7 @@ import org.elasticsearch.rest.action.index.RestIndexAction;
 import org.elasticsearch.rest.action.main.RestMainAction;
 import org.elasticsearch.rest.action.percolate.RestMultiPercolateAction;
 import org.elasticsearch.rest.action.percolate.RestPercolateAction;
+import org.elasticsearch.rest.action.rollup.RestRollupAction;
 import org.elasticsearch.rest.action.script.RestDeleteIndexedScriptAction;
 import org.elasticsearch.rest.action.script.RestGetIndexedScriptAction;
 import org.elasticsearch.rest.action.script.RestPutIndexedScriptAction;
@@ -227,6 +228,8 @@ public class RestActionModule extends AbstractModule {
 
         bind(RestFieldStatsAction.class).asEagerSingleton();
 
+        bind(RestRollupAction.class).asEagerSingleton();
+
         // cat API
         Multibinder<AbstractCatAction> catActionMultibinder = Multibinder.newSetBinder(binder(), AbstractCatAction.class);
         catActionMultibinder.addBinding().to(RestAllocationAction.class).asEagerSingleton();
@@ -0,0 +1,61 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.rest.action.rollup;
+
+import org.elasticsearch.action.rollup.RollupAction;
+import org.elasticsearch.action.rollup.RollupRequest;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestChannel;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.support.RestToXContentListener;
+
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+
+/**
+ */
+public class RestRollupAction extends BaseRestHandler {
+
+    @Inject
+    public RestRollupAction(Settings settings, RestController controller, Client client) {
+        super(settings, controller, client);
+        controller.registerHandler(POST, "/{index}/_rollup/{rollup_index}", this);
+    }
+
+    @Override
+    public void handleRequest(final RestRequest request, final RestChannel channel, final Client client) {
+        RollupRequest rollupRequest = new RollupRequest(request.param("rollup_index"),
+                Strings.splitStringByCommaToArray(request.param("index")));
+        rollupRequest.indicesOptions(IndicesOptions.fromRequest(request, rollupRequest.indicesOptions()));
+        rollupRequest.field(request.param("field"));
+        rollupRequest.interval(request.param("interval"));
+        rollupRequest.dimensions(request.paramAsStringArray("dimensions", Strings.EMPTY_ARRAY));
+        rollupRequest.metrics(request.paramAsStringArray("metrics", Strings.EMPTY_ARRAY));
+        rollupRequest.from(request.param("from"));
+        rollupRequest.to(request.param("to"));
+        rollupRequest.pageSize(request.paramAsInt("page_size", rollupRequest.pageSize()));
+        client.execute(RollupAction.INSTANCE, rollupRequest, new RestToXContentListener<>(channel));
+    }
+}
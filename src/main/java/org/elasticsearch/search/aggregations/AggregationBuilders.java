@@ -21,6 +21,8 @@ package org.elasticsearch.search.aggregations;
 import org.elasticsearch.common.geo.GeoDistance;
 import org.elasticsearch.search.aggregations.bucket.children.Children;
 import org.elasticsearch.search.aggregations.bucket.children.ChildrenBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.Composite;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.filter.Filter;
 import org.elasticsearch.search.aggregations.bucket.filter.FilterAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.filters.Filters;
@@ -145,6 +147,13 @@ public class AggregationBuilders {
         return new FiltersAggregationBuilder(name);
     }
 
+    /**
+     * Create a new {@link Composite} aggregation with the given name.
+     */
+    public static CompositeAggregationBuilder composite(String name) {
+        return new CompositeAggregationBuilder(name);
+    }
+
     /**
      * Create a new {@link Global} aggregation with the given name.
      */
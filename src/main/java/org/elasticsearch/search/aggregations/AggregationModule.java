@@ -26,6 +26,7 @@ import org.elasticsearch.common.inject.Module;
 import org.elasticsearch.common.inject.SpawnModules;
 import org.elasticsearch.common.inject.multibindings.Multibinder;
 import org.elasticsearch.search.aggregations.bucket.children.ChildrenParser;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeParser;
 import org.elasticsearch.search.aggregations.bucket.filter.FilterParser;
 import org.elasticsearch.search.aggregations.bucket.filters.FiltersParser;
 import org.elasticsearch.search.aggregations.bucket.geogrid.GeoHashGridParser;
@@ -39,6 +40,7 @@ import org.elasticsearch.search.aggregations.bucket.range.RangeParser;
 import org.elasticsearch.search.aggregations.bucket.range.date.DateRangeParser;
 import org.elasticsearch.search.aggregations.bucket.range.geodistance.GeoDistanceParser;
 import org.elasticsearch.search.aggregations.bucket.range.ipv4.IpRangeParser;
+import org.elasticsearch.search.aggregations.bucket.sampler.RandomSamplerParser;
 import org.elasticsearch.search.aggregations.bucket.sampler.SamplerParser;
 import org.elasticsearch.search.aggregations.bucket.significant.SignificantTermsParser;
 import org.elasticsearch.search.aggregations.bucket.significant.heuristics.SignificantTermsHeuristicModule;
@@ -92,6 +94,7 @@ public class AggregationModule extends AbstractModule implements SpawnModules{
         aggParsers.add(FilterParser.class);
         aggParsers.add(FiltersParser.class);
         aggParsers.add(SamplerParser.class);
+        aggParsers.add(RandomSamplerParser.class);
         aggParsers.add(TermsParser.class);
         aggParsers.add(SignificantTermsParser.class);
         aggParsers.add(RangeParser.class);
@@ -107,6 +110,7 @@ public class AggregationModule extends AbstractModule implements SpawnModules{
         aggParsers.add(GeoBoundsParser.class);
         aggParsers.add(ScriptedMetricParser.class);
         aggParsers.add(ChildrenParser.class);
+        aggParsers.add(CompositeParser.class);
 
         reducerParsers.add(DerivativeParser.class);
         reducerParsers.add(MaxBucketParser.class);
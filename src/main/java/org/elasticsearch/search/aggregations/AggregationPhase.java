@@ -22,13 +22,16 @@ import com.google.common.collect.ImmutableMap;
 
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.Query;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.lucene.MinimumScoreCollector;
 import org.elasticsearch.common.lucene.search.Queries;
 import org.elasticsearch.search.SearchParseElement;
 import org.elasticsearch.search.SearchPhase;
 import org.elasticsearch.search.aggregations.bucket.global.GlobalAggregator;
+import org.elasticsearch.search.aggregations.bucket.sampler.RandomSamplerAggregator;
 import org.elasticsearch.search.aggregations.reducers.Reducer;
 import org.elasticsearch.search.aggregations.reducers.SiblingReducer;
 import org.elasticsearch.search.aggregations.support.AggregationContext;
@@ -79,7 +82,7 @@ public class AggregationPhase implements SearchPhase {
                 AggregatorFactories factories = context.aggregations().factories();
                 aggregators = factories.createTopLevelAggregators(aggregationContext);
                 for (int i = 0; i < aggregators.length; i++) {
-                    if (aggregators[i] instanceof GlobalAggregator == false) {
+                    if (aggregators[i] instanceof GlobalAggregator == false && aggregators[i] instanceof RandomSamplerAggregator == false) {
                         collectors.add(aggregators[i]);
                     }
                 }
@@ -134,6 +137,26 @@ public class AggregationPhase implements SearchPhase {
             }
         }
 
+        // random samplers only run the query on the documents that they sample
+        for (int i = 0; i < aggregators.length; i++) {
+            if (aggregators[i] instanceof RandomSamplerAggregator) {
+                RandomSamplerAggregator sampler = (RandomSamplerAggregator) aggregators[i];
+                Query query = Queries.filtered(context.query(), sampler.samplingQuery());
+                Collector collector = sampler;
+                if (context.minimumScore() != null) {
+                    // the sampling filter doesn't contribute to the score, so documents are filtered as in the main query
+                    collector = new MinimumScoreCollector(collector, context.minimumScore());
+                }
+                try {
+                    sampler.preCollection();
+                    context.searcher().search(query, collector);
+                } catch (Exception e) {
+                    throw new QueryPhaseExecutionException(context, "Failed to execute random sampler aggregator [" + sampler.name() + "]",
+                            e);
+                }
+            }
+        }
+
         List<InternalAggregation> aggregations = new ArrayList<>(aggregators.length);
         for (Aggregator aggregator : context.aggregations().aggregators()) {
             try {
@@ -20,8 +20,14 @@
 package org.elasticsearch.search.aggregations.bucket;
 
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.packed.PackedInts;
 import org.apache.lucene.util.packed.PackedLongValues;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.LongHash;
@@ -31,7 +37,11 @@ import org.elasticsearch.search.aggregations.BucketCollector;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.LeafBucketCollector;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -40,31 +50,81 @@ import java.util.List;
  * matches and then is able to replay a given subset of buckets which represent
  * the survivors from a pruning process performed by the aggregator that owns
  * this collector.
+ *
+ * The buffered doc IDs and buckets are accounted with the request circuit
+ * breaker of the given {@link BigArrays}. When they use more memory than the
+ * buffer budget, they are spilled to a temporary file, which is streamed back
+ * at replay time, before the breaker is adjusted. The breaker only trips if the
+ * request uses too much memory even with buffers that fit in the budget.
  */
-public class BestBucketsDeferringCollector extends DeferringBucketCollector {
+public class BestBucketsDeferringCollector extends DeferringBucketCollector implements Releasable {
+
+    /** The number of collected documents between two checks of the memory usage of the buffers. */
+    static final int ACCOUNTING_INTERVAL = 1024;
+
+    /** The default amount of memory that the buffers may use before being spilled to disk: 10mb. */
+    public static final long DEFAULT_MAX_BUFFER_BYTES = 10 * 1024 * 1024;
+
     private static class Entry {
         final LeafReaderContext context;
-        final PackedLongValues docDeltas;
-        final PackedLongValues buckets;
+        // the doc ID that the first delta is relative to
+        final int baseDoc;
+        final long size;
+        // null once spilled to disk
+        PackedLongValues docDeltas;
+        PackedLongValues buckets;
 
-        public Entry(LeafReaderContext context, PackedLongValues docDeltas, PackedLongValues buckets) {
+        public Entry(LeafReaderContext context, int baseDoc, PackedLongValues docDeltas, PackedLongValues buckets) {
             this.context = context;
+            this.baseDoc = baseDoc;
+            this.size = docDeltas.size();
             this.docDeltas = docDeltas;
             this.buckets = buckets;
         }
+
+        long ramBytesUsed() {
+            return docDeltas == null ? 0 : docDeltas.ramBytesUsed() + buckets.ramBytesUsed();
+        }
     }
 
+    final BigArrays bigArrays;
+    final long maxBufferBytes;
     final List<Entry> entries = new ArrayList<>();
     BucketCollector collector;
     LeafReaderContext context;
     PackedLongValues.Builder docDeltas;
     PackedLongValues.Builder buckets;
+    int baseDoc;
+    int lastDoc;
     long maxBucket = -1;
     boolean finished = false;
     LongHash selectedBuckets;
+    // memory usage of the entries that are still in memory
+    long entriesBytes;
+    // bytes that the circuit breaker has been adjusted with
+    long accountedBytes;
+    Path spillFile;
+    StreamOutput spillOutput;
 
-    /** Sole constructor. */
-    public BestBucketsDeferringCollector() {
+    /**
+     * Create a collector that spills its buffers once they use more than {@link #DEFAULT_MAX_BUFFER_BYTES}.
+     *
+     * @param bigArrays used to account the buffered doc IDs and buckets with the request circuit breaker
+     */
+    public BestBucketsDeferringCollector(BigArrays bigArrays) {
+        this(bigArrays, DEFAULT_MAX_BUFFER_BYTES);
+    }
+
+    /**
+     * @param bigArrays      used to account the buffered doc IDs and buckets with the request circuit breaker
+     * @param maxBufferBytes the amount of memory that the buffers may use before being spilled to disk
+     */
+    public BestBucketsDeferringCollector(BigArrays bigArrays, long maxBufferBytes) {
+        if (maxBufferBytes < 0) {
+            throw new IllegalArgumentException("maxBufferBytes must be >= 0, got " + maxBufferBytes);
+        }
+        this.bigArrays = bigArrays;
+        this.maxBufferBytes = maxBufferBytes;
     }
 
     @Override
@@ -80,13 +140,76 @@ public class BestBucketsDeferringCollector extends DeferringBucketCollector {
         this.collector = BucketCollector.wrap(deferredCollectors);
     }
 
-    private void finishLeaf() {
-        if (context != null) {
-            entries.add(new Entry(context, docDeltas.build(), buckets.build()));
+    private void finishChunk() {
+        if (context != null && docDeltas.size() > 0) {
+            final Entry entry = new Entry(context, baseDoc, docDeltas.build(), buckets.build());
+            entries.add(entry);
+            entriesBytes += entry.ramBytesUsed();
+            docDeltas = PackedLongValues.packedBuilder(PackedInts.DEFAULT);
+            buckets = PackedLongValues.packedBuilder(PackedInts.DEFAULT);
+            baseDoc = lastDoc;
         }
+    }
+
+    private void finishLeaf() throws IOException {
+        finishChunk();
         context = null;
         docDeltas = null;
         buckets = null;
+        accountBuffers();
+    }
+
+    /** Return the memory usage of the entries and of the chunk that is being collected. */
+    private long bufferedBytes() {
+        long bytes = entriesBytes;
+        if (docDeltas != null) {
+            bytes += docDeltas.ramBytesUsed() + buckets.ramBytesUsed();
+        }
+        return bytes;
+    }
+
+    /**
+     * Spill the buffers to disk if they use more memory than the budget, then
+     * adjust the circuit breaker with their memory usage.
+     */
+    private void accountBuffers() throws IOException {
+        if (bufferedBytes() > maxBufferBytes) {
+            spill();
+        }
+        adjustBreaker(bufferedBytes());
+    }
+
+    private void adjustBreaker(long bytes) {
+        final long delta = bytes - accountedBytes;
+        // the breaker is adjusted even if it trips, so that close() releases these bytes
+        accountedBytes = bytes;
+        bigArrays.adjustBreaker(delta);
+    }
+
+    /**
+     * Write all entries that are still in memory to the spill file and
+     * release their memory.
+     */
+    private void spill() throws IOException {
+        finishChunk();
+        if (spillOutput == null) {
+            spillFile = Files.createTempFile("deferred_buckets_", ".tmp");
+            spillOutput = new OutputStreamStreamOutput(new BufferedOutputStream(Files.newOutputStream(spillFile)));
+        }
+        for (Entry entry : entries) {
+            if (entry.docDeltas == null) {
+                continue;
+            }
+            final PackedLongValues.Iterator docDeltaIterator = entry.docDeltas.iterator();
+            final PackedLongValues.Iterator bucketIterator = entry.buckets.iterator();
+            for (long i = 0; i < entry.size; ++i) {
+                spillOutput.writeVInt((int) docDeltaIterator.next());
+                spillOutput.writeVLong(bucketIterator.next());
+            }
+            entry.docDeltas = null;
+            entry.buckets = null;
+        }
+        entriesBytes = 0;
     }
 
     @Override
@@ -96,9 +219,11 @@ public class BestBucketsDeferringCollector extends DeferringBucketCollector {
         context = ctx;
         docDeltas = PackedLongValues.packedBuilder(PackedInts.DEFAULT);
         buckets = PackedLongValues.packedBuilder(PackedInts.DEFAULT);
+        baseDoc = 0;
+        lastDoc = 0;
 
         return new LeafBucketCollector() {
-            int lastDoc = 0;
+            int sinceLastAccounting = 0;
 
             @Override
             public void collect(int doc, long bucket) throws IOException {
@@ -106,6 +231,10 @@ public class BestBucketsDeferringCollector extends DeferringBucketCollector {
                 buckets.add(bucket);
                 lastDoc = doc;
                 maxBucket = Math.max(maxBucket, bucket);
+                if (++sinceLastAccounting == ACCOUNTING_INTERVAL) {
+                    sinceLastAccounting = 0;
+                    accountBuffers();
+                }
             }
         };
     }
@@ -117,6 +246,10 @@ public class BestBucketsDeferringCollector extends DeferringBucketCollector {
     @Override
     public void postCollection() throws IOException {
         finishLeaf();
+        if (spillOutput != null) {
+            spillOutput.close();
+            spillOutput = null;
+        }
         finished = true;
     }
 
@@ -143,24 +276,71 @@ public class BestBucketsDeferringCollector extends DeferringBucketCollector {
             throw new IllegalStateException("Cannot defer if scores are needed");
         }
 
-        for (Entry entry : entries) {
-            final LeafBucketCollector leafCollector = collector.getLeafCollector(entry.context);
-            leafCollector.setScorer(Lucene.illegalScorer("A limitation of the " + SubAggCollectionMode.BREADTH_FIRST
-                    + " collection mode is that scores cannot be buffered along with document IDs"));
-            final PackedLongValues.Iterator docDeltaIterator = entry.docDeltas.iterator();
-            final PackedLongValues.Iterator buckets = entry.buckets.iterator();
-            int doc = 0;
-            for (long i = 0, end = entry.docDeltas.size(); i < end; ++i) {
-                doc += docDeltaIterator.next();
-                final long bucket = buckets.next();
-                final long rebasedBucket = hash.find(bucket);
-                if (rebasedBucket != -1) {
-                    leafCollector.collect(doc, rebasedBucket);
+        // spilled entries come first and are streamed in the order they were written
+        StreamInput spillInput = null;
+        try {
+            if (spillFile != null) {
+                spillInput = new InputStreamStreamInput(new BufferedInputStream(Files.newInputStream(spillFile)));
+            }
+            LeafReaderContext previousContext = null;
+            LeafBucketCollector leafCollector = null;
+            for (Entry entry : entries) {
+                if (entry.context != previousContext) {
+                    leafCollector = collector.getLeafCollector(entry.context);
+                    leafCollector.setScorer(Lucene.illegalScorer("A limitation of the " + SubAggCollectionMode.BREADTH_FIRST
+                            + " collection mode is that scores cannot be buffered along with document IDs"));
+                    previousContext = entry.context;
+                }
+                int doc = entry.baseDoc;
+                if (entry.docDeltas == null) {
+                    for (long i = 0; i < entry.size; ++i) {
+                        doc += spillInput.readVInt();
+                        final long bucket = spillInput.readVLong();
+                        final long rebasedBucket = hash.find(bucket);
+                        if (rebasedBucket != -1) {
+                            leafCollector.collect(doc, rebasedBucket);
+                        }
+                    }
+                } else {
+                    final PackedLongValues.Iterator docDeltaIterator = entry.docDeltas.iterator();
+                    final PackedLongValues.Iterator buckets = entry.buckets.iterator();
+                    for (long i = 0; i < entry.size; ++i) {
+                        doc += docDeltaIterator.next();
+                        final long bucket = buckets.next();
+                        final long rebasedBucket = hash.find(bucket);
+                        if (rebasedBucket != -1) {
+                            leafCollector.collect(doc, rebasedBucket);
+                        }
+                    }
                 }
             }
+        } finally {
+            IOUtils.close(spillInput);
         }
 
         collector.postCollection();
+        // buffers can only be replayed once
+        close();
+    }
+
+    @Override
+    public void close() {
+        entries.clear();
+        docDeltas = null;
+        buckets = null;
+        entriesBytes = 0;
+        bigArrays.adjustBreaker(-accountedBytes);
+        accountedBytes = 0;
+        try {
+            IOUtils.close(spillOutput);
+        } catch (IOException e) {
+            // ignore, the spill file is deleted anyway
+        }
+        spillOutput = null;
+        if (spillFile != null) {
+            IOUtils.deleteFilesIgnoringExceptions(spillFile);
+            spillFile = null;
+        }
     }
 
     /**
@@ -18,7 +18,12 @@
  */
 package org.elasticsearch.search.aggregations.bucket;
 
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
 import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lucene.search.Queries;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.IntArray;
 import org.elasticsearch.search.aggregations.Aggregator;
@@ -29,6 +34,7 @@ import org.elasticsearch.search.aggregations.InternalAggregations;
 import org.elasticsearch.search.aggregations.LeafBucketCollector;
 import org.elasticsearch.search.aggregations.reducers.Reducer;
 import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.internal.SearchContext;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -129,6 +135,37 @@ public abstract class BucketsAggregator extends AggregatorBase {
         return new InternalAggregations(Arrays.asList(aggregations));
     }
 
+    /**
+     * Whether the buckets of this aggregator can be filled filter by filter: instead of checking every collected document
+     * against every bucket, the documents of each bucket are counted by running the bucket as its own query, which can be
+     * answered from the filter cache. This only holds if the main query matches all documents and nothing but the doc
+     * counts needs to be computed, ie. for top-level aggregations without sub-aggregations.
+     */
+    protected boolean canCollectFilterByFilter() {
+        final SearchContext searchContext = context.searchContext();
+        return parent == null
+                && subAggregators.length == 0
+                && searchContext.aliasFilter() == null
+                && searchContext.minimumScore() == null
+                && searchContext.terminateAfter() == SearchContext.DEFAULT_TERMINATE_AFTER
+                && Queries.isConstantMatchAllQuery(searchContext.query());
+    }
+
+    /**
+     * Counts the live documents of the segment that match the given filter.
+     */
+    protected static int countFilter(Weight filter, LeafReaderContext ctx) throws IOException {
+        final Scorer scorer = filter.scorer(ctx, ctx.reader().getLiveDocs());
+        if (scorer == null) {
+            return 0;
+        }
+        int count = 0;
+        while (scorer.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+            ++count;
+        }
+        return count;
+    }
+
     @Override
     public final void close() {
         try (Releasable releasable = docCounts) {
@@ -0,0 +1,57 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.composite;
+
+import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A multi bucket aggregation that creates a bucket per distinct combination of the values of its sources. Buckets are
+ * returned a page at a time, sorted by their composite key, and {@link #afterKey()} can be used to fetch the next page.
+ */
+public interface Composite extends MultiBucketsAggregation {
+
+    /**
+     * A bucket associated with a combination of source values.
+     */
+    public static interface Bucket extends MultiBucketsAggregation.Bucket {
+
+        /**
+         * @return The value of each source in this bucket, keyed by source name and in the order of the sources
+         */
+        @Override
+        Map<String, Object> getKey();
+    }
+
+    /**
+     * The buckets of this page.
+     */
+    @Override
+    List<? extends Bucket> getBuckets();
+
+    /**
+     * @return The key of the last bucket of this page, to be set as <code>after</code> to get the next page, or
+     *         <code>null</code> if this page is empty.
+     */
+    Map<String, Object> afterKey();
+
+}
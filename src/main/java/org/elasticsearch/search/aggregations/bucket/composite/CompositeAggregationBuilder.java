@@ -0,0 +1,133 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.composite;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilderException;
+import org.elasticsearch.search.sort.SortOrder;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builder for the {@link Composite} aggregation.
+ */
+public class CompositeAggregationBuilder extends AggregationBuilder<CompositeAggregationBuilder> {
+
+    private final Map<String, String> fields = new LinkedHashMap<>();
+    private final Map<String, SortOrder> orders = new LinkedHashMap<>();
+    private final Map<String, String> intervals = new HashMap<>();
+    private final Map<String, Object> missing = new HashMap<>();
+    private int size = -1;
+    private Map<String, Object> after;
+
+    /**
+     * Sole constructor.
+     */
+    public CompositeAggregationBuilder(String name) {
+        super(name, InternalComposite.TYPE.name());
+    }
+
+    /**
+     * Add a source that buckets on the terms of the given field, in ascending order. Sources are used in the order
+     * they are added to sort composite keys.
+     */
+    public CompositeAggregationBuilder source(String name, String field) {
+        return source(name, field, SortOrder.ASC);
+    }
+
+    /**
+     * Add a source that buckets on the terms of the given field, in the given order.
+     */
+    public CompositeAggregationBuilder source(String name, String field, SortOrder order) {
+        fields.put(name, field);
+        orders.put(name, order);
+        return this;
+    }
+
+    /**
+     * Add a source that buckets the values of the given date field by the given interval, in ascending order.
+     */
+    public CompositeAggregationBuilder dateHistogramSource(String name, String field, String interval) {
+        source(name, field, SortOrder.ASC);
+        intervals.put(name, interval);
+        return this;
+    }
+
+    /**
+     * Set the value to use for documents that have no value for the given source.
+     */
+    public CompositeAggregationBuilder missing(String name, Object missing) {
+        if (fields.containsKey(name) == false) {
+            throw new IllegalArgumentException("Unknown source [" + name + "] in composite aggregation [" + getName() + "]");
+        }
+        this.missing.put(name, missing);
+        return this;
+    }
+
+    /**
+     * Set the number of buckets to return per page.
+     */
+    public CompositeAggregationBuilder size(int size) {
+        this.size = size;
+        return this;
+    }
+
+    /**
+     * Only return buckets whose key sorts after the given one, typically the {@link Composite#afterKey()} of the previous page.
+     */
+    public CompositeAggregationBuilder after(Map<String, Object> after) {
+        this.after = after;
+        return this;
+    }
+
+    @Override
+    protected XContentBuilder internalXContent(XContentBuilder builder, Params params) throws IOException {
+        if (fields.isEmpty()) {
+            throw new SearchSourceBuilderException("At least one source must be set on composite aggregation [" + getName() + "]");
+        }
+        builder.startObject();
+        if (size >= 0) {
+            builder.field("size", size);
+        }
+        builder.startArray("sources");
+        for (Map.Entry<String, String> entry : fields.entrySet()) {
+            final String interval = intervals.get(entry.getKey());
+            builder.startObject().startObject(entry.getKey()).startObject(interval == null ? "terms" : "date_histogram");
+            builder.field("field", entry.getValue());
+            if (interval != null) {
+                builder.field("interval", interval);
+            }
+            if (missing.containsKey(entry.getKey())) {
+                builder.field("missing", missing.get(entry.getKey()));
+            }
+            builder.field("order", orders.get(entry.getKey()).toString());
+            builder.endObject().endObject().endObject();
+        }
+        builder.endArray();
+        if (after != null) {
+            builder.field("after", after);
+        }
+        return builder.endObject();
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.composite;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.packed.PackedInts;
+import org.apache.lucene.util.packed.PackedLongValues;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.rounding.Rounding;
+import org.elasticsearch.search.aggregations.AggregationExecutionException;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.AggregatorFactory;
+import org.elasticsearch.search.aggregations.BucketCollector;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
+import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
+import org.elasticsearch.search.aggregations.bucket.BucketsAggregator;
+import org.elasticsearch.search.aggregations.bucket.DeferringBucketCollector;
+import org.elasticsearch.search.aggregations.reducers.Reducer;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects the <code>size</code> smallest composite keys that sort after the <code>after</code> key of the request.
+ * <p/>
+ * Keys are kept in a sorted map bounded by <code>size</code>: a key that is smaller than the largest key of a full map
+ * evicts it and reuses its bucket ordinal, so memory doesn't depend on the number of distinct keys. Since bucket
+ * ordinals are reused, sub-aggregations can't be collected on the fly and are all deferred: the documents that made it
+ * into the map are recorded, and once collection is over their keys are computed again in order to replay them into
+ * the buckets of the keys that survived.
+ */
+public class CompositeAggregator extends BucketsAggregator {
+
+    private final int size;
+    private final List<String> sourceNames;
+    private final int[] reverseMuls;
+    private final ValuesSource[] valuesSources;
+    private final Rounding[] roundings;
+    private final CompositeKey afterKey;
+    private final Comparator<CompositeKey> comparator;
+    private final TreeMap<CompositeKey, Integer> slots;
+
+    CompositeAggregator(String name, AggregatorFactories factories, int size, List<CompositeValuesSource> sources,
+            ValuesSource[] valuesSources, CompositeKey afterKey, AggregationContext aggregationContext, Aggregator parent,
+            List<Reducer> reducers, Map<String, Object> metaData) throws IOException {
+        super(name, factories, aggregationContext, parent, reducers, metaData);
+        this.size = size;
+        this.sourceNames = new ArrayList<>(sources.size());
+        this.reverseMuls = new int[sources.size()];
+        this.roundings = new Rounding[sources.size()];
+        for (int i = 0; i < sources.size(); i++) {
+            sourceNames.add(sources.get(i).name);
+            reverseMuls[i] = sources.get(i).reverseMul;
+            roundings[i] = sources.get(i).rounding;
+        }
+        this.valuesSources = valuesSources;
+        this.afterKey = afterKey;
+        this.comparator = CompositeKey.comparator(reverseMuls);
+        this.slots = new TreeMap<>(comparator);
+    }
+
+    @Override
+    protected boolean shouldDefer(Aggregator aggregator) {
+        return true;
+    }
+
+    @Override
+    public DeferringBucketCollector getDeferringCollector() {
+        return new ReplayingCollector();
+    }
+
+    /**
+     * Returns the values of all sources for the given segment, or <code>null</code> if a source has no values on this shard.
+     */
+    private CompositeValuesSource.LeafValues[] leafValues(LeafReaderContext ctx) throws IOException {
+        final CompositeValuesSource.LeafValues[] values = new CompositeValuesSource.LeafValues[valuesSources.length];
+        for (int i = 0; i < valuesSources.length; i++) {
+            if (valuesSources[i] == null) {
+                return null;
+            }
+            values[i] = CompositeValuesSource.leafValues(valuesSources[i], roundings[i], ctx);
+        }
+        return values;
+    }
+
+    @Override
+    public LeafBucketCollector getLeafCollector(LeafReaderContext ctx, final LeafBucketCollector sub) throws IOException {
+        final CompositeValuesSource.LeafValues[] values = leafValues(ctx);
+        if (values == null) {
+            return LeafBucketCollector.NO_OP_COLLECTOR;
+        }
+        return new LeafBucketCollectorBase(sub, null) {
+            @Override
+            public void collect(int doc, long bucket) throws IOException {
+                assert bucket == 0;
+                if (visitKeys(values, doc, null)) {
+                    // the deferring collector only records the document at this point
+                    sub.collect(doc, 0);
+                }
+            }
+        };
+    }
+
+    /**
+     * Visits all composite keys of a document, which are all combinations of its source values. Returns whether one
+     * of these keys was collected, or replayed into <code>replay</code> if it is not null.
+     */
+    private boolean visitKeys(CompositeValuesSource.LeafValues[] values, int doc, LeafBucketCollector replay) throws IOException {
+        for (CompositeValuesSource.LeafValues sourceValues : values) {
+            sourceValues.setDocument(doc);
+            if (sourceValues.count() == 0) {
+                // documents are only bucketed if all sources have a value
+                return false;
+            }
+        }
+        return visitKeys(values, 0, new Comparable[values.length], doc, replay);
+    }
+
+    private boolean visitKeys(CompositeValuesSource.LeafValues[] values, int source, Comparable[] key, int doc,
+            LeafBucketCollector replay) throws IOException {
+        if (source == values.length) {
+            final CompositeKey compositeKey = new CompositeKey(key.clone());
+            if (replay == null) {
+                return collectKey(compositeKey);
+            }
+            final Integer slot = slots.get(compositeKey);
+            if (slot == null) {
+                return false;
+            }
+            replay.collect(doc, slot);
+            return true;
+        }
+        boolean visited = false;
+        for (int i = 0; i < values[source].count(); i++) {
+            key[source] = values[source].valueAt(i);
+            visited |= visitKeys(values, source + 1, key, doc, replay);
+        }
+        return visited;
+    }
+
+    /**
+     * Counts the key if it is among the <code>size</code> smallest keys seen so far and returns whether it was counted.
+     */
+    private boolean collectKey(CompositeKey key) {
+        if (afterKey != null && comparator.compare(key, afterKey) <= 0) {
+            return false;
+        }
+        Integer slot = slots.get(key);
+        if (slot == null) {
+            if (slots.size() < size) {
+                slot = slots.size();
+            } else {
+                final CompositeKey largest = slots.lastKey();
+                if (comparator.compare(key, largest) >= 0) {
+                    return false;
+                }
+                slot = slots.remove(largest);
+                getDocCounts().set(slot, 0);
+            }
+            slots.put(key.deepCopy(), slot);
+        }
+        incrementBucketDocCount(slot, 1);
+        return true;
+    }
+
+    @Override
+    public InternalAggregation buildAggregation(long owningBucketOrdinal) throws IOException {
+        assert owningBucketOrdinal == 0 : "composite aggregator can only be a top level aggregator";
+        // buckets are now final, replay the recorded documents into sub aggregations
+        runDeferredCollections();
+        List<InternalComposite.Bucket> buckets = new ArrayList<>(slots.size());
+        for (Map.Entry<CompositeKey, Integer> entry : slots.entrySet()) {
+            final int slot = entry.getValue();
+            buckets.add(new InternalComposite.Bucket(entry.getKey(), bucketDocCount(slot), bucketAggregations(slot), sourceNames));
+        }
+        return new InternalComposite(name, size, sourceNames, reverseMuls, buckets, reducers(), metaData());
+    }
+
+    @Override
+    public InternalAggregation buildEmptyAggregation() {
+        return new InternalComposite(name, size, sourceNames, reverseMuls, Collections.<InternalComposite.Bucket>emptyList(),
+                reducers(), metaData());
+    }
+
+    /**
+     * Records the documents that were collected in at least one bucket and replays them into the deferred sub aggregations
+     * once the buckets are final.
+     */
+    private class ReplayingCollector extends DeferringBucketCollector {
+
+        private final List<LeafReaderContext> contexts = new ArrayList<>();
+        private final List<PackedLongValues> docDeltas = new ArrayList<>();
+        private BucketCollector collector;
+        private LeafReaderContext context;
+        private PackedLongValues.Builder docDeltasBuilder;
+
+        @Override
+        public void setDeferredCollector(Iterable<BucketCollector> deferredCollectors) {
+            this.collector = BucketCollector.wrap(deferredCollectors);
+        }
+
+        @Override
+        public boolean needsScores() {
+            if (collector == null) {
+                throw new IllegalStateException();
+            }
+            return collector.needsScores();
+        }
+
+        private void finishLeaf() {
+            if (context != null) {
+                contexts.add(context);
+                docDeltas.add(docDeltasBuilder.build());
+            }
+            context = null;
+            docDeltasBuilder = null;
+        }
+
+        @Override
+        public LeafBucketCollector getLeafCollector(LeafReaderContext ctx) throws IOException {
+            finishLeaf();
+            context = ctx;
+            docDeltasBuilder = PackedLongValues.packedBuilder(PackedInts.DEFAULT);
+            return new LeafBucketCollector() {
+                int lastDoc = 0;
+
+                @Override
+                public void collect(int doc, long bucket) throws IOException {
+                    docDeltasBuilder.add(doc - lastDoc);
+                    lastDoc = doc;
+                }
+            };
+        }
+
+        @Override
+        public void preCollection() throws IOException {
+        }
+
+        @Override
+        public void postCollection() throws IOException {
+            finishLeaf();
+        }
+
+        @Override
+        public void prepareSelectedBuckets(long... selectedBuckets) throws IOException {
+            collector.preCollection();
+            if (collector.needsScores()) {
+                throw new IllegalStateException("Cannot defer if scores are needed");
+            }
+            for (int i = 0; i < contexts.size(); i++) {
+                final LeafReaderContext ctx = contexts.get(i);
+                final CompositeValuesSource.LeafValues[] values = leafValues(ctx);
+                final LeafBucketCollector leafCollector = collector.getLeafCollector(ctx);
+                leafCollector.setScorer(Lucene.illegalScorer("Sub aggregations of a composite aggregation cannot access scores"));
+                final PackedLongValues.Iterator docDeltaIterator = docDeltas.get(i).iterator();
+                int doc = 0;
+                for (long j = 0, end = docDeltas.get(i).size(); j < end; ++j) {
+                    doc += docDeltaIterator.next();
+                    visitKeys(values, doc, leafCollector);
+                }
+            }
+            collector.postCollection();
+        }
+    }
+
+    public static class Factory extends AggregatorFactory {
+
+        private final int size;
+        private final List<CompositeValuesSource> sources;
+        private final Map<String, Object> after;
+
+        public Factory(String name, int size, List<CompositeValuesSource> sources, Map<String, Object> after) {
+            super(name, InternalComposite.TYPE.name());
+            this.size = size;
+            this.sources = sources;
+            this.after = after;
+        }
+
+        @Override
+        public Aggregator createInternal(AggregationContext context, Aggregator parent, boolean collectsFromSingleBucket,
+                List<Reducer> reducers, Map<String, Object> metaData) throws IOException {
+            if (parent != null) {
+                throw new AggregationExecutionException("Aggregation [" + parent.name() + "] cannot have a composite " +
+                        "sub-aggregation [" + name + "]. Composite aggregations can only be defined as top level aggregations");
+            }
+            final ValuesSource[] valuesSources = new ValuesSource[sources.size()];
+            final Comparable[] afterValues = after == null ? null : new Comparable[sources.size()];
+            for (int i = 0; i < sources.size(); i++) {
+                final CompositeValuesSource source = sources.get(i);
+                valuesSources[i] = context.valuesSource(source.config, context.searchContext());
+                if (valuesSources[i] instanceof ValuesSource.GeoPoint) {
+                    throw new AggregationExecutionException("Source [" + source.name + "] of composite aggregation [" + name
+                            + "] cannot use geo_point values");
+                }
+                if (source.rounding != null && valuesSources[i] != null && (valuesSources[i] instanceof ValuesSource.Numeric == false
+                        || ((ValuesSource.Numeric) valuesSources[i]).isFloatingPoint())) {
+                    throw new AggregationExecutionException("Source [" + source.name + "] of composite aggregation [" + name
+                            + "] is a date_histogram source and needs date or integer values");
+                }
+                if (after != null) {
+                    final Object afterValue = after.get(source.name);
+                    if (afterValue == null) {
+                        throw new AggregationExecutionException("Missing value for source [" + source.name + "] in [after] of composite aggregation ["
+                                + name + "]");
+                    }
+                    if (valuesSources[i] != null) {
+                        afterValues[i] = CompositeValuesSource.parseAfterValue(valuesSources[i], afterValue);
+                    }
+                }
+            }
+            final CompositeKey afterKey = afterValues == null ? null : new CompositeKey(afterValues);
+            return new CompositeAggregator(name, factories, size, sources, valuesSources, afterKey, context, parent, reducers, metaData);
+        }
+    }
+}
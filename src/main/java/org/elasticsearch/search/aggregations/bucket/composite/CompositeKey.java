@@ -0,0 +1,178 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.composite;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.search.aggregations.AggregationExecutionException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of the sources of a {@link Composite} bucket. A value is either a {@link Long}, a {@link Double} or a
+ * {@link BytesRef}.
+ */
+final class CompositeKey {
+
+    private static final byte LONG = 0;
+    private static final byte DOUBLE = 1;
+    private static final byte BYTES = 2;
+
+    private final Comparable[] values;
+
+    CompositeKey(Comparable... values) {
+        this.values = values;
+    }
+
+    int size() {
+        return values.length;
+    }
+
+    Comparable get(int source) {
+        return values[source];
+    }
+
+    /**
+     * Returns a copy of this key that doesn't share bytes with the doc values it was read from.
+     */
+    CompositeKey deepCopy() {
+        Comparable[] copy = new Comparable[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] instanceof BytesRef) {
+                copy[i] = BytesRef.deepCopyOf((BytesRef) values[i]);
+            } else {
+                copy[i] = values[i];
+            }
+        }
+        return new CompositeKey(copy);
+    }
+
+    /**
+     * Returns the values of this key keyed by source name, with {@link BytesRef}s converted to strings.
+     */
+    Map<String, Object> asMap(List<String> sourceNames) {
+        assert sourceNames.size() == values.length;
+        Map<String, Object> map = new LinkedHashMap<>(values.length);
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value instanceof BytesRef) {
+                value = ((BytesRef) value).utf8ToString();
+            }
+            map.put(sourceNames.get(i), value);
+        }
+        return map;
+    }
+
+    static CompositeKey readFrom(StreamInput in) throws IOException {
+        Comparable[] values = new Comparable[in.readVInt()];
+        for (int i = 0; i < values.length; i++) {
+            byte type = in.readByte();
+            switch (type) {
+                case LONG:
+                    values[i] = in.readLong();
+                    break;
+                case DOUBLE:
+                    values[i] = in.readDouble();
+                    break;
+                case BYTES:
+                    values[i] = in.readBytesRef();
+                    break;
+                default:
+                    throw new IOException("Unknown composite key value type [" + type + "]");
+            }
+        }
+        return new CompositeKey(values);
+    }
+
+    void writeTo(StreamOutput out) throws IOException {
+        out.writeVInt(values.length);
+        for (Comparable value : values) {
+            if (value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) value);
+            } else {
+                out.writeByte(BYTES);
+                out.writeBytesRef((BytesRef) value);
+            }
+        }
+    }
+
+    /**
+     * Returns a comparator of composite keys that sorts each source in ascending order if its <code>reverseMul</code>
+     * is 1 and in descending order if it is -1. Sources are compared in order.
+     */
+    static Comparator<CompositeKey> comparator(final int[] reverseMuls) {
+        return new Comparator<CompositeKey>() {
+            @Override
+            public int compare(CompositeKey k1, CompositeKey k2) {
+                assert k1.values.length == reverseMuls.length && k2.values.length == reverseMuls.length;
+                for (int i = 0; i < reverseMuls.length; i++) {
+                    int cmp = compareValues(k1.values[i], k2.values[i]);
+                    if (cmp != 0) {
+                        return cmp * reverseMuls[i];
+                    }
+                }
+                return 0;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Comparable v1, Comparable v2) {
+        if (v1.getClass() == v2.getClass()) {
+            return v1.compareTo(v2);
+        }
+        // the same source may be a long field in an index and a double field in another
+        if (v1 instanceof Number && v2 instanceof Number) {
+            return Double.compare(((Number) v1).doubleValue(), ((Number) v2).doubleValue());
+        }
+        throw new AggregationExecutionException("Cannot compare composite key values of different types [" + v1 + "] and [" + v2 + "]");
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        return Arrays.equals(values, ((CompositeKey) obj).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(values);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.composite;
+
+import org.elasticsearch.common.rounding.Rounding;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.search.SearchParseException;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactory;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramParser;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
+import org.elasticsearch.search.aggregations.support.ValuesSourceParser;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parses the composite aggregation request:
+ * <pre>
+ *     "composite" : {
+ *         "size" : 10,
+ *         "sources" : [
+ *             { "product" : { "terms" : { "field" : "product" } } },
+ *             { "shop" : { "terms" : { "field" : "shop", "order" : "desc" } } },
+ *             { "day" : { "date_histogram" : { "field" : "timestamp", "interval" : "day" } } }
+ *         ],
+ *         "after" : { "product" : "p1", "shop" : "s7", "day" : 1420070400000 }
+ *     }
+ * </pre>
+ */
+public class CompositeParser implements Aggregator.Parser {
+
+    public static final int DEFAULT_SIZE = 10;
+
+    @Override
+    public String type() {
+        return InternalComposite.TYPE.name();
+    }
+
+    @Override
+    public AggregatorFactory parse(String aggregationName, XContentParser parser, SearchContext context) throws IOException {
+
+        int size = DEFAULT_SIZE;
+        List<CompositeValuesSource> sources = null;
+        Map<String, Object> after = null;
+
+        XContentParser.Token token;
+        String currentFieldName = null;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+            if (token == XContentParser.Token.FIELD_NAME) {
+                currentFieldName = parser.currentName();
+            } else if (token == XContentParser.Token.VALUE_NUMBER) {
+                if ("size".equals(currentFieldName)) {
+                    size = parser.intValue();
+                } else {
+                    throw new SearchParseException(context, "Unknown key for a " + token + " in [" + aggregationName + "]: ["
+                            + currentFieldName + "].", parser.getTokenLocation());
+                }
+            } else if (token == XContentParser.Token.START_ARRAY) {
+                if ("sources".equals(currentFieldName)) {
+                    sources = parseSources(aggregationName, parser, context);
+                } else {
+                    throw new SearchParseException(context, "Unknown key for a " + token + " in [" + aggregationName + "]: ["
+                            + currentFieldName + "].", parser.getTokenLocation());
+                }
+            } else if (token == XContentParser.Token.START_OBJECT) {
+                if ("after".equals(currentFieldName)) {
+                    after = parser.map();
+                } else {
+                    throw new SearchParseException(context, "Unknown key for a " + token + " in [" + aggregationName + "]: ["
+                            + currentFieldName + "].", parser.getTokenLocation());
+                }
+            } else {
+                throw new SearchParseException(context, "Unknown key for a " + token + " in [" + aggregationName + "]: ["
+                        + currentFieldName + "].", parser.getTokenLocation());
+            }
+        }
+
+        if (sources == null || sources.isEmpty()) {
+            throw new SearchParseException(context, "Missing [sources] in composite aggregation [" + aggregationName + "]",
+                    parser.getTokenLocation());
+        }
+        if (size <= 0) {
+            throw new SearchParseException(context, "[size] must be greater than 0 in composite aggregation [" + aggregationName + "]",
+                    parser.getTokenLocation());
+        }
+        return new CompositeAggregator.Factory(aggregationName, size, sources, after);
+    }
+
+    private List<CompositeValuesSource> parseSources(String aggregationName, XContentParser parser, SearchContext context)
+            throws IOException {
+        List<CompositeValuesSource> sources = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        XContentParser.Token token;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
+            if (token != XContentParser.Token.START_OBJECT || parser.nextToken() != XContentParser.Token.FIELD_NAME) {
+                throw new SearchParseException(context, "Expected a named source in [sources] of composite aggregation ["
+                        + aggregationName + "]", parser.getTokenLocation());
+            }
+            String name = parser.currentName();
+            if (names.add(name) == false) {
+                throw new SearchParseException(context, "Duplicate source [" + name + "] in composite aggregation ["
+                        + aggregationName + "]", parser.getTokenLocation());
+            }
+            if (parser.nextToken() != XContentParser.Token.START_OBJECT || parser.nextToken() != XContentParser.Token.FIELD_NAME) {
+                throw new SearchParseException(context, "Expected a source type for source [" + name + "] of composite aggregation ["
+                        + aggregationName + "]", parser.getTokenLocation());
+            }
+            String type = parser.currentName();
+            if (("terms".equals(type) == false && "date_histogram".equals(type) == false)
+                    || parser.nextToken() != XContentParser.Token.START_OBJECT) {
+                throw new SearchParseException(context, "Unknown source type [" + type + "] for source [" + name
+                        + "] of composite aggregation [" + aggregationName + "]", parser.getTokenLocation());
+            }
+            sources.add(parseSource(aggregationName, name, "date_histogram".equals(type), parser, context));
+            // close the source and the array element
+            if (parser.nextToken() != XContentParser.Token.END_OBJECT || parser.nextToken() != XContentParser.Token.END_OBJECT) {
+                throw new SearchParseException(context, "Expected a single source type for source [" + name
+                        + "] of composite aggregation [" + aggregationName + "]", parser.getTokenLocation());
+            }
+        }
+        return sources;
+    }
+
+    private CompositeValuesSource parseSource(String aggregationName, String name, boolean dateHistogram, XContentParser parser,
+            SearchContext context) throws IOException {
+        ValuesSourceParser vsParser = ValuesSourceParser.any(aggregationName, InternalComposite.TYPE, context).scriptable(true).build();
+        int reverseMul = 1;
+        String interval = null;
+        XContentParser.Token token;
+        String currentFieldName = null;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+            if (token == XContentParser.Token.FIELD_NAME) {
+                currentFieldName = parser.currentName();
+            } else if (vsParser.token(currentFieldName, token, parser)) {
+                continue;
+            } else if (dateHistogram && token == XContentParser.Token.VALUE_STRING && "interval".equals(currentFieldName)) {
+                interval = parser.text();
+            } else if (token == XContentParser.Token.VALUE_STRING && "order".equals(currentFieldName)) {
+                String order = parser.text();
+                if ("asc".equals(order)) {
+                    reverseMul = 1;
+                } else if ("desc".equals(order)) {
+                    reverseMul = -1;
+                } else {
+                    throw new SearchParseException(context, "Unknown order [" + order + "] for source [" + name
+                            + "] of composite aggregation [" + aggregationName + "], expected [asc] or [desc]", parser.getTokenLocation());
+                }
+            } else {
+                throw new SearchParseException(context, "Unknown key for a " + token + " in source [" + name
+                        + "] of composite aggregation [" + aggregationName + "]: [" + currentFieldName + "].", parser.getTokenLocation());
+            }
+        }
+        ValuesSourceConfig<ValuesSource> config = vsParser.config();
+        if (config.valid() == false) {
+            throw new SearchParseException(context, "Missing [field] or [script] for source [" + name + "] of composite aggregation ["
+                    + aggregationName + "]", parser.getTokenLocation());
+        }
+        Rounding rounding = null;
+        if (dateHistogram) {
+            if (interval == null) {
+                throw new SearchParseException(context, "Missing [interval] for date_histogram source [" + name
+                        + "] of composite aggregation [" + aggregationName + "]", parser.getTokenLocation());
+            }
+            rounding = DateHistogramParser.roundingBuilder(interval).build();
+        }
+        return new CompositeValuesSource(name, config, reverseMul, rounding);
+    }
+
+}
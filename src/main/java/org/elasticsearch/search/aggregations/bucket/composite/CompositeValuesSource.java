@@ -0,0 +1,221 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.composite;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.rounding.Rounding;
+import org.elasticsearch.index.fielddata.SortedBinaryDocValues;
+import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
+import org.elasticsearch.search.aggregations.AggregationExecutionException;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
+
+import java.io.IOException;
+
+/**
+ * A source of a {@link Composite} aggregation: a field or script whose values form one dimension of the composite keys.
+ * Sources that have a {@link Rounding} bucket their values by date, like a <code>date_histogram</code> aggregation.
+ */
+class CompositeValuesSource {
+
+    final String name;
+    final ValuesSourceConfig<ValuesSource> config;
+    /** 1 if values of this source are sorted in ascending order, -1 if they are sorted in descending order. */
+    final int reverseMul;
+    final @Nullable Rounding rounding;
+
+    CompositeValuesSource(String name, ValuesSourceConfig<ValuesSource> config, int reverseMul, @Nullable Rounding rounding) {
+        this.name = name;
+        this.config = config;
+        this.reverseMul = reverseMul;
+        this.rounding = rounding;
+    }
+
+    /**
+     * Converts a value of the <code>after</code> key of a request to the type of the values of this source.
+     */
+    static Comparable parseAfterValue(ValuesSource valuesSource, Object value) {
+        if (valuesSource instanceof ValuesSource.Numeric) {
+            boolean floatingPoint = ((ValuesSource.Numeric) valuesSource).isFloatingPoint();
+            try {
+                if (value instanceof Number) {
+                    return floatingPoint ? (Comparable) ((Number) value).doubleValue() : (Comparable) ((Number) value).longValue();
+                }
+                return floatingPoint ? (Comparable) Double.parseDouble(value.toString()) : (Comparable) Long.parseLong(value.toString());
+            } catch (NumberFormatException e) {
+                throw new AggregationExecutionException("Expected a numeric value in [after] but got [" + value + "]", e);
+            }
+        }
+        return new BytesRef(value.toString());
+    }
+
+    /**
+     * Returns the distinct values of the given source for the documents of a segment, rounded with the given rounding if
+     * it is not <code>null</code>.
+     */
+    static LeafValues leafValues(ValuesSource valuesSource, @Nullable Rounding rounding, LeafReaderContext context) throws IOException {
+        if (rounding != null) {
+            assert valuesSource instanceof ValuesSource.Numeric && ((ValuesSource.Numeric) valuesSource).isFloatingPoint() == false;
+            return new LongLeafValues(((ValuesSource.Numeric) valuesSource).longValues(context), rounding);
+        }
+        if (valuesSource instanceof ValuesSource.Numeric) {
+            ValuesSource.Numeric numeric = (ValuesSource.Numeric) valuesSource;
+            if (numeric.isFloatingPoint()) {
+                return new DoubleLeafValues(numeric.doubleValues(context));
+            } else {
+                return new LongLeafValues(numeric.longValues(context), null);
+            }
+        } else if (valuesSource instanceof ValuesSource.Bytes) {
+            return new BytesLeafValues(valuesSource.bytesValues(context));
+        }
+        throw new AggregationExecutionException("Composite aggregation sources do not support values of type ["
+                + valuesSource.getClass().getSimpleName() + "]");
+    }
+
+    /**
+     * The distinct values of the current document, in ascending order.
+     */
+    static abstract class LeafValues {
+
+        abstract void setDocument(int doc);
+
+        abstract int count();
+
+        abstract Comparable valueAt(int index);
+    }
+
+    private static final class LongLeafValues extends LeafValues {
+
+        private final SortedNumericDocValues values;
+        private final Rounding rounding;
+        private long[] distinct = new long[1];
+        private int count;
+
+        LongLeafValues(SortedNumericDocValues values, @Nullable Rounding rounding) {
+            this.values = values;
+            this.rounding = rounding;
+        }
+
+        @Override
+        void setDocument(int doc) {
+            values.setDocument(doc);
+            distinct = ArrayUtil.grow(distinct, values.count());
+            count = 0;
+            for (int i = 0; i < values.count(); i++) {
+                // roundings are monotonic, so rounded values are still sorted
+                long value = rounding == null ? values.valueAt(i) : rounding.round(values.valueAt(i));
+                if (count == 0 || distinct[count - 1] != value) {
+                    distinct[count++] = value;
+                }
+            }
+        }
+
+        @Override
+        int count() {
+            return count;
+        }
+
+        @Override
+        Comparable valueAt(int index) {
+            return distinct[index];
+        }
+    }
+
+    private static final class DoubleLeafValues extends LeafValues {
+
+        private final SortedNumericDoubleValues values;
+        private double[] distinct = new double[1];
+        private int count;
+
+        DoubleLeafValues(SortedNumericDoubleValues values) {
+            this.values = values;
+        }
+
+        @Override
+        void setDocument(int doc) {
+            values.setDocument(doc);
+            distinct = ArrayUtil.grow(distinct, values.count());
+            count = 0;
+            for (int i = 0; i < values.count(); i++) {
+                double value = values.valueAt(i);
+                if (count == 0 || Double.compare(distinct[count - 1], value) != 0) {
+                    distinct[count++] = value;
+                }
+            }
+        }
+
+        @Override
+        int count() {
+            return count;
+        }
+
+        @Override
+        Comparable valueAt(int index) {
+            return distinct[index];
+        }
+    }
+
+    private static final class BytesLeafValues extends LeafValues {
+
+        private final SortedBinaryDocValues values;
+        // doc values may reuse the same BytesRef across calls to valueAt, so distinct values are copied
+        private BytesRefBuilder[] distinct = new BytesRefBuilder[0];
+        private int count;
+
+        BytesLeafValues(SortedBinaryDocValues values) {
+            this.values = values;
+        }
+
+        @Override
+        void setDocument(int doc) {
+            values.setDocument(doc);
+            if (distinct.length < values.count()) {
+                BytesRefBuilder[] grown = new BytesRefBuilder[ArrayUtil.oversize(values.count(), 1)];
+                System.arraycopy(distinct, 0, grown, 0, distinct.length);
+                for (int i = distinct.length; i < grown.length; i++) {
+                    grown[i] = new BytesRefBuilder();
+                }
+                distinct = grown;
+            }
+            count = 0;
+            for (int i = 0; i < values.count(); i++) {
+                BytesRef value = values.valueAt(i);
+                if (count == 0 || distinct[count - 1].get().equals(value) == false) {
+                    distinct[count++].copyBytes(value);
+                }
+            }
+        }
+
+        @Override
+        int count() {
+            return count;
+        }
+
+        @Override
+        Comparable valueAt(int index) {
+            return distinct[index].get();
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.composite;
+
+import com.google.common.collect.Lists;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentBuilderString;
+import org.elasticsearch.search.aggregations.AggregationStreams;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.InternalMultiBucketAggregation;
+import org.elasticsearch.search.aggregations.bucket.BucketStreamContext;
+import org.elasticsearch.search.aggregations.bucket.BucketStreams;
+import org.elasticsearch.search.aggregations.reducers.Reducer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ *
+ */
+public class InternalComposite extends InternalMultiBucketAggregation<InternalComposite, InternalComposite.Bucket> implements Composite {
+
+    public final static Type TYPE = new Type("composite");
+
+    private static final XContentBuilderString AFTER_KEY = new XContentBuilderString("after_key");
+    private static final String SOURCE_NAMES = "source_names";
+
+    private final static AggregationStreams.Stream STREAM = new AggregationStreams.Stream() {
+        @Override
+        public InternalComposite readResult(StreamInput in) throws IOException {
+            InternalComposite composite = new InternalComposite();
+            composite.readFrom(in);
+            return composite;
+        }
+    };
+
+    private final static BucketStreams.Stream<Bucket> BUCKET_STREAM = new BucketStreams.Stream<Bucket>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public Bucket readResult(StreamInput in, BucketStreamContext context) throws IOException {
+            Bucket bucket = new Bucket((List<String>) context.attributes().get(SOURCE_NAMES));
+            bucket.readFrom(in);
+            return bucket;
+        }
+
+        @Override
+        public BucketStreamContext getBucketStreamContext(Bucket bucket) {
+            BucketStreamContext context = new BucketStreamContext();
+            context.attributes(Collections.<String, Object>singletonMap(SOURCE_NAMES, bucket.sourceNames));
+            return context;
+        }
+    };
+
+    public static void registerStream() {
+        AggregationStreams.registerStream(STREAM, TYPE.stream());
+        BucketStreams.registerStream(BUCKET_STREAM, TYPE.stream());
+    }
+
+    public static class Bucket extends InternalMultiBucketAggregation.InternalBucket implements Composite.Bucket {
+
+        private final List<String> sourceNames;
+        private CompositeKey key;
+        private long docCount;
+        InternalAggregations aggregations;
+
+        private Bucket(List<String> sourceNames) {
+            // for serialization
+            this.sourceNames = sourceNames;
+        }
+
+        Bucket(CompositeKey key, long docCount, InternalAggregations aggregations, List<String> sourceNames) {
+            this.key = key;
+            this.docCount = docCount;
+            this.aggregations = aggregations;
+            this.sourceNames = sourceNames;
+        }
+
+        @Override
+        public Map<String, Object> getKey() {
+            return key.asMap(sourceNames);
+        }
+
+        @Override
+        public String getKeyAsString() {
+            return getKey().toString();
+        }
+
+        @Override
+        public long getDocCount() {
+            return docCount;
+        }
+
+        @Override
+        public Aggregations getAggregations() {
+            return aggregations;
+        }
+
+        Bucket reduce(List<Bucket> buckets, ReduceContext context) {
+            long docCount = 0;
+            List<InternalAggregations> aggregationsList = Lists.newArrayListWithCapacity(buckets.size());
+            for (Bucket bucket : buckets) {
+                docCount += bucket.docCount;
+                aggregationsList.add(bucket.aggregations);
+            }
+            return new Bucket(key, docCount, InternalAggregations.reduce(aggregationsList, context), sourceNames);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            builder.field(CommonFields.KEY, getKey());
+            builder.field(CommonFields.DOC_COUNT, docCount);
+            aggregations.toXContentInternal(builder, params);
+            builder.endObject();
+            return builder;
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            key = CompositeKey.readFrom(in);
+            docCount = in.readVLong();
+            aggregations = InternalAggregations.readAggregations(in);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            key.writeTo(out);
+            out.writeVLong(docCount);
+            aggregations.writeTo(out);
+        }
+    }
+
+    private int size;
+    private List<String> sourceNames;
+    private int[] reverseMuls;
+    private List<Bucket> buckets;
+
+    InternalComposite() {} // for serialization
+
+    InternalComposite(String name, int size, List<String> sourceNames, int[] reverseMuls, List<Bucket> buckets,
+            List<Reducer> reducers, Map<String, Object> metaData) {
+        super(name, reducers, metaData);
+        this.size = size;
+        this.sourceNames = sourceNames;
+        this.reverseMuls = reverseMuls;
+        this.buckets = buckets;
+    }
+
+    @Override
+    public Type type() {
+        return TYPE;
+    }
+
+    @Override
+    public InternalComposite create(List<Bucket> buckets) {
+        return new InternalComposite(name, size, sourceNames, reverseMuls, buckets, reducers(), metaData);
+    }
+
+    @Override
+    public Bucket createBucket(InternalAggregations aggregations, Bucket prototype) {
+        return new Bucket(prototype.key, prototype.docCount, aggregations, prototype.sourceNames);
+    }
+
+    @Override
+    public List<Bucket> getBuckets() {
+        return buckets;
+    }
+
+    @Override
+    public Map<String, Object> afterKey() {
+        if (buckets.isEmpty()) {
+            return null;
+        }
+        return buckets.get(buckets.size() - 1).getKey();
+    }
+
+    @Override
+    public InternalAggregation doReduce(List<InternalAggregation> aggregations, ReduceContext reduceContext) {
+        // each shard returns its smallest keys, so the smallest keys overall are among them
+        TreeMap<CompositeKey, List<Bucket>> bucketsByKey = new TreeMap<>(CompositeKey.comparator(reverseMuls));
+        for (InternalAggregation aggregation : aggregations) {
+            InternalComposite composite = (InternalComposite) aggregation;
+            for (Bucket bucket : composite.buckets) {
+                List<Bucket> sameKeyList = bucketsByKey.get(bucket.key);
+                if (sameKeyList == null) {
+                    sameKeyList = new ArrayList<>(aggregations.size());
+                    bucketsByKey.put(bucket.key, sameKeyList);
+                }
+                sameKeyList.add(bucket);
+            }
+        }
+
+        List<Bucket> reducedBuckets = new ArrayList<>(Math.min(size, bucketsByKey.size()));
+        for (List<Bucket> sameKeyList : bucketsByKey.values()) {
+            if (reducedBuckets.size() == size) {
+                break;
+            }
+            reducedBuckets.add(sameKeyList.get(0).reduce(sameKeyList, reduceContext));
+        }
+        return new InternalComposite(name, size, sourceNames, reverseMuls, reducedBuckets, reducers(), getMetaData());
+    }
+
+    @Override
+    protected void doReadFrom(StreamInput in) throws IOException {
+        size = in.readVInt();
+        int numSources = in.readVInt();
+        sourceNames = new ArrayList<>(numSources);
+        reverseMuls = new int[numSources];
+        for (int i = 0; i < numSources; i++) {
+            sourceNames.add(in.readString());
+            reverseMuls[i] = in.readBoolean() ? 1 : -1;
+        }
+        int numBuckets = in.readVInt();
+        List<Bucket> buckets = Lists.newArrayListWithCapacity(numBuckets);
+        for (int i = 0; i < numBuckets; i++) {
+            Bucket bucket = new Bucket(sourceNames);
+            bucket.readFrom(in);
+            buckets.add(bucket);
+        }
+        this.buckets = buckets;
+    }
+
+    @Override
+    protected void doWriteTo(StreamOutput out) throws IOException {
+        out.writeVInt(size);
+        out.writeVInt(sourceNames.size());
+        for (int i = 0; i < sourceNames.size(); i++) {
+            out.writeString(sourceNames.get(i));
+            out.writeBoolean(reverseMuls[i] == 1);
+        }
+        out.writeVInt(buckets.size());
+        for (Bucket bucket : buckets) {
+            bucket.writeTo(out);
+        }
+    }
+
+    @Override
+    public XContentBuilder doXContentBody(XContentBuilder builder, Params params) throws IOException {
+        Map<String, Object> afterKey = afterKey();
+        if (afterKey != null) {
+            builder.field(AFTER_KEY, afterKey);
+        }
+        builder.startArray(CommonFields.BUCKETS);
+        for (Bucket bucket : buckets) {
+            bucket.toXContent(builder, params);
+        }
+        builder.endArray();
+        return builder;
+    }
+
+}
@@ -26,6 +26,7 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.Bits;
 import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.lucene.search.Queries;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorFactories;
 import org.elasticsearch.search.aggregations.AggregatorFactory;
@@ -59,7 +60,9 @@ public class FiltersAggregator extends BucketsAggregator {
 
     private final String[] keys;
     private final Weight[] filters;
+    private final boolean[] matchAll;
     private final boolean keyed;
+    private final boolean filterByFilter;
 
     public FiltersAggregator(String name, AggregatorFactories factories, List<KeyedFilter> filters, boolean keyed, AggregationContext aggregationContext,
             Aggregator parent, List<Reducer> reducers, Map<String, Object> metaData)
@@ -68,16 +71,28 @@ public class FiltersAggregator extends BucketsAggregator {
         this.keyed = keyed;
         this.keys = new String[filters.size()];
         this.filters = new Weight[filters.size()];
+        this.matchAll = new boolean[filters.size()];
         for (int i = 0; i < filters.size(); ++i) {
             KeyedFilter keyedFilter = filters.get(i);
             this.keys[i] = keyedFilter.key;
             this.filters[i] = aggregationContext.searchContext().searcher().createNormalizedWeight(keyedFilter.filter, false);
+            this.matchAll[i] = Queries.isConstantMatchAllQuery(keyedFilter.filter);
         }
+        this.filterByFilter = canCollectFilterByFilter();
     }
 
     @Override
     public LeafBucketCollector getLeafCollector(LeafReaderContext ctx,
             final LeafBucketCollector sub) throws IOException {
+        if (filterByFilter) {
+            for (int i = 0; i < filters.length; ++i) {
+                final int count = matchAll[i] ? ctx.reader().numDocs() : countFilter(filters[i], ctx);
+                if (count > 0) {
+                    incrementBucketDocCount(bucketOrd(0, i), count);
+                }
+            }
+            return LeafBucketCollector.NO_OP_COLLECTOR;
+        }
         // no need to provide deleted docs to the filter
         final Bits[] bits = new Bits[filters.length];
         for (int i = 0; i < filters.length; ++i) {
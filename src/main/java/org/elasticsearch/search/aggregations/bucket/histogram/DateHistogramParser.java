@@ -30,6 +30,7 @@ import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.search.SearchParseException;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorFactory;
+import org.elasticsearch.search.aggregations.support.RollupFields;
 import org.elasticsearch.search.aggregations.support.ValueType;
 import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
 import org.elasticsearch.search.aggregations.support.ValuesSourceParser;
@@ -183,16 +184,9 @@ public class DateHistogramParser implements Aggregator.Parser {
                     "Missing required field [interval] for histogram aggregation [" + aggregationName + "]", parser.getTokenLocation());
         }
 
-        TimeZoneRounding.Builder tzRoundingBuilder;
-        DateTimeUnit dateTimeUnit = DATE_FIELD_UNITS.get(interval);
-        if (dateTimeUnit != null) {
-            tzRoundingBuilder = TimeZoneRounding.builder(dateTimeUnit);
-        } else {
-            // the interval is a time value?
-            tzRoundingBuilder = TimeZoneRounding.builder(TimeValue.parseTimeValue(interval, null));
-        }
+        RollupFields.checkDateHistogram(context, vsParser.unscriptedField(), interval, timeZone, offset);
 
-        Rounding rounding = tzRoundingBuilder
+        Rounding rounding = roundingBuilder(interval)
                 .timeZone(timeZone)
                 .offset(offset).build();
 
@@ -205,6 +199,18 @@ public class DateHistogramParser implements Aggregator.Parser {
 
     }
 
+    /**
+     * Returns a builder of the rounding of the given interval, which is either a unit of {@link #DATE_FIELD_UNITS} or a time value.
+     */
+    public static TimeZoneRounding.Builder roundingBuilder(String interval) {
+        DateTimeUnit dateTimeUnit = DATE_FIELD_UNITS.get(interval);
+        if (dateTimeUnit != null) {
+            return TimeZoneRounding.builder(dateTimeUnit);
+        }
+        // the interval is a time value?
+        return TimeZoneRounding.builder(TimeValue.parseTimeValue(interval, null));
+    }
+
     private static InternalOrder resolveOrder(String key, boolean asc) {
         if ("_key".equals(key) || "_time".equals(key)) {
             return (InternalOrder) (asc ? InternalOrder.KEY_ASC : InternalOrder.KEY_DESC);
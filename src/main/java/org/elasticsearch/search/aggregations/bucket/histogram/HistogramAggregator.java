@@ -18,13 +18,17 @@
  */
 package org.elasticsearch.search.aggregations.bucket.histogram;
 
+import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.Terms;
 import org.apache.lucene.util.CollectionUtil;
+import org.apache.lucene.util.NumericUtils;
 import org.elasticsearch.common.inject.internal.Nullable;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.rounding.Rounding;
 import org.elasticsearch.common.util.LongHash;
+import org.elasticsearch.index.mapper.core.DateFieldMapper;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorFactories;
 import org.elasticsearch.search.aggregations.InternalAggregation;
@@ -55,13 +59,14 @@ public class HistogramAggregator extends BucketsAggregator {
     private final long minDocCount;
     private final ExtendedBounds extendedBounds;
     private final InternalHistogram.Factory histogramFactory;
+    private final @Nullable SegmentBoundaries segmentBoundaries;
 
     private final LongHash bucketOrds;
 
     public HistogramAggregator(String name, AggregatorFactories factories, Rounding rounding, InternalOrder order,
                                boolean keyed, long minDocCount, @Nullable ExtendedBounds extendedBounds,
                                @Nullable ValuesSource.Numeric valuesSource, @Nullable ValueFormatter formatter,
-                               InternalHistogram.Factory<?> histogramFactory, AggregationContext aggregationContext,
+                               InternalHistogram.Factory<?> histogramFactory, @Nullable SegmentBoundaries segmentBoundaries, AggregationContext aggregationContext,
                                Aggregator parent, List<Reducer> reducers, Map<String, Object> metaData) throws IOException {
 
         super(name, factories, aggregationContext, parent, reducers, metaData);
@@ -73,6 +78,7 @@ public class HistogramAggregator extends BucketsAggregator {
         this.valuesSource = valuesSource;
         this.formatter = formatter;
         this.histogramFactory = histogramFactory;
+        this.segmentBoundaries = segmentBoundaries;
 
         bucketOrds = new LongHash(1, aggregationContext.bigArrays());
     }
@@ -83,23 +89,35 @@ public class HistogramAggregator extends BucketsAggregator {
     }
 
     @Override
-    public LeafBucketCollector getLeafCollector(LeafReaderContext ctx,
+    public LeafBucketCollector getLeafCollector(final LeafReaderContext ctx,
             final LeafBucketCollector sub) throws IOException {
         if (valuesSource == null) {
             return LeafBucketCollector.NO_OP_COLLECTOR;
         }
         final SortedNumericDocValues values = valuesSource.longValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
+
+            // boundaries are only looked up once the segment has a matching document, so that segments that collect
+            // nothing don't pay for them
+            private boolean boundariesResolved;
+            private RoundingBoundaries boundaries;
+
             @Override
             public void collect(int doc, long bucket) throws IOException {
                 assert bucket == 0;
+                if (boundariesResolved == false) {
+                    boundaries = segmentBoundaries == null ? null : segmentBoundaries.get(ctx);
+                    boundariesResolved = true;
+                }
                 values.setDocument(doc);
                 final int valuesCount = values.count();
 
                 long previousKey = Long.MIN_VALUE;
                 for (int i = 0; i < valuesCount; ++i) {
                     long value = values.valueAt(i);
-                    long key = rounding.roundKey(value);
+                    final int boundedBucket = boundaries == null ? -1 : boundaries.bucket(value);
+                    long key = boundedBucket >= 0 ? boundaries.key(boundedBucket) : rounding.roundKey(value);
+                    assert key == rounding.roundKey(value);
                     assert key >= previousKey;
                     if (key == previousKey) {
                         continue;
@@ -145,6 +163,47 @@ public class HistogramAggregator extends BucketsAggregator {
         Releasables.close(bucketOrds);
     }
 
+    /**
+     * The boundaries of the buckets that the values of a segment fall in, based on the minimum and maximum indexed values
+     * of the date field. Values that are out of these boundaries, eg. because of a missing value, are still rounded one by
+     * one. All aggregators of a factory share an instance: since they collect segments one after the other, the boundaries
+     * of a segment are only computed once, however many parent buckets there are.
+     */
+    static final class SegmentBoundaries {
+
+        private final Rounding rounding;
+        private final String indexedDateField;
+        private LeafReaderContext context;
+        private RoundingBoundaries boundaries;
+
+        SegmentBoundaries(Rounding rounding, String indexedDateField) {
+            this.rounding = rounding;
+            this.indexedDateField = indexedDateField;
+        }
+
+        /**
+         * Returns the boundaries of the given segment, or <code>null</code> if its values need to be rounded one by one.
+         */
+        RoundingBoundaries get(LeafReaderContext ctx) throws IOException {
+            if (ctx != context) {
+                boundaries = build(ctx);
+                context = ctx;
+            }
+            return boundaries;
+        }
+
+        private RoundingBoundaries build(LeafReaderContext ctx) throws IOException {
+            final Terms terms = ctx.reader().terms(indexedDateField);
+            if (terms == null) {
+                return null;
+            }
+            // a segment can't use more buckets than it has documents with a value, so don't compute more boundaries than that
+            final int docCount = terms.getDocCount();
+            final int maxBuckets = docCount < 0 ? RoundingBoundaries.MAX_BUCKETS : Math.min(docCount, RoundingBoundaries.MAX_BUCKETS);
+            return RoundingBoundaries.build(rounding, NumericUtils.getMinLong(terms), NumericUtils.getMaxLong(terms), maxBuckets);
+        }
+    }
+
     public static class Factory extends ValuesSourceAggregatorFactory<ValuesSource.Numeric> {
 
         private final Rounding rounding;
@@ -153,6 +212,9 @@ public class HistogramAggregator extends BucketsAggregator {
         private final long minDocCount;
         private final ExtendedBounds extendedBounds;
         private final InternalHistogram.Factory<?> histogramFactory;
+        // shared by the aggregators of all parent buckets, created with the first one
+        private SegmentBoundaries segmentBoundaries;
+        private boolean segmentBoundariesResolved;
 
         public Factory(String name, ValuesSourceConfig<ValuesSource.Numeric> config,
                        Rounding rounding, InternalOrder order, boolean keyed, long minDocCount,
@@ -175,7 +237,7 @@ public class HistogramAggregator extends BucketsAggregator {
         protected Aggregator createUnmapped(AggregationContext aggregationContext, Aggregator parent, List<Reducer> reducers,
                 Map<String, Object> metaData) throws IOException {
             return new HistogramAggregator(name, factories, rounding, order, keyed, minDocCount, null, null, config.formatter(),
-                    histogramFactory, aggregationContext, parent, reducers, metaData);
+                    histogramFactory, null, aggregationContext, parent, reducers, metaData);
         }
 
         @Override
@@ -193,8 +255,29 @@ public class HistogramAggregator extends BucketsAggregator {
                 extendedBounds.processAndValidate(name, aggregationContext.searchContext(), config.parser());
                 roundedBounds = extendedBounds.round(rounding);
             }
+            if (segmentBoundariesResolved == false) {
+                final String indexedDateField = indexedDateField();
+                segmentBoundaries = indexedDateField == null ? null : new SegmentBoundaries(rounding, indexedDateField);
+                segmentBoundariesResolved = true;
+            }
             return new HistogramAggregator(name, factories, rounding, order, keyed, minDocCount, roundedBounds, valuesSource,
-                    config.formatter(), histogramFactory, aggregationContext, parent, reducers, metaData);
+                    config.formatter(), histogramFactory, segmentBoundaries, aggregationContext, parent, reducers, metaData);
+        }
+
+        /**
+         * Returns the name of the indexed date field whose values are bucketed if the buckets of its values can be computed
+         * ahead of time from the range of values of each segment, or <code>null</code> otherwise. This saves calling time zone
+         * aware roundings for every value. Interval roundings are cheap enough and scripts may produce any value.
+         */
+        private String indexedDateField() {
+            if (rounding instanceof Rounding.Interval || config.script() != null || config.fieldContext() == null) {
+                return null;
+            }
+            if (config.fieldContext().mapper() instanceof DateFieldMapper == false) {
+                return null;
+            }
+            final DateFieldMapper mapper = (DateFieldMapper) config.fieldContext().mapper();
+            return mapper.fieldType().indexOptions() == IndexOptions.NONE ? null : mapper.names().indexName();
         }
 
     }
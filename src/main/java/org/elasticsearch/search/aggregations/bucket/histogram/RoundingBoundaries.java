@@ -0,0 +1,114 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.histogram;
+
+import org.elasticsearch.common.rounding.Rounding;
+
+import java.util.Arrays;
+
+/**
+ * The bucket boundaries of a {@link Rounding} over a known range of values, computed once so that values in this range
+ * can be bucketed with a binary search instead of calling the rounding for every value, which is costly for time zone
+ * aware roundings.
+ */
+final class RoundingBoundaries {
+
+    /** Above this number of buckets in a range, values are rounded one by one. */
+    static final int MAX_BUCKETS = 4096;
+
+    // bounds[i] is the first value of bucket i, bounds[bounds.length - 1] is the first value after the last bucket
+    private final long[] bounds;
+    private final long[] keys;
+
+    private RoundingBoundaries(long[] bounds, long[] keys) {
+        this.bounds = bounds;
+        this.keys = keys;
+    }
+
+    /**
+     * Same as {@link #build(Rounding, long, long, int)} with a maximum of {@link #MAX_BUCKETS} buckets.
+     */
+    static RoundingBoundaries build(Rounding rounding, long min, long max) {
+        return build(rounding, min, max, MAX_BUCKETS);
+    }
+
+    /**
+     * Computes the buckets that values between <code>min</code> and <code>max</code> (inclusive) fall in, or returns
+     * <code>null</code> if there are more than <code>maxBuckets</code> of them or if the rounding doesn't produce contiguous
+     * buckets over this range.
+     */
+    static RoundingBoundaries build(Rounding rounding, long min, long max, int maxBuckets) {
+        assert min <= max;
+        assert maxBuckets <= MAX_BUCKETS;
+        long[] bounds = new long[16];
+        int count = 0;
+        long bound = rounding.round(min);
+        while (true) {
+            if (count == bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            bounds[count++] = bound;
+            if (bound > max) {
+                break;
+            }
+            if (count > maxBuckets) {
+                return null;
+            }
+            final long next = rounding.nextRoundingValue(bound);
+            // roundings are monotonic, so if the first and last values of a bucket round to its start, so do all values in
+            // between. Buckets failing this check, as may happen around daylight saving time changes, disable boundaries.
+            if (next <= bound || rounding.round(next) != next || rounding.round(next - 1) != bound) {
+                return null;
+            }
+            bound = next;
+        }
+        bounds = Arrays.copyOf(bounds, count);
+        final long[] keys = new long[count - 1];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = rounding.roundKey(bounds[i]);
+        }
+        return new RoundingBoundaries(bounds, keys);
+    }
+
+    /**
+     * Returns the number of buckets.
+     */
+    int size() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the index of the bucket the value falls in, or <code>-1</code> if it is out of the range of these boundaries.
+     */
+    int bucket(long value) {
+        if (value < bounds[0] || value >= bounds[bounds.length - 1]) {
+            return -1;
+        }
+        final int index = Arrays.binarySearch(bounds, value);
+        return index >= 0 ? index : -2 - index;
+    }
+
+    /**
+     * Returns the rounding key of the bucket at the given index.
+     */
+    long key(int bucket) {
+        return keys[bucket];
+    }
+}
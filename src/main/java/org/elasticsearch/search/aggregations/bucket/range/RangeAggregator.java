@@ -20,10 +20,23 @@ package org.elasticsearch.search.aggregations.bucket.range;
 
 import com.google.common.collect.Lists;
 
+import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.InPlaceMergeSorter;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
+import org.elasticsearch.index.mapper.FieldMapper;
+import org.elasticsearch.index.mapper.core.ByteFieldMapper;
+import org.elasticsearch.index.mapper.core.DateFieldMapper;
+import org.elasticsearch.index.mapper.core.DoubleFieldMapper;
+import org.elasticsearch.index.mapper.core.IntegerFieldMapper;
+import org.elasticsearch.index.mapper.core.LongFieldMapper;
+import org.elasticsearch.index.mapper.core.NumberFieldMapper;
+import org.elasticsearch.index.mapper.core.ShortFieldMapper;
+import org.elasticsearch.index.mapper.ip.IpFieldMapper;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorBase;
 import org.elasticsearch.search.aggregations.AggregatorFactories;
@@ -97,6 +110,22 @@ public class RangeAggregator extends BucketsAggregator {
 
     final double[] maxTo;
 
+    // one filter per range if ranges are collected filter by filter, null otherwise
+    final @Nullable Weight[] rangeFilters;
+
+    public RangeAggregator(String name,
+                           AggregatorFactories factories,
+                           ValuesSource.Numeric valuesSource,
+                           @Nullable ValueFormat format,
+                           InternalRange.Factory rangeFactory,
+                           List<Range> ranges,
+                           boolean keyed,
+                           AggregationContext aggregationContext,
+                           Aggregator parent, List<Reducer> reducers,
+                           Map<String, Object> metaData) throws IOException {
+        this(name, factories, valuesSource, format, rangeFactory, ranges, keyed, null, aggregationContext, parent, reducers, metaData);
+    }
+
     public RangeAggregator(String name,
                            AggregatorFactories factories,
                            ValuesSource.Numeric valuesSource,
@@ -104,6 +133,7 @@ public class RangeAggregator extends BucketsAggregator {
                            InternalRange.Factory rangeFactory,
                            List<Range> ranges,
                            boolean keyed,
+                           @Nullable NumberFieldMapper<?> indexedField,
                            AggregationContext aggregationContext,
                            Aggregator parent, List<Reducer> reducers,
                            Map<String, Object> metaData) throws IOException {
@@ -128,6 +158,19 @@ public class RangeAggregator extends BucketsAggregator {
             maxTo[i] = Math.max(this.ranges[i].to,maxTo[i-1]);
         }
 
+        Weight[] rangeFilters = null;
+        if (indexedField != null && canCollectFilterByFilter()) {
+            rangeFilters = new Weight[this.ranges.length];
+            for (int i = 0; i < this.ranges.length; ++i) {
+                final Query query = rangeQuery(indexedField, this.ranges[i]);
+                if (query == null) {
+                    rangeFilters = null;
+                    break;
+                }
+                rangeFilters[i] = context.searchContext().searcher().createNormalizedWeight(query, false);
+            }
+        }
+        this.rangeFilters = rangeFilters;
     }
 
     @Override
@@ -138,6 +181,15 @@ public class RangeAggregator extends BucketsAggregator {
     @Override
     public LeafBucketCollector getLeafCollector(LeafReaderContext ctx,
             final LeafBucketCollector sub) throws IOException {
+        if (rangeFilters != null) {
+            for (int i = 0; i < rangeFilters.length; ++i) {
+                final int count = countFilter(rangeFilters[i], ctx);
+                if (count > 0) {
+                    incrementBucketDocCount(subBucketOrdinal(0, i), count);
+                }
+            }
+            return LeafBucketCollector.NO_OP_COLLECTOR;
+        }
         final SortedNumericDoubleValues values = valuesSource.doubleValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
             @Override
@@ -233,6 +285,48 @@ public class RangeAggregator extends BucketsAggregator {
         return rangeFactory.create(name, buckets, formatter, keyed, reducers(), metaData());
     }
 
+    /**
+     * Returns a query that matches documents that have a value in the given range, or <code>null</code> if the bounds
+     * of the range can't be translated exactly to the values indexed for the field.
+     */
+    private static Query rangeQuery(NumberFieldMapper<?> mapper, Range range) {
+        if (Double.isNaN(range.from) || Double.isNaN(range.to)
+                || range.from == Double.POSITIVE_INFINITY || range.to == Double.NEGATIVE_INFINITY) {
+            return null;
+        }
+        final String field = mapper.names().indexName();
+        final int precisionStep = mapper.precisionStep();
+        if (mapper instanceof DoubleFieldMapper) {
+            return NumericRangeQuery.newDoubleRange(field, precisionStep, finiteOrNull(range.from), finiteOrNull(range.to), true, false);
+        }
+        // integral values v are in the range if ceil(from) <= v < ceil(to), as long as the bounds are exact doubles
+        final Long from = integralBound(range.from);
+        final Long to = integralBound(range.to);
+        if ((Double.isInfinite(range.from) == false && from == null) || (Double.isInfinite(range.to) == false && to == null)) {
+            return null;
+        }
+        if (mapper instanceof IntegerFieldMapper || mapper instanceof ShortFieldMapper || mapper instanceof ByteFieldMapper) {
+            if ((from != null && from != from.intValue()) || (to != null && to != to.intValue())) {
+                return null;
+            }
+            return NumericRangeQuery.newIntRange(field, precisionStep, from == null ? null : from.intValue(),
+                    to == null ? null : to.intValue(), true, false);
+        }
+        return NumericRangeQuery.newLongRange(field, precisionStep, from, to, true, false);
+    }
+
+    private static Double finiteOrNull(double bound) {
+        return Double.isInfinite(bound) ? null : bound;
+    }
+
+    private static Long integralBound(double bound) {
+        // doubles represent all longs exactly up to 2^53
+        if (Double.isInfinite(bound) || Math.abs(bound) > (1L << 53)) {
+            return null;
+        }
+        return (long) Math.ceil(bound);
+    }
+
     private static final void sortRanges(final Range[] ranges) {
         new InPlaceMergeSorter() {
 
@@ -314,7 +408,29 @@ public class RangeAggregator extends BucketsAggregator {
         @Override
         protected Aggregator doCreateInternal(ValuesSource.Numeric valuesSource, AggregationContext aggregationContext, Aggregator parent,
                 boolean collectsFromSingleBucket, List<Reducer> reducers, Map<String, Object> metaData) throws IOException {
-            return new RangeAggregator(name, factories, valuesSource, config.format(), rangeFactory, ranges, keyed, aggregationContext, parent, reducers, metaData);
+            return new RangeAggregator(name, factories, valuesSource, config.format(), rangeFactory, ranges, keyed, indexedField(),
+                    aggregationContext, parent, reducers, metaData);
+        }
+
+        /**
+         * Returns the indexed numeric field whose values fall in the ranges, so that ranges can be run as queries, or
+         * <code>null</code> if the values come from a script, if documents without values are given a <code>missing</code>
+         * value or if ranges can't be translated to queries on the field.
+         */
+        private NumberFieldMapper<?> indexedField() {
+            if (config.script() != null || config.fieldContext() == null || config.missing() != null) {
+                return null;
+            }
+            final FieldMapper<?> mapper = config.fieldContext().mapper();
+            if (mapper.fieldType().indexOptions() == IndexOptions.NONE) {
+                return null;
+            }
+            if (mapper instanceof LongFieldMapper || mapper instanceof DateFieldMapper || mapper instanceof IpFieldMapper
+                    || mapper instanceof IntegerFieldMapper || mapper instanceof ShortFieldMapper || mapper instanceof ByteFieldMapper
+                    || mapper instanceof DoubleFieldMapper) {
+                return (NumberFieldMapper<?>) mapper;
+            }
+            return null;
         }
     }
 
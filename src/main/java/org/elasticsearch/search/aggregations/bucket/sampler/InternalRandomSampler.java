@@ -0,0 +1,119 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket.sampler;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentBuilderString;
+import org.elasticsearch.search.aggregations.AggregationStreams;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.bucket.InternalSingleBucketAggregation;
+import org.elasticsearch.search.aggregations.reducers.Reducer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of a {@link RandomSamplerAggregator}. The doc count of the bucket is scaled back up by the sampling
+ * probability while the doc count of the sample is kept so that shard results can be reduced exactly.
+ */
+public class InternalRandomSampler extends InternalSingleBucketAggregation implements RandomSampler {
+
+    public final static Type TYPE = new Type("random_sampler");
+
+    public final static AggregationStreams.Stream STREAM = new AggregationStreams.Stream() {
+        @Override
+        public InternalRandomSampler readResult(StreamInput in) throws IOException {
+            InternalRandomSampler result = new InternalRandomSampler();
+            result.readFrom(in);
+            return result;
+        }
+    };
+
+    public static void registerStreams() {
+        AggregationStreams.registerStream(STREAM, TYPE.stream());
+    }
+
+    static final class Fields {
+        public static final XContentBuilderString SAMPLED_DOC_COUNT = new XContentBuilderString("sampled_doc_count");
+        public static final XContentBuilderString PROBABILITY = new XContentBuilderString("probability");
+    }
+
+    private double probability;
+
+    InternalRandomSampler() {
+    } // for serialization
+
+    InternalRandomSampler(String name, long sampledDocCount, double probability, InternalAggregations subAggregations,
+            List<Reducer> reducers, Map<String, Object> metaData) {
+        super(name, sampledDocCount, subAggregations, reducers, metaData);
+        this.probability = probability;
+    }
+
+    @Override
+    public Type type() {
+        return TYPE;
+    }
+
+    @Override
+    public double getProbability() {
+        return probability;
+    }
+
+    @Override
+    public long getSampledDocCount() {
+        return super.getDocCount();
+    }
+
+    /**
+     * Return an estimate of the number of matching documents.
+     */
+    @Override
+    public long getDocCount() {
+        return Math.round(getSampledDocCount() / probability);
+    }
+
+    @Override
+    protected InternalSingleBucketAggregation newAggregation(String name, long docCount, InternalAggregations subAggregations) {
+        return new InternalRandomSampler(name, docCount, probability, subAggregations, reducers(), metaData);
+    }
+
+    @Override
+    protected void doReadFrom(StreamInput in) throws IOException {
+        super.doReadFrom(in);
+        probability = in.readDouble();
+    }
+
+    @Override
+    protected void doWriteTo(StreamOutput out) throws IOException {
+        super.doWriteTo(out);
+        out.writeDouble(probability);
+    }
+
+    @Override
+    public XContentBuilder doXContentBody(XContentBuilder builder, Params params) throws IOException {
+        builder.field(CommonFields.DOC_COUNT, getDocCount());
+        builder.field(Fields.SAMPLED_DOC_COUNT, getSampledDocCount());
+        builder.field(Fields.PROBABILITY, probability);
+        getAggregations().toXContentInternal(builder, params);
+        return builder;
+    }
+}
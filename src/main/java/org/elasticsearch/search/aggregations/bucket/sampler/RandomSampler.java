@@ -0,0 +1,39 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket.sampler;
+
+import org.elasticsearch.search.aggregations.bucket.SingleBucketAggregation;
+
+/**
+ * A {@code random_sampler} aggregation that defines a single bucket to hold a random sample of the matching documents.
+ * Every matching document is sampled independently with a fixed probability and the doc count of the bucket is an
+ * estimate of the number of matching documents.
+ */
+public interface RandomSampler extends SingleBucketAggregation {
+
+    /**
+     * @return The probability with which matching documents were sampled.
+     */
+    double getProbability();
+
+    /**
+     * @return The number of documents that were sampled.
+     */
+    long getSampledDocCount();
+}
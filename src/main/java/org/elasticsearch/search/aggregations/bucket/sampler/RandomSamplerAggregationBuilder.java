@@ -0,0 +1,70 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.sampler;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+
+import java.io.IOException;
+
+/**
+ * Builder for the {@link RandomSampler} aggregation.
+ */
+public class RandomSamplerAggregationBuilder extends AggregationBuilder<RandomSamplerAggregationBuilder> {
+
+    private Double probability;
+    private Long seed;
+
+    /**
+     * Sole constructor.
+     */
+    public RandomSamplerAggregationBuilder(String name) {
+        super(name, InternalRandomSampler.TYPE.name());
+    }
+
+    /**
+     * Set the probability with which matching documents are sampled, greater than 0 and less than or equal to 1.
+     */
+    public RandomSamplerAggregationBuilder probability(double probability) {
+        this.probability = probability;
+        return this;
+    }
+
+    /**
+     * Set the seed of the sampling. Executions of the same request with the same seed sample the same documents as long
+     * as segments don't change.
+     */
+    public RandomSamplerAggregationBuilder seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    @Override
+    protected XContentBuilder internalXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject();
+        if (probability != null) {
+            builder.field(RandomSamplerParser.PROBABILITY_FIELD.getPreferredName(), probability);
+        }
+        if (seed != null) {
+            builder.field(RandomSamplerParser.SEED_FIELD.getPreferredName(), seed);
+        }
+        return builder.endObject();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket.sampler;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Query;
+import org.elasticsearch.search.aggregations.AggregationExecutionException;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.AggregatorFactory;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
+import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
+import org.elasticsearch.search.aggregations.bucket.SingleBucketAggregator;
+import org.elasticsearch.search.aggregations.reducers.Reducer;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregate on a random sample of the matching docs of a shard. Like global aggregators, random sampler aggregators
+ * are not collected alongside the query: the aggregation phase runs the query a second time, filtered by a
+ * {@link RandomSamplingQuery} (see {@link #samplingQuery()}), so that documents that are not sampled are neither scored
+ * nor collected. The <code>min_score</code> of the request applies to the sampling pass too.
+ */
+public class RandomSamplerAggregator extends SingleBucketAggregator {
+
+    private final double probability;
+    private final long seed;
+
+    public RandomSamplerAggregator(String name, double probability, long seed, AggregatorFactories factories,
+            AggregationContext aggregationContext, List<Reducer> reducers, Map<String, Object> metaData) throws IOException {
+        super(name, factories, aggregationContext, null, reducers, metaData);
+        this.probability = probability;
+        this.seed = seed;
+    }
+
+    /**
+     * Return the query that the query of the request must be filtered with to select the documents to collect.
+     */
+    public Query samplingQuery() {
+        return new RandomSamplingQuery(probability, seed);
+    }
+
+    @Override
+    public LeafBucketCollector getLeafCollector(LeafReaderContext ctx,
+            final LeafBucketCollector sub) throws IOException {
+        return new LeafBucketCollectorBase(sub, null) {
+            @Override
+            public void collect(int doc, long bucket) throws IOException {
+                assert bucket == 0 : "random sampler aggregator can only be a top level aggregator";
+                collectBucket(sub, doc, bucket);
+            }
+        };
+    }
+
+    @Override
+    public InternalAggregation buildAggregation(long owningBucketOrdinal) throws IOException {
+        assert owningBucketOrdinal == 0 : "random sampler aggregator can only be a top level aggregator";
+        return new InternalRandomSampler(name, bucketDocCount(owningBucketOrdinal), probability, bucketAggregations(owningBucketOrdinal),
+                reducers(), metaData());
+    }
+
+    @Override
+    public InternalAggregation buildEmptyAggregation() {
+        return new InternalRandomSampler(name, 0, probability, buildEmptySubAggregations(), reducers(), metaData());
+    }
+
+    public static class Factory extends AggregatorFactory {
+
+        private final double probability;
+        private final long seed;
+
+        public Factory(String name, double probability, long seed) {
+            super(name, InternalRandomSampler.TYPE.name());
+            this.probability = probability;
+            this.seed = seed;
+        }
+
+        @Override
+        public Aggregator createInternal(AggregationContext context, Aggregator parent, boolean collectsFromSingleBucket,
+                List<Reducer> reducers, Map<String, Object> metaData) throws IOException {
+            if (parent != null) {
+                throw new AggregationExecutionException("Aggregation [" + parent.name() + "] cannot have a random_sampler " +
+                        "sub-aggregation [" + name + "]. Random sampler aggregations can only be defined as top level aggregations");
+            }
+            if (collectsFromSingleBucket == false) {
+                throw new IllegalStateException();
+            }
+            if (context.searchContext().terminateAfter() != SearchContext.DEFAULT_TERMINATE_AFTER) {
+                // the sampling pass can't tell which documents the main query collected before it terminated
+                throw new AggregationExecutionException("Random sampler aggregation [" + name + "] can't be used with [terminate_after]");
+            }
+            // shards sample independently from each other
+            final long shardSeed = 31L * seed + context.searchContext().indexShard().shardId().hashCode();
+            return new RandomSamplerAggregator(name, probability, shardSeed, factories, context, reducers, metaData);
+        }
+
+    }
+}
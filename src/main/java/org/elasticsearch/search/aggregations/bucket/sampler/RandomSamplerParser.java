@@ -0,0 +1,85 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket.sampler;
+
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.search.SearchParseException;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactory;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+
+/**
+ *
+ */
+public class RandomSamplerParser implements Aggregator.Parser {
+
+    public static final ParseField PROBABILITY_FIELD = new ParseField("probability");
+    public static final ParseField SEED_FIELD = new ParseField("seed");
+
+    @Override
+    public String type() {
+        return InternalRandomSampler.TYPE.name();
+    }
+
+    @Override
+    public AggregatorFactory parse(String aggregationName, XContentParser parser, SearchContext context) throws IOException {
+
+        XContentParser.Token token;
+        String currentFieldName = null;
+        Double probability = null;
+        Long seed = null;
+
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+            if (token == XContentParser.Token.FIELD_NAME) {
+                currentFieldName = parser.currentName();
+            } else if (token == XContentParser.Token.VALUE_NUMBER) {
+                if (PROBABILITY_FIELD.match(currentFieldName)) {
+                    probability = parser.doubleValue();
+                } else if (SEED_FIELD.match(currentFieldName)) {
+                    seed = parser.longValue();
+                } else {
+                    throw new SearchParseException(context, "Unsupported property \"" + currentFieldName + "\" for aggregation \""
+                            + aggregationName, parser.getTokenLocation());
+                }
+            } else {
+                throw new SearchParseException(context, "Unexpected token " + token + " in [" + aggregationName + "].",
+                        parser.getTokenLocation());
+            }
+        }
+
+        if (probability == null) {
+            throw new SearchParseException(context, "Missing required property \"" + PROBABILITY_FIELD.getPreferredName()
+                    + "\" for aggregation \"" + aggregationName + "\"", parser.getTokenLocation());
+        }
+        if (probability <= 0 || probability > 1) {
+            throw new SearchParseException(context, "Property \"" + PROBABILITY_FIELD.getPreferredName() + "\" of aggregation \""
+                    + aggregationName + "\" must be greater than 0 and less than or equal to 1, got [" + probability + "]",
+                    parser.getTokenLocation());
+        }
+        if (seed == null) {
+            // sample different documents on every request unless a seed is given
+            seed = context.nowInMillis();
+        }
+        return new RandomSamplerAggregator.Factory(aggregationName, probability, seed);
+    }
+
+}
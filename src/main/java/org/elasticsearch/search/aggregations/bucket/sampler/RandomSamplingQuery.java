@@ -0,0 +1,159 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket.sampler;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.ConstantScoreScorer;
+import org.apache.lucene.search.ConstantScoreWeight;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * A filtering query that matches every document independently with a fixed probability. Rather than drawing a random
+ * number per document, the iterator draws the gap to the next matching document from a geometric distribution, so that
+ * the documents in between are never visited. When used as a filter in a conjunction, its low cost makes it lead the
+ * iteration, so that the other clauses only need to be advanced to sampled documents.
+ */
+public class RandomSamplingQuery extends Query {
+
+    private final double probability;
+    private final long seed;
+
+    /**
+     * @param probability the probability with which a document matches, greater than 0 and less than or equal to 1
+     * @param seed        the seed of the random number generator, documents are sampled consistently across executions
+     *                    of the same query with the same seed on the same segments
+     */
+    public RandomSamplingQuery(double probability, long seed) {
+        if (probability <= 0 || probability > 1) {
+            throw new IllegalArgumentException("probability must be greater than 0 and less than or equal to 1, got [" + probability + "]");
+        }
+        this.probability = probability;
+        this.seed = seed;
+    }
+
+    public double probability() {
+        return probability;
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, boolean needsScores) throws IOException {
+        return new ConstantScoreWeight(this) {
+            @Override
+            public Scorer scorer(LeafReaderContext context, Bits acceptDocs) throws IOException {
+                final int maxDoc = context.reader().maxDoc();
+                if (maxDoc == 0) {
+                    return null;
+                }
+                final Random random = new Random(seed + 31L * context.ord);
+                return new ConstantScoreScorer(this, score(), new RandomSamplingIterator(maxDoc, probability, random, acceptDocs));
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        int result = super.hashCode();
+        final long probabilityBits = Double.doubleToLongBits(probability);
+        result = 31 * result + (int) (probabilityBits ^ (probabilityBits >>> 32));
+        result = 31 * result + (int) (seed ^ (seed >>> 32));
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (super.equals(obj) == false) {
+            return false;
+        }
+        RandomSamplingQuery that = (RandomSamplingQuery) obj;
+        return probability == that.probability && seed == that.seed;
+    }
+
+    @Override
+    public String toString(String field) {
+        return "RandomSamplingQuery(probability=" + probability + ", seed=" + seed + ")";
+    }
+
+    // pkg-private for testing
+    static class RandomSamplingIterator extends DocIdSetIterator {
+
+        private final int maxDoc;
+        private final double probability;
+        // precomputed for the geometric distribution, -Infinity when every document is sampled
+        private final double logOneMinusProbability;
+        private final Random random;
+        private final Bits acceptDocs;
+        private int doc = -1;
+
+        RandomSamplingIterator(int maxDoc, double probability, Random random, Bits acceptDocs) {
+            this.maxDoc = maxDoc;
+            this.probability = probability;
+            this.logOneMinusProbability = Math.log1p(-probability);
+            this.random = random;
+            this.acceptDocs = acceptDocs;
+        }
+
+        @Override
+        public int docID() {
+            return doc;
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+            return advance(doc + 1);
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+            assert target > doc;
+            // documents are sampled independently, so the distance from target to the next sampled document
+            // follows a geometric distribution regardless of the documents that have been skipped so far
+            long next = target + skip();
+            while (next < maxDoc && acceptDocs != null && acceptDocs.get((int) next) == false) {
+                next += 1 + skip();
+            }
+            doc = next >= maxDoc ? NO_MORE_DOCS : (int) next;
+            return doc;
+        }
+
+        /**
+         * Return the number of documents to skip before the next sampled document.
+         */
+        private long skip() {
+            if (probability == 1) {
+                return 0;
+            }
+            // 1 - nextDouble() is in (0, 1] so that the logarithm is finite
+            final double skip = Math.floor(Math.log(1 - random.nextDouble()) / logOneMinusProbability);
+            return skip >= maxDoc ? maxDoc : (long) skip;
+        }
+
+        @Override
+        public long cost() {
+            return Math.max(1, (long) Math.ceil(maxDoc * probability));
+        }
+    }
+}
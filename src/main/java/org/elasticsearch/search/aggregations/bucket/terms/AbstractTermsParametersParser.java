@@ -43,7 +43,8 @@ public abstract class AbstractTermsParametersParser {
 
     private String executionHint = null;
     
-    private SubAggCollectionMode collectMode = SubAggCollectionMode.DEPTH_FIRST;
+    // null unless set explicitly, so that the aggregator factory can pick the best mode
+    private SubAggCollectionMode collectMode = null;
 
 
     IncludeExclude includeExclude;
@@ -0,0 +1,171 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket.terms;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.index.fielddata.SortedBinaryDocValues;
+import org.elasticsearch.search.aggregations.AggregationExecutionException;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
+import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
+import org.elasticsearch.search.aggregations.bucket.terms.support.BucketPriorityQueue;
+import org.elasticsearch.search.aggregations.bucket.terms.support.IncludeExclude;
+import org.elasticsearch.search.aggregations.bucket.terms.support.SpaceSaving;
+import org.elasticsearch.search.aggregations.reducers.Reducer;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An aggregator of string values that tracks the most frequent terms with a {@link SpaceSaving} sketch, so that its
+ * memory usage is bounded by the shard size rather than by the number of unique terms, and accounted for by the request
+ * circuit breaker. Reported doc counts are lower bounds and the aggregation-level doc count error accounts for the error
+ * of the sketch.
+ */
+public class ApproximateStringTermsAggregator extends AbstractStringTermsAggregator {
+
+    /** The sketch monitors this many terms per term returned by the shard. */
+    static final int COUNTERS_PER_BUCKET = 10;
+    static final int MIN_COUNTERS = 1000;
+    static final int MAX_COUNTERS = 1 << 16;
+
+    private final ValuesSource valuesSource;
+    private final IncludeExclude.StringFilter includeExclude;
+    private final SpaceSaving sketch;
+    private long totalCount;
+
+    public ApproximateStringTermsAggregator(String name, AggregatorFactories factories, ValuesSource valuesSource,
+            Terms.Order order, BucketCountThresholds bucketCountThresholds,
+            IncludeExclude.StringFilter includeExclude, AggregationContext aggregationContext,
+            Aggregator parent, SubAggCollectionMode collectionMode, boolean showTermDocCountError, List<Reducer> reducers,
+            Map<String, Object> metaData) throws IOException {
+
+        super(name, factories, aggregationContext, parent, order, bucketCountThresholds, collectionMode, showTermDocCountError, reducers,
+                metaData);
+        if (subAggregators.length > 0) {
+            throw new AggregationExecutionException("Terms aggregation [" + name + "] with execution hint ["
+                    + TermsAggregatorFactory.ExecutionMode.APPROXIMATE + "] doesn't support sub-aggregations");
+        }
+        if (InternalOrder.isCountDesc(order) == false) {
+            throw new AggregationExecutionException("Terms aggregation [" + name + "] with execution hint ["
+                    + TermsAggregatorFactory.ExecutionMode.APPROXIMATE + "] only supports ordering by descending doc count");
+        }
+        this.valuesSource = valuesSource;
+        this.includeExclude = includeExclude;
+        this.sketch = new SpaceSaving(numCounters(bucketCountThresholds.getShardSize()), aggregationContext.bigArrays());
+    }
+
+    static int numCounters(int shardSize) {
+        final long numCounters = (long) shardSize * COUNTERS_PER_BUCKET;
+        return (int) Math.max(MIN_COUNTERS, Math.min(MAX_COUNTERS, numCounters));
+    }
+
+    @Override
+    public boolean needsScores() {
+        return (valuesSource != null && valuesSource.needsScores()) || super.needsScores();
+    }
+
+    @Override
+    public LeafBucketCollector getLeafCollector(LeafReaderContext ctx,
+            final LeafBucketCollector sub) throws IOException {
+        final SortedBinaryDocValues values = valuesSource.bytesValues(ctx);
+        return new LeafBucketCollectorBase(sub, values) {
+            final BytesRefBuilder previous = new BytesRefBuilder();
+
+            @Override
+            public void collect(int doc, long bucket) throws IOException {
+                assert bucket == 0;
+                values.setDocument(doc);
+                final int valuesCount = values.count();
+
+                // SortedBinaryDocValues don't guarantee uniqueness so we need to take care of dups
+                previous.clear();
+                for (int i = 0; i < valuesCount; ++i) {
+                    final BytesRef bytes = values.valueAt(i);
+                    if (includeExclude != null && !includeExclude.accept(bytes)) {
+                        continue;
+                    }
+                    if (previous.get().equals(bytes)) {
+                        continue;
+                    }
+                    sketch.add(bytes);
+                    totalCount++;
+                    previous.copyBytes(bytes);
+                }
+            }
+        };
+    }
+
+    @Override
+    public InternalAggregation buildAggregation(long owningBucketOrdinal) throws IOException {
+        assert owningBucketOrdinal == 0;
+
+        final int size = Math.min(sketch.size(), bucketCountThresholds.getShardSize());
+
+        BucketPriorityQueue ordered = new BucketPriorityQueue(size, order.comparator(this));
+        // upper bound of the doc count of terms that are not returned
+        long docCountError = sketch.minCount();
+        for (int i = 0; i < sketch.size(); i++) {
+            // count - error is a lower bound of the number of documents that have the term
+            final long docCount = sketch.count(i) - sketch.error(i);
+            StringTerms.Bucket bucket = new StringTerms.Bucket(sketch.term(i), docCount, null, showTermDocCountError, sketch.error(i));
+            // the bucket index is stashed in the ordinal
+            bucket.bucketOrd = i;
+            if (bucketCountThresholds.getShardMinDocCount() <= bucket.docCount) {
+                bucket = (StringTerms.Bucket) ordered.insertWithOverflow(bucket);
+            }
+            if (bucket != null) {
+                docCountError = Math.max(docCountError, sketch.count((int) bucket.bucketOrd));
+            }
+        }
+
+        final InternalAggregations aggregations = bucketEmptyAggregations();
+        long otherDocCount = totalCount;
+        final InternalTerms.Bucket[] list = new InternalTerms.Bucket[ordered.size()];
+        for (int i = ordered.size() - 1; i >= 0; --i) {
+            final StringTerms.Bucket bucket = (StringTerms.Bucket) ordered.pop();
+            bucket.termBytes = BytesRef.deepCopyOf(bucket.termBytes);
+            bucket.aggregations = aggregations;
+            // returned terms may be undercounted by up to the error of their counter
+            docCountError = Math.max(docCountError, bucket.docCountError);
+            otherDocCount -= bucket.docCount;
+            list[i] = bucket;
+        }
+
+        return new StringTerms(name, order, bucketCountThresholds.getRequiredSize(), bucketCountThresholds.getShardSize(),
+                bucketCountThresholds.getMinDocCount(), Arrays.asList(list), showTermDocCountError, docCountError, otherDocCount,
+                reducers(), metaData());
+    }
+
+    @Override
+    public void doClose() {
+        Releasables.close(sketch);
+    }
+
+}
@@ -170,10 +170,13 @@ public abstract class InternalTerms<A extends InternalTerms, B extends InternalT
         Multimap<Object, InternalTerms.Bucket> buckets = ArrayListMultimap.create();
         long sumDocCountError = 0;
         long otherDocCount = 0;
+        boolean reducedApproximateTerms = false;
         for (InternalAggregation aggregation : aggregations) {
             InternalTerms<A, B> terms = (InternalTerms<A, B>) aggregation;
             otherDocCount += terms.getSumOfOtherDocCounts();
-            final long thisAggDocCountError;
+            // shards that count terms approximately report an error that also applies to the terms they return
+            final boolean approximate = terms.docCountError > 0;
+            long thisAggDocCountError;
             if (terms.buckets.size() < this.shardSize || this.order == InternalOrder.TERM_ASC || this.order == InternalOrder.TERM_DESC) {
                 thisAggDocCountError = 0;
             } else if (InternalOrder.isCountDesc(this.order)) {
@@ -181,6 +184,9 @@ public abstract class InternalTerms<A extends InternalTerms, B extends InternalT
             } else {
                 thisAggDocCountError = -1;
             }
+            if (approximate && thisAggDocCountError != -1) {
+                thisAggDocCountError = Math.max(thisAggDocCountError, terms.docCountError);
+            }
             if (sumDocCountError != -1) {
                 if (thisAggDocCountError == -1) {
                     sumDocCountError = -1;
@@ -190,9 +196,10 @@ public abstract class InternalTerms<A extends InternalTerms, B extends InternalT
             }
             terms.docCountError = thisAggDocCountError;
             for (Bucket bucket : terms.buckets) {
-                bucket.docCountError = thisAggDocCountError;
+                bucket.docCountError = approximate ? 0 : thisAggDocCountError;
                 buckets.put(bucket.getKey(), bucket);
             }
+            reducedApproximateTerms |= approximate;
         }
 
         final int size = Math.min(requiredSize, buckets.size());
@@ -222,7 +229,7 @@ public abstract class InternalTerms<A extends InternalTerms, B extends InternalT
         if (sumDocCountError == -1) {
             docCountError = -1;
         } else {
-            docCountError = aggregations.size() == 1 ? 0 : sumDocCountError;
+            docCountError = aggregations.size() == 1 && reducedApproximateTerms == false ? 0 : sumDocCountError;
         }
         return create(name, Arrays.asList(list), docCountError, otherDocCount, this);
     }
@@ -110,6 +110,23 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
             boolean needsGlobalOrdinals() {
                 return true;
             }
+        },
+        APPROXIMATE(new ParseField("approximate")) {
+
+            @Override
+            Aggregator create(String name, AggregatorFactories factories, ValuesSource valuesSource,
+                              Terms.Order order, TermsAggregator.BucketCountThresholds bucketCountThresholds, IncludeExclude includeExclude,
+                    AggregationContext aggregationContext, Aggregator parent, SubAggCollectionMode subAggCollectMode,
+                    boolean showTermDocCountError, List<Reducer> reducers, Map<String, Object> metaData) throws IOException {
+                final IncludeExclude.StringFilter filter = includeExclude == null ? null : includeExclude.convertToStringFilter();
+                return new ApproximateStringTermsAggregator(name, factories, valuesSource, order, bucketCountThresholds, filter,
+                        aggregationContext, parent, subAggCollectMode, showTermDocCountError, reducers, metaData);
+            }
+
+            @Override
+            boolean needsGlobalOrdinals() {
+                return false;
+            }
         };
 
         public static ExecutionMode fromString(String value) {
@@ -187,7 +204,7 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
             }
 
             // In some cases, using ordinals is just not supported: override it
-            if (!(valuesSource instanceof ValuesSource.Bytes.WithOrdinals)) {
+            if (execution != ExecutionMode.APPROXIMATE && !(valuesSource instanceof ValuesSource.Bytes.WithOrdinals)) {
                 execution = ExecutionMode.MAP;
             }
 
@@ -226,6 +243,7 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
             }
 
             assert execution != null;
+            final SubAggCollectionMode collectMode = resolveCollectMode(maxOrd);
             return execution.create(name, factories, valuesSource, order, bucketCountThresholds, includeExclude, aggregationContext, parent, collectMode, showTermDocCountError, reducers, metaData);
         }
 
@@ -235,6 +253,7 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
         }
 
         if (valuesSource instanceof ValuesSource.Numeric) {
+            final SubAggCollectionMode collectMode = resolveCollectMode(-1);
             IncludeExclude.LongFilter longFilter = null;
             if (((ValuesSource.Numeric) valuesSource).isFloatingPoint()) {
                 if (includeExclude != null) {
@@ -255,4 +274,33 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
                 "]. It can only be applied to numeric or string fields.");
     }
 
+    private SubAggCollectionMode resolveCollectMode(long maxOrd) {
+        if (collectMode != null) {
+            return collectMode;
+        }
+        if (factories == AggregatorFactories.EMPTY) {
+            return SubAggCollectionMode.DEPTH_FIRST;
+        }
+        return subAggCollectionMode(bucketCountThresholds.getShardSize(), maxOrd);
+    }
+
+    /**
+     * Pick the collection mode of sub-aggregations when it has not been set explicitly. If there may be more buckets
+     * than the shard size, sub-aggregations are deferred until the top buckets are known so that they are only
+     * collected for buckets that can make it to the response instead of the whole long tail.
+     *
+     * @param expectedSize the number of buckets that the shard returns
+     * @param maxOrd       the number of unique values of the field, or -1 if unknown
+     */
+    static SubAggCollectionMode subAggCollectionMode(int expectedSize, long maxOrd) {
+        if (expectedSize == Integer.MAX_VALUE) {
+            // all buckets are returned, there is nothing to prune
+            return SubAggCollectionMode.DEPTH_FIRST;
+        }
+        if (maxOrd == -1 || maxOrd > expectedSize) {
+            return SubAggCollectionMode.BREADTH_FIRST;
+        }
+        return SubAggCollectionMode.DEPTH_FIRST;
+    }
+
 }
@@ -0,0 +1,238 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.terms.support;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.BytesRefHash;
+import org.elasticsearch.common.util.LongArray;
+
+/**
+ * The SpaceSaving heavy-hitters sketch (Metwally et al.): a fixed number of counters track the most frequent terms of a
+ * stream. When all counters are in use, a new term takes over the counter with the smallest count and inherits this
+ * count as its error. For every monitored term, the true frequency is between <code>count - error</code> and
+ * <code>count</code>, and a term that is not monitored occurred at most {@link #minCount()} times.
+ *
+ * Terms are stored in a {@link BytesRefHash} and counters in {@link BigArrays}, so that memory is accounted for by the
+ * circuit breaker of the given {@link BigArrays}. Since terms can't be removed from the hash, evicted terms stay there
+ * until there are as many of them as counters, at which point the hash is rebuilt with the monitored terms only.
+ */
+public class SpaceSaving implements Releasable {
+
+    private final int capacity;
+    private final BigArrays bigArrays;
+    private BytesRefHash terms;
+    // index in the heap of the counter of each term of the hash, or -1 if the term has been evicted
+    private LongArray heapIndexes;
+    // min-heap of the counters by count: the id of the term, the count and the error of each counter
+    private final LongArray termIds;
+    private final LongArray counts;
+    private final LongArray errors;
+    private int size;
+
+    public SpaceSaving(int capacity, BigArrays bigArrays) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1, got [" + capacity + "]");
+        }
+        this.capacity = capacity;
+        this.bigArrays = bigArrays;
+        boolean success = false;
+        try {
+            this.terms = new BytesRefHash(capacity, bigArrays);
+            this.heapIndexes = bigArrays.newLongArray(capacity, false);
+            this.termIds = bigArrays.newLongArray(capacity, false);
+            this.counts = bigArrays.newLongArray(capacity, false);
+            this.errors = bigArrays.newLongArray(capacity, false);
+            success = true;
+        } finally {
+            if (success == false) {
+                close();
+            }
+        }
+    }
+
+    /**
+     * Record an occurrence of the given term. The term is copied if it needs to be stored.
+     */
+    public void add(BytesRef term) {
+        long id = terms.find(term);
+        if (id >= 0) {
+            final long heapIndex = heapIndexes.get(id);
+            if (heapIndex >= 0) {
+                counts.increment(heapIndex, 1);
+                siftDown((int) heapIndex);
+                return;
+            }
+            // the term was evicted before, its id can be reused
+        }
+        if (size < capacity) {
+            if (id < 0) {
+                id = addTerm(term);
+            }
+            termIds.set(size, id);
+            counts.set(size, 1);
+            errors.set(size, 0);
+            heapIndexes.set(id, size);
+            siftUp(size++);
+        } else {
+            // evict the term with the lowest count, after adding the new term since adding may rebuild the hash
+            if (id < 0) {
+                id = addTerm(term);
+            }
+            heapIndexes.set(termIds.get(0), -1);
+            final long minCount = counts.get(0);
+            termIds.set(0, id);
+            counts.set(0, minCount + 1);
+            errors.set(0, minCount);
+            heapIndexes.set(id, 0);
+            siftDown(0);
+        }
+    }
+
+    private long addTerm(BytesRef term) {
+        if (terms.size() - size >= capacity) {
+            compact();
+        }
+        final long id = terms.add(term);
+        assert id >= 0;
+        heapIndexes = bigArrays.grow(heapIndexes, id + 1);
+        return id;
+    }
+
+    /** Rebuild the hash of terms with the monitored terms only. */
+    private void compact() {
+        final BytesRefHash oldTerms = terms;
+        final BytesRef scratch = new BytesRef();
+        boolean success = false;
+        try {
+            terms = new BytesRefHash(capacity, bigArrays);
+            for (int i = 0; i < size; i++) {
+                final long id = terms.add(oldTerms.get(termIds.get(i), scratch));
+                termIds.set(i, id);
+                heapIndexes.set(id, i);
+            }
+            success = true;
+        } finally {
+            if (success) {
+                Releasables.close(oldTerms);
+            } else {
+                Releasables.close(terms);
+                terms = oldTerms;
+            }
+        }
+    }
+
+    /**
+     * Return the number of monitored terms.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the number of terms in the hash of terms, including evicted terms that haven't been purged yet.
+     */
+    long numStoredTerms() {
+        return terms.size();
+    }
+
+    /**
+     * Return the term of the i-th counter, <code>0 &lt;= i &lt; size()</code>. The returned bytes are only valid until
+     * the next call to {@link #add(BytesRef)} or {@link #close()}.
+     */
+    public BytesRef term(int i) {
+        return terms.get(termIds.get(i), new BytesRef());
+    }
+
+    /**
+     * Return the count of the i-th counter, an upper bound of the frequency of its term.
+     */
+    public long count(int i) {
+        return counts.get(i);
+    }
+
+    /**
+     * Return by how much the count of the i-th counter may overestimate the frequency of its term.
+     */
+    public long error(int i) {
+        return errors.get(i);
+    }
+
+    /**
+     * Return an upper bound of the frequency of terms that are not monitored.
+     */
+    public long minCount() {
+        return size < capacity ? 0 : counts.get(0);
+    }
+
+    private void siftUp(int i) {
+        final long termId = termIds.get(i);
+        final long count = counts.get(i);
+        final long error = errors.get(i);
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if (counts.get(parent) <= count) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        set(i, termId, count, error);
+    }
+
+    private void siftDown(int i) {
+        final long termId = termIds.get(i);
+        final long count = counts.get(i);
+        final long error = errors.get(i);
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && counts.get(child + 1) < counts.get(child)) {
+                child++;
+            }
+            if (count <= counts.get(child)) {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        set(i, termId, count, error);
+    }
+
+    private void move(int from, int to) {
+        set(to, termIds.get(from), counts.get(from), errors.get(from));
+    }
+
+    private void set(int i, long termId, long count, long error) {
+        termIds.set(i, termId);
+        counts.set(i, count);
+        errors.set(i, error);
+        heapIndexes.set(termId, i);
+    }
+
+    @Override
+    public void close() {
+        Releasables.close(terms, heapIndexes, termIds, counts, errors);
+    }
+}
@@ -23,6 +23,7 @@ import org.elasticsearch.search.SearchParseException;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorFactory;
 import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.support.RollupFields;
 import org.elasticsearch.search.aggregations.support.ValuesSource;
 import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
 import org.elasticsearch.search.aggregations.support.ValuesSourceParser;
@@ -63,8 +64,28 @@ public abstract class NumericValuesSourceMetricsAggregatorParser<S extends Inter
             }
         }
 
-        return createFactory(aggregationName, vsParser.config());
+        ValuesSourceConfig<ValuesSource.Numeric> config = vsParser.config();
+        final String rolledUpMetric = RollupFields.rolledUpMetric(context, vsParser, config);
+        if (rolledUpMetric != null) {
+            AggregatorFactory factory = createRollupFactory(aggregationName, vsParser, rolledUpMetric);
+            if (factory == null) {
+                throw new SearchParseException(context, "Aggregation [" + aggregationName + "] of type [" + type()
+                        + "] can't be computed from the summaries of rolled up metric [" + rolledUpMetric + "]", parser.getTokenLocation());
+            }
+            return factory;
+        }
+        return createFactory(aggregationName, config);
     }
 
     protected abstract AggregatorFactory createFactory(String aggregationName, ValuesSourceConfig<ValuesSource.Numeric> config);
+
+    /**
+     * Create a factory that computes this aggregation on a rollup index from the summary fields of the given metric, see
+     * {@link RollupFields}, or return <tt>null</tt> if this aggregation can't be computed from summary fields, in which case
+     * the request fails.
+     */
+    protected AggregatorFactory createRollupFactory(String aggregationName, ValuesSourceParser<ValuesSource.Numeric> vsParser,
+            String metric) {
+        return null;
+    }
 }
@@ -47,6 +47,8 @@ import java.util.Map;
 public class AvgAggregator extends NumericMetricsAggregator.SingleValue {
 
     final ValuesSource.Numeric valuesSource;
+    // if not null, the number of values that each document summarizes, see RollupFields
+    final ValuesSource.Numeric valueCountsSource;
 
     LongArray counts;
     DoubleArray sums;
@@ -54,8 +56,15 @@ public class AvgAggregator extends NumericMetricsAggregator.SingleValue {
 
     public AvgAggregator(String name, ValuesSource.Numeric valuesSource, @Nullable ValueFormatter formatter,
             AggregationContext context, Aggregator parent, List<Reducer> reducers, Map<String, Object> metaData) throws IOException {
+        this(name, valuesSource, null, formatter, context, parent, reducers, metaData);
+    }
+
+    AvgAggregator(String name, ValuesSource.Numeric valuesSource, @Nullable ValuesSource.Numeric valueCountsSource,
+            @Nullable ValueFormatter formatter, AggregationContext context, Aggregator parent, List<Reducer> reducers,
+            Map<String, Object> metaData) throws IOException {
         super(name, context, parent, reducers, metaData);
         this.valuesSource = valuesSource;
+        this.valueCountsSource = valueCountsSource;
         this.formatter = formatter;
         if (valuesSource != null) {
             final BigArrays bigArrays = context.bigArrays();
@@ -66,7 +75,8 @@ public class AvgAggregator extends NumericMetricsAggregator.SingleValue {
 
     @Override
     public boolean needsScores() {
-        return valuesSource != null && valuesSource.needsScores();
+        return (valuesSource != null && valuesSource.needsScores())
+                || (valueCountsSource != null && valueCountsSource.needsScores());
     }
 
     @Override
@@ -77,6 +87,7 @@ public class AvgAggregator extends NumericMetricsAggregator.SingleValue {
         }
         final BigArrays bigArrays = context.bigArrays();
         final SortedNumericDoubleValues values = valuesSource.doubleValues(ctx);
+        final SortedNumericDoubleValues valueCounts = valueCountsSource == null ? null : valueCountsSource.doubleValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
             @Override
             public void collect(int doc, long bucket) throws IOException {
@@ -85,7 +96,14 @@ public class AvgAggregator extends NumericMetricsAggregator.SingleValue {
 
                 values.setDocument(doc);
                 final int valueCount = values.count();
-                counts.increment(bucket, valueCount);
+                if (valueCounts == null) {
+                    counts.increment(bucket, valueCount);
+                } else {
+                    valueCounts.setDocument(doc);
+                    for (int i = 0; i < valueCounts.count(); i++) {
+                        counts.increment(bucket, (long) valueCounts.valueAt(i));
+                    }
+                }
                 double sum = 0;
                 for (int i = 0; i < valueCount; i++) {
                     sum += values.valueAt(i);
@@ -132,6 +150,37 @@ public class AvgAggregator extends NumericMetricsAggregator.SingleValue {
         }
     }
 
+    /**
+     * Computes the average of a metric of a rollup index from the sums and the value counts of its summary documents.
+     */
+    public static class RollupFactory extends ValuesSourceAggregatorFactory.LeafOnly<ValuesSource.Numeric> {
+
+        private final ValuesSourceConfig<ValuesSource.Numeric> valueCountsConfig;
+
+        public RollupFactory(String name, String type, ValuesSourceConfig<ValuesSource.Numeric> sumsConfig,
+                ValuesSourceConfig<ValuesSource.Numeric> valueCountsConfig) {
+            super(name, type, sumsConfig);
+            this.valueCountsConfig = valueCountsConfig;
+        }
+
+        @Override
+        protected Aggregator createUnmapped(AggregationContext aggregationContext, Aggregator parent, List<Reducer> reducers,
+                Map<String, Object> metaData) throws IOException {
+            return new AvgAggregator(name, null, config.formatter(), aggregationContext, parent, reducers, metaData);
+        }
+
+        @Override
+        protected Aggregator doCreateInternal(ValuesSource.Numeric valuesSource, AggregationContext aggregationContext, Aggregator parent,
+                boolean collectsFromSingleBucket, List<Reducer> reducers, Map<String, Object> metaData) throws IOException {
+            if (valueCountsConfig.unmapped()) {
+                return createUnmapped(aggregationContext, parent, reducers, metaData);
+            }
+            ValuesSource.Numeric valueCountsSource = aggregationContext.valuesSource(valueCountsConfig, aggregationContext.searchContext());
+            return new AvgAggregator(name, valuesSource, valueCountsSource, config.formatter(), aggregationContext, parent, reducers,
+                    metaData);
+        }
+    }
+
     @Override
     public void doClose() {
         Releasables.close(counts, sums);
@@ -20,8 +20,10 @@ package org.elasticsearch.search.aggregations.metrics.avg;
 
 import org.elasticsearch.search.aggregations.AggregatorFactory;
 import org.elasticsearch.search.aggregations.metrics.NumericValuesSourceMetricsAggregatorParser;
+import org.elasticsearch.search.aggregations.support.RollupFields;
 import org.elasticsearch.search.aggregations.support.ValuesSource;
 import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
+import org.elasticsearch.search.aggregations.support.ValuesSourceParser;
 
 /**
  *
@@ -37,4 +39,12 @@ public class AvgParser extends NumericValuesSourceMetricsAggregatorParser<Intern
         return new AvgAggregator.Factory(aggregationName, type(), config);
     }
 
+    @Override
+    protected AggregatorFactory createRollupFactory(String aggregationName, ValuesSourceParser<ValuesSource.Numeric> vsParser,
+            String metric) {
+        // the average of the summarized values is the sum of their sums divided by the sum of their counts
+        return new AvgAggregator.RollupFactory(aggregationName, type(),
+                vsParser.config(RollupFields.summaryField(metric, RollupFields.SUM)),
+                vsParser.config(RollupFields.summaryField(metric, RollupFields.VALUE_COUNT)));
+    }
 }
@@ -25,6 +25,7 @@ import org.apache.lucene.util.LongBitSet;
 import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.util.packed.PackedInts;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.lease.Releasable;
@@ -62,6 +63,10 @@ public final class HyperLogLogPlusPlus implements Releasable {
     private static final boolean HYPERLOGLOG = true;
     private static final float MAX_LOAD_FACTOR = 0.75f;
     private static final int P2 = 25;
+    // formats of the compact serialization
+    private static final byte FORMAT_LINEAR_COUNTING = 0;
+    private static final byte FORMAT_HLL_SPARSE = 1;
+    private static final byte FORMAT_HLL_PACKED = 2;
 
     /**
      * Compute the required precision so that <code>count</code> distinct entries
@@ -225,6 +230,13 @@ public final class HyperLogLogPlusPlus implements Releasable {
         }
     }
 
+    /**
+     * Return whether the given bucket uses dense HyperLogLog registers rather than a linear counting hash set.
+     */
+    boolean isHyperLogLog(long bucket) {
+        return algorithm.get(bucket) == HYPERLOGLOG;
+    }
+
     public void collect(long bucket, long hash) {
         ensureCapacity(bucket + 1);
         if (algorithm.get(bucket) == LINEAR_COUNTING) {
@@ -507,6 +519,10 @@ public final class HyperLogLogPlusPlus implements Releasable {
 
     public void writeTo(long bucket, StreamOutput out) throws IOException {
         out.writeVInt(p);
+        if (out.getVersion().onOrAfter(Version.V_2_0_0)) {
+            writeCompactTo(bucket, out);
+            return;
+        }
         if (algorithm.get(bucket) == LINEAR_COUNTING) {
             out.writeBoolean(LINEAR_COUNTING);
             try (IntArray hashes = hashSet.values(bucket)) {
@@ -523,9 +539,75 @@ public final class HyperLogLogPlusPlus implements Releasable {
         }
     }
 
+    /**
+     * Write the sketch of the given bucket without sending bytes for empty registers: encoded hashes of linear counting
+     * are sorted and delta-encoded, and registers are either written as (index delta, run length) pairs if few of them
+     * are set or packed on 6 bits otherwise.
+     */
+    private void writeCompactTo(long bucket, StreamOutput out) throws IOException {
+        if (algorithm.get(bucket) == LINEAR_COUNTING) {
+            out.writeByte(FORMAT_LINEAR_COUNTING);
+            final long[] hashes;
+            try (IntArray values = hashSet.values(bucket)) {
+                hashes = new long[(int) values.size()];
+                for (int i = 0; i < hashes.length; ++i) {
+                    // encoded hashes use up to 32 bits, sort them as unsigned values
+                    hashes[i] = values.get(i) & 0xFFFFFFFFL;
+                }
+            }
+            Arrays.sort(hashes);
+            out.writeVInt(hashes.length);
+            long previous = 0;
+            for (long hash : hashes) {
+                out.writeVLong(hash - previous);
+                previous = hash;
+            }
+        } else {
+            final long start = bucket << p;
+            int numNonZero = 0;
+            for (long i = start, end = start + m; i < end; ++i) {
+                if (runLens.get(i) != 0) {
+                    ++numNonZero;
+                }
+            }
+            // a sparse register takes at least 2 bytes and usually 3 when few registers are set
+            if (3L * numNonZero < packedRegistersBytes(m)) {
+                out.writeByte(FORMAT_HLL_SPARSE);
+                out.writeVInt(numNonZero);
+                int previous = 0;
+                for (int i = 0; i < m; ++i) {
+                    final byte runLen = runLens.get(start + i);
+                    if (runLen != 0) {
+                        out.writeVInt(i - previous);
+                        out.writeByte(runLen);
+                        previous = i;
+                    }
+                }
+            } else {
+                out.writeByte(FORMAT_HLL_PACKED);
+                // m is a multiple of 4, so every 4 registers are packed into 3 bytes
+                for (long i = start, end = start + m; i < end; i += 4) {
+                    final int packed = (runLens.get(i) << 18) | (runLens.get(i + 1) << 12) | (runLens.get(i + 2) << 6) | runLens.get(i + 3);
+                    out.writeByte((byte) (packed >>> 16));
+                    out.writeByte((byte) (packed >>> 8));
+                    out.writeByte((byte) packed);
+                }
+            }
+        }
+    }
+
+    static int packedRegistersBytes(int numRegisters) {
+        assert numRegisters % 4 == 0;
+        return numRegisters / 4 * 3;
+    }
+
     public static HyperLogLogPlusPlus readFrom(StreamInput in, BigArrays bigArrays) throws IOException {
         final int precision = in.readVInt();
         HyperLogLogPlusPlus counts = new HyperLogLogPlusPlus(precision, bigArrays, 1);
+        if (in.getVersion().onOrAfter(Version.V_2_0_0)) {
+            counts.readCompactFrom(in);
+            return counts;
+        }
         final boolean algorithm = in.readBoolean();
         if (algorithm == LINEAR_COUNTING) {
             counts.algorithm.clear(0);
@@ -542,6 +624,42 @@ public final class HyperLogLogPlusPlus implements Releasable {
         }
         return counts;
     }
+
+    private void readCompactFrom(StreamInput in) throws IOException {
+        final byte format = in.readByte();
+        switch (format) {
+        case FORMAT_LINEAR_COUNTING:
+            algorithm.clear(0);
+            final int size = in.readVInt();
+            long hash = 0;
+            for (int i = 0; i < size; ++i) {
+                hash += in.readVLong();
+                hashSet.add(0, (int) hash);
+            }
+            break;
+        case FORMAT_HLL_SPARSE:
+            algorithm.set(0);
+            final int numNonZero = in.readVInt();
+            int index = 0;
+            for (int i = 0; i < numNonZero; ++i) {
+                index += in.readVInt();
+                runLens.set(index, in.readByte());
+            }
+            break;
+        case FORMAT_HLL_PACKED:
+            algorithm.set(0);
+            for (int i = 0; i < m; i += 4) {
+                final int packed = ((in.readByte() & 0xFF) << 16) | ((in.readByte() & 0xFF) << 8) | (in.readByte() & 0xFF);
+                runLens.set(i, (byte) ((packed >>> 18) & 0x3F));
+                runLens.set(i + 1, (byte) ((packed >>> 12) & 0x3F));
+                runLens.set(i + 2, (byte) ((packed >>> 6) & 0x3F));
+                runLens.set(i + 3, (byte) (packed & 0x3F));
+            }
+            break;
+        default:
+            throw new ElasticsearchException("Unknown cardinality sketch format [" + format + "]");
+        }
+    }
     
     /** looks and smells like the old openbitset. */
     static class OpenBitSet {
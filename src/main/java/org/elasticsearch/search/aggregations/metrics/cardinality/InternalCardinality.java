@@ -32,6 +32,7 @@ import org.elasticsearch.search.aggregations.support.format.ValueFormatter;
 import org.elasticsearch.search.aggregations.support.format.ValueFormatterStreams;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -103,6 +104,9 @@ public final class InternalCardinality extends InternalNumericMetricsAggregation
     @Override
     public InternalAggregation doReduce(List<InternalAggregation> aggregations, ReduceContext reduceContext) {
         InternalCardinality reduced = null;
+        // dense sketches are merged first, so that the hashes of small linear counting sketches are then added to the
+        // registers directly instead of filling a hash set that a dense sketch would force to upgrade anyway
+        final List<InternalCardinality> linearCounting = new ArrayList<>();
         for (InternalAggregation aggregation : aggregations) {
             final InternalCardinality cardinality = (InternalCardinality) aggregation;
             if (cardinality.counts != null) {
@@ -110,9 +114,16 @@ public final class InternalCardinality extends InternalNumericMetricsAggregation
                     reduced = new InternalCardinality(name, new HyperLogLogPlusPlus(cardinality.counts.precision(),
                             BigArrays.NON_RECYCLING_INSTANCE, 1), this.valueFormatter, reducers(), getMetaData());
                 }
-                reduced.merge(cardinality);
+                if (cardinality.counts.isHyperLogLog(0)) {
+                    reduced.merge(cardinality);
+                } else {
+                    linearCounting.add(cardinality);
+                }
             }
         }
+        for (InternalCardinality cardinality : linearCounting) {
+            reduced.merge(cardinality);
+        }
 
         if (reduced == null) { // all empty
             return aggregations.get(0);
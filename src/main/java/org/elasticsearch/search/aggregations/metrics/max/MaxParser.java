@@ -20,8 +20,10 @@ package org.elasticsearch.search.aggregations.metrics.max;
 
 import org.elasticsearch.search.aggregations.AggregatorFactory;
 import org.elasticsearch.search.aggregations.metrics.NumericValuesSourceMetricsAggregatorParser;
+import org.elasticsearch.search.aggregations.support.RollupFields;
 import org.elasticsearch.search.aggregations.support.ValuesSource;
 import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
+import org.elasticsearch.search.aggregations.support.ValuesSourceParser;
 
 /**
  *
@@ -37,4 +39,9 @@ public class MaxParser extends NumericValuesSourceMetricsAggregatorParser<Intern
         return new MaxAggregator.Factory(aggregationName, config);
     }
 
+    @Override
+    protected AggregatorFactory createRollupFactory(String aggregationName, ValuesSourceParser<ValuesSource.Numeric> vsParser,
+            String metric) {
+        return createFactory(aggregationName, vsParser.config(RollupFields.summaryField(metric, RollupFields.MAX)));
+    }
 }
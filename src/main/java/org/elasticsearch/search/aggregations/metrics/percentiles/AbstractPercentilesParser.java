@@ -25,6 +25,7 @@ import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.search.SearchParseException;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorFactory;
+import org.elasticsearch.search.aggregations.metrics.percentiles.hdr.HdrHistogramState;
 import org.elasticsearch.search.aggregations.support.ValuesSource;
 import org.elasticsearch.search.aggregations.support.ValuesSource.Numeric;
 import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
@@ -51,6 +52,8 @@ public abstract class AbstractPercentilesParser implements Aggregator.Parser {
         double[] keys = null;
         boolean keyed = true;
         double compression = 100;
+        PercentilesMethod method = PercentilesMethod.TDIGEST;
+        int numberOfSignificantValueDigits = 3;
     
         XContentParser.Token token;
         String currentFieldName = null;
@@ -86,16 +89,50 @@ public abstract class AbstractPercentilesParser implements Aggregator.Parser {
                     throw new SearchParseException(context, "Unknown key for a " + token + " in [" + aggregationName + "]: ["
                             + currentFieldName + "].", parser.getTokenLocation());
                 }
+            } else if (token == XContentParser.Token.START_OBJECT) {
+                if (PercentilesMethod.TDIGEST.getParseField().match(currentFieldName)) {
+                    method = PercentilesMethod.TDIGEST;
+                    while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+                        if (token == XContentParser.Token.FIELD_NAME) {
+                            currentFieldName = parser.currentName();
+                        } else if (token == XContentParser.Token.VALUE_NUMBER && "compression".equals(currentFieldName)) {
+                            compression = parser.doubleValue();
+                        } else {
+                            throw new SearchParseException(context, "Unknown key for a " + token + " in [" + aggregationName + "]: ["
+                                    + currentFieldName + "].", parser.getTokenLocation());
+                        }
+                    }
+                } else if (PercentilesMethod.HDR.getParseField().match(currentFieldName)) {
+                    method = PercentilesMethod.HDR;
+                    while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+                        if (token == XContentParser.Token.FIELD_NAME) {
+                            currentFieldName = parser.currentName();
+                        } else if (token == XContentParser.Token.VALUE_NUMBER && "number_of_significant_value_digits".equals(currentFieldName)) {
+                            numberOfSignificantValueDigits = parser.intValue();
+                            if (numberOfSignificantValueDigits < 0 || numberOfSignificantValueDigits > HdrHistogramState.MAX_SIGNIFICANT_VALUE_DIGITS) {
+                                throw new SearchParseException(context, "[number_of_significant_value_digits] must be between 0 and "
+                                        + HdrHistogramState.MAX_SIGNIFICANT_VALUE_DIGITS + " in [" + aggregationName + "], got ["
+                                        + numberOfSignificantValueDigits + "].", parser.getTokenLocation());
+                            }
+                        } else {
+                            throw new SearchParseException(context, "Unknown key for a " + token + " in [" + aggregationName + "]: ["
+                                    + currentFieldName + "].", parser.getTokenLocation());
+                        }
+                    }
+                } else {
+                    throw new SearchParseException(context, "Unknown key for a " + token + " in [" + aggregationName + "]: ["
+                            + currentFieldName + "].", parser.getTokenLocation());
+                }
             } else {
                 throw new SearchParseException(context, "Unexpected token " + token + " in [" + aggregationName + "].",
                         parser.getTokenLocation());
             }
         }
-        return buildFactory(context, aggregationName, vsParser.config(), keys, compression, keyed);
+        return buildFactory(context, aggregationName, vsParser.config(), keys, method, compression, numberOfSignificantValueDigits, keyed);
     }
 
     protected abstract AggregatorFactory buildFactory(SearchContext context, String aggregationName, ValuesSourceConfig<Numeric> config, double[] cdfValues,
-            double compression, boolean keyed);
+            PercentilesMethod method, double compression, int numberOfSignificantValueDigits, boolean keyed);
 
     protected abstract String keysFieldName();
 
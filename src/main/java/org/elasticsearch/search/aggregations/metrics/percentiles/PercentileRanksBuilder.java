@@ -30,6 +30,8 @@ public class PercentileRanksBuilder extends ValuesSourceMetricsAggregationBuilde
 
     private double[] values;
     private Double compression;
+    private PercentilesMethod method;
+    private Integer numberOfSignificantValueDigits;
 
     /**
      * Sole constructor.
@@ -54,6 +56,23 @@ public class PercentileRanksBuilder extends ValuesSourceMetricsAggregationBuilde
         return this;
     }
 
+    /**
+     * Set the method used to compute percentiles, {@link PercentilesMethod#TDIGEST} by default.
+     */
+    public PercentileRanksBuilder method(PercentilesMethod method) {
+        this.method = method;
+        return this;
+    }
+
+    /**
+     * Expert: set the number of significant value digits of the {@link PercentilesMethod#HDR} method, between 0 and 5.
+     * Higher values improve accuracy but also memory usage.
+     */
+    public PercentileRanksBuilder numberOfSignificantValueDigits(int numberOfSignificantValueDigits) {
+        this.numberOfSignificantValueDigits = numberOfSignificantValueDigits;
+        return this;
+    }
+
     @Override
     protected void internalXContent(XContentBuilder builder, Params params) throws IOException {
         super.internalXContent(builder, params);
@@ -62,7 +81,13 @@ public class PercentileRanksBuilder extends ValuesSourceMetricsAggregationBuilde
             builder.field("values", values);
         }
 
-        if (compression != null) {
+        if (method == PercentilesMethod.HDR) {
+            builder.startObject(PercentilesMethod.HDR.getParseField().getPreferredName());
+            if (numberOfSignificantValueDigits != null) {
+                builder.field("number_of_significant_value_digits", numberOfSignificantValueDigits);
+            }
+            builder.endObject();
+        } else if (compression != null) {
             builder.field("compression", compression);
         }
     }
@@ -0,0 +1,276 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.metrics.percentiles.hdr;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+
+/**
+ * A high dynamic range histogram of non-negative values, which records values with a fixed number of significant
+ * decimal digits, in the spirit of HdrHistogram. Each power of two is split into <code>2^subBucketBits</code> buckets of
+ * equal width, so that the relative width of a bucket is at most <code>10^-numberOfSignificantValueDigits</code>. Since
+ * the ordering of the bits of positive doubles is the ordering of their values, the index of the bucket of a value is
+ * the exponent of the value followed by the <code>subBucketBits</code> highest bits of its mantissa.
+ *
+ * Counts are stored in a dense array that covers the range of recorded values, so memory usage only depends on the
+ * number of significant digits and on the dynamic range of values. Histograms are merged by adding counts.
+ */
+public class HdrHistogramState {
+
+    public static final int MAX_SIGNIFICANT_VALUE_DIGITS = 5;
+
+    private static final int MANTISSA_BITS = 52;
+
+    private final int numberOfSignificantValueDigits;
+    private final int shift;
+    private long zeroCount;
+    private long totalCount;
+    // counts[i] is the count of the bucket at index minIndex + i
+    private int minIndex;
+    private long[] counts;
+
+    public HdrHistogramState(int numberOfSignificantValueDigits) {
+        if (numberOfSignificantValueDigits < 0 || numberOfSignificantValueDigits > MAX_SIGNIFICANT_VALUE_DIGITS) {
+            throw new IllegalArgumentException("numberOfSignificantValueDigits must be between 0 and " + MAX_SIGNIFICANT_VALUE_DIGITS
+                    + ", got [" + numberOfSignificantValueDigits + "]");
+        }
+        this.numberOfSignificantValueDigits = numberOfSignificantValueDigits;
+        final int subBucketBits = (int) Math.ceil(numberOfSignificantValueDigits * Math.log(10) / Math.log(2));
+        this.shift = MANTISSA_BITS - subBucketBits;
+        this.counts = new long[0];
+    }
+
+    public int numberOfSignificantValueDigits() {
+        return numberOfSignificantValueDigits;
+    }
+
+    /**
+     * Return the number of recorded values.
+     */
+    public long totalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Record a value.
+     */
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    /**
+     * Record <code>count</code> occurrences of a value.
+     */
+    public void add(double value, long count) {
+        if (value < 0 || Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("HDR histograms only support finite non-negative values, got [" + value + "]");
+        }
+        if (value == 0) {
+            zeroCount += count;
+        } else {
+            final int index = index(value);
+            ensureCapacity(index, index);
+            counts[index - minIndex] += count;
+        }
+        totalCount += count;
+    }
+
+    /**
+     * Add all values recorded in the given histogram to this histogram.
+     */
+    public void add(HdrHistogramState other) {
+        if (other.numberOfSignificantValueDigits != numberOfSignificantValueDigits) {
+            throw new IllegalArgumentException("Cannot merge histograms with different numbers of significant value digits: ["
+                    + numberOfSignificantValueDigits + "] and [" + other.numberOfSignificantValueDigits + "]");
+        }
+        if (other.counts.length > 0) {
+            ensureCapacity(other.minIndex, other.minIndex + other.counts.length - 1);
+            final int offset = other.minIndex - minIndex;
+            for (int i = 0; i < other.counts.length; ++i) {
+                counts[offset + i] += other.counts[i];
+            }
+        }
+        zeroCount += other.zeroCount;
+        totalCount += other.totalCount;
+    }
+
+    /**
+     * Return the value at the given quantile, between 0 and 1, or {@link Double#NaN} if no values have been recorded.
+     */
+    public double quantile(double q) {
+        if (totalCount == 0) {
+            return Double.NaN;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(Math.min(1, Math.max(0, q)) * totalCount));
+        long count = zeroCount;
+        if (count >= rank) {
+            return 0;
+        }
+        for (int i = 0; i < counts.length; ++i) {
+            count += counts[i];
+            if (count >= rank) {
+                final int index = minIndex + i;
+                return (lowestValue(index) + lowestValue(index + 1)) / 2;
+            }
+        }
+        throw new IllegalStateException("rank [" + rank + "] is greater than the total count [" + totalCount + "]");
+    }
+
+    /**
+     * Return the fraction of recorded values that are less than or equal to the given value, or {@link Double#NaN} if
+     * no values have been recorded.
+     */
+    public double cdf(double value) {
+        if (totalCount == 0) {
+            return Double.NaN;
+        }
+        if (value < 0) {
+            return 0;
+        }
+        if (value == Double.POSITIVE_INFINITY) {
+            return 1;
+        }
+        long count = zeroCount;
+        if (value > 0) {
+            final int maxOffset = Math.min(counts.length - 1, index(value) - minIndex);
+            for (int i = 0; i <= maxOffset; ++i) {
+                count += counts[i];
+            }
+        }
+        return (double) count / totalCount;
+    }
+
+    private int index(double value) {
+        return (int) (Double.doubleToRawLongBits(value) >>> shift);
+    }
+
+    private double lowestValue(int index) {
+        return Double.longBitsToDouble(((long) index) << shift);
+    }
+
+    private void ensureCapacity(int lowIndex, int highIndex) {
+        if (counts.length == 0) {
+            minIndex = lowIndex;
+            counts = new long[highIndex - lowIndex + 1];
+            return;
+        }
+        final int maxIndex = minIndex + counts.length - 1;
+        if (lowIndex >= minIndex && highIndex <= maxIndex) {
+            return;
+        }
+        // grow by at least half of the current size to amortize resizing when values keep expanding the range
+        final int slack = counts.length >>> 1;
+        int newMinIndex = minIndex;
+        if (lowIndex < minIndex) {
+            newMinIndex = Math.max(0, Math.min(lowIndex, minIndex - slack));
+        }
+        int newMaxIndex = maxIndex;
+        if (highIndex > maxIndex) {
+            newMaxIndex = Math.min(index(Double.MAX_VALUE), Math.max(highIndex, maxIndex + slack));
+        }
+        final long[] newCounts = new long[newMaxIndex - newMinIndex + 1];
+        System.arraycopy(counts, 0, newCounts, minIndex - newMinIndex, counts.length);
+        minIndex = newMinIndex;
+        counts = newCounts;
+    }
+
+    public static void write(HdrHistogramState state, StreamOutput out) throws IOException {
+        out.writeVInt(state.numberOfSignificantValueDigits);
+        out.writeVLong(state.zeroCount);
+        int numBuckets = 0;
+        for (long count : state.counts) {
+            if (count != 0) {
+                ++numBuckets;
+            }
+        }
+        out.writeVInt(numBuckets);
+        // only non-empty buckets are written, with the delta of their index with the previous one
+        int previousIndex = 0;
+        for (int i = 0; i < state.counts.length; ++i) {
+            if (state.counts[i] != 0) {
+                final int index = state.minIndex + i;
+                out.writeVInt(index - previousIndex);
+                out.writeVLong(state.counts[i]);
+                previousIndex = index;
+            }
+        }
+    }
+
+    public static HdrHistogramState read(StreamInput in) throws IOException {
+        final HdrHistogramState state = new HdrHistogramState(in.readVInt());
+        state.zeroCount = in.readVLong();
+        state.totalCount = state.zeroCount;
+        final int numBuckets = in.readVInt();
+        final int[] indices = new int[numBuckets];
+        final long[] counts = new long[numBuckets];
+        int index = 0;
+        for (int i = 0; i < numBuckets; ++i) {
+            index += in.readVInt();
+            indices[i] = index;
+            counts[i] = in.readVLong();
+        }
+        if (numBuckets > 0) {
+            state.ensureCapacity(indices[0], indices[numBuckets - 1]);
+            for (int i = 0; i < numBuckets; ++i) {
+                state.counts[indices[i] - state.minIndex] = counts[i];
+                state.totalCount += counts[i];
+            }
+        }
+        return state;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final HdrHistogramState that = (HdrHistogramState) obj;
+        if (numberOfSignificantValueDigits != that.numberOfSignificantValueDigits || zeroCount != that.zeroCount
+                || totalCount != that.totalCount) {
+            return false;
+        }
+        for (int index = Math.min(minIndex, that.minIndex),
+                end = Math.max(minIndex + counts.length, that.minIndex + that.counts.length); index < end; ++index) {
+            if (count(index) != that.count(index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 31 * numberOfSignificantValueDigits + (int) (totalCount ^ (totalCount >>> 32));
+        for (int i = 0; i < counts.length; ++i) {
+            if (counts[i] != 0) {
+                hash = 31 * hash + minIndex + i;
+                hash = 31 * hash + (int) (counts[i] ^ (counts[i] >>> 32));
+            }
+        }
+        return hash;
+    }
+
+    private long count(int index) {
+        final int offset = index - minIndex;
+        return offset >= 0 && offset < counts.length ? counts[offset] : 0;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.metrics.percentiles.hdr;
+
+import com.google.common.collect.UnmodifiableIterator;
+
+import org.elasticsearch.common.inject.internal.Nullable;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.search.aggregations.AggregationStreams;
+import org.elasticsearch.search.aggregations.metrics.percentiles.InternalPercentile;
+import org.elasticsearch.search.aggregations.metrics.percentiles.Percentile;
+import org.elasticsearch.search.aggregations.metrics.percentiles.Percentiles;
+import org.elasticsearch.search.aggregations.reducers.Reducer;
+import org.elasticsearch.search.aggregations.support.format.ValueFormatter;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Percentiles computed with a {@link HdrHistogramState}.
+ */
+public class InternalHDRPercentiles extends AbstractInternalHDRPercentiles implements Percentiles {
+
+    public final static Type TYPE = new Type("percentiles", "hdr_percentiles");
+
+    public final static AggregationStreams.Stream STREAM = new AggregationStreams.Stream() {
+        @Override
+        public InternalHDRPercentiles readResult(StreamInput in) throws IOException {
+            InternalHDRPercentiles result = new InternalHDRPercentiles();
+            result.readFrom(in);
+            return result;
+        }
+    };
+
+    public static void registerStreams() {
+        AggregationStreams.registerStream(STREAM, TYPE.stream());
+    }
+
+    InternalHDRPercentiles() {} // for serialization
+
+    public InternalHDRPercentiles(String name, double[] percents, HdrHistogramState state, boolean keyed,
+            @Nullable ValueFormatter formatter, List<Reducer> reducers, Map<String, Object> metaData) {
+        super(name, percents, state, keyed, formatter, reducers, metaData);
+    }
+
+    @Override
+    public Iterator<Percentile> iterator() {
+        return new Iter(keys, state);
+    }
+
+    @Override
+    public double percentile(double percent) {
+        return state.quantile(percent / 100);
+    }
+
+    @Override
+    public String percentileAsString(double percent) {
+        return valueAsString(String.valueOf(percent));
+    }
+
+    @Override
+    public double value(double key) {
+        return percentile(key);
+    }
+
+    @Override
+    protected AbstractInternalHDRPercentiles createReduced(String name, double[] keys, HdrHistogramState merged, boolean keyed,
+            List<Reducer> reducers, Map<String, Object> metaData) {
+        return new InternalHDRPercentiles(name, keys, merged, keyed, valueFormatter, reducers, metaData);
+    }
+
+    @Override
+    public Type type() {
+        return TYPE;
+    }
+
+    public static class Iter extends UnmodifiableIterator<Percentile> {
+
+        private final double[] percents;
+        private final HdrHistogramState state;
+        private int i;
+
+        public Iter(double[] percents, HdrHistogramState state) {
+            this.percents = percents;
+            this.state = state;
+            i = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return i < percents.length;
+        }
+
+        @Override
+        public Percentile next() {
+            final Percentile next = new InternalPercentile(percents[i], state.quantile(percents[i] / 100));
+            ++i;
+            return next;
+        }
+    }
+}
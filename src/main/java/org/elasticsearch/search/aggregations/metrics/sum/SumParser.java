@@ -20,8 +20,10 @@ package org.elasticsearch.search.aggregations.metrics.sum;
 
 import org.elasticsearch.search.aggregations.AggregatorFactory;
 import org.elasticsearch.search.aggregations.metrics.NumericValuesSourceMetricsAggregatorParser;
+import org.elasticsearch.search.aggregations.support.RollupFields;
 import org.elasticsearch.search.aggregations.support.ValuesSource;
 import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
+import org.elasticsearch.search.aggregations.support.ValuesSourceParser;
 
 /**
  *
@@ -36,4 +38,10 @@ public class SumParser extends NumericValuesSourceMetricsAggregatorParser<Intern
     protected AggregatorFactory createFactory(String aggregationName, ValuesSourceConfig<ValuesSource.Numeric> config) {
         return new SumAggregator.Factory(aggregationName, config);
     }
+
+    @Override
+    protected AggregatorFactory createRollupFactory(String aggregationName, ValuesSourceParser<ValuesSource.Numeric> vsParser,
+            String metric) {
+        return createFactory(aggregationName, vsParser.config(RollupFields.summaryField(metric, RollupFields.SUM)));
+    }
 }
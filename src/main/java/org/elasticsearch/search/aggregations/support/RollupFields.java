@@ -0,0 +1,195 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.support;
+
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.rounding.DateTimeUnit;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchParseException;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramParser;
+import org.elasticsearch.search.internal.SearchContext;
+import org.joda.time.DateTimeZone;
+
+/**
+ * Layout of rollup indices. A document of a rollup index summarizes the documents of a time bucket that share the same
+ * values for the dimensions of the rollup: it has the start of the bucket in the date field, the values of the
+ * dimensions under their own names, the number of summarized documents in {@link #DOC_COUNT}, and for every metric
+ * field <code>metric</code> the fields <code>metric.min</code>, <code>metric.max</code>, <code>metric.sum</code> and
+ * <code>metric.value_count</code>.
+ *
+ * Metrics aggregations that run on a rollup index read these summary fields when they target a rolled up metric, so
+ * that requests that were written against the raw data can be answered from the rollup index. Requests that can't be
+ * answered from the summaries, such as date histograms that are finer than the rollup interval or filters on fields
+ * that are not dimensions, are rejected rather than silently returning wrong results.
+ */
+public final class RollupFields {
+
+    public static final String SETTING_DATE_FIELD = "index.rollup.date_field";
+    public static final String SETTING_INTERVAL = "index.rollup.interval";
+    public static final String SETTING_DIMENSIONS = "index.rollup.dimensions";
+    public static final String SETTING_METRICS = "index.rollup.metrics";
+
+    public static final String TYPE = "rollup";
+    public static final String DOC_COUNT = "rollup_doc_count";
+
+    public static final String MIN = "min";
+    public static final String MAX = "max";
+    public static final String SUM = "sum";
+    public static final String VALUE_COUNT = "value_count";
+
+    private static final long DAY = TimeValue.timeValueHours(24).millis();
+    // time zone offsets are multiples of 15 minutes
+    private static final long TIME_ZONE_GRANULARITY = TimeValue.timeValueMinutes(15).millis();
+
+    private RollupFields() {
+    }
+
+    /**
+     * Return the name of the field that stores the given summary of a metric.
+     */
+    public static String summaryField(String metric, String summary) {
+        return metric + "." + summary;
+    }
+
+    /**
+     * Return whether the index with the given settings is a rollup index.
+     */
+    public static boolean isRollupIndex(Settings indexSettings) {
+        return indexSettings.get(SETTING_DATE_FIELD) != null;
+    }
+
+    /**
+     * Return the rolled up metric that an aggregation should read from summary fields, or <tt>null</tt> if the aggregation
+     * should run as usual: when the searched index is not a rollup index, when values are read from a script or when the
+     * field is mapped in the searched index. Fails if the field is neither mapped nor rolled up in a rollup index, since
+     * the aggregation would silently find no values.
+     */
+    public static String rolledUpMetric(SearchContext context, ValuesSourceParser<?> vsParser, ValuesSourceConfig<?> config) {
+        final String field = vsParser.unscriptedField();
+        if (field == null || config.unmapped() == false) {
+            return null;
+        }
+        final Settings indexSettings = context.indexShard().indexSettings();
+        if (isRollupIndex(indexSettings) == false) {
+            return null;
+        }
+        for (String metric : indexSettings.getAsArray(SETTING_METRICS, Strings.EMPTY_ARRAY)) {
+            if (metric.equals(field)) {
+                return metric;
+            }
+        }
+        throw new SearchParseException(context, "Field [" + field + "] is not rolled up in rollup index ["
+                + context.indexShard().shardId().index().name() + "]", null);
+    }
+
+    /**
+     * Fail if a <code>date_histogram</code> aggregation on the given field of a rollup index has buckets that are not
+     * unions of the buckets of the rollup.
+     */
+    public static void checkDateHistogram(SearchContext context, String field, String interval, DateTimeZone timeZone, long offset) {
+        final Settings indexSettings = context.indexShard().indexSettings();
+        if (field == null || isRollupIndex(indexSettings) == false || field.equals(indexSettings.get(SETTING_DATE_FIELD)) == false) {
+            return;
+        }
+        final String rollupInterval = indexSettings.get(SETTING_INTERVAL);
+        if (isMultipleOf(interval, timeZone, offset, rollupInterval) == false) {
+            throw new SearchParseException(context, "date_histogram on [" + field + "] with interval [" + interval + "], time zone ["
+                    + timeZone + "] and offset [" + offset + "] can't be computed from rollup index ["
+                    + context.indexShard().shardId().index().name() + "] which rolls up [" + field + "] by [" + rollupInterval + "]",
+                    null);
+        }
+    }
+
+    /**
+     * Return whether every bucket of the given date histogram is a union of buckets of the rollup interval, which are in UTC.
+     */
+    static boolean isMultipleOf(String interval, DateTimeZone timeZone, long offset, String rollupInterval) {
+        final long length = fixedLength(interval);
+        final long rollupLength = fixedLength(rollupInterval);
+        if (rollupLength < 0) {
+            return length < 0 && months(interval) % months(rollupInterval) == 0 && offset == 0 && DateTimeZone.UTC.equals(timeZone);
+        }
+        if (DateTimeZone.UTC.equals(timeZone) == false && TIME_ZONE_GRANULARITY % rollupLength != 0) {
+            return false;
+        }
+        if (length < 0) {
+            // months start at midnight
+            return DAY % rollupLength == 0 && offset % rollupLength == 0;
+        }
+        return length % rollupLength == 0 && (start(interval) + offset - start(rollupInterval)) % rollupLength == 0;
+    }
+
+    /**
+     * Return whether filtering on the given field of the index with the given settings gives the same results on summaries
+     * as on the rolled up documents, which is only the case for the date field and the dimensions of rollup indices.
+     */
+    public static boolean isFilterable(Settings indexSettings, String field) {
+        if (isRollupIndex(indexSettings) == false || field.startsWith("_") || field.equals(indexSettings.get(SETTING_DATE_FIELD))) {
+            return true;
+        }
+        for (String dimension : indexSettings.getAsArray(SETTING_DIMENSIONS, Strings.EMPTY_ARRAY)) {
+            if (dimension.equals(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return the length of the given interval in milliseconds, or -1 if it is a number of months. */
+    private static long fixedLength(String interval) {
+        final DateTimeUnit unit = DateHistogramParser.DATE_FIELD_UNITS.get(interval);
+        if (unit == null) {
+            return TimeValue.parseTimeValue(interval, null).millis();
+        }
+        switch (unit) {
+            case WEEK_OF_WEEKYEAR:
+                return 7 * DAY;
+            case DAY_OF_MONTH:
+                return DAY;
+            case HOUR_OF_DAY:
+                return TimeValue.timeValueHours(1).millis();
+            case MINUTES_OF_HOUR:
+                return TimeValue.timeValueMinutes(1).millis();
+            case SECOND_OF_MINUTE:
+                return TimeValue.timeValueSeconds(1).millis();
+            default:
+                return -1;
+        }
+    }
+
+    private static int months(String interval) {
+        switch (DateHistogramParser.DATE_FIELD_UNITS.get(interval)) {
+            case YEAR_OF_CENTURY:
+                return 12;
+            case QUARTER:
+                return 3;
+            default:
+                assert DateHistogramParser.DATE_FIELD_UNITS.get(interval) == DateTimeUnit.MONTH_OF_YEAR;
+                return 1;
+        }
+    }
+
+    /** Return the start of a bucket of the given fixed length interval, relative to the epoch. */
+    private static long start(String interval) {
+        // weeks start on Mondays while the epoch is a Thursday, other intervals are aligned on the epoch
+        return DateHistogramParser.DATE_FIELD_UNITS.get(interval) == DateTimeUnit.WEEK_OF_WEEKYEAR ? 4 * DAY : 0;
+    }
+}
@@ -57,6 +57,10 @@ public class ValuesSourceConfig<VS extends ValuesSource> {
         return unmapped;
     }
 
+    public Object missing() {
+        return missing;
+    }
+
     public boolean valid() {
         return fieldContext != null || script != null || unmapped;
     }
@@ -129,6 +129,29 @@ public class ValuesSourceParser<VS extends ValuesSource> {
         return false;
     }
 
+    /**
+     * Return the field that values are read from, or <tt>null</tt> if values are computed or transformed by a script.
+     */
+    public String unscriptedField() {
+        if (input.script != null || scriptParameterParser.getDefaultScriptParameterValue() != null) {
+            return null;
+        }
+        return input.field;
+    }
+
+    /**
+     * Same as {@link #config()}, but reads values from the given field instead of the parsed one.
+     */
+    public ValuesSourceConfig<VS> config(String field) {
+        final String parsedField = input.field;
+        input.field = field;
+        try {
+            return config();
+        } finally {
+            input.field = parsedField;
+        }
+    }
+
     public ValuesSourceConfig<VS> config() {
         
         ScriptParameterValue scriptValue = scriptParameterParser.getDefaultScriptParameterValue();
@@ -28,7 +28,10 @@ import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.client.Requests;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ChannelBufferBytesReference;
 import org.elasticsearch.test.ElasticsearchTestCase;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.junit.Test;
 
 import java.util.ArrayList;
@@ -90,6 +93,36 @@ public class BulkRequestTests extends ElasticsearchTestCase {
         assertThat(((UpdateRequest) bulkRequest.requests().get(1)).upsertRequest().source().toUtf8(), equalTo("{\"counter\":1}"));
     }
 
+    @Test
+    public void testSimpleBulkFromSlicedAndCompositeBytes() throws Exception {
+        String bulkAction = copyToStringFromClasspath("/org/elasticsearch/action/bulk/simple-bulk.json");
+        if (Constants.WINDOWS) {
+            bulkAction = Strings.replace(bulkAction, "\r\n", "\n");
+        }
+        byte[] bytes = bulkAction.getBytes(Charsets.UTF_8);
+
+        // array backed with an offset
+        byte[] padded = new byte[bytes.length + 10];
+        System.arraycopy(bytes, 0, padded, 5, bytes.length);
+        assertSimpleBulk(new BytesArray(padded, 5, bytes.length));
+
+        // not backed by a single array
+        int split = randomIntBetween(1, bytes.length - 1);
+        BytesReference composite = new ChannelBufferBytesReference(ChannelBuffers.wrappedBuffer(
+                ChannelBuffers.wrappedBuffer(bytes, 0, split), ChannelBuffers.wrappedBuffer(bytes, split, bytes.length - split)));
+        assertFalse(composite.hasArray());
+        assertSimpleBulk(composite);
+    }
+
+    private void assertSimpleBulk(BytesReference data) throws Exception {
+        BulkRequest bulkRequest = new BulkRequest();
+        bulkRequest.add(data, null, null);
+        assertThat(bulkRequest.numberOfActions(), equalTo(3));
+        assertThat(((IndexRequest) bulkRequest.requests().get(0)).source().toBytes(), equalTo(new BytesArray("{ \"field1\" : \"value1\" }").toBytes()));
+        assertThat(bulkRequest.requests().get(1), instanceOf(DeleteRequest.class));
+        assertThat(((IndexRequest) bulkRequest.requests().get(2)).source().toBytes(), equalTo(new BytesArray("{ \"field1\" : \"value3\" }").toBytes()));
+    }
+
     @Test
     public void testBulkAllowExplicitIndex() throws Exception {
         String bulkAction = copyToStringFromClasspath("/org/elasticsearch/action/bulk/simple-bulk.json");
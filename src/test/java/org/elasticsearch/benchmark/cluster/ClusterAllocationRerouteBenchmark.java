@@ -43,7 +43,8 @@ public class ClusterAllocationRerouteBenchmark {
 
     public static void main(String[] args) {
         final int numberOfRuns = 1;
-        final int numIndices = 5 * 365; // five years
+        final int numberOfReroutes = 10;
+        final int[] numIndicesPerRun = {365, 2 * 365, 5 * 365}; // one, two and five years
         final int numShards = 6;
         final int numReplicas = 2;
         final int numberOfNodes = 30;
@@ -52,37 +53,59 @@ public class ClusterAllocationRerouteBenchmark {
                 .put("cluster.routing.allocation.awareness.attributes", "tag")
                 .build(), new Random(1));
 
-        MetaData.Builder mb = MetaData.builder();
-        for (int i = 1; i <= numIndices; i++) {
-            mb.put(IndexMetaData.builder("test_" + i).numberOfShards(numShards).numberOfReplicas(numReplicas));
-        }
-        MetaData metaData = mb.build();
-        RoutingTable.Builder rb = RoutingTable.builder();
-        for (int i = 1; i <= numIndices; i++) {
-            rb.addAsNew(metaData.index("test_" + i));
-        }
-        RoutingTable routingTable = rb.build();
         DiscoveryNodes.Builder nb = DiscoveryNodes.builder();
         for (int i = 1; i <= numberOfNodes; i++) {
             nb.put(ElasticsearchAllocationTestCase.newNode("node" + i, numberOfTags == 0 ? ImmutableMap.<String, String>of() : ImmutableMap.of("tag", "tag_" + (i % numberOfTags))));
         }
-        ClusterState initialClusterState = ClusterState.builder(ClusterName.DEFAULT).metaData(metaData).routingTable(routingTable).nodes(nb).build();
+        DiscoveryNodes nodes = nb.build();
+
+        final long[] rerouteTookPerRun = new long[numIndicesPerRun.length];
+        for (int run = 0; run < numIndicesPerRun.length; run++) {
+            final int numIndices = numIndicesPerRun[run];
+            MetaData.Builder mb = MetaData.builder();
+            for (int i = 1; i <= numIndices; i++) {
+                mb.put(IndexMetaData.builder("test_" + i).numberOfShards(numShards).numberOfReplicas(numReplicas));
+            }
+            MetaData metaData = mb.build();
+            RoutingTable.Builder rb = RoutingTable.builder();
+            for (int i = 1; i <= numIndices; i++) {
+                rb.addAsNew(metaData.index("test_" + i));
+            }
+            RoutingTable routingTable = rb.build();
+            ClusterState initialClusterState = ClusterState.builder(ClusterName.DEFAULT).metaData(metaData).routingTable(routingTable).nodes(nodes).build();
 
-        long start = System.currentTimeMillis();
-        for (int i = 0; i < numberOfRuns; i++) {
-            logger.info("[{}] starting... ", i);
-            long runStart = System.currentTimeMillis();
+            long start = System.currentTimeMillis();
             ClusterState clusterState = initialClusterState;
-            while (clusterState.readOnlyRoutingNodes().hasUnassignedShards()) {
-                logger.info("[{}] remaining unassigned {}", i, clusterState.readOnlyRoutingNodes().unassigned().size());
-                RoutingAllocation.Result result = strategy.applyStartedShards(clusterState, clusterState.readOnlyRoutingNodes().shardsWithState(INITIALIZING));
-                clusterState = ClusterState.builder(clusterState).routingResult(result).build();
-                result = strategy.reroute(clusterState);
-                clusterState = ClusterState.builder(clusterState).routingResult(result).build();
+            for (int i = 0; i < numberOfRuns; i++) {
+                logger.info("[{}][{}] starting... ", metaData.totalNumberOfShards(), i);
+                long runStart = System.currentTimeMillis();
+                clusterState = initialClusterState;
+                while (clusterState.readOnlyRoutingNodes().hasUnassignedShards()) {
+                    logger.info("[{}][{}] remaining unassigned {}", metaData.totalNumberOfShards(), i, clusterState.readOnlyRoutingNodes().unassigned().size());
+                    RoutingAllocation.Result result = strategy.applyStartedShards(clusterState, clusterState.readOnlyRoutingNodes().shardsWithState(INITIALIZING));
+                    clusterState = ClusterState.builder(clusterState).routingResult(result).build();
+                    result = strategy.reroute(clusterState);
+                    clusterState = ClusterState.builder(clusterState).routingResult(result).build();
+                }
+                logger.info("[{}][{}] took {}", metaData.totalNumberOfShards(), i, TimeValue.timeValueMillis(System.currentTimeMillis() - runStart));
             }
-            logger.info("[{}] took {}", i, TimeValue.timeValueMillis(System.currentTimeMillis() - runStart));
+            long took = System.currentTimeMillis() - start;
+            logger.info("[{}] total took {}, AVG {}", metaData.totalNumberOfShards(), TimeValue.timeValueMillis(took), TimeValue.timeValueMillis(took / numberOfRuns));
+
+            // now measure a plain reroute on the allocated cluster, this is what the master pays for every cluster state change
+            RoutingAllocation.Result result = strategy.applyStartedShards(clusterState, clusterState.readOnlyRoutingNodes().shardsWithState(INITIALIZING));
+            clusterState = ClusterState.builder(clusterState).routingResult(result).build();
+            start = System.currentTimeMillis();
+            for (int i = 0; i < numberOfReroutes; i++) {
+                strategy.reroute(clusterState);
+            }
+            rerouteTookPerRun[run] = (System.currentTimeMillis() - start) / numberOfReroutes;
+        }
+
+        logger.info("reroute time by number of shards:");
+        for (int run = 0; run < numIndicesPerRun.length; run++) {
+            final int totalNumberOfShards = numIndicesPerRun[run] * numShards * (numReplicas + 1);
+            logger.info("[{}] shards on [{}] nodes, AVG reroute {}", totalNumberOfShards, numberOfNodes, TimeValue.timeValueMillis(rerouteTookPerRun[run]));
         }
-        long took = System.currentTimeMillis() - start;
-        logger.info("total took {}, AVG {}", TimeValue.timeValueMillis(took), TimeValue.timeValueMillis(took / numberOfRuns));
     }
-}
\ No newline at end of file
+}
@@ -20,9 +20,12 @@
 package org.elasticsearch.cluster.routing.allocation;
 
 import com.carrotsearch.hppc.cursors.ObjectCursor;
+import com.google.common.collect.ImmutableMap;
 import org.elasticsearch.Version;
+import org.elasticsearch.cluster.ClusterInfo;
 import org.elasticsearch.cluster.ClusterInfoService;
 import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.DiskUsage;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.node.DiscoveryNode;
@@ -31,7 +34,10 @@ import org.elasticsearch.cluster.routing.*;
 import org.elasticsearch.cluster.routing.allocation.allocator.BalancedShardsAllocator;
 import org.elasticsearch.cluster.routing.allocation.allocator.ShardsAllocator;
 import org.elasticsearch.cluster.routing.allocation.allocator.ShardsAllocators;
+import org.elasticsearch.cluster.routing.allocation.decider.AllocationDecider;
+import org.elasticsearch.cluster.routing.allocation.decider.AllocationDeciders;
 import org.elasticsearch.cluster.routing.allocation.decider.ClusterRebalanceAllocationDecider;
+import org.elasticsearch.cluster.routing.allocation.decider.SameShardAllocationDecider;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.ImmutableSettings;
@@ -41,6 +47,13 @@ import org.elasticsearch.test.ElasticsearchAllocationTestCase;
 import org.hamcrest.Matchers;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
 import static org.elasticsearch.cluster.routing.ShardRoutingState.INITIALIZING;
 import static org.elasticsearch.cluster.routing.ShardRoutingState.STARTED;
 import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
@@ -310,7 +323,105 @@ public class BalanceConfigurationTests extends ElasticsearchAllocationTestCase {
         listeners[0].onRefreshSettings(settings.build());
         assertThat(allocator.getIndexBalance(), Matchers.equalTo(0.5f));
         assertThat(allocator.getShardBalance(), Matchers.equalTo(0.1f));
+        assertThat(allocator.getDiskBalance(), Matchers.equalTo(0.0f));
+        assertThat(allocator.getThreshold(), Matchers.equalTo(3.0f));
+
+        settings = settingsBuilder();
+        settings.put(BalancedShardsAllocator.SETTING_DISK_BALANCE_FACTOR, 0.4);
+        listeners[0].onRefreshSettings(settings.build());
+        assertThat(allocator.getIndexBalance(), Matchers.equalTo(0.5f));
+        assertThat(allocator.getShardBalance(), Matchers.equalTo(0.1f));
+        assertThat(allocator.getDiskBalance(), Matchers.equalTo(0.4f));
         assertThat(allocator.getThreshold(), Matchers.equalTo(3.0f));
+
+        settings = settingsBuilder();
+        settings.put(BalancedShardsAllocator.SETTING_DISK_BALANCE_FACTOR, -1.0);
+        try {
+            listeners[0].onRefreshSettings(settings.build());
+            fail("negative disk balance must be rejected");
+        } catch (IllegalArgumentException ex) {
+            assertThat(ex.getMessage(), Matchers.containsString("disk balance"));
+        }
+        assertThat(allocator.getDiskBalance(), Matchers.equalTo(0.4f));
+    }
+
+    @Test
+    public void testDiskBalance() {
+        // the first shard is a hundred times larger than the others
+        Map<String, Long> shardSizes = new HashMap<>();
+        shardSizes.put("[test][0][p]", 1000L);
+        shardSizes.put("[test][1][p]", 10L);
+        shardSizes.put("[test][2][p]", 10L);
+        shardSizes.put("[test][3][p]", 10L);
+        final ClusterInfo clusterInfo = new ClusterInfo(ImmutableMap.<String, DiskUsage>of(), ImmutableMap.copyOf(shardSizes));
+
+        // balancing by disk usage moves all small shards and leaves the large one alone
+        ClusterState clusterState = rebalanceOntoNewNode(clusterInfo, 0.0f, 0.0f, 1.0f);
+        assertThat(shardIds(clusterState, "node1"), Matchers.containsInAnyOrder(0));
+        assertThat(shardIds(clusterState, "node2"), Matchers.containsInAnyOrder(1, 2, 3));
+
+        // without a disk balance factor the shard sizes don't matter and the tie-breaker moves the lowest shard ids
+        clusterState = rebalanceOntoNewNode(clusterInfo, 0.55f, 0.45f, 0.0f);
+        assertThat(shardIds(clusterState, "node1"), Matchers.containsInAnyOrder(2, 3));
+        assertThat(shardIds(clusterState, "node2"), Matchers.containsInAnyOrder(0, 1));
+    }
+
+    /**
+     * Allocates the four shards of the <code>test</code> index on a single node, adds a second node and
+     * returns the cluster state once all relocations finished.
+     */
+    private ClusterState rebalanceOntoNewNode(final ClusterInfo clusterInfo, float indexBalance, float shardBalance, float diskBalance) {
+        ImmutableSettings.Builder settings = settingsBuilder();
+        settings.put(ClusterRebalanceAllocationDecider.CLUSTER_ROUTING_ALLOCATION_ALLOW_REBALANCE, ClusterRebalanceAllocationDecider.ClusterRebalanceType.ALWAYS.toString());
+        settings.put(BalancedShardsAllocator.SETTING_INDEX_BALANCE_FACTOR, indexBalance);
+        settings.put(BalancedShardsAllocator.SETTING_SHARD_BALANCE_FACTOR, shardBalance);
+        settings.put(BalancedShardsAllocator.SETTING_DISK_BALANCE_FACTOR, diskBalance);
+        settings.put(BalancedShardsAllocator.SETTING_THRESHOLD, 1.0f);
+        ClusterInfoService clusterInfoService = new ClusterInfoService() {
+            @Override
+            public ClusterInfo getClusterInfo() {
+                return clusterInfo;
+            }
+
+            @Override
+            public void addListener(Listener listener) {
+                // noop
+            }
+        };
+        AllocationDeciders deciders = new AllocationDeciders(settings.build(),
+                new HashSet<>(Arrays.<AllocationDecider>asList(new SameShardAllocationDecider(settings.build()))));
+        AllocationService strategy = new AllocationService(settings.build(), deciders,
+                new ShardsAllocators(settings.build(), NoopGatewayAllocator.INSTANCE), clusterInfoService);
+
+        MetaData metaData = MetaData.builder()
+                .put(IndexMetaData.builder("test").settings(settings(Version.CURRENT)).numberOfShards(4).numberOfReplicas(0))
+                .build();
+        RoutingTable routingTable = RoutingTable.builder().addAsNew(metaData.index("test")).build();
+        ClusterState clusterState = ClusterState.builder(org.elasticsearch.cluster.ClusterName.DEFAULT).metaData(metaData).routingTable(routingTable)
+                .nodes(DiscoveryNodes.builder().put(newNode("node1"))).build();
+        clusterState = startAllShards(strategy, clusterState);
+        assertThat(clusterState.getRoutingNodes().node("node1").size(), Matchers.equalTo(4));
+
+        clusterState = ClusterState.builder(clusterState).nodes(DiscoveryNodes.builder(clusterState.nodes()).put(newNode("node2"))).build();
+        return startAllShards(strategy, clusterState);
+    }
+
+    private ClusterState startAllShards(AllocationService strategy, ClusterState clusterState) {
+        RoutingTable routingTable = strategy.reroute(clusterState).routingTable();
+        clusterState = ClusterState.builder(clusterState).routingTable(routingTable).build();
+        while (clusterState.getRoutingNodes().shardsWithState(INITIALIZING).isEmpty() == false) {
+            routingTable = strategy.applyStartedShards(clusterState, clusterState.getRoutingNodes().shardsWithState(INITIALIZING)).routingTable();
+            clusterState = ClusterState.builder(clusterState).routingTable(routingTable).build();
+        }
+        return clusterState;
+    }
+
+    private List<Integer> shardIds(ClusterState clusterState, String nodeId) {
+        List<Integer> shardIds = new ArrayList<>();
+        for (MutableShardRouting shard : clusterState.getRoutingNodes().node(nodeId)) {
+            shardIds.add(shard.id());
+        }
+        return shardIds;
     }
 
     @Test
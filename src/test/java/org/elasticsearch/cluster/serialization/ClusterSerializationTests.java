@@ -22,17 +22,24 @@ package org.elasticsearch.cluster.serialization;
 import org.elasticsearch.Version;
 import org.elasticsearch.cluster.ClusterName;
 import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.Diff;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
 import org.elasticsearch.cluster.routing.RoutingTable;
+import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.cluster.routing.allocation.AllocationService;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.test.ElasticsearchAllocationTestCase;
 import org.junit.Test;
 
+import java.util.Collections;
+
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 
 /**
  *
@@ -87,6 +94,61 @@ public class ClusterSerializationTests extends ElasticsearchAllocationTestCase {
         RoutingTable target = RoutingTable.Builder.readFrom(inStream);
 
         assertThat(target.prettyPrint(), equalTo(source.prettyPrint()));
+        for (IndexShardRoutingTable indexShard : target.index("test")) {
+            for (ShardRouting shardRouting : indexShard) {
+                // all copies of a shard share the shard id and node ids are interned
+                assertThat(shardRouting.shardId(), sameInstance(indexShard.shardId()));
+                if (shardRouting.assignedToNode()) {
+                    assertThat(shardRouting.currentNodeId(), sameInstance(shardRouting.currentNodeId().intern()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRoutingTableDiffReusesUnchangedShards() throws Exception {
+        MetaData metaData = MetaData.builder()
+                .put(IndexMetaData.builder("test1").settings(settings(Version.CURRENT)).numberOfShards(5).numberOfReplicas(1))
+                .put(IndexMetaData.builder("test2").settings(settings(Version.CURRENT)).numberOfShards(5).numberOfReplicas(1))
+                .build();
+
+        RoutingTable routingTable = RoutingTable.builder()
+                .addAsNew(metaData.index("test1"))
+                .addAsNew(metaData.index("test2"))
+                .build();
+
+        DiscoveryNodes nodes = DiscoveryNodes.builder().put(newNode("node1")).put(newNode("node2")).put(newNode("node3")).build();
+
+        ClusterState clusterState = ClusterState.builder(org.elasticsearch.cluster.ClusterName.DEFAULT).nodes(nodes).metaData(metaData).routingTable(routingTable).build();
+
+        AllocationService strategy = createAllocationService();
+        clusterState = ClusterState.builder(clusterState).routingResult(strategy.reroute(clusterState)).build();
+        RoutingTable before = clusterState.routingTable();
+
+        // start a single primary, this only changes a single shard of the first index
+        ShardRouting primary = before.index("test1").shard(0).primaryShard();
+        RoutingTable after = strategy.applyStartedShards(clusterState, Collections.singletonList(primary)).routingTable();
+
+        // the receiving side starts from a deserialized copy of the previous routing table
+        BytesStreamOutput outStream = new BytesStreamOutput();
+        before.writeTo(outStream);
+        RoutingTable local = RoutingTable.Builder.readFrom(StreamInput.wrap(outStream.bytes().toBytes()));
+
+        outStream = new BytesStreamOutput();
+        after.diff(before).writeTo(outStream);
+        Diff<RoutingTable> diff = local.readDiffFrom(StreamInput.wrap(outStream.bytes().toBytes()));
+        RoutingTable applied = diff.apply(local);
+
+        assertThat(applied.prettyPrint(), equalTo(after.prettyPrint()));
+        assertThat(applied.index("test2"), sameInstance(local.index("test2")));
+        assertThat(applied.index("test1").shard(1), sameInstance(local.index("test1").shard(1)));
+        assertThat(applied.index("test1").shard(0), not(sameInstance(local.index("test1").shard(0))));
+
+        // an empty diff hands back the local routing table as is
+        outStream = new BytesStreamOutput();
+        after.diff(after).writeTo(outStream);
+        diff = applied.readDiffFrom(StreamInput.wrap(outStream.bytes().toBytes()));
+        assertThat(diff.apply(applied), sameInstance(applied));
     }
 
 }
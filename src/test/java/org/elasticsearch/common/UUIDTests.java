@@ -24,6 +24,9 @@ import org.junit.Test;
 import java.io.IOException;
 import java.util.HashSet;
 
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
 public class UUIDTests extends ElasticsearchTestCase {
 
     static UUIDGenerator timeUUIDGen = new TimeBasedUUIDGenerator();
@@ -39,6 +42,24 @@ public class UUIDTests extends ElasticsearchTestCase {
         verifyUUIDSet(100000, timeUUIDGen);
     }
 
+    @Test
+    public void testTimeUUIDsDontStartWithDash() {
+        for (int i = 0; i < 1000; ++i) {
+            String uuid = timeUUIDGen.getBase64UUID();
+            assertThat(uuid.charAt(0), not(equalTo('-')));
+        }
+    }
+
+    @Test
+    public void testTimeUUIDsAreOrdered() {
+        String previous = timeUUIDGen.getBase64UUID();
+        for (int i = 0; i < 100000; ++i) {
+            String uuid = timeUUIDGen.getBase64UUID();
+            assertTrue(previous + " should sort before " + uuid, previous.compareTo(uuid) < 0);
+            previous = uuid;
+        }
+    }
+
     @Test
     public void testThreadedTimeUUID() {
         testUUIDThreaded(timeUUIDGen);
@@ -113,6 +113,37 @@ public class VersionsTests extends ElasticsearchTestCase {
         dir.close();
     }
 
+    @Test
+    public void testLookupAcrossSegmentsWithDisjointIds() throws Exception {
+        Directory dir = newDirectory();
+        IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(Lucene.STANDARD_ANALYZER));
+        // every segment holds a distinct range of ids: [a0, a9], [c0, c9], ...
+        final String[] prefixes = new String[] {"a", "c", "e"};
+        for (String prefix : prefixes) {
+            for (int i = 0; i < 10; i++) {
+                Document doc = new Document();
+                doc.add(new Field(UidFieldMapper.NAME, prefix + i, UidFieldMapper.Defaults.FIELD_TYPE));
+                doc.add(new NumericDocValuesField(VersionFieldMapper.NAME, i + 1));
+                writer.addDocument(doc);
+            }
+            writer.commit();
+        }
+        DirectoryReader directoryReader = DirectoryReader.open(writer, true);
+        assertThat(directoryReader.leaves().size(), equalTo(prefixes.length));
+        for (String prefix : prefixes) {
+            for (int i = 0; i < 10; i++) {
+                assertThat(Versions.loadVersion(directoryReader, new Term(UidFieldMapper.NAME, prefix + i)), equalTo((long) i + 1));
+            }
+        }
+        // before, between and after the ranges of the segments
+        for (String id : new String[] {"0", "b0", "d5", "f"}) {
+            assertThat(Versions.loadVersion(directoryReader, new Term(UidFieldMapper.NAME, id)), equalTo(Versions.NOT_FOUND));
+        }
+        directoryReader.close();
+        writer.close();
+        dir.close();
+    }
+
     @Test
     public void testNestedDocuments() throws IOException {
         Directory dir = newDirectory();
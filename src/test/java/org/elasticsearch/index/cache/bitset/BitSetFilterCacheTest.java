@@ -36,12 +36,22 @@ import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.join.BitDocIdSetFilter;
 import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BitDocIdSet;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.SparseFixedBitSet;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.index.Index;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
+import org.elasticsearch.node.settings.NodeSettingsService;
 import org.elasticsearch.test.ElasticsearchTestCase;
 import org.junit.Test;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
 
 /**
  */
@@ -102,4 +112,113 @@ public class BitSetFilterCacheTest extends ElasticsearchTestCase {
         assertThat(cache.getLoadedFilters().size(), equalTo(0l));
     }
 
+    @Test
+    public void testMaxSize() throws Exception {
+        IndexWriter writer = new IndexWriter(
+                new RAMDirectory(),
+                new IndexWriterConfig(new StandardAnalyzer()).setMergePolicy(new LogByteSizeMergePolicy())
+        );
+        for (int i = 0; i < 3; i++) {
+            Document document = new Document();
+            document.add(new StringField("field", "value", Field.Store.NO));
+            writer.addDocument(document);
+            writer.commit();
+        }
+
+        IndexReader reader = DirectoryReader.open(writer, false);
+        IndexSearcher searcher = new IndexSearcher(reader);
+
+        // a single byte can't hold any bitset, so every bitset is evicted right after it is loaded
+        BitsetFilterCache cache = new BitsetFilterCache(new Index("test"), ImmutableSettings.settingsBuilder().put(BitsetFilterCache.INDEX_BITSET_CACHE_MAX_SIZE, "1b").build());
+        BitDocIdSetFilter filter = cache.getBitDocIdSetFilter(new QueryWrapperFilter(new TermQuery(new Term("field", "value"))));
+        TopDocs docs = searcher.search(new ConstantScoreQuery(filter), 1);
+        assertThat(docs.totalHits, equalTo(3));
+        docs = searcher.search(new ConstantScoreQuery(filter), 1);
+        assertThat(docs.totalHits, equalTo(3));
+        assertThat(cache.getLoadedFilters().size(), equalTo(0l));
+
+        reader.close();
+        writer.close();
+    }
+
+    @Test
+    public void testBreakerAccounting() throws Exception {
+        IndexWriter writer = new IndexWriter(
+                new RAMDirectory(),
+                new IndexWriterConfig(new StandardAnalyzer()).setMergePolicy(new LogByteSizeMergePolicy())
+        );
+        for (int i = 0; i < 3; i++) {
+            Document document = new Document();
+            document.add(new StringField("field", "value", Field.Store.NO));
+            writer.addDocument(document);
+            writer.commit();
+        }
+
+        IndexReader reader = DirectoryReader.open(writer, false);
+        IndexSearcher searcher = new IndexSearcher(reader);
+
+        HierarchyCircuitBreakerService breakerService = new HierarchyCircuitBreakerService(ImmutableSettings.EMPTY,
+                new NodeSettingsService(ImmutableSettings.EMPTY));
+        CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.FIELDDATA);
+        BitsetFilterCache cache = new BitsetFilterCache(new Index("test"), ImmutableSettings.EMPTY);
+        cache.setCircuitBreakerService(breakerService);
+        BitDocIdSetFilter filter = cache.getBitDocIdSetFilter(new QueryWrapperFilter(new TermQuery(new Term("field", "value"))));
+        TopDocs docs = searcher.search(new ConstantScoreQuery(filter), 1);
+        assertThat(docs.totalHits, equalTo(3));
+        assertThat(cache.getLoadedFilters().size(), equalTo(3l));
+        assertThat(breaker.getUsed(), equalTo(cachedBytes(cache)));
+        assertThat(breaker.getUsed(), greaterThan(0l));
+
+        // cache hits don't account the bitsets again
+        docs = searcher.search(new ConstantScoreQuery(filter), 1);
+        assertThat(docs.totalHits, equalTo(3));
+        assertThat(breaker.getUsed(), equalTo(cachedBytes(cache)));
+
+        // merged away segments release their bytes once they are closed
+        writer.forceMerge(1);
+        reader.close();
+        reader = DirectoryReader.open(writer, false);
+        searcher = new IndexSearcher(reader);
+        docs = searcher.search(new ConstantScoreQuery(filter), 1);
+        assertThat(docs.totalHits, equalTo(3));
+        assertThat(cache.getLoadedFilters().size(), equalTo(1l));
+        assertThat(breaker.getUsed(), equalTo(cachedBytes(cache)));
+
+        cache.clear("test");
+        assertThat(breaker.getUsed(), equalTo(0l));
+
+        reader.close();
+        writer.close();
+        assertThat(breaker.getUsed(), equalTo(0l));
+    }
+
+    private static long cachedBytes(BitsetFilterCache cache) {
+        long bytes = 0;
+        for (BitsetFilterCache.Value value : cache.getLoadedFilters().asMap().values()) {
+            bytes += value.bitset.ramBytesUsed();
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testCompactIfSparse() throws Exception {
+        final int maxDoc = 1 << 20;
+        FixedBitSet sparse = new FixedBitSet(maxDoc);
+        sparse.set(3);
+        sparse.set(4096);
+        sparse.set(maxDoc - 1);
+        BitDocIdSet compacted = BitsetFilterCache.compactIfSparse(new BitDocIdSet(sparse), maxDoc);
+        assertThat(compacted.bits(), instanceOf(SparseFixedBitSet.class));
+        assertThat(compacted.bits().cardinality(), equalTo(3));
+        assertTrue(compacted.bits().get(3));
+        assertTrue(compacted.bits().get(4096));
+        assertTrue(compacted.bits().get(maxDoc - 1));
+        assertThat(compacted.ramBytesUsed(), lessThan(new BitDocIdSet(sparse).ramBytesUsed()));
+
+        FixedBitSet dense = new FixedBitSet(maxDoc);
+        dense.set(0, maxDoc / 2);
+        BitDocIdSet notCompacted = BitsetFilterCache.compactIfSparse(new BitDocIdSet(dense), maxDoc);
+        assertThat(notCompacted.bits(), sameInstance((Object) dense));
+    }
+
 }
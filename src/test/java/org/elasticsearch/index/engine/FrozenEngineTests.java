@@ -0,0 +1,287 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.codec.CodecService;
+import org.elasticsearch.index.deletionpolicy.KeepOnlyLastDeletionPolicy;
+import org.elasticsearch.index.deletionpolicy.SnapshotDeletionPolicy;
+import org.elasticsearch.index.indexing.ShardIndexingService;
+import org.elasticsearch.index.indexing.slowlog.ShardSlowLogIndexingService;
+import org.elasticsearch.index.mapper.ParseContext;
+import org.elasticsearch.index.mapper.ParsedDocument;
+import org.elasticsearch.index.mapper.internal.UidFieldMapper;
+import org.elasticsearch.index.merge.policy.LogByteSizeMergePolicyProvider;
+import org.elasticsearch.index.merge.scheduler.ConcurrentMergeSchedulerProvider;
+import org.elasticsearch.index.settings.IndexSettingsService;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.store.DirectoryService;
+import org.elasticsearch.index.store.Store;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.index.translog.TranslogConfig;
+import org.elasticsearch.test.DummyShardLock;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.hamcrest.MatcherAssert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.elasticsearch.common.settings.ImmutableSettings.Builder.EMPTY_SETTINGS;
+import static org.hamcrest.Matchers.equalTo;
+
+public class FrozenEngineTests extends ElasticsearchTestCase {
+
+    protected final ShardId shardId = new ShardId(new Index("index"), 1);
+
+    protected ThreadPool threadPool;
+
+    private Store store;
+    private Path translogPath;
+    private Settings defaultSettings;
+    private int numDocs;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        CodecService codecService = new CodecService(shardId.index());
+        String name = Codec.getDefault().getName();
+        defaultSettings = ImmutableSettings.builder()
+                .put(EngineConfig.INDEX_GC_DELETES_SETTING, "1h") // make sure this doesn't kick in on us
+                .put(EngineConfig.INDEX_CODEC_SETTING, Arrays.asList(codecService.availableCodecs()).contains(name) ? name : "default")
+                .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+                .build();
+        threadPool = new ThreadPool(getClass().getName());
+        store = createStore(newMockFSDirectory(createTempDir()));
+        Lucene.cleanLuceneIndex(store.directory());
+        translogPath = createTempDir("translog");
+
+        // write and flush some documents, like closing an index before freezing it does
+        numDocs = randomIntBetween(1, 20);
+        try (InternalEngine engine = new InternalEngine(config(), true)) {
+            for (int i = 0; i < numDocs; i++) {
+                ParsedDocument doc = testParsedDocument(Integer.toString(i));
+                engine.create(new Engine.Create(null, newUid(Integer.toString(i)), doc));
+            }
+            engine.flush();
+        }
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+        store.close();
+        terminate(threadPool);
+    }
+
+    private ParsedDocument testParsedDocument(String id) {
+        ParseContext.Document document = new ParseContext.Document();
+        document.add(new TextField("value", "test", Field.Store.YES));
+        Field uidField = new Field("_uid", id, UidFieldMapper.Defaults.FIELD_TYPE);
+        Field versionField = new NumericDocValuesField("_version", 0);
+        document.add(uidField);
+        document.add(versionField);
+        BytesReference source = new BytesArray(new byte[]{1});
+        return new ParsedDocument(uidField, versionField, id, "test", null, -1, -1, Arrays.asList(document), source, null);
+    }
+
+    protected Store createStore(final Directory directory) throws IOException {
+        final DirectoryService directoryService = new DirectoryService(shardId, EMPTY_SETTINGS) {
+            @Override
+            public Directory newDirectory() throws IOException {
+                return directory;
+            }
+
+            @Override
+            public long throttleTimeInNanos() {
+                return 0;
+            }
+        };
+        return new Store(shardId, EMPTY_SETTINGS, directoryService, new DummyShardLock(shardId));
+    }
+
+    protected Term newUid(String id) {
+        return new Term("_uid", id);
+    }
+
+    public EngineConfig config() {
+        IndexSettingsService indexSettingsService = new IndexSettingsService(shardId.index(), defaultSettings);
+        IndexWriterConfig iwc = newIndexWriterConfig();
+        TranslogConfig translogConfig = new TranslogConfig(shardId, translogPath, indexSettingsService.getSettings(), Translog.Durabilty.REQUEST, BigArrays.NON_RECYCLING_INSTANCE, threadPool);
+        return new EngineConfig(shardId, threadPool, new ShardIndexingService(shardId, EMPTY_SETTINGS, new ShardSlowLogIndexingService(shardId, EMPTY_SETTINGS, indexSettingsService)), indexSettingsService
+                , null, store, new SnapshotDeletionPolicy(new KeepOnlyLastDeletionPolicy(shardId, EMPTY_SETTINGS)),
+                new LogByteSizeMergePolicyProvider(store, new IndexSettingsService(new Index("test"), EMPTY_SETTINGS)),
+                new ConcurrentMergeSchedulerProvider(shardId, EMPTY_SETTINGS, threadPool, indexSettingsService),
+                iwc.getAnalyzer(), iwc.getSimilarity(), new CodecService(shardId.index()), new Engine.FailedEngineListener() {
+            @Override
+            public void onFailedEngine(ShardId shardId, String reason, @Nullable Throwable t) {
+                // we don't need to notify anybody in this test
+            }}, null, IndexSearcher.getDefaultQueryCache(), IndexSearcher.getDefaultQueryCachingPolicy(), translogConfig);
+    }
+
+    @Test
+    public void testReaderOpenedLazily() throws Exception {
+        try (FrozenEngine engine = new FrozenEngine(config(), false)) {
+            assertThat(engine.isReaderOpen(), equalTo(false));
+            // stats and segments don't open a reader
+            assertThat(engine.segments(false).size(), equalTo(1));
+            assertThat(engine.isReaderOpen(), equalTo(false));
+
+            Engine.Searcher searcher = engine.acquireSearcher("test");
+            assertThat(engine.isReaderOpen(), equalTo(true));
+            MatcherAssert.assertThat(searcher, EngineSearcherTotalHitsMatcher.engineSearcherTotalHits(numDocs));
+            MatcherAssert.assertThat(searcher, EngineSearcherTotalHitsMatcher.engineSearcherTotalHits(new TermQuery(new Term("value", "test")), numDocs));
+            searcher.close();
+            assertThat(engine.isReaderOpen(), equalTo(false));
+        }
+    }
+
+    @Test
+    public void testStatsDontOpenReader() throws Exception {
+        try (FrozenEngine engine = new FrozenEngine(config(), false)) {
+            SegmentsStats stats = engine.segmentsStats();
+            assertThat(stats.getCount(), equalTo(1L));
+            assertThat(stats.getMemoryInBytes(), equalTo(0L));
+            assertThat(engine.refreshNeeded(), equalTo(false));
+            assertThat(engine.isReaderOpen(), equalTo(false));
+        }
+    }
+
+    @Test
+    public void testReaderReleasedWithLastSearcher() throws Exception {
+        try (FrozenEngine engine = new FrozenEngine(config(), false)) {
+            Engine.Searcher searcher1 = engine.acquireSearcher("test");
+            Engine.Searcher searcher2 = engine.acquireSearcher("test");
+            // both searchers share the same reader
+            assertThat(searcher1.reader(), equalTo(searcher2.reader()));
+            searcher1.close();
+            assertThat(engine.isReaderOpen(), equalTo(true));
+            MatcherAssert.assertThat(searcher2, EngineSearcherTotalHitsMatcher.engineSearcherTotalHits(numDocs));
+            searcher2.close();
+            assertThat(engine.isReaderOpen(), equalTo(false));
+
+            Engine.GetResult getResult = engine.get(new Engine.Get(true, newUid("0")));
+            assertThat(getResult.exists(), equalTo(true));
+            assertThat(engine.isReaderOpen(), equalTo(true));
+            getResult.release();
+            assertThat(engine.isReaderOpen(), equalTo(false));
+        }
+    }
+
+    @Test
+    public void testWritesRejected() throws Exception {
+        try (FrozenEngine engine = new FrozenEngine(config(), false)) {
+            ParsedDocument doc = testParsedDocument("new");
+            try {
+                engine.create(new Engine.Create(null, newUid("new"), doc));
+                fail("frozen engines must reject creates");
+            } catch (UnsupportedOperationException e) {
+                // expected
+            }
+            try {
+                engine.index(new Engine.Index(null, newUid("new"), doc));
+                fail("frozen engines must reject index operations");
+            } catch (UnsupportedOperationException e) {
+                // expected
+            }
+            try {
+                engine.delete(new Engine.Delete("test", "0", newUid("0")));
+                fail("frozen engines must reject deletes");
+            } catch (UnsupportedOperationException e) {
+                // expected
+            }
+            engine.refresh("test");
+            engine.flush();
+            Engine.Searcher searcher = engine.acquireSearcher("test");
+            MatcherAssert.assertThat(searcher, EngineSearcherTotalHitsMatcher.engineSearcherTotalHits(numDocs));
+            searcher.close();
+        }
+    }
+
+    @Test
+    public void testReaderReleasedWhenAcquisitionFails() throws Exception {
+        final FrozenEngine engine = new FrozenEngine(config(), false) {
+            @Override
+            protected Searcher newSearcher(String source, IndexSearcher searcher, SearcherManager manager) {
+                if ("fail".equals(source)) {
+                    throw new IllegalStateException("simulated failure");
+                }
+                return super.newSearcher(source, searcher, manager);
+            }
+        };
+        try {
+            final int storeRefCount = store.refCount();
+            try {
+                engine.acquireSearcher("fail");
+                fail("acquiring the searcher should have failed");
+            } catch (EngineException e) {
+                // expected
+            }
+            assertThat(engine.isReaderOpen(), equalTo(false));
+            assertThat(store.refCount(), equalTo(storeRefCount));
+
+            // the engine is still usable
+            Engine.Searcher searcher = engine.acquireSearcher("test");
+            MatcherAssert.assertThat(searcher, EngineSearcherTotalHitsMatcher.engineSearcherTotalHits(numDocs));
+            searcher.close();
+            assertThat(engine.isReaderOpen(), equalTo(false));
+        } finally {
+            engine.close();
+        }
+    }
+
+    @Test
+    public void testFailsOnUncommittedOperations() throws Exception {
+        try (InternalEngine engine = new InternalEngine(config(), false)) {
+            engine.create(new Engine.Create(null, newUid("uncommitted"), testParsedDocument("uncommitted")));
+        }
+        try {
+            new FrozenEngine(config(), false);
+            fail("frozen engines must not start with uncommitted operations in the translog");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
@@ -94,7 +94,9 @@ import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.elasticsearch.common.settings.ImmutableSettings.Builder.EMPTY_SETTINGS;
 import static org.elasticsearch.index.engine.Engine.Operation.Origin.PRIMARY;
@@ -419,6 +421,26 @@ public class InternalEngineTests extends ElasticsearchTestCase {
     }
 
 
+    @Test
+    public void testWriteIndexingBuffer() throws Exception {
+        ParsedDocument doc = testParsedDocument("1", "1", "test", null, -1, -1, testDocumentWithTextField(), B_1, null);
+        engine.create(new Engine.Create(null, newUid("1"), doc));
+        final long bufferedBytes = engine.indexBufferRAMBytesUsed();
+        assertThat(bufferedBytes, greaterThan(0l));
+
+        engine.writeIndexingBuffer();
+        assertThat(engine.indexBufferRAMBytesUsed(), lessThan(bufferedBytes));
+        // the written documents are not visible before the next refresh
+        Engine.Searcher searcher = engine.acquireSearcher("test");
+        MatcherAssert.assertThat(searcher, EngineSearcherTotalHitsMatcher.engineSearcherTotalHits(0));
+        searcher.close();
+
+        engine.refresh("test");
+        searcher = engine.acquireSearcher("test");
+        MatcherAssert.assertThat(searcher, EngineSearcherTotalHitsMatcher.engineSearcherTotalHits(1));
+        searcher.close();
+    }
+
     @Test
     public void testSegmentsWithMergeFlag() throws Exception {
         ConcurrentMergeSchedulerProvider mergeSchedulerProvider = new ConcurrentMergeSchedulerProvider(shardId, EMPTY_SETTINGS, threadPool, new IndexSettingsService(shardId.index(), EMPTY_SETTINGS));
@@ -1523,6 +1545,113 @@ public class InternalEngineTests extends ElasticsearchTestCase {
         replicaSearcher.close();
     }
 
+    @Test
+    public void testAppendOnlyCreateWithAutogeneratedId() throws IOException {
+        ParsedDocument doc = testParsedDocument("1", "1", "test", null, -1, -1, testDocument(), B_1, null);
+        Engine.Create create = new Engine.Create(null, newUid("1"), doc, Versions.MATCH_ANY, VersionType.INTERNAL, PRIMARY, System.nanoTime(), false, true);
+        engine.create(create);
+        assertThat(create.version(), equalTo(1l));
+        // appended documents are not tracked in the version map
+        assertThat(engine.segmentsStats().getVersionMapMemoryInBytes(), equalTo(0l));
+
+        // but a realtime get still finds them
+        Engine.GetResult getResult = engine.get(new Engine.Get(true, newUid("1")));
+        assertThat(getResult.exists(), equalTo(true));
+        getResult.release();
+
+        // once ids were looked up, creates go through the version map again
+        doc = testParsedDocument("2", "2", "test", null, -1, -1, testDocument(), B_1, null);
+        create = new Engine.Create(null, newUid("2"), doc, Versions.MATCH_ANY, VersionType.INTERNAL, PRIMARY, System.nanoTime(), false, true);
+        engine.create(create);
+        assertThat(engine.segmentsStats().getVersionMapMemoryInBytes(), greaterThan(0l));
+        getResult = engine.get(new Engine.Get(true, newUid("2")));
+        assertThat(getResult.exists(), equalTo(true));
+        getResult.release();
+
+        // until the next flush
+        engine.flush();
+        doc = testParsedDocument("3", "3", "test", null, -1, -1, testDocument(), B_1, null);
+        create = new Engine.Create(null, newUid("3"), doc, Versions.MATCH_ANY, VersionType.INTERNAL, PRIMARY, System.nanoTime(), false, true);
+        engine.create(create);
+        assertThat(engine.segmentsStats().getVersionMapMemoryInBytes(), equalTo(0l));
+        getResult = engine.get(new Engine.Get(true, newUid("3")));
+        assertThat(getResult.exists(), equalTo(true));
+        getResult.release();
+    }
+
+    @Test
+    public void testConcurrentAppendOnlyCreatesAndRetries() throws Exception {
+        final int numThreads = randomIntBetween(2, 4);
+        final int numDocsPerThread = randomIntBetween(50, 200);
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch startGun = new CountDownLatch(1);
+        Thread[] appenders = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            final String prefix = "t" + t + "_";
+            final boolean[] retries = new boolean[numDocsPerThread];
+            for (int i = 0; i < retries.length; i++) {
+                retries[i] = randomBoolean();
+            }
+            appenders[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        startGun.await();
+                        for (int i = 0; i < numDocsPerThread; i++) {
+                            final String id = prefix + i;
+                            ParsedDocument doc = testParsedDocument(id, id, "test", null, -1, -1, testDocument(), B_1, null);
+                            engine.create(new Engine.Create(null, newUid(id), doc, Versions.MATCH_ANY, VersionType.INTERNAL, PRIMARY, System.nanoTime(), false, true));
+                            if (retries[i]) {
+                                // the retry of a request that already made it into the engine must not add the document again
+                                Engine.Create retry = new Engine.Create(null, newUid(id), doc, Versions.MATCH_ANY, VersionType.INTERNAL, PRIMARY, System.nanoTime(), true, true);
+                                engine.create(retry);
+                                assertThat(retry.version(), equalTo(1l));
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            };
+            appenders[t].start();
+        }
+        // refreshes and flushes race with the appends and the lookups of the retries
+        final int flushEvery = randomIntBetween(5, 20);
+        Thread refresher = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    startGun.await();
+                    for (int i = 1; done.get() == false; i++) {
+                        if (i % flushEvery == 0) {
+                            engine.flush(true, true);
+                        } else {
+                            engine.refresh("test");
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }
+        };
+        refresher.start();
+        startGun.countDown();
+        for (Thread appender : appenders) {
+            appender.join();
+        }
+        done.set(true);
+        refresher.join();
+        if (failure.get() != null) {
+            throw new AssertionError("concurrent create failed", failure.get());
+        }
+
+        engine.refresh("test");
+        try (Engine.Searcher searcher = engine.acquireSearcher("test")) {
+            MatcherAssert.assertThat(searcher, EngineSearcherTotalHitsMatcher.engineSearcherTotalHits(numThreads * numDocsPerThread));
+        }
+    }
+
     @Test
     public void testRetryWithAutogeneratedIdsAndWrongOrderWorksAndNoDuplicateDocs() throws IOException {
 
@@ -0,0 +1,168 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.nullValue;
+
+public class LiveVersionMapTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testUidVersionTable() {
+        UidVersionTable table = new UidVersionTable();
+        assertThat(table.ramBytesUsed(), equalTo(0l));
+        Map<BytesRef, VersionValue> expected = new HashMap<>();
+        int iters = scaledRandomIntBetween(10, 10000);
+        for (int i = 0; i < iters; i++) {
+            BytesRef uid = new BytesRef("type#" + randomInt(iters / 2));
+            VersionValue value = randomVersionValue(true);
+            table.put(uid, value);
+            expected.put(uid, value);
+        }
+        assertThat(table.size(), equalTo((long) expected.size()));
+        assertThat(table.ramBytesUsed(), greaterThan(0l));
+        for (Map.Entry<BytesRef, VersionValue> entry : expected.entrySet()) {
+            assertVersionValue(table.get(entry.getKey()), entry.getValue());
+        }
+        assertThat(table.get(new BytesRef("type#missing")), nullValue());
+    }
+
+    @Test
+    public void testUidVersionTableConcurrentPuts() throws Exception {
+        final UidVersionTable table = new UidVersionTable();
+        final int numThreads = randomIntBetween(2, 4);
+        final int numUidsPerThread = scaledRandomIntBetween(100, 5000);
+        final CountDownLatch startGun = new CountDownLatch(1);
+        Thread[] threads = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            final String prefix = "type#" + t + "_";
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        startGun.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    for (int i = 0; i < numUidsPerThread; i++) {
+                        table.put(new BytesRef(prefix + i), new VersionValue(i, null));
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        startGun.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(table.size(), equalTo((long) numThreads * numUidsPerThread));
+        final long ramBytesUsed = table.ramBytesUsed();
+        assertThat(ramBytesUsed, greaterThan(0l));
+        for (int t = 0; t < numThreads; t++) {
+            for (int i = 0; i < numUidsPerThread; i++) {
+                assertThat(table.get(new BytesRef("type#" + t + "_" + i)).version(), equalTo((long) i));
+            }
+        }
+        // replacing values doesn't grow the table
+        table.put(new BytesRef("type#0_0"), new VersionValue(42, null));
+        assertThat(table.size(), equalTo((long) numThreads * numUidsPerThread));
+        assertThat(table.ramBytesUsed(), equalTo(ramBytesUsed));
+    }
+
+    @Test
+    public void testRefresh() throws IOException {
+        LiveVersionMap map = new LiveVersionMap();
+        Map<BytesRef, VersionValue> expected = new HashMap<>();
+        int numDocs = scaledRandomIntBetween(10, 1000);
+        for (int i = 0; i < numDocs; i++) {
+            BytesRef uid = new BytesRef("type#" + i);
+            VersionValue value = randomVersionValue(false);
+            map.putUnderLock(uid, value);
+            expected.put(uid, value);
+        }
+        assertThat(map.ramBytesUsedForRefresh(), greaterThan(0l));
+
+        // while refreshing, values are read from the old table and new values go to a fresh one
+        map.beforeRefresh();
+        assertThat(map.ramBytesUsedForRefresh(), equalTo(0l));
+        for (Map.Entry<BytesRef, VersionValue> entry : expected.entrySet()) {
+            assertVersionValue(map.getUnderLock(entry.getKey()), entry.getValue());
+        }
+        BytesRef updated = new BytesRef("type#0");
+        VersionValue updatedValue = new VersionValue(randomIntBetween(1, 100), new Translog.Location(1, 1, 1));
+        map.putUnderLock(updated, updatedValue);
+        expected.put(updated, updatedValue);
+        assertVersionValue(map.getUnderLock(updated), updatedValue);
+
+        // once refreshed, only the values added during the refresh and the tombstones are left
+        map.afterRefresh(true);
+        long tombstoneBytes = map.ramBytesUsed() - map.ramBytesUsedForRefresh();
+        assertThat(tombstoneBytes, equalTo(map.ramBytesUsedTombstones.get()));
+        for (Map.Entry<BytesRef, VersionValue> entry : expected.entrySet()) {
+            VersionValue value = map.getUnderLock(entry.getKey());
+            if (entry.getKey().equals(updated) || entry.getValue().delete()) {
+                assertVersionValue(value, entry.getValue());
+            } else {
+                assertThat(value, nullValue());
+            }
+        }
+
+        map.beforeRefresh();
+        map.afterRefresh(true);
+        assertThat(map.ramBytesUsedForRefresh(), equalTo(0l));
+        assertThat(map.ramBytesUsed(), equalTo(map.ramBytesUsedTombstones.get()));
+    }
+
+    private static VersionValue randomVersionValue(boolean allowMissingLocation) {
+        Translog.Location location = allowMissingLocation && randomBoolean() ? null :
+                new Translog.Location(randomIntBetween(1, 10), randomIntBetween(0, Integer.MAX_VALUE), randomIntBetween(1, 1000));
+        if (randomBoolean()) {
+            return new DeleteVersionValue(randomIntBetween(1, 100), randomIntBetween(0, Integer.MAX_VALUE), location);
+        } else {
+            return new VersionValue(randomIntBetween(1, 100), location);
+        }
+    }
+
+    private static void assertVersionValue(VersionValue actual, VersionValue expected) {
+        assertThat(actual.version(), equalTo(expected.version()));
+        assertThat(actual.delete(), equalTo(expected.delete()));
+        if (expected.delete()) {
+            assertThat(actual.time(), equalTo(expected.time()));
+        }
+        if (expected.translogLocation() == null) {
+            assertThat(actual.translogLocation(), nullValue());
+        } else {
+            assertThat(actual.translogLocation().generation, equalTo(expected.translogLocation().generation));
+            assertThat(actual.translogLocation().translogLocation, equalTo(expected.translogLocation().translogLocation));
+            assertThat(actual.translogLocation().size, equalTo(expected.translogLocation().size));
+        }
+    }
+}
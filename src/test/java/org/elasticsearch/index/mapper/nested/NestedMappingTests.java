@@ -19,8 +19,12 @@
 
 package org.elasticsearch.index.mapper.nested;
 
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.index.mapper.DocumentMapper;
+import org.elasticsearch.index.mapper.MapperParsingException;
+import org.elasticsearch.index.mapper.ParseContext;
 import org.elasticsearch.index.mapper.ParsedDocument;
 import org.elasticsearch.index.mapper.internal.TypeFieldMapper;
 import org.elasticsearch.index.mapper.object.ObjectMapper;
@@ -28,6 +32,7 @@ import org.elasticsearch.index.mapper.object.ObjectMapper.Dynamic;
 import org.elasticsearch.test.ElasticsearchSingleNodeTest;
 import org.junit.Test;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.nullValue;
 
@@ -60,6 +65,41 @@ public class NestedMappingTests extends ElasticsearchSingleNodeTest {
         assertThat(doc.docs().size(), equalTo(1));
     }
 
+    @Test
+    public void nestedObjectsLimit() throws Exception {
+        String mapping = XContentFactory.jsonBuilder().startObject().startObject("type").startObject("properties")
+                .startObject("nested1").field("type", "nested").endObject()
+                .endObject().endObject().endObject().string();
+
+        Settings settings = ImmutableSettings.settingsBuilder().put(ParseContext.InternalParseContext.NESTED_OBJECTS_LIMIT, 2).build();
+        DocumentMapper docMapper = createIndex("test", settings).mapperService().documentMapperParser().parse(mapping);
+
+        ParsedDocument doc = docMapper.parse("type", "1", XContentFactory.jsonBuilder()
+                .startObject()
+                .startArray("nested1")
+                .startObject().field("field1", "1").endObject()
+                .startObject().field("field1", "2").endObject()
+                .endArray()
+                .endObject()
+                .bytes());
+        assertThat(doc.docs().size(), equalTo(3));
+
+        try {
+            docMapper.parse("type", "1", XContentFactory.jsonBuilder()
+                    .startObject()
+                    .startArray("nested1")
+                    .startObject().field("field1", "1").endObject()
+                    .startObject().field("field1", "2").endObject()
+                    .startObject().field("field1", "3").endObject()
+                    .endArray()
+                    .endObject()
+                    .bytes());
+            fail("expected the nested objects limit to be exceeded");
+        } catch (MapperParsingException e) {
+            assertThat(e.getMessage(), containsString("The number of nested documents has exceeded the allowed limit of [2]"));
+        }
+    }
+
     @Test
     public void singleNested() throws Exception {
         String mapping = XContentFactory.jsonBuilder().startObject().startObject("type").startObject("properties")
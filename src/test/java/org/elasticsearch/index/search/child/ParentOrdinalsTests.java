@@ -0,0 +1,75 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.search.child;
+
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class ParentOrdinalsTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testDirect() {
+        assertParentOrdinals(randomIntBetween(1, 10000));
+    }
+
+    @Test
+    public void testHashed() {
+        assertParentOrdinals(ParentOrdinals.MAX_DIRECT_VALUE_COUNT + randomIntBetween(1, 10000));
+    }
+
+    private void assertParentOrdinals(long valueCount) {
+        try (ParentOrdinals parentOrdinals = ParentOrdinals.create(valueCount, BigArrays.NON_RECYCLING_INSTANCE)) {
+            Map<Long, Long> indices = new HashMap<>();
+            int iters = randomIntBetween(1, 1000);
+            for (int i = 0; i < iters; i++) {
+                long globalOrdinal = randomInt((int) Math.min(valueCount - 1, 2000));
+                long index = parentOrdinals.add(globalOrdinal);
+                if (indices.containsKey(globalOrdinal)) {
+                    assertThat(index, equalTo(-1 - indices.get(globalOrdinal)));
+                } else {
+                    assertTrue(index >= 0);
+                    indices.put(globalOrdinal, index);
+                }
+            }
+            assertThat(parentOrdinals.size(), equalTo((long) indices.size()));
+            for (Map.Entry<Long, Long> entry : indices.entrySet()) {
+                assertThat(parentOrdinals.find(entry.getKey()), equalTo(entry.getValue()));
+                assertThat(parentOrdinals.globalOrdinal(entry.getValue()), equalTo(entry.getKey()));
+            }
+
+            Set<Long> found = new HashSet<>();
+            for (long parentIdx = 0; parentIdx < parentOrdinals.maxIndex(); parentIdx++) {
+                long globalOrdinal = parentOrdinals.globalOrdinal(parentIdx);
+                if (globalOrdinal >= 0) {
+                    found.add(globalOrdinal);
+                }
+            }
+            assertThat(found, equalTo(indices.keySet()));
+        }
+    }
+}
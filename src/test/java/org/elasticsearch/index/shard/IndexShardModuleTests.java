@@ -52,4 +52,29 @@ public class IndexShardModuleTests extends ElasticsearchTestCase {
         assertFalse("no shadow replicas for primary shard with shadow settings", ism3.useShadowEngine());
         assertTrue("shadow replicas for replica shards with shadow settings", ism4.useShadowEngine());
     }
+
+    @Test
+    public void testDetermineFrozenEngineShouldBeUsed() {
+        ShardId shardId = new ShardId("myindex", 0);
+        Settings regularSettings = ImmutableSettings.builder()
+                .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 2)
+                .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 1)
+                .build();
+
+        Settings frozenSettings = ImmutableSettings.builder()
+                .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 2)
+                .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 1)
+                .put(IndexMetaData.SETTING_FROZEN, true)
+                .build();
+
+        IndexShardModule ism1 = new IndexShardModule(shardId, true, regularSettings);
+        IndexShardModule ism2 = new IndexShardModule(shardId, false, regularSettings);
+        IndexShardModule ism3 = new IndexShardModule(shardId, true, frozenSettings);
+        IndexShardModule ism4 = new IndexShardModule(shardId, false, frozenSettings);
+
+        assertFalse("no frozen engine for normal settings", ism1.useFrozenEngine());
+        assertFalse("no frozen engine for normal settings", ism2.useFrozenEngine());
+        assertTrue("frozen engine for primary shards with frozen settings", ism3.useFrozenEngine());
+        assertTrue("frozen engine for replica shards with frozen settings", ism4.useFrozenEngine());
+    }
 }
@@ -0,0 +1,43 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices.memory;
+
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class IndexingMemoryControllerUnitTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testShardIndexingBufferFollowsWriteRate() {
+        final long total = 100;
+        // no writes, even split
+        assertThat(IndexingMemoryController.shardIndexingBufferBytes(total, 0.5, 4, 0, 0, 0, total), equalTo(25l));
+        // no rate share, even split regardless of the writes
+        assertThat(IndexingMemoryController.shardIndexingBufferBytes(total, 0, 4, 30, 40, 0, total), equalTo(25l));
+        // half is split evenly, half by write rate
+        assertThat(IndexingMemoryController.shardIndexingBufferBytes(total, 0.5, 2, 30, 40, 0, total), equalTo(62l));
+        assertThat(IndexingMemoryController.shardIndexingBufferBytes(total, 0.5, 2, 10, 40, 0, total), equalTo(37l));
+        // min and max still apply
+        assertThat(IndexingMemoryController.shardIndexingBufferBytes(total, 1, 2, 0, 40, 10, total), equalTo(10l));
+        assertThat(IndexingMemoryController.shardIndexingBufferBytes(total, 1, 2, 40, 40, 10, 60), equalTo(60l));
+    }
+}
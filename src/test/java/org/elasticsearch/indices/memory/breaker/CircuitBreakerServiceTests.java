@@ -22,6 +22,7 @@ package org.elasticsearch.indices.memory.breaker;
 import org.apache.lucene.util.LuceneTestCase;
 import org.elasticsearch.action.admin.cluster.node.stats.NodeStats;
 import org.elasticsearch.action.admin.cluster.node.stats.NodesStatsResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.client.Client;
@@ -74,6 +75,9 @@ public class CircuitBreakerServiceTests extends ElasticsearchIntegrationTest {
                 .put(HierarchyCircuitBreakerService.REQUEST_CIRCUIT_BREAKER_LIMIT_SETTING,
                         HierarchyCircuitBreakerService.DEFAULT_REQUEST_BREAKER_LIMIT)
                 .put(HierarchyCircuitBreakerService.REQUEST_CIRCUIT_BREAKER_OVERHEAD_SETTING, 1.0)
+                .put(HierarchyCircuitBreakerService.INDEXING_CIRCUIT_BREAKER_LIMIT_SETTING,
+                        HierarchyCircuitBreakerService.DEFAULT_INDEXING_BREAKER_LIMIT)
+                .put(HierarchyCircuitBreakerService.INDEXING_CIRCUIT_BREAKER_OVERHEAD_SETTING, 1.0)
                 .build();
         assertAcked(client().admin().cluster().prepareUpdateSettings().setTransientSettings(resetSettings));
     }
@@ -102,6 +106,9 @@ public class CircuitBreakerServiceTests extends ElasticsearchIntegrationTest {
             if (nodeStats.getBreaker().getStats(CircuitBreaker.FIELDDATA).getLimit() == 0) {
                 return true;
             }
+            if (nodeStats.getBreaker().getStats(CircuitBreaker.INDEXING).getLimit() == 0) {
+                return true;
+            }
         }
         return false;
     }
@@ -301,6 +308,49 @@ public class CircuitBreakerServiceTests extends ElasticsearchIntegrationTest {
         }
     }
 
+    @Test
+    public void testIndexingBreaker() throws Exception {
+        if (noopBreakerUsed()) {
+            logger.info("--> noop breakers used, skipping test");
+            return;
+        }
+        assertAcked(prepareCreate("cb-test", 1, settingsBuilder().put(SETTING_NUMBER_OF_REPLICAS, between(0, 1))));
+        ensureGreen("cb-test");
+        Client client = client();
+
+        // Make indexing breaker limited to a small amount
+        Settings resetSettings = settingsBuilder()
+                .put(HierarchyCircuitBreakerService.INDEXING_CIRCUIT_BREAKER_LIMIT_SETTING, "10b")
+                .build();
+        assertAcked(client.admin().cluster().prepareUpdateSettings().setTransientSettings(resetSettings));
+
+        BulkRequestBuilder bulk = client.prepareBulk();
+        for (int id = 0; id < scaledRandomIntBetween(1, 100); id++) {
+            bulk.add(client.prepareIndex("cb-test", "type", Integer.toString(id)).setSource("test", id));
+        }
+        try {
+            bulk.get();
+            fail("bulk request should have tripped the breaker");
+        } catch (Exception e) {
+            String errMsg = "CircuitBreakingException[[indexing] Data too large, data for [<bulk_request>]";
+            assertThat("Exception: " + e.toString() + " should contain a CircuitBreakingException",
+                    e.toString().contains(errMsg), equalTo(true));
+        }
+
+        // rejected and completed requests release their bytes
+        reset();
+        assertFalse(bulk.get().hasFailures());
+        assertBusy(new Runnable() {
+            @Override
+            public void run() {
+                NodesStatsResponse resp = client().admin().cluster().prepareNodesStats().clear().setBreaker(true).get();
+                for (NodeStats nStats : resp.getNodes()) {
+                    assertThat(nStats.getBreaker().getStats(CircuitBreaker.INDEXING).getEstimated(), equalTo(0L));
+                }
+            }
+        });
+    }
+
     /** Issues a cache clear and waits 30 seconds for the field data breaker to be cleared */
     public void clearFieldData() throws Exception {
         client().admin().indices().prepareClearCache().setFieldDataCache(true).execute().actionGet();
@@ -41,6 +41,7 @@ import java.util.Arrays;
 import java.util.concurrent.ExecutionException;
 
 import static org.elasticsearch.cluster.metadata.IndexMetaData.*;
+import static org.elasticsearch.common.settings.ImmutableSettings.settingsBuilder;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.*;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.notNullValue;
@@ -335,6 +336,37 @@ public class OpenCloseIndexTests extends ElasticsearchIntegrationTest {
         assertHitCount(searchResponse, docs);
     }
 
+    @Test
+    public void testFreezeAndUnfreezeClosedIndex() throws Exception {
+        createIndex("test");
+        ensureGreen("test");
+        int docs = between(1, 20);
+        IndexRequestBuilder[] builder = new IndexRequestBuilder[docs];
+        for (int i = 0; i < docs; i++) {
+            builder[i] = client().prepareIndex("test", "type", "" + i).setSource("test", "init");
+        }
+        indexRandom(true, builder);
+        client().admin().indices().prepareFlush("test").setWaitIfOngoing(true).setForce(true).get();
+
+        assertAcked(client().admin().indices().prepareClose("test"));
+        assertAcked(client().admin().indices().prepareUpdateSettings("test").setSettings(settingsBuilder().put(SETTING_FROZEN, true)));
+        assertAcked(client().admin().indices().prepareOpen("test"));
+        ensureGreen("test");
+
+        // frozen indices are searchable but reject writes
+        assertHitCount(client().prepareSearch("test").setQuery(QueryBuilders.matchQuery("test", "init")).get(), docs);
+        assertBlocked(client().prepareIndex("test", "type", "new").setSource("test", "init"), INDEX_WRITE_BLOCK);
+
+        assertAcked(client().admin().indices().prepareClose("test"));
+        assertAcked(client().admin().indices().prepareUpdateSettings("test").setSettings(settingsBuilder().put(SETTING_FROZEN, false)));
+        assertAcked(client().admin().indices().prepareOpen("test"));
+        ensureGreen("test");
+
+        // unfreezing the index lifts the write block
+        client().prepareIndex("test", "type", "new").setSource("test", "init").setRefresh(true).get();
+        assertHitCount(client().prepareSearch("test").setQuery(QueryBuilders.matchQuery("test", "init")).get(), docs + 1);
+    }
+
     @Test
     public void testOpenCloseIndexWithBlocks() {
         createIndex("test");
@@ -0,0 +1,226 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.rollup;
+
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.rollup.RollupAction;
+import org.elasticsearch.action.rollup.RollupResponse;
+import org.elasticsearch.action.search.SearchPhaseExecutionException;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.avg.Avg;
+import org.elasticsearch.search.aggregations.metrics.max.Max;
+import org.elasticsearch.search.aggregations.metrics.min.Min;
+import org.elasticsearch.search.aggregations.metrics.sum.Sum;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
+import static org.elasticsearch.index.query.QueryBuilders.rangeQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.avg;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.dateHistogram;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.max;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.min;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.stats;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.sum;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.terms;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertHitCount;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ */
+public class RollupIntegrationTests extends ElasticsearchIntegrationTest {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    @Test
+    public void testAggregationsOnRollupIndex() throws Exception {
+        final int numDocs = indexMetrics();
+
+        RollupResponse response = rollup();
+        assertThat(response.getRolledUpDocs(), equalTo((long) numDocs));
+        refresh("metrics_rollup");
+        assertHitCount(client().prepareSearch("metrics_rollup").setSize(0).get(), response.getSummaryDocs());
+
+        SearchResponse raw = search("metrics");
+        SearchResponse rolledUp = search("metrics_rollup");
+        assertSearchResponse(raw);
+        assertSearchResponse(rolledUp);
+        Histogram rawHistogram = raw.getAggregations().get("histo");
+        Histogram rolledUpHistogram = rolledUp.getAggregations().get("histo");
+        assertThat(rolledUpHistogram.getBuckets().size(), equalTo(rawHistogram.getBuckets().size()));
+        for (int i = 0; i < rawHistogram.getBuckets().size(); i++) {
+            Histogram.Bucket rawBucket = rawHistogram.getBuckets().get(i);
+            Histogram.Bucket rolledUpBucket = rolledUpHistogram.getBuckets().get(i);
+            assertThat(rolledUpBucket.getKeyAsString(), equalTo(rawBucket.getKeyAsString()));
+            Terms rawTerms = rawBucket.getAggregations().get("hosts");
+            Terms rolledUpTerms = rolledUpBucket.getAggregations().get("hosts");
+            assertThat(rolledUpTerms.getBuckets().size(), equalTo(rawTerms.getBuckets().size()));
+            for (Terms.Bucket rawTerm : rawTerms.getBuckets()) {
+                Terms.Bucket rolledUpTerm = rolledUpTerms.getBucketByKey(rawTerm.getKeyAsString());
+                final double avgLoad = ((Avg) rawTerm.getAggregations().get("avg_load")).getValue();
+                assertThat(((Avg) rolledUpTerm.getAggregations().get("avg_load")).getValue(), closeTo(avgLoad, 1e-9 * avgLoad));
+                assertThat(((Min) rolledUpTerm.getAggregations().get("min_load")).getValue(),
+                        equalTo(((Min) rawTerm.getAggregations().get("min_load")).getValue()));
+                assertThat(((Max) rolledUpTerm.getAggregations().get("max_latency")).getValue(),
+                        equalTo(((Max) rawTerm.getAggregations().get("max_latency")).getValue()));
+                assertThat(((Sum) rolledUpTerm.getAggregations().get("sum_latency")).getValue(),
+                        equalTo(((Sum) rawTerm.getAggregations().get("sum_latency")).getValue()));
+            }
+        }
+
+        // rolling up the same documents again overwrites summaries
+        RollupResponse again = rollup();
+        assertThat(again.getSummaryDocs(), equalTo(response.getSummaryDocs()));
+        refresh("metrics_rollup");
+        assertHitCount(client().prepareSearch("metrics_rollup").setSize(0).get(), response.getSummaryDocs());
+    }
+
+    @Test
+    public void testRejectIncompatibleRequests() throws Exception {
+        indexMetrics();
+        rollup();
+        refresh("metrics_rollup");
+        assertSearchResponse(search("metrics_rollup"));
+
+        // finer than the rollup interval
+        assertFailure(client().prepareSearch("metrics_rollup").setSize(0)
+                .addAggregation(dateHistogram("histo").field("timestamp").interval(DateHistogramInterval.minutes(10))));
+        // shifted by less than the rollup interval
+        assertFailure(client().prepareSearch("metrics_rollup").setSize(0)
+                .addAggregation(dateHistogram("histo").field("timestamp").interval(DateHistogramInterval.DAY).offset("+30m")));
+        // filter on a metric
+        assertFailure(client().prepareSearch("metrics_rollup").setSize(0).setQuery(rangeQuery("load").gte(5))
+                .addAggregation(avg("avg_load").field("load")));
+        // field that wasn't rolled up
+        assertFailure(client().prepareSearch("metrics_rollup").setSize(0).addAggregation(max("max_cpu").field("cpu")));
+        // aggregation that can't be computed from summaries
+        assertFailure(client().prepareSearch("metrics_rollup").setSize(0).addAggregation(stats("load_stats").field("load")));
+
+        // filters on dimensions and on the date field are fine
+        assertSearchResponse(client().prepareSearch("metrics_rollup").setSize(0)
+                .setQuery(boolQuery().must(termQuery("host", "host0")).must(rangeQuery("timestamp").lt(24 * HOUR)))
+                .addAggregation(avg("avg_load").field("load")).get());
+    }
+
+    @Test
+    public void testRollupIndexMustMatchRequest() throws Exception {
+        indexMetrics();
+        rollup();
+        try {
+            RollupAction.INSTANCE.newRequestBuilder(client()).setIndices("metrics").setRollupIndex("metrics_rollup")
+                    .setField("timestamp").setInterval("1h").setMetrics("load", "latency").get();
+            fail("dimensions don't match the rollup index");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("dimensions"));
+        }
+        try {
+            RollupAction.INSTANCE.newRequestBuilder(client()).setIndices("metrics").setRollupIndex("metrics_rollup")
+                    .setField("timestamp").setInterval("1h").setDimensions("host").setMetrics("load").get();
+            fail("metrics don't match the rollup index");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("metrics"));
+        }
+        // metrics may be listed in any order
+        RollupAction.INSTANCE.newRequestBuilder(client()).setIndices("metrics").setRollupIndex("metrics_rollup")
+                .setField("timestamp").setInterval("1h").setDimensions("host").setMetrics("latency", "load").get();
+    }
+
+    @Test
+    public void testDocumentsWithoutDimensionFailTheRollup() throws Exception {
+        indexMetrics();
+        indexRandom(true, client().prepareIndex("metrics", "type").setSource(jsonBuilder().startObject()
+                .field("timestamp", HOUR)
+                .field("load", 1)
+                .field("latency", 1)
+                .endObject()));
+        try {
+            rollup();
+            fail("a document has no host");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("[1] documents have no value for [host]"));
+        }
+        // nothing was indexed
+        assertThat(client().admin().indices().prepareRefresh("metrics_rollup").get().getFailedShards(), equalTo(0));
+        assertHitCount(client().prepareSearch("metrics_rollup").setSize(0).get(), 0);
+    }
+
+    private int indexMetrics() throws Exception {
+        assertAcked(prepareCreate("metrics").addMapping("type", "timestamp", "type=date", "host", "type=string,index=not_analyzed",
+                "load", "type=double", "latency", "type=long"));
+        final int numDocs = scaledRandomIntBetween(100, 1000);
+        List<IndexRequestBuilder> docs = new ArrayList<>();
+        for (int i = 0; i < numDocs; i++) {
+            docs.add(client().prepareIndex("metrics", "type").setSource(jsonBuilder().startObject()
+                    .field("timestamp", randomInt(72) * HOUR + randomInt((int) HOUR))
+                    .field("host", "host" + randomInt(3))
+                    .field("load", randomDouble() * 10)
+                    .field("latency", randomIntBetween(1, 1000))
+                    .endObject()));
+        }
+        indexRandom(true, docs);
+        return numDocs;
+    }
+
+    private RollupResponse rollup() {
+        return RollupAction.INSTANCE.newRequestBuilder(client())
+                .setIndices("metrics")
+                .setRollupIndex("metrics_rollup")
+                .setField("timestamp")
+                .setInterval("1h")
+                .setDimensions("host")
+                .setMetrics("load", "latency")
+                // small pages so that summaries are indexed in several batches
+                .setPageSize(randomIntBetween(1, 100))
+                .get();
+    }
+
+    private static void assertFailure(SearchRequestBuilder request) {
+        try {
+            request.get();
+            fail("request can't be answered from the rollup index");
+        } catch (SearchPhaseExecutionException e) {
+            // expected
+        }
+    }
+
+    private SearchResponse search(String index) {
+        return client().prepareSearch(index).setSize(0)
+                .addAggregation(dateHistogram("histo").field("timestamp").interval(DateHistogramInterval.DAY)
+                        .subAggregation(terms("hosts").field("host").size(0)
+                                .subAggregation(avg("avg_load").field("load"))
+                                .subAggregation(min("min_load").field("load"))
+                                .subAggregation(max("max_latency").field("latency"))
+                                .subAggregation(sum("sum_latency").field("latency"))))
+                .get();
+    }
+}
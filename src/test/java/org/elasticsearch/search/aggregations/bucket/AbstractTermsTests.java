@@ -33,7 +33,15 @@ import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSear
 public abstract class AbstractTermsTests extends ElasticsearchIntegrationTest {
 
     public String randomExecutionHint() {
-        return randomBoolean() ? null : randomFrom(ExecutionMode.values()).toString();
+        if (randomBoolean()) {
+            return null;
+        }
+        // approximate terms only support a subset of the features of terms aggregations and report approximate counts
+        ExecutionMode mode;
+        do {
+            mode = randomFrom(ExecutionMode.values());
+        } while (mode == ExecutionMode.APPROXIMATE);
+        return mode.toString();
     }
 
     private static long sumOfDocCounts(Terms terms) {
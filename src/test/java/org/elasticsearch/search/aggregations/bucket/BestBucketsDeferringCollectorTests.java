@@ -0,0 +1,147 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
+import org.elasticsearch.node.settings.NodeSettingsService;
+import org.elasticsearch.search.aggregations.BucketCollector;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
+import org.elasticsearch.test.ElasticsearchTestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class BestBucketsDeferringCollectorTests extends ElasticsearchTestCase {
+
+    public void testReplay() throws IOException {
+        doTestReplay("100mb", BestBucketsDeferringCollector.DEFAULT_MAX_BUFFER_BYTES);
+    }
+
+    public void testReplaySpilled() throws IOException {
+        // a tiny budget forces the buffers to be spilled to disk, long before the breaker would trip
+        doTestReplay("256kb", randomIntBetween(0, 1024));
+    }
+
+    private void doTestReplay(String breakerLimit, long maxBufferBytes) throws IOException {
+        final Directory dir = newDirectory();
+        final RandomIndexWriter w = new RandomIndexWriter(getRandom(), dir);
+        final int numDocs = randomIntBetween(1, 10000);
+        for (int i = 0; i < numDocs; ++i) {
+            w.addDocument(new Document());
+        }
+        final IndexReader reader = w.getReader();
+        w.close();
+
+        HierarchyCircuitBreakerService breakerService = new HierarchyCircuitBreakerService(
+                ImmutableSettings.builder()
+                        .put(HierarchyCircuitBreakerService.REQUEST_CIRCUIT_BREAKER_LIMIT_SETTING, breakerLimit)
+                        .build(),
+                new NodeSettingsService(ImmutableSettings.EMPTY));
+        BigArrays bigArrays = new BigArrays(null, breakerService).withCircuitBreaking();
+        BestBucketsDeferringCollector deferringCollector = new BestBucketsDeferringCollector(bigArrays, maxBufferBytes);
+        RecordingCollector recorded = new RecordingCollector();
+        deferringCollector.setDeferredCollector(Collections.<BucketCollector>singleton(recorded));
+
+        final int numBuckets = randomIntBetween(1, 20);
+        final long[] selectedBuckets = new long[randomIntBetween(1, numBuckets)];
+        for (int i = 0; i < selectedBuckets.length; ++i) {
+            selectedBuckets[i] = randomInt(numBuckets - 1);
+        }
+        final Set<Long> selected = new HashSet<>();
+        for (long bucket : selectedBuckets) {
+            selected.add(bucket);
+        }
+        final List<Long> expected = new ArrayList<>();
+
+        deferringCollector.preCollection();
+        for (LeafReaderContext ctx : reader.leaves()) {
+            LeafBucketCollector leafCollector = deferringCollector.getLeafCollector(ctx);
+            for (int doc = 0; doc < ctx.reader().maxDoc(); ++doc) {
+                if (randomInt(3) == 0) {
+                    continue;
+                }
+                final long bucket = randomInt(numBuckets - 1);
+                leafCollector.collect(doc, bucket);
+                if (selected.contains(bucket)) {
+                    expected.add(ctx.docBase + doc);
+                }
+            }
+        }
+        deferringCollector.postCollection();
+        if (maxBufferBytes <= 1024 && expected.isEmpty() == false) {
+            assertThat(deferringCollector.spillFile, notNullValue());
+        }
+        // buffers are spilled before they are accounted, so the breaker never trips
+        assertThat(breakerService.getBreaker(CircuitBreaker.REQUEST).getTrippedCount(), equalTo(0L));
+
+        deferringCollector.replay(selectedBuckets);
+        assertThat(recorded.docs, equalTo(expected));
+        // buffers are released once replayed
+        assertThat(deferringCollector.spillFile, nullValue());
+        assertThat(breakerService.getBreaker(CircuitBreaker.REQUEST).getUsed(), equalTo(0L));
+        deferringCollector.close();
+
+        reader.close();
+        dir.close();
+    }
+
+    private static class RecordingCollector extends BucketCollector {
+
+        final List<Long> docs = new ArrayList<>();
+
+        @Override
+        public LeafBucketCollector getLeafCollector(final LeafReaderContext ctx) throws IOException {
+            return new LeafBucketCollector() {
+                @Override
+                public void collect(int doc, long bucket) throws IOException {
+                    docs.add((long) ctx.docBase + doc);
+                }
+            };
+        }
+
+        @Override
+        public void preCollection() throws IOException {
+        }
+
+        @Override
+        public void postCollection() throws IOException {
+        }
+
+        @Override
+        public boolean needsScores() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket;
+
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.SearchPhaseExecutionException;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.aggregations.bucket.composite.Composite;
+import org.elasticsearch.search.aggregations.metrics.sum.Sum;
+import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.composite;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.sum;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.terms;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ *
+ */
+@ElasticsearchIntegrationTest.SuiteScopeTest
+public class CompositeTests extends ElasticsearchIntegrationTest {
+
+    /** product, shop -> {doc count, sum of prices} */
+    static Map<String, Map<Long, long[]>> expected;
+    /** shop -> doc count */
+    static Map<Long, Long> docCountsPerShop;
+
+    @Override
+    public void setupSuiteScopeCluster() throws Exception {
+        prepareCreate("idx").addMapping("type", "product", "type=string,index=not_analyzed", "shop", "type=long", "price", "type=long")
+                .execute().actionGet();
+        expected = new TreeMap<>();
+        docCountsPerShop = new TreeMap<>();
+        List<IndexRequestBuilder> builders = new ArrayList<>();
+        int numDocs = scaledRandomIntBetween(10, 200);
+        for (int i = 0; i < numDocs; i++) {
+            String[] products = randomBoolean() ? new String[] {"product" + randomInt(20)}
+                    : new String[] {"product" + randomInt(10), "product" + (11 + randomInt(10))};
+            long shop = randomInt(30);
+            long price = randomIntBetween(1, 100);
+            Long shopDocCount = docCountsPerShop.get(shop);
+            docCountsPerShop.put(shop, shopDocCount == null ? 1 : shopDocCount + 1);
+            for (String product : products) {
+                Map<Long, long[]> shops = expected.get(product);
+                if (shops == null) {
+                    shops = new TreeMap<>();
+                    expected.put(product, shops);
+                }
+                long[] stats = shops.get(shop);
+                if (stats == null) {
+                    stats = new long[2];
+                    shops.put(shop, stats);
+                }
+                stats[0]++;
+                stats[1] += price;
+            }
+            builders.add(client().prepareIndex("idx", "type", "" + i).setSource(jsonBuilder()
+                    .startObject()
+                    .array("product", (Object[]) products)
+                    .field("shop", shop)
+                    .field("price", price)
+                    .endObject()));
+        }
+        // a document without shop does not go into any bucket
+        builders.add(client().prepareIndex("idx", "type", "no_shop").setSource(jsonBuilder()
+                .startObject()
+                .field("product", "product0")
+                .endObject()));
+        indexRandom(true, builders);
+        ensureSearchable();
+    }
+
+    @Test
+    public void testPaginateAllBuckets() throws Exception {
+        assertPagination(randomFrom(SortOrder.values()));
+    }
+
+    @Test
+    public void testEmptyPage() throws Exception {
+        Map<String, Object> after = new TreeMap<>();
+        after.put("product", "product99");
+        after.put("shop", 0);
+        SearchResponse response = client().prepareSearch("idx")
+                .addAggregation(composite("composite").source("product", "product").source("shop", "shop").after(after))
+                .execute().actionGet();
+        assertSearchResponse(response);
+        Composite composite = response.getAggregations().get("composite");
+        assertThat(composite.getBuckets().size(), equalTo(0));
+        assertThat(composite.afterKey(), nullValue());
+    }
+
+    @Test
+    public void testDateHistogramSourceWithMissing() throws Exception {
+        // shops are integers, so they can be bucketed with a fixed interval, and the document without shop goes to -10
+        Map<Long, Long> expectedDocCounts = new TreeMap<>();
+        expectedDocCounts.put(-10L, 1L);
+        for (Map.Entry<Long, Long> entry : docCountsPerShop.entrySet()) {
+            long key = entry.getKey() / 10 * 10;
+            Long docCount = expectedDocCounts.get(key);
+            expectedDocCounts.put(key, docCount == null ? entry.getValue() : docCount + entry.getValue());
+        }
+        SearchResponse response = client().prepareSearch("idx")
+                .addAggregation(composite("composite").size(expectedDocCounts.size() + 1)
+                        .dateHistogramSource("shops", "shop", "10ms").missing("shops", -1))
+                .execute().actionGet();
+        assertSearchResponse(response);
+        Composite composite = response.getAggregations().get("composite");
+        Map<Long, Long> docCounts = new TreeMap<>();
+        for (Composite.Bucket bucket : composite.getBuckets()) {
+            docCounts.put(((Number) bucket.getKey().get("shops")).longValue(), bucket.getDocCount());
+        }
+        assertThat(docCounts, equalTo(expectedDocCounts));
+    }
+
+    @Test
+    public void testCompositeCannotBeASubAggregation() throws Exception {
+        try {
+            client().prepareSearch("idx")
+                    .addAggregation(terms("terms").field("product").subAggregation(composite("composite").source("shop", "shop")))
+                    .execute().actionGet();
+            fail("composite aggregations can only be top level aggregations");
+        } catch (SearchPhaseExecutionException e) {
+            // expected
+        }
+    }
+
+    private void assertPagination(final SortOrder shopOrder) throws Exception {
+        List<Object[]> expectedKeys = new ArrayList<>();
+        for (Map.Entry<String, Map<Long, long[]>> product : expected.entrySet()) {
+            TreeMap<Long, long[]> shops = new TreeMap<>(new Comparator<Long>() {
+                @Override
+                public int compare(Long s1, Long s2) {
+                    return shopOrder == SortOrder.ASC ? s1.compareTo(s2) : s2.compareTo(s1);
+                }
+            });
+            shops.putAll(product.getValue());
+            for (Map.Entry<Long, long[]> shop : shops.entrySet()) {
+                expectedKeys.add(new Object[] {product.getKey(), shop.getKey(), shop.getValue()});
+            }
+        }
+
+        int size = randomIntBetween(1, 20);
+        int numBuckets = 0;
+        Map<String, Object> after = null;
+        while (true) {
+            SearchResponse response = client().prepareSearch("idx")
+                    .addAggregation(composite("composite").size(size)
+                            .source("product", "product").source("shop", "shop", shopOrder).after(after)
+                            .subAggregation(sum("price").field("price")))
+                    .execute().actionGet();
+            assertSearchResponse(response);
+            Composite composite = response.getAggregations().get("composite");
+            assertThat(composite, notNullValue());
+            assertThat(composite.getBuckets().size(), lessThanOrEqualTo(size));
+            if (composite.getBuckets().isEmpty()) {
+                assertThat(composite.afterKey(), nullValue());
+                break;
+            }
+            for (Composite.Bucket bucket : composite.getBuckets()) {
+                Object[] expectedKey = expectedKeys.get(numBuckets++);
+                long[] stats = (long[]) expectedKey[2];
+                assertThat(bucket.getKey().get("product"), equalTo(expectedKey[0]));
+                assertThat(((Number) bucket.getKey().get("shop")).longValue(), equalTo(expectedKey[1]));
+                assertThat(bucket.getDocCount(), equalTo(stats[0]));
+                Sum sum = bucket.getAggregations().get("price");
+                assertThat((long) sum.getValue(), equalTo(stats[1]));
+            }
+            after = composite.afterKey();
+            assertThat(after, equalTo(composite.getBuckets().get(composite.getBuckets().size() - 1).getKey()));
+        }
+        assertThat(numBuckets, equalTo(expectedKeys.size()));
+    }
+}
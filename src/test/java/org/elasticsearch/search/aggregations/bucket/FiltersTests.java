@@ -272,4 +272,41 @@ public class FiltersTests extends ElasticsearchIntegrationTest {
         assertThat(bucket.getDocCount(), equalTo((long) numTag2Docs));
     }
 
+    @Test
+    public void withQuery() throws Exception {
+        SearchResponse response = client().prepareSearch("idx")
+                .setQuery(termQuery("tag", "tag1"))
+                .addAggregation(
+                        filters("tags")
+                                .filter("tag1", termQuery("tag", "tag1"))
+                                .filter("tag2", termQuery("tag", "tag2"))
+                                .filter("all", matchAllQuery()))
+                .execute().actionGet();
+
+        assertSearchResponse(response);
+
+        Filters filters = response.getAggregations().get("tags");
+        assertThat(filters, notNullValue());
+        assertThat(filters.getBucketByKey("tag1").getDocCount(), equalTo((long) numTag1Docs));
+        assertThat(filters.getBucketByKey("tag2").getDocCount(), equalTo(0L));
+        assertThat(filters.getBucketByKey("all").getDocCount(), equalTo((long) numTag1Docs));
+    }
+
+    @Test
+    public void matchAllFilter() throws Exception {
+        SearchResponse response = client().prepareSearch("idx")
+                .addAggregation(
+                        filters("tags")
+                                .filter("tag1", termQuery("tag", "tag1"))
+                                .filter("all", matchAllQuery()))
+                .execute().actionGet();
+
+        assertSearchResponse(response);
+
+        Filters filters = response.getAggregations().get("tags");
+        assertThat(filters, notNullValue());
+        assertThat(filters.getBucketByKey("tag1").getDocCount(), equalTo((long) numTag1Docs));
+        assertThat(filters.getBucketByKey("all").getDocCount(), equalTo((long) numDocs));
+    }
+
 }
@@ -0,0 +1,185 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.functionscore.ScoreFunctionBuilders;
+import org.elasticsearch.search.aggregations.bucket.sampler.RandomSampler;
+import org.elasticsearch.search.aggregations.bucket.sampler.RandomSamplerAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.stats.Stats;
+import org.elasticsearch.test.ElasticsearchIntegrationTest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.global;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.stats;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertHitCount;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.core.IsNull.notNullValue;
+
+/**
+ * Tests the random sampler aggregation
+ */
+@ElasticsearchIntegrationTest.SuiteScopeTest
+public class RandomSamplerTests extends ElasticsearchIntegrationTest {
+
+    static int numDocs;
+    static int numTag1Docs;
+
+    @Override
+    public void setupSuiteScopeCluster() throws Exception {
+        createIndex("idx");
+        List<IndexRequestBuilder> builders = new ArrayList<>();
+        numDocs = randomIntBetween(100, 500);
+        for (int i = 0; i < numDocs; i++) {
+            final boolean tag1 = randomBoolean();
+            if (tag1) {
+                numTag1Docs++;
+            }
+            builders.add(client().prepareIndex("idx", "type", "" + i).setSource(jsonBuilder()
+                    .startObject()
+                    .field("value", i + 1)
+                    .field("tag", tag1 ? "tag1" : "tag2")
+                    .endObject()));
+        }
+        indexRandom(true, builders);
+        ensureSearchable();
+    }
+
+    @Test
+    public void probabilityOne() throws Exception {
+        SearchResponse response = client().prepareSearch("idx")
+                .setQuery(QueryBuilders.termQuery("tag", "tag1"))
+                .addAggregation(new RandomSamplerAggregationBuilder("sample").probability(1)
+                        .subAggregation(stats("value_stats").field("value")))
+                .execute().actionGet();
+
+        assertSearchResponse(response);
+
+        RandomSampler sample = response.getAggregations().get("sample");
+        assertThat(sample, notNullValue());
+        assertThat(sample.getProbability(), equalTo(1d));
+        assertThat(sample.getSampledDocCount(), equalTo((long) numTag1Docs));
+        assertThat(sample.getDocCount(), equalTo((long) numTag1Docs));
+        Stats stats = sample.getAggregations().get("value_stats");
+        assertThat(stats.getCount(), equalTo((long) numTag1Docs));
+    }
+
+    @Test
+    public void sampleOfMatchingDocs() throws Exception {
+        final double probability = randomFrom(0.1, 0.25, 0.5);
+        final long seed = randomLong();
+        SearchResponse response = client().prepareSearch("idx")
+                .setQuery(QueryBuilders.termQuery("tag", "tag1"))
+                .addAggregation(new RandomSamplerAggregationBuilder("sample").probability(probability).seed(seed)
+                        .subAggregation(stats("value_stats").field("value")))
+                .execute().actionGet();
+
+        assertSearchResponse(response);
+
+        RandomSampler sample = response.getAggregations().get("sample");
+        assertThat(sample.getProbability(), equalTo(probability));
+        assertThat(sample.getSampledDocCount(), lessThanOrEqualTo((long) numTag1Docs));
+        assertThat(sample.getDocCount(), equalTo(Math.round(sample.getSampledDocCount() / probability)));
+        Stats stats = sample.getAggregations().get("value_stats");
+        assertThat(stats.getCount(), equalTo(sample.getSampledDocCount()));
+
+        // the same seed samples the same documents
+        SearchResponse response2 = client().prepareSearch("idx")
+                .setPreference("_primary")
+                .setQuery(QueryBuilders.termQuery("tag", "tag1"))
+                .addAggregation(new RandomSamplerAggregationBuilder("sample").probability(probability).seed(seed))
+                .execute().actionGet();
+        SearchResponse response3 = client().prepareSearch("idx")
+                .setPreference("_primary")
+                .setQuery(QueryBuilders.termQuery("tag", "tag1"))
+                .addAggregation(new RandomSamplerAggregationBuilder("sample").probability(probability).seed(seed))
+                .execute().actionGet();
+        RandomSampler sample2 = response2.getAggregations().get("sample");
+        RandomSampler sample3 = response3.getAggregations().get("sample");
+        assertThat(sample2.getSampledDocCount(), equalTo(sample3.getSampledDocCount()));
+    }
+
+    @Test
+    public void minScore() throws Exception {
+        // scores are the values of the documents, 1 to numDocs
+        final int minScore = numDocs / 2;
+        SearchResponse response = client().prepareSearch("idx")
+                .setQuery(QueryBuilders.functionScoreQuery(ScoreFunctionBuilders.fieldValueFactorFunction("value")).boostMode("replace"))
+                .setMinScore(minScore)
+                .addAggregation(new RandomSamplerAggregationBuilder("sample").probability(1)
+                        .subAggregation(stats("value_stats").field("value")))
+                .execute().actionGet();
+
+        assertSearchResponse(response);
+
+        final long expected = numDocs - minScore + 1;
+        assertHitCount(response, expected);
+        RandomSampler sample = response.getAggregations().get("sample");
+        assertThat(sample.getSampledDocCount(), equalTo(expected));
+        Stats stats = sample.getAggregations().get("value_stats");
+        assertThat(stats.getMin(), equalTo((double) minScore));
+    }
+
+    @Test
+    public void terminateAfter() throws Exception {
+        try {
+            client().prepareSearch("idx")
+                    .setTerminateAfter(10)
+                    .addAggregation(new RandomSamplerAggregationBuilder("sample").probability(0.5))
+                    .execute().actionGet();
+
+            fail("expected to fail executing a random sampler aggregation with terminate_after");
+        } catch (ElasticsearchException ese) {
+        }
+    }
+
+    @Test
+    public void nonTopLevel() throws Exception {
+        try {
+            client().prepareSearch("idx")
+                    .addAggregation(global("global")
+                            .subAggregation(new RandomSamplerAggregationBuilder("sample").probability(0.5)))
+                    .execute().actionGet();
+
+            fail("expected to fail executing a non-top-level random sampler aggregator");
+        } catch (ElasticsearchException ese) {
+        }
+    }
+
+    @Test
+    public void missingProbability() throws Exception {
+        try {
+            client().prepareSearch("idx")
+                    .addAggregation(new RandomSamplerAggregationBuilder("sample"))
+                    .execute().actionGet();
+
+            fail("expected to fail parsing a random sampler aggregation without a probability");
+        } catch (ElasticsearchException ese) {
+        }
+    }
+}
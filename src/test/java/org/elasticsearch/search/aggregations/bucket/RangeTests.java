@@ -20,6 +20,7 @@ package org.elasticsearch.search.aggregations.bucket;
 
 import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.search.aggregations.Aggregator.SubAggCollectionMode;
 import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
 import org.elasticsearch.search.aggregations.bucket.range.Range;
@@ -36,6 +37,8 @@ import java.util.List;
 
 import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.elasticsearch.index.query.QueryBuilders.rangeQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
 import static org.elasticsearch.search.aggregations.AggregationBuilders.avg;
 import static org.elasticsearch.search.aggregations.AggregationBuilders.histogram;
 import static org.elasticsearch.search.aggregations.AggregationBuilders.range;
@@ -79,6 +82,13 @@ public class RangeTests extends ElasticsearchIntegrationTest {
                     .field(SINGLE_VALUED_FIELD_NAME, i * 2 - 1)
                     .endObject()));
         }
+        prepareCreate("missing_idx").addMapping("type", SINGLE_VALUED_FIELD_NAME, "type=long").execute().actionGet();
+        for (int i = 0; i < 10; i++) {
+            // only even documents have a value
+            builders.add(client().prepareIndex("missing_idx", "type", "" + i).setSource(i % 2 == 0
+                    ? jsonBuilder().startObject().field(SINGLE_VALUED_FIELD_NAME, i).field("tag", "tag1").endObject()
+                    : jsonBuilder().startObject().field("tag", "tag1").endObject()));
+        }
         indexRandom(true, builders);
         ensureSearchable();
     }
@@ -1101,6 +1111,57 @@ public class RangeTests extends ElasticsearchIntegrationTest {
         assertThat(bucket.getDocCount(), equalTo(numDocs - 2l));
     }
 
+    @Test
+    public void fractionalBounds() throws Exception {
+        // match_all queries count ranges filter by filter, other queries check values one by one
+        for (QueryBuilder query : new QueryBuilder[] {matchAllQuery(), rangeQuery(SINGLE_VALUED_FIELD_NAME).gte(0)}) {
+            SearchResponse response = client().prepareSearch("idx")
+                    .setQuery(query)
+                    .addAggregation(range("range")
+                            .field(SINGLE_VALUED_FIELD_NAME)
+                            .addUnboundedTo(2.5)
+                            .addRange(2.5, 5.5)
+                            .addUnboundedFrom(5.5))
+                    .execute().actionGet();
+
+            assertSearchResponse(response);
+
+            Range range = response.getAggregations().get("range");
+            assertThat(range, notNullValue());
+            List<? extends Bucket> buckets = range.getBuckets();
+            assertThat(buckets.size(), equalTo(3));
+            assertThat(buckets.get(0).getDocCount(), equalTo(2l));
+            assertThat(buckets.get(1).getDocCount(), equalTo(3l));
+            assertThat(buckets.get(2).getDocCount(), equalTo(numDocs - 5l));
+        }
+    }
+
+    @Test
+    public void missing() throws Exception {
+        // match_all queries count ranges filter by filter, other queries check values one by one
+        for (QueryBuilder query : new QueryBuilder[] {matchAllQuery(), termQuery("tag", "tag1")}) {
+            SearchResponse response = client().prepareSearch("missing_idx")
+                    .setQuery(query)
+                    .addAggregation(range("range")
+                            .field(SINGLE_VALUED_FIELD_NAME)
+                            .missing(100)
+                            .addUnboundedTo(5)
+                            .addRange(5, 50)
+                            .addUnboundedFrom(50))
+                    .execute().actionGet();
+
+            assertSearchResponse(response);
+
+            Range range = response.getAggregations().get("range");
+            assertThat(range, notNullValue());
+            List<? extends Bucket> buckets = range.getBuckets();
+            assertThat(buckets.size(), equalTo(3));
+            assertThat(buckets.get(0).getDocCount(), equalTo(3l)); // 0, 2, 4
+            assertThat(buckets.get(1).getDocCount(), equalTo(2l)); // 6, 8
+            assertThat(buckets.get(2).getDocCount(), equalTo(5l)); // missing
+        }
+    }
+
     @Test
     public void emptyAggregation() throws Exception {
         SearchResponse searchResponse = client().prepareSearch("empty_bucket_idx")
@@ -276,6 +276,45 @@ public class StringTermsTests extends AbstractTermsTests {
         }
     }
 
+    @Test
+    public void multiValueField_approximate() throws Exception {
+        SearchResponse response = client().prepareSearch("idx").setTypes("type")
+                .addAggregation(terms("terms")
+                        .executionHint(ExecutionMode.APPROXIMATE.toString())
+                        .field(MULTI_VALUED_FIELD_NAME)
+                        .size(10))
+                .execute().actionGet();
+
+        assertSearchResponse(response);
+
+        // the sketch monitors more terms than there are, so counts are exact
+        Terms terms = response.getAggregations().get("terms");
+        assertThat(terms, notNullValue());
+        assertThat(terms.getBuckets().size(), equalTo(6));
+        for (int i = 0; i < 6; i++) {
+            Terms.Bucket bucket = terms.getBucketByKey("val" + i);
+            assertThat(bucket, notNullValue());
+            assertThat(bucket.getDocCount(), equalTo(i == 0 || i == 5 ? 1l : 2l));
+        }
+        assertThat(terms.getDocCountError(), equalTo(0l));
+        assertThat(terms.getSumOfOtherDocCounts(), equalTo(0l));
+    }
+
+    @Test
+    public void approximateWithSubAggregation() throws Exception {
+        try {
+            client().prepareSearch("idx").setTypes("type")
+                    .addAggregation(terms("terms")
+                            .executionHint(ExecutionMode.APPROXIMATE.toString())
+                            .field(SINGLE_VALUED_FIELD_NAME)
+                            .subAggregation(avg("avg_i").field("i")))
+                    .execute().actionGet();
+            fail("Expected search to fail when using sub-aggregations with approximate terms aggregations");
+        } catch (ElasticsearchException e) {
+            // expected
+        }
+    }
+
     @Test
     public void singleValueField_withGlobalOrdinals() throws Exception {
         ExecutionMode[] executionModes = new ExecutionMode[] {
@@ -0,0 +1,133 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.histogram;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.common.rounding.DateTimeUnit;
+import org.elasticsearch.common.rounding.Rounding;
+import org.elasticsearch.common.rounding.TimeZoneRounding;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class RoundingBoundariesTests extends ElasticsearchTestCase {
+
+    private static final long DAY = TimeValue.timeValueHours(24).millis();
+
+    @Test
+    public void testBucketsMatchRounding() {
+        for (int iter = 0; iter < 100; iter++) {
+            Rounding rounding = randomRounding();
+            long min = randomIntBetween(-50 * 365, 50 * 365) * DAY + randomInt((int) DAY);
+            long max = min + randomInt(365) * DAY + randomInt((int) DAY);
+            RoundingBoundaries boundaries = RoundingBoundaries.build(rounding, min, max);
+            if (boundaries == null) {
+                // too many buckets or buckets that can't be computed ahead of time
+                continue;
+            }
+            for (int i = 0; i < 100; i++) {
+                long value = min + (long) (randomDouble() * (max - min));
+                int bucket = boundaries.bucket(value);
+                assertTrue("value [" + value + "] should be within boundaries", bucket >= 0);
+                assertThat(boundaries.key(bucket), equalTo(rounding.roundKey(value)));
+            }
+            assertThat(boundaries.bucket(rounding.round(min) - 1), equalTo(-1));
+        }
+    }
+
+    @Test
+    public void testTooManyBuckets() {
+        Rounding rounding = TimeZoneRounding.builder(DateTimeUnit.SECOND_OF_MINUTE).build();
+        assertThat(RoundingBoundaries.build(rounding, 0, TimeValue.timeValueHours(24).millis()), nullValue());
+    }
+
+    @Test
+    public void testMaxBuckets() {
+        Rounding rounding = TimeZoneRounding.builder(DateTimeUnit.HOUR_OF_DAY).build();
+        final long max = TimeValue.timeValueHours(10).millis() - 1;
+        assertThat(RoundingBoundaries.build(rounding, 0, max, 9), nullValue());
+        RoundingBoundaries boundaries = RoundingBoundaries.build(rounding, 0, max, 10);
+        assertThat(boundaries, notNullValue());
+        assertThat(boundaries.size(), equalTo(10));
+    }
+
+    @Test
+    public void testSegmentBoundariesSharedPerSegment() throws Exception {
+        Directory dir = newDirectory();
+        RandomIndexWriter w = new RandomIndexWriter(getRandom(), dir);
+        for (int i = 0; i < 10; i++) {
+            Document doc = new Document();
+            doc.add(new LongField("date", i * DAY, Field.Store.NO));
+            w.addDocument(doc);
+            if (randomInt(3) == 0) {
+                w.commit();
+            }
+        }
+        IndexReader reader = w.getReader();
+        w.close();
+
+        Rounding rounding = TimeZoneRounding.builder(DateTimeUnit.DAY_OF_MONTH).timeZone(DateTimeZone.forID("Europe/Paris")).build();
+        HistogramAggregator.SegmentBoundaries segmentBoundaries = new HistogramAggregator.SegmentBoundaries(rounding, "date");
+        for (LeafReaderContext ctx : reader.leaves()) {
+            RoundingBoundaries boundaries = segmentBoundaries.get(ctx);
+            // aggregators of other parent buckets reuse the boundaries of the segment
+            assertThat(segmentBoundaries.get(ctx), sameInstance(boundaries));
+            if (boundaries != null) {
+                // capped by the number of documents of the segment
+                assertThat(boundaries.size(), lessThanOrEqualTo(ctx.reader().maxDoc()));
+            }
+        }
+
+        reader.close();
+        dir.close();
+    }
+
+    private static Rounding randomRounding() {
+        List<DateTimeZone> timeZones = new ArrayList<>();
+        timeZones.add(DateTimeZone.UTC);
+        timeZones.add(DateTimeZone.forID("Europe/Paris"));
+        timeZones.add(DateTimeZone.forID("America/New_York"));
+        timeZones.add(DateTimeZone.forID("Asia/Kolkata"));
+        DateTimeZone timeZone = randomFrom(timeZones);
+        if (randomBoolean()) {
+            DateTimeUnit unit = randomFrom(DateTimeUnit.DAY_OF_MONTH, DateTimeUnit.WEEK_OF_WEEKYEAR, DateTimeUnit.MONTH_OF_YEAR,
+                    DateTimeUnit.QUARTER, DateTimeUnit.YEAR_OF_CENTURY);
+            return TimeZoneRounding.builder(unit).timeZone(timeZone).build();
+        } else {
+            return TimeZoneRounding.builder(TimeValue.timeValueHours(randomIntBetween(1, 72))).timeZone(timeZone).build();
+        }
+    }
+}
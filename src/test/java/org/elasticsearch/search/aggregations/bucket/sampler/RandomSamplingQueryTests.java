@@ -0,0 +1,140 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket.sampler;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.QueryUtils;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.common.lucene.search.Queries;
+import org.elasticsearch.search.aggregations.bucket.sampler.RandomSamplingQuery.RandomSamplingIterator;
+import org.elasticsearch.test.ElasticsearchTestCase;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class RandomSamplingQueryTests extends ElasticsearchTestCase {
+
+    public void testBasics() {
+        RandomSamplingQuery query1 = new RandomSamplingQuery(0.1, 42);
+        RandomSamplingQuery query2 = new RandomSamplingQuery(0.1, 42);
+        RandomSamplingQuery query3 = new RandomSamplingQuery(0.1, 43);
+        RandomSamplingQuery query4 = new RandomSamplingQuery(0.2, 42);
+        QueryUtils.check(query1);
+        QueryUtils.checkEqual(query1, query2);
+        QueryUtils.checkUnequal(query1, query3);
+        QueryUtils.checkUnequal(query1, query4);
+    }
+
+    public void testInvalidProbability() {
+        try {
+            new RandomSamplingQuery(0, 42);
+            fail("a probability of 0 should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new RandomSamplingQuery(1.5, 42);
+            fail("a probability greater than 1 should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testSampleSize() throws IOException {
+        final int maxDoc = 100000;
+        final double probability = randomFrom(0.01, 0.1, 0.5);
+        RandomSamplingIterator iterator = new RandomSamplingIterator(maxDoc, probability, new Random(randomLong()), null);
+        int count = 0;
+        int previous = -1;
+        for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+            assertThat(doc, greaterThan(previous));
+            assertThat(doc, lessThan(maxDoc));
+            previous = doc;
+            count++;
+        }
+        // the sample size is binomial, stay well beyond 6 standard deviations from the expected size
+        final double expected = maxDoc * probability;
+        final double stdDev = Math.sqrt(maxDoc * probability * (1 - probability));
+        assertEquals(expected, count, 8 * stdDev);
+    }
+
+    public void testProbabilityOne() throws IOException {
+        final int maxDoc = randomIntBetween(1, 1000);
+        RandomSamplingIterator iterator = new RandomSamplingIterator(maxDoc, 1, new Random(randomLong()), null);
+        for (int i = 0; i < maxDoc; ++i) {
+            assertEquals(i, iterator.nextDoc());
+        }
+        assertEquals(DocIdSetIterator.NO_MORE_DOCS, iterator.nextDoc());
+    }
+
+    public void testAdvance() throws IOException {
+        final int maxDoc = randomIntBetween(1, 10000);
+        RandomSamplingIterator iterator = new RandomSamplingIterator(maxDoc, randomDouble() + Double.MIN_VALUE, new Random(randomLong()),
+                null);
+        int doc = -1;
+        while (doc != DocIdSetIterator.NO_MORE_DOCS) {
+            final int target = doc + 1 + randomInt(100);
+            doc = iterator.advance(target);
+            if (doc != DocIdSetIterator.NO_MORE_DOCS) {
+                assertThat(target, lessThanOrEqualTo(doc));
+                assertThat(doc, lessThan(maxDoc));
+            }
+        }
+    }
+
+    public void testFilter() throws IOException {
+        final int numDocs = randomIntBetween(10, 500);
+        final Document doc1 = new Document();
+        doc1.add(new StringField("foo", "bar", Store.NO));
+        final Document doc2 = new Document();
+        final Directory dir = newDirectory();
+        final RandomIndexWriter w = new RandomIndexWriter(getRandom(), dir);
+        for (int i = 0; i < numDocs; ++i) {
+            w.addDocument(randomBoolean() ? doc1 : doc2);
+        }
+        if (randomBoolean()) {
+            w.deleteDocuments(new Term("foo", "bar"));
+        }
+        final IndexReader reader = w.getReader();
+        final IndexSearcher searcher = newSearcher(reader);
+        final TermQuery query = new TermQuery(new Term("foo", "bar"));
+        final int matching = searcher.count(query);
+        final int sampled = searcher.count(Queries.filtered(query, new RandomSamplingQuery(randomDouble() + Double.MIN_VALUE,
+                randomLong())));
+        assertThat(sampled, lessThanOrEqualTo(matching));
+        // every matching document is sampled with a probability of 1
+        assertEquals(matching, searcher.count(Queries.filtered(query, new RandomSamplingQuery(1, randomLong()))));
+        assertEquals(reader.numDocs(), searcher.count(new RandomSamplingQuery(1, randomLong())));
+        w.close();
+        reader.close();
+        dir.close();
+    }
+}
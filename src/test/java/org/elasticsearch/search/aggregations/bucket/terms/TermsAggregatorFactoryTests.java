@@ -0,0 +1,42 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.terms;
+
+import org.elasticsearch.search.aggregations.Aggregator.SubAggCollectionMode;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class TermsAggregatorFactoryTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testSubAggCollectMode() throws Exception {
+        // all buckets are returned
+        assertThat(TermsAggregatorFactory.subAggCollectionMode(Integer.MAX_VALUE, -1), equalTo(SubAggCollectionMode.DEPTH_FIRST));
+        // the number of unique values is unknown
+        assertThat(TermsAggregatorFactory.subAggCollectionMode(10, -1), equalTo(SubAggCollectionMode.BREADTH_FIRST));
+        // all unique values fit in the returned buckets
+        assertThat(TermsAggregatorFactory.subAggCollectionMode(10, 5), equalTo(SubAggCollectionMode.DEPTH_FIRST));
+        assertThat(TermsAggregatorFactory.subAggCollectionMode(10, 10), equalTo(SubAggCollectionMode.DEPTH_FIRST));
+        // more unique values than returned buckets
+        assertThat(TermsAggregatorFactory.subAggCollectionMode(10, 100), equalTo(SubAggCollectionMode.BREADTH_FIRST));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.terms.support;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.node.settings.NodeSettingsService;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.elasticsearch.test.cache.recycler.MockBigArrays;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class SpaceSavingTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testExactBelowCapacity() {
+        final int numTerms = randomIntBetween(1, 100);
+        try (SpaceSaving sketch = new SpaceSaving(numTerms + randomInt(10), bigArrays())) {
+            Map<BytesRef, Long> expected = new HashMap<>();
+            final int numValues = randomIntBetween(0, 1000);
+            for (int i = 0; i < numValues; i++) {
+                BytesRef term = new BytesRef("term" + randomInt(numTerms - 1));
+                sketch.add(term);
+                Long count = expected.get(term);
+                expected.put(term, count == null ? 1 : count + 1);
+            }
+            assertThat(sketch.size(), equalTo(expected.size()));
+            assertThat(sketch.minCount(), equalTo(0l));
+            for (int i = 0; i < sketch.size(); i++) {
+                assertThat(sketch.error(i), equalTo(0l));
+                assertThat(sketch.count(i), equalTo(expected.get(sketch.term(i))));
+            }
+        }
+    }
+
+    @Test
+    public void testBounds() {
+        final int capacity = randomIntBetween(1, 50);
+        try (SpaceSaving sketch = new SpaceSaving(capacity, bigArrays())) {
+            Map<BytesRef, Long> expected = new HashMap<>();
+            final int numValues = randomIntBetween(0, 5000);
+            for (int i = 0; i < numValues; i++) {
+                // skewed distribution, with enough unique terms for evicted terms to fill the hash of terms several times
+                BytesRef term = new BytesRef("term" + (int) Math.pow(randomInt(1000), 2) / 1000);
+                sketch.add(term);
+                Long count = expected.get(term);
+                expected.put(term, count == null ? 1 : count + 1);
+            }
+            assertThat(sketch.size(), lessThanOrEqualTo(capacity));
+            long sumOfCounts = 0;
+            Set<BytesRef> monitored = new HashSet<>();
+            for (int i = 0; i < sketch.size(); i++) {
+                final BytesRef term = BytesRef.deepCopyOf(sketch.term(i));
+                final long actual = expected.get(term);
+                assertThat(sketch.count(i), greaterThanOrEqualTo(actual));
+                assertThat(sketch.count(i) - sketch.error(i), lessThanOrEqualTo(actual));
+                assertThat(sketch.count(i), greaterThanOrEqualTo(sketch.minCount()));
+                sumOfCounts += sketch.count(i);
+                // monitored terms are unique
+                assertTrue(monitored.add(term));
+            }
+            // every occurrence is accounted for in exactly one counter
+            assertThat(sumOfCounts, equalTo((long) numValues));
+            for (Map.Entry<BytesRef, Long> entry : expected.entrySet()) {
+                if (monitored.contains(entry.getKey()) == false) {
+                    assertThat(entry.getValue(), lessThanOrEqualTo(sketch.minCount()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBreakerAccounting() {
+        HierarchyCircuitBreakerService breakerService = new HierarchyCircuitBreakerService(ImmutableSettings.EMPTY,
+                new NodeSettingsService(ImmutableSettings.EMPTY));
+        BigArrays bigArrays = new MockBigArrays(null, breakerService).withCircuitBreaking();
+        CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
+        final int capacity = randomIntBetween(1, 100);
+        try (SpaceSaving sketch = new SpaceSaving(capacity, bigArrays)) {
+            assertThat(breaker.getUsed(), greaterThan(0l));
+            final int numValues = randomIntBetween(0, 5000);
+            for (int i = 0; i < numValues; i++) {
+                sketch.add(new BytesRef("term" + randomInt(100000)));
+                // evicted terms are purged from the hash of terms, so memory usage doesn't grow with the number of unique terms
+                assertThat(sketch.numStoredTerms(), lessThanOrEqualTo(2L * capacity));
+            }
+        }
+        assertThat(breaker.getUsed(), equalTo(0l));
+    }
+
+    private static BigArrays bigArrays() {
+        return new MockBigArrays(null, new NoneCircuitBreakerService());
+    }
+}
@@ -28,6 +28,7 @@ import org.elasticsearch.search.aggregations.bucket.histogram.Histogram.Order;
 import org.elasticsearch.search.aggregations.metrics.percentiles.Percentile;
 import org.elasticsearch.search.aggregations.metrics.percentiles.Percentiles;
 import org.elasticsearch.search.aggregations.metrics.percentiles.PercentilesBuilder;
+import org.elasticsearch.search.aggregations.metrics.percentiles.PercentilesMethod;
 import org.junit.Test;
 
 import java.util.Arrays;
@@ -37,6 +38,7 @@ import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
 import static org.elasticsearch.search.aggregations.AggregationBuilders.global;
 import static org.elasticsearch.search.aggregations.AggregationBuilders.histogram;
 import static org.elasticsearch.search.aggregations.AggregationBuilders.percentiles;
+import static org.hamcrest.Matchers.closeTo;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
@@ -435,4 +437,27 @@ public class PercentilesTests extends AbstractNumericTests {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testSingleValuedField_hdr() throws Exception {
+        final int digits = randomIntBetween(1, 5);
+        SearchResponse searchResponse = client().prepareSearch("idx", "idx_unmapped")
+                .setQuery(matchAllQuery())
+                .addAggregation(percentiles("percentiles")
+                        .method(PercentilesMethod.HDR)
+                        .numberOfSignificantValueDigits(digits)
+                        .field("value")
+                        .percentiles(0, 50, 100))
+                .execute().actionGet();
+
+        assertThat(searchResponse.getHits().getTotalHits(), equalTo(10l));
+
+        final Percentiles percentiles = searchResponse.getAggregations().get("percentiles");
+        assertThat(percentiles, notNullValue());
+        assertThat(percentiles.getName(), equalTo("percentiles"));
+        final double maxRelativeError = Math.pow(10, -digits);
+        assertThat(percentiles.percentile(0), closeTo(minValue, minValue * maxRelativeError));
+        assertThat(percentiles.percentile(50), closeTo(5, 5 * maxRelativeError));
+        assertThat(percentiles.percentile(100), closeTo(maxValue, maxValue * maxRelativeError));
+    }
+
+}
@@ -21,13 +21,20 @@ package org.elasticsearch.search.aggregations.metrics.cardinality;
 
 import com.carrotsearch.hppc.BitMixer;
 import com.carrotsearch.hppc.IntHashSet;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.test.ElasticsearchTestCase;
+import org.elasticsearch.test.VersionUtils;
 import org.junit.Test;
 
+import java.io.IOException;
+
 import static org.elasticsearch.search.aggregations.metrics.cardinality.HyperLogLogPlusPlus.MAX_PRECISION;
 import static org.elasticsearch.search.aggregations.metrics.cardinality.HyperLogLogPlusPlus.MIN_PRECISION;
 import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 
 public class HyperLogLogPlusPlusTests extends ElasticsearchTestCase {
 
@@ -134,4 +141,34 @@ public class HyperLogLogPlusPlusTests extends ElasticsearchTestCase {
         assertEquals(18, HyperLogLogPlusPlus.precisionFromThreshold(1000000));
     }
 
+    @Test
+    public void serialization() throws IOException {
+        final int p = randomIntBetween(MIN_PRECISION, MAX_PRECISION);
+        final long bucket = randomInt(20);
+        final HyperLogLogPlusPlus counts = new HyperLogLogPlusPlus(p, BigArrays.NON_RECYCLING_INSTANCE, 1);
+        // from a few values that use linear counting to many values that fill the registers
+        final int numValues = randomBoolean() ? randomIntBetween(0, 100) : randomIntBetween(0, 100000);
+        for (int i = 0; i < numValues; ++i) {
+            counts.collect(bucket, BitMixer.mix64(randomInt()));
+        }
+        final Version version = randomBoolean() ? Version.CURRENT : VersionUtils.randomVersion(getRandom());
+        BytesStreamOutput out = new BytesStreamOutput();
+        out.setVersion(version);
+        counts.writeTo(bucket, out);
+        StreamInput in = StreamInput.wrap(out.bytes());
+        in.setVersion(version);
+        final HyperLogLogPlusPlus read = HyperLogLogPlusPlus.readFrom(in, BigArrays.NON_RECYCLING_INSTANCE);
+        assertEquals(counts.isHyperLogLog(bucket), read.isHyperLogLog(0));
+        assertEquals(counts.cardinality(bucket), read.cardinality(0));
+        if (version.onOrAfter(Version.V_2_0_0) && counts.isHyperLogLog(bucket)) {
+            // empty registers are not written
+            assertThat(out.bytes().length(), lessThanOrEqualTo(2 + HyperLogLogPlusPlus.packedRegistersBytes(1 << p)));
+        }
+        final HyperLogLogPlusPlus merged = new HyperLogLogPlusPlus(p, BigArrays.NON_RECYCLING_INSTANCE, 1);
+        merged.merge(0, counts, bucket);
+        final HyperLogLogPlusPlus mergedRead = new HyperLogLogPlusPlus(p, BigArrays.NON_RECYCLING_INSTANCE, 1);
+        mergedRead.merge(0, read, 0);
+        assertEquals(merged.cardinality(0), mergedRead.cardinality(0));
+    }
+
 }
@@ -0,0 +1,106 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.metrics.percentiles.hdr;
+
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+
+public class HdrHistogramStateTests extends ElasticsearchTestCase {
+
+    @Test
+    public void testQuantileAccuracy() {
+        final int digits = randomIntBetween(0, HdrHistogramState.MAX_SIGNIFICANT_VALUE_DIGITS);
+        HdrHistogramState state = new HdrHistogramState(digits);
+        final double[] values = new double[randomIntBetween(1, 1000)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = randomBoolean() ? randomInt(1000) : randomDouble() * Math.pow(10, randomIntBetween(-10, 10));
+            state.add(values[i]);
+        }
+        Arrays.sort(values);
+        assertThat(state.totalCount(), equalTo((long) values.length));
+        final double maxRelativeError = Math.pow(10, -digits);
+        for (int i = 0; i < 100; i++) {
+            final double q = randomDouble();
+            final double expected = values[Math.max(0, (int) Math.ceil(q * values.length) - 1)];
+            assertThat(state.quantile(q), closeTo(expected, expected * maxRelativeError));
+        }
+        assertThat(state.quantile(0), closeTo(values[0], values[0] * maxRelativeError));
+        assertThat(state.quantile(1), closeTo(values[values.length - 1], values[values.length - 1] * maxRelativeError));
+        assertThat(state.cdf(values[values.length - 1]), equalTo(1d));
+        assertThat(state.cdf(-1), equalTo(0d));
+    }
+
+    @Test
+    public void testEmpty() {
+        HdrHistogramState state = new HdrHistogramState(randomIntBetween(0, HdrHistogramState.MAX_SIGNIFICANT_VALUE_DIGITS));
+        assertTrue(Double.isNaN(state.quantile(randomDouble())));
+        assertTrue(Double.isNaN(state.cdf(randomDouble())));
+    }
+
+    @Test
+    public void testMerge() {
+        final int digits = randomIntBetween(0, HdrHistogramState.MAX_SIGNIFICANT_VALUE_DIGITS);
+        HdrHistogramState all = new HdrHistogramState(digits);
+        HdrHistogramState first = new HdrHistogramState(digits);
+        HdrHistogramState second = new HdrHistogramState(digits);
+        final int numValues = randomIntBetween(0, 1000);
+        for (int i = 0; i < numValues; i++) {
+            final double value = randomDouble() * Math.pow(10, randomIntBetween(-5, 5));
+            all.add(value);
+            (randomBoolean() ? first : second).add(value);
+        }
+        HdrHistogramState merged = new HdrHistogramState(digits);
+        merged.add(first);
+        merged.add(second);
+        assertThat(merged, equalTo(all));
+        assertThat(merged.hashCode(), equalTo(all.hashCode()));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        HdrHistogramState state = new HdrHistogramState(randomIntBetween(0, HdrHistogramState.MAX_SIGNIFICANT_VALUE_DIGITS));
+        final int numValues = randomIntBetween(0, 1000);
+        for (int i = 0; i < numValues; i++) {
+            state.add(randomBoolean() ? 0 : randomDouble() * Math.pow(10, randomIntBetween(-5, 5)), randomIntBetween(1, 10));
+        }
+        BytesStreamOutput out = new BytesStreamOutput();
+        HdrHistogramState.write(state, out);
+        HdrHistogramState read = HdrHistogramState.read(StreamInput.wrap(out.bytes()));
+        assertThat(read, equalTo(state));
+        assertThat(read.totalCount(), equalTo(state.totalCount()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeValue() {
+        new HdrHistogramState(3).add(-randomDouble() - Double.MIN_VALUE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDifferentNumberOfSignificantValueDigits() {
+        new HdrHistogramState(2).add(new HdrHistogramState(3));
+    }
+}
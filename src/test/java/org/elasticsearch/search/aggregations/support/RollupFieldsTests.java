@@ -0,0 +1,61 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.support;
+
+import org.elasticsearch.test.ElasticsearchTestCase;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+public class RollupFieldsTests extends ElasticsearchTestCase {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    @Test
+    public void testFixedIntervals() {
+        assertTrue(RollupFields.isMultipleOf("1h", DateTimeZone.UTC, 0, "1h"));
+        assertTrue(RollupFields.isMultipleOf("3h", DateTimeZone.UTC, 0, "1h"));
+        assertTrue(RollupFields.isMultipleOf("day", DateTimeZone.UTC, 0, "1h"));
+        assertTrue(RollupFields.isMultipleOf("90m", DateTimeZone.UTC, 0, "30m"));
+        assertFalse(RollupFields.isMultipleOf("1m", DateTimeZone.UTC, 0, "1h"));
+        assertFalse(RollupFields.isMultipleOf("90m", DateTimeZone.UTC, 0, "1h"));
+    }
+
+    @Test
+    public void testCalendarIntervals() {
+        assertTrue(RollupFields.isMultipleOf("month", DateTimeZone.UTC, 0, "1d"));
+        assertTrue(RollupFields.isMultipleOf("year", DateTimeZone.UTC, 0, "quarter"));
+        assertTrue(RollupFields.isMultipleOf("week", DateTimeZone.UTC, 0, "1d"));
+        assertFalse(RollupFields.isMultipleOf("month", DateTimeZone.UTC, 0, "week"));
+        assertFalse(RollupFields.isMultipleOf("quarter", DateTimeZone.UTC, 0, "year"));
+        assertFalse(RollupFields.isMultipleOf("1d", DateTimeZone.UTC, 0, "month"));
+        // weeks start on Mondays while fixed intervals start on the epoch, which is a Thursday
+        assertFalse(RollupFields.isMultipleOf("week", DateTimeZone.UTC, 0, "7d"));
+        assertFalse(RollupFields.isMultipleOf("7d", DateTimeZone.UTC, 0, "week"));
+        assertTrue(RollupFields.isMultipleOf("7d", DateTimeZone.UTC, 4 * 24 * HOUR, "week"));
+    }
+
+    @Test
+    public void testOffsetsAndTimeZones() {
+        assertTrue(RollupFields.isMultipleOf("1d", DateTimeZone.UTC, 2 * HOUR, "1h"));
+        assertFalse(RollupFields.isMultipleOf("1d", DateTimeZone.UTC, HOUR / 2, "1h"));
+        assertTrue(RollupFields.isMultipleOf("1d", DateTimeZone.forID("Asia/Kolkata"), 0, "15m"));
+        assertFalse(RollupFields.isMultipleOf("1d", DateTimeZone.forID("Europe/Paris"), 0, "1h"));
+        assertFalse(RollupFields.isMultipleOf("year", DateTimeZone.forID("Europe/Paris"), 0, "month"));
+    }
+}
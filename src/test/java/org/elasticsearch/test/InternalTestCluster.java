@@ -432,6 +432,7 @@ public final class InternalTestCluster extends TestCluster {
         if (random.nextInt(10) == 0) {
             builder.put(HierarchyCircuitBreakerService.REQUEST_CIRCUIT_BREAKER_TYPE_SETTING, "noop");
             builder.put(HierarchyCircuitBreakerService.FIELDDATA_CIRCUIT_BREAKER_TYPE_SETTING, "noop");
+            builder.put(HierarchyCircuitBreakerService.INDEXING_CIRCUIT_BREAKER_TYPE_SETTING, "noop");
         }
 
         if (random.nextBoolean()) {
@@ -1769,6 +1770,8 @@ public final class InternalTestCluster extends TestCluster {
                         public void run() {
                             CircuitBreaker reqBreaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
                             assertThat("Request breaker not reset to 0 on node: " + name, reqBreaker.getUsed(), equalTo(0L));
+                            CircuitBreaker indexingBreaker = breakerService.getBreaker(CircuitBreaker.INDEXING);
+                            assertThat("Indexing breaker not reset to 0 on node: " + name, indexingBreaker.getUsed(), equalTo(0L));
                         }
                     });
                 } catch (Exception e) {